@@ -7,7 +7,7 @@ BEGIN;
 
 
 CREATE TABLE entite_legale (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   raison_sociale TEXT,
   siret TEXT,
   pays TEXT,
@@ -15,7 +15,7 @@ CREATE TABLE entite_legale (
 );
 
 CREATE TABLE site (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   libelle TEXT,
   ville TEXT,
@@ -24,7 +24,7 @@ CREATE TABLE site (
 );
 
 CREATE TABLE famille_article (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   libelle TEXT,
   parent_id BIGINT,
@@ -33,7 +33,7 @@ CREATE TABLE famille_article (
 );
 
 CREATE TABLE article (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   designation TEXT,
   famille_id BIGINT,
@@ -55,7 +55,7 @@ CREATE TABLE article (
 );
 
 CREATE TABLE fournisseur (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   raison_sociale TEXT,
   adresse TEXT,
@@ -69,7 +69,7 @@ CREATE TABLE fournisseur (
 );
 
 CREATE TABLE tarif (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   libelle TEXT,
   date_debut TIMESTAMP,
@@ -77,7 +77,7 @@ CREATE TABLE tarif (
 );
 
 CREATE TABLE tarif_ligne (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   tarif_id BIGINT,
   article_id BIGINT,
   prix_unitaire_ht NUMERIC(18,4),
@@ -85,7 +85,7 @@ CREATE TABLE tarif_ligne (
 );
 
 CREATE TABLE client (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   raison_sociale TEXT,
   adresse TEXT,
@@ -98,7 +98,7 @@ CREATE TABLE client (
 );
 
 CREATE TABLE depot (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   libelle TEXT,
   adresse TEXT,
@@ -109,7 +109,7 @@ CREATE TABLE depot (
 );
 
 CREATE TABLE taxe (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   libelle TEXT,
   taux_pourcent NUMERIC(9,4),
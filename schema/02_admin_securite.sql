@@ -5,14 +5,14 @@ BEGIN;
 -- =========================
 
 CREATE TABLE role (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   libelle TEXT,
   description TEXT
 );
 
 CREATE TABLE permission (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   module TEXT,
   action TEXT,
@@ -20,7 +20,7 @@ CREATE TABLE permission (
 );
 
 CREATE TABLE service (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   code TEXT NOT NULL UNIQUE,
   libelle TEXT,
   responsable_id BIGINT, -- FK added after utilisateur creation
@@ -28,7 +28,7 @@ CREATE TABLE service (
 );
 
 CREATE TABLE utilisateur (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   login TEXT NOT NULL UNIQUE,
   nom TEXT,
   prenom TEXT,
@@ -41,7 +41,7 @@ CREATE TABLE utilisateur (
 );
 
 CREATE TABLE utilisateur_role (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   utilisateur_id BIGINT,
   role_id BIGINT,
   depot_id BIGINT,
@@ -52,13 +52,13 @@ CREATE TABLE utilisateur_role (
 );
 
 CREATE TABLE role_permission (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   role_id BIGINT,
   permission_id BIGINT
 );
 
 CREATE TABLE delegation (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   delegant_id BIGINT,
   delegataire_id BIGINT,
   role_id BIGINT,
@@ -69,7 +69,7 @@ CREATE TABLE delegation (
 );
 
 CREATE TABLE audit_log (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   utilisateur_id BIGINT,
   table_name TEXT,
   record_id BIGINT,
@@ -80,6 +80,14 @@ CREATE TABLE audit_log (
   created_at TIMESTAMP
 );
 
+-- Compteurs de numérotation des documents (TODO.YML Ligne 33)
+-- cle = préfixe complet du numéro, ex: 'MVT-20260115-' (journalier) ou 'BL' (continu)
+CREATE TABLE compteur_numerotation (
+  cle TEXT PRIMARY KEY,
+  dernier_numero BIGINT NOT NULL,
+  updated_at TIMESTAMP
+);
+
 -- =========================
 -- Foreign Keys (internal + to Module 1)
 -- =========================
@@ -7,7 +7,7 @@ BEGIN;
 -- =========================
 
 CREATE TABLE demande_achat (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   demandeur_id BIGINT, -- FK added in Module 6
   service_id BIGINT,   -- FK added in Module 6
@@ -20,7 +20,7 @@ CREATE TABLE demande_achat (
 );
 
 CREATE TABLE ligne_da (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   demande_achat_id BIGINT,
   article_id BIGINT,
   quantite NUMERIC(18,4),
@@ -29,7 +29,7 @@ CREATE TABLE ligne_da (
 );
 
 CREATE TABLE validation_da (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   demande_achat_id BIGINT,
   valideur_id BIGINT, -- FK added in Module 6
   niveau INTEGER,
@@ -39,7 +39,7 @@ CREATE TABLE validation_da (
 );
 
 CREATE TABLE proforma (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   demande_achat_id BIGINT,
   fournisseur_id BIGINT,
@@ -51,7 +51,7 @@ CREATE TABLE proforma (
 );
 
 CREATE TABLE ligne_proforma (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   proforma_id BIGINT,
   article_id BIGINT,
   quantite NUMERIC(18,4),
@@ -60,7 +60,7 @@ CREATE TABLE ligne_proforma (
 );
 
 CREATE TABLE bon_commande (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   demande_achat_id BIGINT,
   fournisseur_id BIGINT,
@@ -78,7 +78,7 @@ CREATE TABLE bon_commande (
 );
 
 CREATE TABLE ligne_bc (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   bon_commande_id BIGINT,
   article_id BIGINT,
   reference_fournisseur TEXT,
@@ -89,7 +89,7 @@ CREATE TABLE ligne_bc (
 );
 
 CREATE TABLE bon_reception (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   bon_commande_id BIGINT,
   magasinier_id BIGINT, -- FK added in Module 6
@@ -97,11 +97,12 @@ CREATE TABLE bon_reception (
   date_bl_fournisseur DATE,
   date_reception DATE,
   observations TEXT,
-  statut TEXT
+  statut TEXT,
+  entree_stock_at TIMESTAMP
 );
 
 CREATE TABLE ligne_br (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   bon_reception_id BIGINT,
   ligne_bc_id BIGINT,
   article_id BIGINT,
@@ -109,11 +110,14 @@ CREATE TABLE ligne_br (
   quantite_recue NUMERIC(18,4),
   quantite_conforme NUMERIC(18,4),
   quantite_non_conforme NUMERIC(18,4),
-  motif_non_conformite TEXT
+  motif_non_conformite TEXT,
+  lot_numero TEXT,
+  dluo DATE,
+  dlc DATE
 );
 
 CREATE TABLE facture_fournisseur (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   numero_facture_fournisseur TEXT,
   fournisseur_id BIGINT,
@@ -131,7 +135,7 @@ CREATE TABLE facture_fournisseur (
 );
 
 CREATE TABLE ligne_facture_fournisseur (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   facture_fournisseur_id BIGINT,
   article_id BIGINT,
   quantite NUMERIC(18,4),
@@ -140,7 +144,7 @@ CREATE TABLE ligne_facture_fournisseur (
 );
 
 CREATE TABLE paiement_fournisseur (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   facture_fournisseur_id BIGINT,
   date_paiement DATE,
@@ -5,7 +5,7 @@ BEGIN;
 -- =========================
 
 CREATE TABLE devis (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   client_id BIGINT,
   commercial_id BIGINT, -- FK added in Module 6
@@ -20,7 +20,7 @@ CREATE TABLE devis (
 );
 
 CREATE TABLE ligne_devis (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   devis_id BIGINT,
   article_id BIGINT,
   quantite NUMERIC(18,4),
@@ -30,7 +30,7 @@ CREATE TABLE ligne_devis (
 );
 
 CREATE TABLE commande_client (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   devis_id BIGINT,
   client_id BIGINT,
@@ -45,7 +45,7 @@ CREATE TABLE commande_client (
 );
 
 CREATE TABLE ligne_commande_client (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   commande_client_id BIGINT,
   article_id BIGINT,
   quantite NUMERIC(18,4),
@@ -57,7 +57,7 @@ CREATE TABLE ligne_commande_client (
 );
 
 CREATE TABLE bon_livraison (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   commande_client_id BIGINT,
   magasinier_id BIGINT, -- FK added in Module 6
@@ -68,7 +68,7 @@ CREATE TABLE bon_livraison (
 );
 
 CREATE TABLE ligne_bl (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   bon_livraison_id BIGINT,
   ligne_commande_id BIGINT,
   article_id BIGINT,
@@ -78,7 +78,7 @@ CREATE TABLE ligne_bl (
 );
 
 CREATE TABLE facture_client (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   commande_client_id BIGINT,
   bon_livraison_id BIGINT,
@@ -93,7 +93,7 @@ CREATE TABLE facture_client (
 );
 
 CREATE TABLE ligne_facture_client (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   facture_client_id BIGINT,
   article_id BIGINT,
   quantite NUMERIC(18,4),
@@ -103,7 +103,7 @@ CREATE TABLE ligne_facture_client (
 );
 
 CREATE TABLE avoir_client (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   facture_client_id BIGINT,
   client_id BIGINT,
@@ -121,7 +121,7 @@ CREATE TABLE avoir_client (
 );
 
 CREATE TABLE encaissement (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   facture_client_id BIGINT,
   date_encaissement DATE,
@@ -5,7 +5,7 @@ BEGIN;
 -- =========================
 
 CREATE TABLE mouvement_stock (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   article_id BIGINT,
   depot_id BIGINT,
@@ -25,7 +25,7 @@ CREATE TABLE mouvement_stock (
 );
 
 CREATE TABLE lot (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   article_id BIGINT,
   fournisseur_id BIGINT,
@@ -38,7 +38,7 @@ CREATE TABLE lot (
 );
 
 CREATE TABLE stock_disponible (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   article_id BIGINT,
   depot_id BIGINT,
   emplacement TEXT,
@@ -50,8 +50,54 @@ CREATE TABLE stock_disponible (
   last_update TIMESTAMP
 );
 
+-- Couches de coût FIFO : quantité restante de chaque entrée en stock
+CREATE TABLE couche_fifo (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
+  article_id BIGINT,
+  depot_id BIGINT,
+  mouvement_id BIGINT,
+  lot_numero TEXT,
+  date_entree DATE,
+  cout_unitaire NUMERIC(18,6),
+  quantite_initiale NUMERIC(18,4),
+  quantite_restante NUMERIC(18,4),
+  created_at TIMESTAMP
+);
+
+-- Seules les couches non épuisées sont parcourues par les sorties
+CREATE INDEX idx_couche_fifo_ouvertes
+  ON couche_fifo (article_id, depot_id, date_entree, id)
+  WHERE quantite_restante > 0;
+
+-- Totaux courants quantité/valeur par article pour le CUMP
+CREATE TABLE cumul_valorisation (
+  article_id BIGINT PRIMARY KEY,
+  quantite_totale NUMERIC(18,4) NOT NULL,
+  valeur_totale NUMERIC(18,4) NOT NULL,
+  updated_at TIMESTAMP
+);
+
+-- Points de stock journaliers : état quantité/valeur par article/dépôt/lot en fin de journée,
+-- base de la reconstitution du stock à une date passée (mouvements rejoués depuis le point le plus proche)
+CREATE TABLE point_stock (
+  date_point DATE PRIMARY KEY,
+  construit_le TIMESTAMP NOT NULL,
+  nombre_lignes INT,
+  valide BOOLEAN NOT NULL DEFAULT true
+);
+
+CREATE TABLE ligne_point_stock (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
+  date_point DATE NOT NULL,
+  article_id BIGINT NOT NULL,
+  depot_id BIGINT NOT NULL,
+  lot_numero TEXT,
+  quantite NUMERIC(18,4) NOT NULL,
+  valeur NUMERIC(18,4) NOT NULL
+);
+
 CREATE TABLE reservation_stock (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   article_id BIGINT,
   depot_id BIGINT,
   lot_numero TEXT,
@@ -63,7 +109,7 @@ CREATE TABLE reservation_stock (
 );
 
 CREATE TABLE transfert_stock (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   depot_source_id BIGINT,
   depot_destination_id BIGINT,
@@ -76,7 +122,7 @@ CREATE TABLE transfert_stock (
 );
 
 CREATE TABLE ligne_transfert (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   transfert_id BIGINT,
   article_id BIGINT,
   quantite_demandee NUMERIC(18,4),
@@ -113,6 +159,26 @@ ALTER TABLE stock_disponible
   ADD CONSTRAINT fk_sd_depot
   FOREIGN KEY (depot_id) REFERENCES depot(id) ON UPDATE CASCADE ON DELETE RESTRICT;
 
+ALTER TABLE couche_fifo
+  ADD CONSTRAINT fk_cf_article
+  FOREIGN KEY (article_id) REFERENCES article(id) ON UPDATE CASCADE ON DELETE RESTRICT;
+
+ALTER TABLE couche_fifo
+  ADD CONSTRAINT fk_cf_depot
+  FOREIGN KEY (depot_id) REFERENCES depot(id) ON UPDATE CASCADE ON DELETE RESTRICT;
+
+ALTER TABLE couche_fifo
+  ADD CONSTRAINT fk_cf_mouvement
+  FOREIGN KEY (mouvement_id) REFERENCES mouvement_stock(id) ON UPDATE CASCADE ON DELETE SET NULL;
+
+ALTER TABLE cumul_valorisation
+  ADD CONSTRAINT fk_cv_article
+  FOREIGN KEY (article_id) REFERENCES article(id) ON UPDATE CASCADE ON DELETE CASCADE;
+
+ALTER TABLE ligne_point_stock
+  ADD CONSTRAINT fk_lps_point
+  FOREIGN KEY (date_point) REFERENCES point_stock(date_point) ON UPDATE CASCADE ON DELETE CASCADE;
+
 ALTER TABLE reservation_stock
   ADD CONSTRAINT fk_rs_article
   FOREIGN KEY (article_id) REFERENCES article(id) ON UPDATE CASCADE ON DELETE RESTRICT;
@@ -5,7 +5,7 @@ BEGIN;
 -- =========================
 
 CREATE TABLE inventaire (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   depot_id BIGINT,
   type TEXT,
@@ -17,7 +17,7 @@ CREATE TABLE inventaire (
 );
 
 CREATE TABLE ligne_inventaire (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   inventaire_id BIGINT,
   article_id BIGINT,
   emplacement TEXT,
@@ -35,7 +35,7 @@ CREATE TABLE ligne_inventaire (
 );
 
 CREATE TABLE ajustement_stock (
-  id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
   numero TEXT NOT NULL UNIQUE,
   inventaire_id BIGINT,
   article_id BIGINT,
@@ -54,6 +54,25 @@ CREATE TABLE ajustement_stock (
   statut TEXT
 );
 
+-- Périmètre d'un inventaire tournant (aucune ligne = tout le dépôt) ; lot/emplacement NULL = tous
+CREATE TABLE perimetre_inventaire (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50) PRIMARY KEY,
+  inventaire_id BIGINT NOT NULL,
+  article_id BIGINT NOT NULL,
+  lot_numero TEXT,
+  emplacement TEXT
+);
+
+-- Scans de comptage reçus des terminaux : un identifiant par scan, rejouer un lot est sans effet
+CREATE TABLE scan_inventaire (
+  id_scan TEXT PRIMARY KEY,
+  inventaire_id BIGINT NOT NULL,
+  ligne_id BIGINT,
+  statut TEXT,
+  message TEXT,
+  recu_le TIMESTAMP NOT NULL
+);
+
 -- =========================
 -- Foreign Keys (to Modules 1/3 and internal)
 -- =========================
@@ -70,6 +89,14 @@ ALTER TABLE ligne_inventaire
   ADD CONSTRAINT fk_li_article
   FOREIGN KEY (article_id) REFERENCES article(id) ON UPDATE CASCADE ON DELETE RESTRICT;
 
+ALTER TABLE perimetre_inventaire
+  ADD CONSTRAINT fk_pi_inv
+  FOREIGN KEY (inventaire_id) REFERENCES inventaire(id) ON UPDATE CASCADE ON DELETE CASCADE;
+
+ALTER TABLE perimetre_inventaire
+  ADD CONSTRAINT fk_pi_article
+  FOREIGN KEY (article_id) REFERENCES article(id) ON UPDATE CASCADE ON DELETE RESTRICT;
+
 ALTER TABLE ajustement_stock
   ADD CONSTRAINT fk_as_inv
   FOREIGN KEY (inventaire_id) REFERENCES inventaire(id) ON UPDATE CASCADE ON DELETE SET NULL;
@@ -95,6 +122,10 @@ ALTER TABLE ligne_inventaire
   ADD CONSTRAINT fk_li_compteur_2
   FOREIGN KEY (compteur_2_id) REFERENCES utilisateur(id) ON UPDATE CASCADE ON DELETE SET NULL;
 
+ALTER TABLE scan_inventaire
+  ADD CONSTRAINT fk_si_inventaire
+  FOREIGN KEY (inventaire_id) REFERENCES inventaire(id) ON UPDATE CASCADE ON DELETE CASCADE;
+
 ALTER TABLE ajustement_stock
   ADD CONSTRAINT fk_as_demande_by
   FOREIGN KEY (demande_by) REFERENCES utilisateur(id) ON UPDATE CASCADE ON DELETE SET NULL;
@@ -0,0 +1,139 @@
+BEGIN;
+
+-- =========================
+-- Index secondaires (à appliquer après 01 … 06)
+-- Chaque index est nommé idx_<table>_<usage> et cite la requête qu'il sert ;
+-- tout nouvel index est ajouté ici, et src/test/.../PlansRequetesTest vérifie
+-- que les requêtes concernées n'effectuent plus de parcours séquentiel.
+-- =========================
+
+-- -------------------------
+-- Module 1 : Référentiels
+-- -------------------------
+
+-- ArticleRepository.rechercher / DepotRepository.rechercher : préfixe de code insensible à la casse
+CREATE INDEX IF NOT EXISTS idx_article_code_lower
+  ON article (LOWER(code) text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS idx_depot_code_lower
+  ON depot (LOWER(code) text_pattern_ops);
+
+-- ArticleRepository.findByFamilleId
+CREATE INDEX IF NOT EXISTS idx_article_famille
+  ON article (famille_id);
+
+-- TarifLigne par tarif
+CREATE INDEX IF NOT EXISTS idx_tarif_ligne_tarif
+  ON tarif_ligne (tarif_id, article_id);
+
+-- -------------------------
+-- Module 2 : Administration
+-- -------------------------
+
+-- AuditLogRepository.findByTableNameAndRecordId
+CREATE INDEX IF NOT EXISTS idx_audit_log_enregistrement
+  ON audit_log (table_name, record_id, created_at);
+
+-- AuditLogRepository.findByUtilisateurId
+CREATE INDEX IF NOT EXISTS idx_audit_log_utilisateur
+  ON audit_log (utilisateur_id, created_at);
+
+-- -------------------------
+-- Module 3/4 : Achats et ventes (lignes par document)
+-- -------------------------
+
+CREATE INDEX IF NOT EXISTS idx_ligne_da_demande ON ligne_da (demande_achat_id);
+CREATE INDEX IF NOT EXISTS idx_ligne_proforma_proforma ON ligne_proforma (proforma_id);
+CREATE INDEX IF NOT EXISTS idx_ligne_bc_commande ON ligne_bc (bon_commande_id);
+CREATE INDEX IF NOT EXISTS idx_ligne_br_reception ON ligne_br (bon_reception_id);
+CREATE INDEX IF NOT EXISTS idx_ligne_ff_facture ON ligne_facture_fournisseur (facture_fournisseur_id);
+CREATE INDEX IF NOT EXISTS idx_ligne_devis_devis ON ligne_devis (devis_id);
+CREATE INDEX IF NOT EXISTS idx_ligne_cc_commande ON ligne_commande_client (commande_client_id);
+CREATE INDEX IF NOT EXISTS idx_ligne_bl_livraison ON ligne_bl (bon_livraison_id);
+CREATE INDEX IF NOT EXISTS idx_ligne_fc_facture ON ligne_facture_client (facture_client_id);
+
+-- -------------------------
+-- Module 5 : Stocks
+-- -------------------------
+
+-- Une seule ligne par article/dépôt/lot, lot NULL compris : INSERT … ON CONFLICT de RegistreStockService,
+-- StockDisponibleRepository.findByArticleIdAndDepotIdAndLotNumero et mises à jour en delta.
+-- PostgreSQL 15+ (NULLS NOT DISTINCT). Sur une base existante, regrouper d'abord les doublons :
+-- src/main/resources/db/01_stock_disponible_doublons.sql (exécuté aussi au démarrage de l'application,
+-- avec cet index : src/main/resources/db/02_stock_disponible_cle_unique.sql).
+DROP INDEX IF EXISTS idx_stock_disponible_cle;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_stock_disponible_cle_unique
+  ON stock_disponible (article_id, depot_id, lot_numero) NULLS NOT DISTINCT;
+
+-- MouvementStockRepository.findEntreesFIFO / sumEntreesByArticleAndDepot : entrées seulement
+CREATE INDEX IF NOT EXISTS idx_mouvement_stock_entrees
+  ON mouvement_stock (article_id, depot_id, date_mouvement, id)
+  WHERE type_mouvement LIKE 'ENTREE%';
+
+-- MouvementStockRepository.sumSortiesByArticleAndDepot
+CREATE INDEX IF NOT EXISTS idx_mouvement_stock_sorties
+  ON mouvement_stock (article_id, depot_id)
+  INCLUDE (quantite)
+  WHERE type_mouvement LIKE 'SORTIE%';
+
+-- MouvementStockRepository.findByDateMouvementBetween / rechercher (période)
+CREATE INDEX IF NOT EXISTS idx_mouvement_stock_date
+  ON mouvement_stock (date_mouvement, id);
+
+-- MouvementStockRepository.rechercher (pagination par clé filtrée par article ou dépôt)
+CREATE INDEX IF NOT EXISTS idx_mouvement_stock_article_id
+  ON mouvement_stock (article_id, id);
+
+CREATE INDEX IF NOT EXISTS idx_mouvement_stock_depot_id
+  ON mouvement_stock (depot_id, id);
+
+-- PointStockService.etatADate : mouvements d'un article postérieurs au point de stock
+CREATE INDEX IF NOT EXISTS idx_mouvement_stock_article_date
+  ON mouvement_stock (article_id, date_mouvement);
+
+-- PointStockService.etatADate : lignes du point de stock le plus proche
+CREATE INDEX IF NOT EXISTS idx_ligne_point_stock_date
+  ON ligne_point_stock (date_point, article_id, depot_id);
+
+-- MouvementStockRepository.findByTypeDocumentAndDocumentId
+CREATE INDEX IF NOT EXISTS idx_mouvement_stock_document
+  ON mouvement_stock (type_document, document_id);
+
+-- ReservationStockRepository.findReservationsExpirees : réservations actives uniquement
+CREATE INDEX IF NOT EXISTS idx_reservation_stock_expiration_active
+  ON reservation_stock (date_expiration)
+  WHERE statut = 'ACTIVE';
+
+-- ReservationStockRepository.sumReservationsActives / findByArticleIdAndDepotIdAndStatut
+CREATE INDEX IF NOT EXISTS idx_reservation_stock_article_active
+  ON reservation_stock (article_id, depot_id)
+  INCLUDE (quantite_reservee)
+  WHERE statut = 'ACTIVE';
+
+-- ReservationStockRepository.findByCommandeClientId
+CREATE INDEX IF NOT EXISTS idx_reservation_stock_commande
+  ON reservation_stock (commande_client_id);
+
+-- LotRepository.findLotsActifsByArticleFEFO : lots actifs uniquement
+CREATE INDEX IF NOT EXISTS idx_lot_article_actif
+  ON lot (article_id, dluo)
+  WHERE statut = 'ACTIF';
+
+-- LotRepository.findByArticleId
+CREATE INDEX IF NOT EXISTS idx_lot_article
+  ON lot (article_id);
+
+CREATE INDEX IF NOT EXISTS idx_ligne_transfert_transfert ON ligne_transfert (transfert_id);
+
+-- -------------------------
+-- Module 6 : Inventaires
+-- -------------------------
+
+CREATE INDEX IF NOT EXISTS idx_ligne_inventaire_inventaire
+  ON ligne_inventaire (inventaire_id, article_id);
+
+CREATE INDEX IF NOT EXISTS idx_ajustement_stock_inventaire
+  ON ajustement_stock (inventaire_id);
+
+COMMIT;
@@ -0,0 +1,34 @@
+BEGIN;
+
+-- =========================
+-- Identifiants par séquence (à appliquer après 01 … 07, sur une base existante)
+-- Les entités génèrent leurs identifiants par blocs de 50 (@SequenceGenerator, optimiseur pooled)
+-- pour que Hibernate regroupe les INSERT en lots JDBC (hibernate.jdbc.batch_size) ;
+-- une colonne IDENTITY impose au contraire un aller-retour par ligne.
+-- Chaque colonne id devient GENERATED BY DEFAULT (valeur fournie par l'application)
+-- et sa séquence <table>_id_seq avance de 50 ; elle est repositionnée au-delà du plus grand id
+-- existant pour que le premier bloc alloué ne chevauche aucune ligne.
+-- Les insertions JDBC (audit, mouvements, réservations) prennent nextval('<table>_id_seq').
+-- =========================
+
+DO $$
+DECLARE
+  t TEXT;
+BEGIN
+  FOREACH t IN ARRAY ARRAY[
+    'entite_legale', 'site', 'famille_article', 'article', 'fournisseur', 'tarif',
+    'tarif_ligne', 'client', 'depot', 'taxe', 'role', 'permission',
+    'service', 'utilisateur', 'utilisateur_role', 'role_permission', 'delegation', 'audit_log',
+    'demande_achat', 'ligne_da', 'validation_da', 'proforma', 'ligne_proforma', 'bon_commande',
+    'ligne_bc', 'bon_reception', 'ligne_br', 'facture_fournisseur', 'ligne_facture_fournisseur', 'paiement_fournisseur',
+    'devis', 'ligne_devis', 'commande_client', 'ligne_commande_client', 'bon_livraison', 'ligne_bl',
+    'facture_client', 'ligne_facture_client', 'avoir_client', 'encaissement', 'mouvement_stock', 'lot',
+    'stock_disponible', 'couche_fifo', 'reservation_stock', 'transfert_stock', 'ligne_transfert', 'inventaire',
+    'ligne_inventaire', 'ajustement_stock'
+  ] LOOP
+    EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET GENERATED BY DEFAULT, ALTER COLUMN id SET INCREMENT BY 50', t);
+    EXECUTE format('SELECT setval(pg_get_serial_sequence(%L, ''id''), COALESCE((SELECT MAX(id) FROM %I), 0) + 50, false)', t, t);
+  END LOOP;
+END $$;
+
+COMMIT;
@@ -83,8 +83,12 @@ public class BonReceptionController {
         Utilisateur magasinier = utilisateurRepository.findById(1L)
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
         
-        bonReceptionService.finaliserReception(id, observations, magasinier);
-        redirectAttributes.addFlashAttribute("success", "Réception finalisée");
+        try {
+            bonReceptionService.finaliserReception(id, observations, magasinier);
+            redirectAttributes.addFlashAttribute("success", "Réception finalisée et entrée en stock");
+        } catch (RuntimeException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        }
         return "redirect:/achats/receptions/" + id;
     }
 }
@@ -98,6 +98,22 @@ public class FactureFournisseurController {
         return "redirect:/achats/factures/" + id;
     }
 
+    /**
+     * TODO.YML Ligne 18: Relancer le 3-way match de toutes les factures bloquées
+     */
+    @PostMapping("/bloquees/rapprocher")
+    public String rapprocherBloquees(RedirectAttributes redirectAttributes) {
+        try {
+            var bilan = factureFournisseurService.rapprocherFacturesBloquees();
+            redirectAttributes.addFlashAttribute("success", bilan.factures() + " facture(s) bloquée(s) rapprochée(s): "
+                    + bilan.debloquees() + " débloquée(s), " + bilan.toujoursBloquees() + " toujours bloquée(s)"
+                    + (bilan.erreurs() > 0 ? ", " + bilan.erreurs() + " en erreur" : ""));
+        } catch (RuntimeException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        }
+        return "redirect:/achats/factures/bloquees";
+    }
+
     /**
      * TODO.YML Ligne 58: Valider facture (séparation des tâches)
      */
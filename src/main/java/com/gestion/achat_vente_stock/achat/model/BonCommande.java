@@ -28,7 +28,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Fournisseur;
 public class BonCommande {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bon_commande_seq")
+    @SequenceGenerator(name = "bon_commande_seq", sequenceName = "bon_commande_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 
@@ -26,7 +27,8 @@ import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 public class BonReception {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bon_reception_seq")
+    @SequenceGenerator(name = "bon_reception_seq", sequenceName = "bon_reception_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
@@ -54,4 +56,8 @@ public class BonReception {
     
     // TODO.YML Ligne 16: Statut pour réceptions partielles
     private String statut; // "PARTIELLE", "COMPLETE", "AVEC_ECART"
+
+    // TODO.YML Ligne 14: Entrée en stock des quantités conformes (null = pas encore postée)
+    @Column(name = "entree_stock_at")
+    private LocalDateTime entreeStockAt;
 }
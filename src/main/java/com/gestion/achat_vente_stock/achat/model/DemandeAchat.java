@@ -30,7 +30,8 @@ import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 public class DemandeAchat {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "demande_achat_seq")
+    @SequenceGenerator(name = "demande_achat_seq", sequenceName = "demande_achat_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -28,7 +28,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Fournisseur;
 public class FactureFournisseur {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "facture_fournisseur_seq")
+    @SequenceGenerator(name = "facture_fournisseur_seq", sequenceName = "facture_fournisseur_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
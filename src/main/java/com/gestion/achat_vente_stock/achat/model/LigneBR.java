@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 
 import com.gestion.achat_vente_stock.referentiel.model.Article;
 
@@ -23,7 +24,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneBR {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_br_seq")
+    @SequenceGenerator(name = "ligne_br_seq", sequenceName = "ligne_br_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -53,4 +55,16 @@ public class LigneBR {
 
     @Column(name = "motif_non_conformite")
     private String motifNonConformite;
+
+    /**
+     * TODO.YML Ligne 37: Lot créé à l'entrée en stock (articles à traçabilité lot)
+     */
+    @Column(name = "lot_numero")
+    private String lotNumero;
+
+    @Column(name = "dluo")
+    private LocalDate dluo;
+
+    @Column(name = "dlc")
+    private LocalDate dlc;
 }
@@ -22,7 +22,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneFactureFournisseur {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_facture_fournisseur_seq")
+    @SequenceGenerator(name = "ligne_facture_fournisseur_seq", sequenceName = "ligne_facture_fournisseur_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -23,7 +23,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneProforma {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_proforma_seq")
+    @SequenceGenerator(name = "ligne_proforma_seq", sequenceName = "ligne_proforma_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
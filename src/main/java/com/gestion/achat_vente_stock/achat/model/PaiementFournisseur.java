@@ -21,7 +21,8 @@ import java.time.LocalDate;
 public class PaiementFournisseur {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "paiement_fournisseur_seq")
+    @SequenceGenerator(name = "paiement_fournisseur_seq", sequenceName = "paiement_fournisseur_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
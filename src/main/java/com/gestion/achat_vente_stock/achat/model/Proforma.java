@@ -32,7 +32,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Fournisseur;
 public class Proforma {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "proforma_seq")
+    @SequenceGenerator(name = "proforma_seq", sequenceName = "proforma_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -25,7 +25,8 @@ import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 public class ValidationDA {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "validation_da_seq")
+    @SequenceGenerator(name = "validation_da_seq", sequenceName = "validation_da_id_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -1,6 +1,10 @@
 package com.gestion.achat_vente_stock.achat.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.gestion.achat_vente_stock.achat.model.BonReception;
@@ -15,6 +19,11 @@ import java.util.Optional;
 public interface BonReceptionRepository extends JpaRepository<BonReception, Long> {
     
     Optional<BonReception> findByNumero(String numero);
+
+    // TODO.YML Ligne 14: Réception verrouillée jusqu'au commit (une seule entrée en stock par réception)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT br FROM BonReception br WHERE br.id = :id")
+    Optional<BonReception> findByIdPourMiseAJour(@Param("id") Long id);
     
     List<BonReception> findByBonCommandeId(Long bonCommandeId);
     
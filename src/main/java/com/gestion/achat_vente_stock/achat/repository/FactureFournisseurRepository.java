@@ -30,4 +30,8 @@ public interface FactureFournisseurRepository extends JpaRepository<FactureFourn
     // TODO.YML Ligne 18: Factures bloquées (paiement impossible)
     @Query("SELECT ff FROM FactureFournisseur ff WHERE ff.statut = 'BLOQUEE'")
     List<FactureFournisseur> findFacturesBloquees();
+
+    // TODO.YML Ligne 18: Identifiants des factures bloquées (nouveau rapprochement en masse)
+    @Query("SELECT ff.id FROM FactureFournisseur ff WHERE ff.statut = 'BLOQUEE' ORDER BY ff.id")
+    List<Long> findIdsFacturesBloquees();
 }
@@ -0,0 +1,22 @@
+package com.gestion.achat_vente_stock.achat.repository;
+
+import com.gestion.achat_vente_stock.achat.model.LigneBC;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * TODO.YML Lignes 11-13: Achats > Bon de Commande > Lignes
+ */
+@Repository
+public interface LigneBCRepository extends JpaRepository<LigneBC, Long> {
+
+    List<LigneBC> findByBonCommandeId(Long bonCommandeId);
+
+    // TODO.YML Ligne 17: Lignes du BC et leurs articles en une requête (3-way match)
+    @Query("SELECT l FROM LigneBC l JOIN FETCH l.article WHERE l.bonCommande.id = :bonCommandeId")
+    List<LigneBC> findByBonCommandeIdAvecArticle(@Param("bonCommandeId") Long bonCommandeId);
+}
@@ -2,8 +2,11 @@ package com.gestion.achat_vente_stock.achat.repository;
 
 import com.gestion.achat_vente_stock.achat.model.LigneBR;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
@@ -15,4 +18,20 @@ public interface LigneBRRepository extends JpaRepository<LigneBR, Long> {
     List<LigneBR> findByBonReceptionId(Long bonReceptionId);
     
     List<LigneBR> findByArticleId(Long articleId);
+
+    // TODO.YML Ligne 14: Lignes d'une réception avec article et ligne BC en une requête (entrée en stock)
+    @Query("SELECT l FROM LigneBR l JOIN FETCH l.article LEFT JOIN FETCH l.ligneBc " +
+           "WHERE l.bonReception.id = :bonReceptionId ORDER BY l.id")
+    List<LigneBR> findByBonReceptionIdAvecArticle(@Param("bonReceptionId") Long bonReceptionId);
+
+    // TODO.YML Ligne 17: Quantités conformes reçues par article, réceptions du BC entrées en stock (3-way match)
+    @Query("SELECT l.article.id AS articleId, SUM(l.quantiteConforme) AS quantite FROM LigneBR l " +
+           "WHERE l.bonReception.bonCommande.id = :bonCommandeId AND l.bonReception.entreeStockAt IS NOT NULL " +
+           "GROUP BY l.article.id")
+    List<QuantiteArticle> sumQuantiteConformeParArticle(@Param("bonCommandeId") Long bonCommandeId);
+
+    interface QuantiteArticle {
+        Long getArticleId();
+        BigDecimal getQuantite();
+    }
 }
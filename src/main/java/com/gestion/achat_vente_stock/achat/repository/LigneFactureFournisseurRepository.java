@@ -1,7 +1,10 @@
 package com.gestion.achat_vente_stock.achat.repository;
 
 import com.gestion.achat_vente_stock.achat.model.LigneFactureFournisseur;
+import com.gestion.achat_vente_stock.achat.repository.LigneBRRepository.QuantiteArticle;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,4 +18,15 @@ public interface LigneFactureFournisseurRepository extends JpaRepository<LigneFa
     List<LigneFactureFournisseur> findByFactureFournisseurId(Long factureFournisseurId);
     
     List<LigneFactureFournisseur> findByArticleId(Long articleId);
+
+    // TODO.YML Ligne 17: Lignes de la facture et leurs articles en une requête (3-way match)
+    @Query("SELECT l FROM LigneFactureFournisseur l JOIN FETCH l.article WHERE l.factureFournisseur.id = :factureId")
+    List<LigneFactureFournisseur> findByFactureFournisseurIdAvecArticle(@Param("factureId") Long factureId);
+
+    // TODO.YML Ligne 17: Quantités déjà facturées par article sur les autres factures du BC
+    @Query("SELECT l.article.id AS articleId, SUM(l.quantite) AS quantite FROM LigneFactureFournisseur l " +
+           "WHERE l.factureFournisseur.bonCommande.id = :bonCommandeId AND l.factureFournisseur.id <> :factureId " +
+           "GROUP BY l.article.id")
+    List<QuantiteArticle> sumQuantiteFactureeAutresFactures(@Param("bonCommandeId") Long bonCommandeId,
+                                                            @Param("factureId") Long factureId);
 }
@@ -1,6 +1,8 @@
 package com.gestion.achat_vente_stock.achat.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.gestion.achat_vente_stock.achat.model.Proforma;
@@ -21,4 +23,10 @@ public interface ProformaRepository extends JpaRepository<Proforma, Long> {
     List<Proforma> findByFournisseurId(Long fournisseurId);
     
     List<Proforma> findByStatut(String statut);
+
+    /** Plus grande séquence numérique des numéros du préfixe (amorce de la numérotation) */
+    @Query(value = "SELECT MAX(CAST(SUBSTRING(numero, LENGTH(:prefix) + 1) AS BIGINT)) FROM proforma " +
+            "WHERE numero LIKE :prefix || '%' AND SUBSTRING(numero, LENGTH(:prefix) + 1) ~ '^[0-9]+$'",
+            nativeQuery = true)
+    Optional<Long> findDerniereSequence(@Param("prefix") String prefix);
 }
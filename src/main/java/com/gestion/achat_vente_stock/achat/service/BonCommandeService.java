@@ -6,9 +6,11 @@ import com.gestion.achat_vente_stock.achat.model.LigneBC;
 import com.gestion.achat_vente_stock.achat.model.LigneDA;
 import com.gestion.achat_vente_stock.achat.model.Proforma;
 import com.gestion.achat_vente_stock.achat.repository.BonCommandeRepository;
+import com.gestion.achat_vente_stock.achat.repository.LigneBCRepository;
 import com.gestion.achat_vente_stock.achat.repository.LigneDARepository;
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
+import com.gestion.achat_vente_stock.stock.service.DisponibiliteService;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -16,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -33,7 +36,9 @@ public class BonCommandeService {
     private final DemandeAchatService demandeAchatService;
     private final ProformaService proformaService;
     private final LigneDARepository ligneDARepository;
+    private final LigneBCRepository ligneBCRepository;
     private final AuditService auditService;
+    private final DisponibiliteService disponibiliteService;
 
     // TODO.YML Ligne 12: Seuil pour validation responsable achats
     private static final BigDecimal SEUIL_VALIDATION_BC = new BigDecimal("50000");
@@ -67,6 +72,7 @@ public class BonCommandeService {
 
         // Créer les lignes BC depuis les lignes DA
         List<LigneDA> lignesDA = ligneDARepository.findByDemandeAchatId(da.getId());
+        List<LigneBC> lignesBC = new ArrayList<>(lignesDA.size());
         for (LigneDA ligneDA : lignesDA) {
             LigneBC ligneBC = new LigneBC();
             ligneBC.setBonCommande(bcSaved);
@@ -74,16 +80,18 @@ public class BonCommandeService {
             ligneBC.setQuantite(ligneDA.getQuantite());
             ligneBC.setPrixUnitaireHt(ligneDA.getPrixEstimeHt());
             ligneBC.setMontantLigneHt(ligneDA.getQuantite().multiply(ligneDA.getPrixEstimeHt()));
-            // Les lignes seront sauvegardées par le repository LigneBC si nécessaire
+            lignesBC.add(ligneBC);
         }
+        // TODO.YML Ligne 17: Lignes BC conservées pour le 3-way match (prix et quantités commandés)
+        ligneBCRepository.saveAll(lignesBC);
 
         // Marquer la proforma comme transformée en BC
         proforma.setStatut("TRANSFORMEE_EN_BC");
         proformaService.enregistrer(proforma);
 
         // Audit
-        auditService.logAction(acheteur, "bon_commande", bcSaved.getId(),
-                "CREATE_FROM_PROFORMA", null, bcSaved.toString(), null);
+        auditService.logCreation(acheteur, "bon_commande", bcSaved.getId(),
+                "CREATE_FROM_PROFORMA", bcSaved);
 
         return bcSaved;
     }
@@ -117,6 +125,7 @@ public class BonCommandeService {
 
         // Créer les lignes BC depuis les lignes DA
         List<LigneDA> lignesDA = ligneDARepository.findByDemandeAchatId(daId);
+        List<LigneBC> lignesBC = new ArrayList<>(lignesDA.size());
         for (LigneDA ligneDA : lignesDA) {
             LigneBC ligneBC = new LigneBC();
             ligneBC.setBonCommande(bcSaved);
@@ -124,12 +133,14 @@ public class BonCommandeService {
             ligneBC.setQuantite(ligneDA.getQuantite());
             ligneBC.setPrixUnitaireHt(ligneDA.getPrixEstimeHt());
             ligneBC.setMontantLigneHt(ligneDA.getQuantite().multiply(ligneDA.getPrixEstimeHt()));
-            // Les lignes seront sauvegardées par le repository LigneBC si nécessaire
+            lignesBC.add(ligneBC);
         }
+        // TODO.YML Ligne 17: Lignes BC conservées pour le 3-way match (prix et quantités commandés)
+        ligneBCRepository.saveAll(lignesBC);
 
         // Audit
-        auditService.logAction(acheteur, "bon_commande", bcSaved.getId(),
-                "CREATE_FROM_DA", null, bcSaved.toString(), null);
+        auditService.logCreation(acheteur, "bon_commande", bcSaved.getId(),
+                "CREATE_FROM_DA", bcSaved);
 
         return bcSaved;
     }
@@ -152,6 +163,7 @@ public class BonCommandeService {
         }
 
         bonCommandeRepository.save(bc);
+        invaliderDisponibiliteSiValide(bc);
 
         // Audit
         auditService.logAction(acheteur, "bon_commande", bcId,
@@ -175,6 +187,7 @@ public class BonCommandeService {
         }
 
         bonCommandeRepository.save(bc);
+        invaliderDisponibiliteSiValide(bc);
 
         // Audit
         auditService.logAction(responsable, "bon_commande", bcId,
@@ -223,6 +236,18 @@ public class BonCommandeService {
                 "SEND", "APPROUVEE", "ENVOYEE", null);
     }
 
+    /**
+     * BC validé : ses quantités deviennent attendues dans le disponible à promettre
+     */
+    private void invaliderDisponibiliteSiValide(BonCommande bc) {
+        if ("VALIDEE".equals(bc.getStatut())) {
+            disponibiliteService.invaliderApresCommit(ligneBCRepository.findByBonCommandeId(bc.getId()).stream()
+                    .filter(l -> l.getArticle() != null)
+                    .map(l -> l.getArticle().getId())
+                    .toList());
+        }
+    }
+
     @Transactional(readOnly = true)
     public BonCommande trouverParId(Long id) {
         return bonCommandeRepository.findById(id)
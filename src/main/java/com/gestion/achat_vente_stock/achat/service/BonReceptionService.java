@@ -2,16 +2,27 @@ package com.gestion.achat_vente_stock.achat.service;
 
 import com.gestion.achat_vente_stock.achat.model.*;
 import com.gestion.achat_vente_stock.achat.repository.BonReceptionRepository;
+import com.gestion.achat_vente_stock.achat.repository.FactureFournisseurRepository;
 import com.gestion.achat_vente_stock.achat.repository.LigneBRRepository;
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.stock.model.Lot;
+import com.gestion.achat_vente_stock.stock.service.LotService;
+import com.gestion.achat_vente_stock.stock.service.LotService.NouveauLot;
+import com.gestion.achat_vente_stock.stock.service.MouvementStockService;
+import com.gestion.achat_vente_stock.stock.service.MouvementStockService.LigneMouvement;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -22,6 +33,7 @@ import java.util.List;
  */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 @Transactional
 public class BonReceptionService {
 
@@ -29,6 +41,12 @@ public class BonReceptionService {
     private final LigneBRRepository ligneBRRepository;
     private final BonCommandeService bonCommandeService;
     private final AuditService auditService;
+    private final LotService lotService;
+    private final MouvementStockService mouvementStockService;
+    private final RapprochementFactureService rapprochementFactureService;
+    private final FactureFournisseurRepository factureFournisseurRepository;
+
+    private static final BigDecimal CENT = new BigDecimal("100");
 
     /**
      * TODO.YML Ligne 14-15: Créer bon de réception
@@ -54,8 +72,8 @@ public class BonReceptionService {
         BonReception brSaved = bonReceptionRepository.save(br);
 
         // Audit
-        auditService.logAction(magasinier, "bon_reception", brSaved.getId(),
-                "CREATE", null, brSaved.toString(), null);
+        auditService.logCreation(magasinier, "bon_reception", brSaved.getId(),
+                "CREATE", brSaved);
 
         return brSaved;
     }
@@ -67,7 +85,23 @@ public class BonReceptionService {
             BigDecimal quantiteRecue, BigDecimal quantiteConforme,
             BigDecimal quantiteNonConforme, String motifNonConformite,
             Utilisateur magasinier) {
-        BonReception br = trouverParId(brId);
+        return enregistrerLigneReception(brId, ligneBC, quantiteRecue, quantiteConforme, quantiteNonConforme,
+                motifNonConformite, null, null, magasinier);
+    }
+
+    /**
+     * TODO.YML Lignes 14, 37: Ligne de réception avec dates du lot fournisseur (DLUO/DLC)
+     */
+    public LigneBR enregistrerLigneReception(Long brId, LigneBC ligneBC,
+            BigDecimal quantiteRecue, BigDecimal quantiteConforme,
+            BigDecimal quantiteNonConforme, String motifNonConformite,
+            LocalDate dluo, LocalDate dlc, Utilisateur magasinier) {
+        // Verrou de finaliserReception : aucune ligne ajoutée pendant ou après l'entrée en stock
+        BonReception br = bonReceptionRepository.findByIdPourMiseAJour(brId)
+                .orElseThrow(() -> new RuntimeException("Bon de réception non trouvé: " + brId));
+        if (br.getEntreeStockAt() != null) {
+            throw new RuntimeException("La réception est finalisée, aucune ligne ne peut être ajoutée");
+        }
 
         LigneBR ligneBR = new LigneBR();
         ligneBR.setBonReception(br);
@@ -78,6 +112,8 @@ public class BonReceptionService {
         ligneBR.setQuantiteConforme(quantiteConforme);
         ligneBR.setQuantiteNonConforme(quantiteNonConforme);
         ligneBR.setMotifNonConformite(motifNonConformite);
+        ligneBR.setDluo(dluo);
+        ligneBR.setDlc(dlc);
 
         LigneBR saved = ligneBRRepository.save(ligneBR);
 
@@ -85,8 +121,8 @@ public class BonReceptionService {
         mettreAJourStatutReception(brId);
 
         // Audit
-        auditService.logAction(magasinier, "ligne_br", saved.getId(),
-                "RECEIVE", null, saved.toString(), null);
+        auditService.logCreation(magasinier, "ligne_br", saved.getId(),
+                "RECEIVE", saved);
 
         return saved;
     }
@@ -127,10 +163,16 @@ public class BonReceptionService {
 
     /**
      * Finaliser le bon de réception
+     * TODO.YML Ligne 14: les quantités conformes entrent en stock (une seule fois par réception :
+     * la réception est verrouillée, deux finalisations simultanées se suivent et seule la première poste)
      */
     public void finaliserReception(Long brId, String observations, Utilisateur magasinier) {
-        BonReception br = trouverParId(brId);
+        BonReception br = bonReceptionRepository.findByIdPourMiseAJour(brId)
+                .orElseThrow(() -> new RuntimeException("Bon de réception non trouvé: " + brId));
         br.setObservations(observations);
+        if (br.getEntreeStockAt() == null) {
+            posterEntreeStock(br, magasinier);
+        }
         bonReceptionRepository.save(br);
 
         // Audit
@@ -138,6 +180,72 @@ public class BonReceptionService {
                 "FINALIZE", null, br.getStatut(), null);
     }
 
+    /**
+     * TODO.YML Lignes 14, 37, 39: Entrée en stock d'une réception
+     * En un nombre constant d'échanges avec la base, quelle que soit la taille de la réception :
+     * - lignes, articles et lignes BC lus en une requête
+     * - lots créés en masse (LotService.creerLots) pour les articles à traçabilité lot
+     * - quantités conformes postées en un seul lot ENTREE_RECEPTION (MouvementStockService.posterLot :
+     *   stock disponible mis à jour par lots, CUMP/couches FIFO une fois par article)
+     * Coût d'entrée : prix unitaire net de la ligne BC ; ligne hors BC ou sans prix : prix d'achat moyen
+     * de l'article, et à défaut la réception est refusée (pas d'entrée à coût nul). Les factures bloquées du BC sont ensuite
+     * rapprochées à nouveau (réception tardive).
+     */
+    private void posterEntreeStock(BonReception br, Utilisateur magasinier) {
+        BonCommande bc = br.getBonCommande();
+        List<LigneBR> conformes = ligneBRRepository.findByBonReceptionIdAvecArticle(br.getId()).stream()
+                .filter(l -> l.getQuantiteConforme() != null && l.getQuantiteConforme().signum() > 0)
+                .toList();
+        br.setEntreeStockAt(LocalDateTime.now());
+        if (conformes.isEmpty()) {
+            return;
+        }
+        Depot depot = bc.getDepotLivraison();
+        if (depot == null) {
+            throw new RuntimeException("Dépôt de livraison non renseigné sur le BC " + bc.getNumero());
+        }
+
+        List<LigneBR> avecLot = conformes.stream()
+                .filter(l -> Boolean.TRUE.equals(l.getArticle().getTracabiliteLot()))
+                .toList();
+        List<Lot> lots = lotService.creerLots(avecLot.stream()
+                .map(l -> new NouveauLot(l.getArticle(), bc.getFournisseur(), null, l.getDluo(), l.getDlc()))
+                .toList(), magasinier);
+        for (int i = 0; i < avecLot.size(); i++) {
+            avecLot.get(i).setLotNumero(lots.get(i).getNumero());
+        }
+
+        List<LigneMouvement> mouvements = new ArrayList<>(conformes.size());
+        for (LigneBR ligne : conformes) {
+            mouvements.add(LigneMouvement.entree(ligne.getArticle(), depot,
+                    MouvementStockService.ENTREE_RECEPTION, ligne.getQuantiteConforme(), coutUnitaire(ligne),
+                    null, ligne.getLotNumero(), ligne.getDluo(), br.getId(), "BON_RECEPTION"));
+        }
+        mouvementStockService.posterLot(mouvements, magasinier);
+        log.info("Réception {}: {} ligne(s) entrée(s) en stock, {} lot(s) créé(s)",
+                br.getNumero(), mouvements.size(), lots.size());
+
+        // TODO.YML Ligne 18: Réception tardive - nouveau rapprochement des factures bloquées du BC
+        factureFournisseurRepository.findByBonCommandeId(bc.getId()).stream()
+                .filter(f -> "BLOQUEE".equals(f.getStatut()))
+                .forEach(f -> rapprochementFactureService.rapprocher(f.getId()));
+    }
+
+    // Prix unitaire HT net de remise de la ligne BC, sinon prix d'achat moyen de l'article
+    private static BigDecimal coutUnitaire(LigneBR ligne) {
+        LigneBC ligneBC = ligne.getLigneBc();
+        if (ligneBC == null || ligneBC.getPrixUnitaireHt() == null) {
+            BigDecimal prixMoyen = ligne.getArticle().getPrixAchatMoyen();
+            if (prixMoyen == null || prixMoyen.signum() <= 0) {
+                throw new RuntimeException("Coût d'entrée inconnu pour l'article " + ligne.getArticle().getCode()
+                        + " : ligne sans prix sur le BC et aucun prix d'achat moyen");
+            }
+            return prixMoyen;
+        }
+        BigDecimal remise = ligneBC.getRemisePourcent() != null ? ligneBC.getRemisePourcent() : BigDecimal.ZERO;
+        return ligneBC.getPrixUnitaireHt().multiply(CENT.subtract(remise)).divide(CENT, 4, RoundingMode.HALF_UP);
+    }
+
     @Transactional(readOnly = true)
     public BonReception trouverParId(Long id) {
         return bonReceptionRepository.findById(id)
@@ -63,8 +63,8 @@ public class DemandeAchatService {
         }
 
         // Audit
-        auditService.logAction(demandeur, "demande_achat", daSaved.getId(),
-                "CREATE", null, daSaved.toString(), null);
+        auditService.logCreation(demandeur, "demande_achat", daSaved.getId(),
+                "CREATE", daSaved);
 
         return daSaved;
     }
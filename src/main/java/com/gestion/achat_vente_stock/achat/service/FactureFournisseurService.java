@@ -5,9 +5,10 @@ import com.gestion.achat_vente_stock.achat.repository.FactureFournisseurReposito
 import com.gestion.achat_vente_stock.achat.repository.LigneFactureFournisseurRepository;
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
-import com.gestion.achat_vente_stock.achat.repository.LigneBRRepository;
+import com.gestion.achat_vente_stock.achat.service.RapprochementFactureService.BilanRapprochement;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -34,7 +35,7 @@ public class FactureFournisseurService {
     private final LigneFactureFournisseurRepository ligneFactureFournisseurRepository;
     private final BonCommandeService bonCommandeService;
     private final BonReceptionService bonReceptionService;
-    private final LigneBRRepository ligneBRRepository;
+    private final RapprochementFactureService rapprochementFactureService;
     private final AuditService auditService;
 
     /**
@@ -62,78 +63,18 @@ public class FactureFournisseurService {
 
     /**
      * TODO.YML Ligne 17: 3-way match (Facture vs Réception vs BC)
-     * Rapprochement automatique des 3 documents
+     * Rapprochement automatique des 3 documents (RapprochementFactureService)
      */
     public void effectuerThreeWayMatch(Long factureId) {
-        FactureFournisseur facture = trouverParId(factureId);
-        BonCommande bc = facture.getBonCommande();
-
-        if (bc == null) {
-            facture.setThreeWayMatchOk(false);
-            facture.setEcartsThreeWay("Aucun BC associé");
-            factureFournisseurRepository.save(facture);
-            return;
-        }
-
-        // Récupérer les réceptions
-        List<BonReception> receptions = bonReceptionService.listerParBC(bc.getId());
-
-        if (receptions.isEmpty()) {
-            facture.setThreeWayMatchOk(false);
-            facture.setEcartsThreeWay("Aucune réception enregistrée");
-            factureFournisseurRepository.save(facture);
-            return;
-        }
-
-        StringBuilder ecarts = new StringBuilder();
-        boolean matchOk = true;
-
-        // Vérifier les montants
-        BigDecimal montantBC = bc.getMontantTotalTtc() != null ? bc.getMontantTotalTtc() : BigDecimal.ZERO;
-        BigDecimal montantFacture = facture.getMontantTtc() != null ? facture.getMontantTtc() : BigDecimal.ZERO;
-        BigDecimal tolerance = new BigDecimal("0.01"); // 1 centime de tolérance
-
-        if (montantFacture.subtract(montantBC).abs().compareTo(tolerance) > 0) {
-            matchOk = false;
-            ecarts.append("Écart montant: BC=").append(montantBC)
-                    .append(" vs Facture=").append(montantFacture).append("; ");
-        }
-
-        // Vérifier les quantités réceptionnées
-        List<LigneFactureFournisseur> lignesFF = ligneFactureFournisseurRepository
-                .findByFactureFournisseurId(factureId);
-
-        for (LigneFactureFournisseur ligneFF : lignesFF) {
-            BigDecimal qteFacturee = ligneFF.getQuantite() != null ? ligneFF.getQuantite() : BigDecimal.ZERO;
-
-            // Trouver la quantité réceptionnée pour cet article
-            BigDecimal qteReceptionnee = BigDecimal.ZERO;
-            for (BonReception br : receptions) {
-                List<LigneBR> lignesBR = ligneBRRepository.findByBonReceptionId(br.getId());
-                for (LigneBR ligneBR : lignesBR) {
-                    if (ligneBR.getArticle().getId().equals(ligneFF.getArticle().getId())) {
-                        qteReceptionnee = qteReceptionnee.add(ligneBR.getQuantiteConforme());
-                    }
-                }
-            }
-
-            if (qteFacturee.compareTo(qteReceptionnee) > 0) {
-                matchOk = false;
-                ecarts.append("Article ").append(ligneFF.getArticle().getCode())
-                        .append(": Facturé=").append(qteFacturee)
-                        .append(" > Réceptionné=").append(qteReceptionnee).append("; ");
-            }
-        }
-
-        facture.setThreeWayMatchOk(matchOk);
-        facture.setEcartsThreeWay(ecarts.length() > 0 ? ecarts.toString() : null);
-
-        // TODO.YML Ligne 18: Bloquer si écart non résolu
-        if (!matchOk) {
-            facture.setStatut("BLOQUEE");
-        }
+        rapprochementFactureService.rapprocher(factureId);
+    }
 
-        factureFournisseurRepository.save(facture);
+    /**
+     * TODO.YML Ligne 18: Nouveau rapprochement des factures bloquées après des réceptions tardives
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BilanRapprochement rapprocherFacturesBloquees() {
+        return rapprochementFactureService.rapprocherFacturesBloquees();
     }
 
     /**
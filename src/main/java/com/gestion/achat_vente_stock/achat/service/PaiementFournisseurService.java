@@ -48,8 +48,8 @@ public class PaiementFournisseurService {
         PaiementFournisseur saved = paiementFournisseurRepository.save(paiement);
 
         // Audit
-        auditService.logAction(tresorier, "paiement_fournisseur", saved.getId(),
-                "CREATE", null, saved.toString(), null);
+        auditService.logCreation(tresorier, "paiement_fournisseur", saved.getId(),
+                "CREATE", saved);
 
         return saved;
     }
@@ -7,6 +7,7 @@ import com.gestion.achat_vente_stock.achat.model.LigneProforma;
 import com.gestion.achat_vente_stock.achat.model.Proforma;
 import com.gestion.achat_vente_stock.achat.repository.ProformaRepository;
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 
 
 import lombok.RequiredArgsConstructor;
@@ -32,6 +33,7 @@ public class ProformaService {
 
     private final ProformaRepository proformaRepository;
     private final ObjectMapper objectMapper;
+    private final NumerotationService numerotationService;
     private static final String PREFIXE_NUMERO = "PF";
 
     /**
@@ -153,8 +155,8 @@ public class ProformaService {
      * Générer un numéro unique
      */
     private String genererNumero() {
-        long count = proformaRepository.count() + 1;
-        return PREFIXE_NUMERO + String.format("%05d", count);
+        return numerotationService.genererNumero(PREFIXE_NUMERO, 5,
+                cle -> proformaRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     /**
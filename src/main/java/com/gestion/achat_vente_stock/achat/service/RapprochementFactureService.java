@@ -0,0 +1,251 @@
+package com.gestion.achat_vente_stock.achat.service;
+
+import com.gestion.achat_vente_stock.achat.model.BonCommande;
+import com.gestion.achat_vente_stock.achat.model.FactureFournisseur;
+import com.gestion.achat_vente_stock.achat.model.LigneBC;
+import com.gestion.achat_vente_stock.achat.model.LigneFactureFournisseur;
+import com.gestion.achat_vente_stock.achat.repository.FactureFournisseurRepository;
+import com.gestion.achat_vente_stock.achat.repository.LigneBCRepository;
+import com.gestion.achat_vente_stock.achat.repository.LigneBRRepository;
+import com.gestion.achat_vente_stock.achat.repository.LigneBRRepository.QuantiteArticle;
+import com.gestion.achat_vente_stock.achat.repository.LigneFactureFournisseurRepository;
+import com.gestion.achat_vente_stock.admin.service.AuditService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * TODO.YML Lignes 17-18: Achats > Facture Fournisseur
+ * Moteur de rapprochement 3-way (facture / réceptions / BC) :
+ * - lignes BC, quantités reçues (toutes réceptions du BC) et quantités déjà facturées lues une fois,
+ *   agrégées par article en base, puis indexées par article
+ * - par article facturé : article commandé, prix facturé dans la tolérance du prix net BC,
+ *   quantité facturée (cumulée avec les autres factures du BC) dans la tolérance de la quantité reçue
+ * - en-tête : montant HT facturé ≤ montant HT du BC
+ * Une facture BLOQUEE dont les écarts ont disparu (réception arrivée depuis) repasse EN_ATTENTE.
+ */
+@Service
+@Slf4j
+public class RapprochementFactureService {
+
+    // Tolérance d'arrondi sur les montants
+    private static final BigDecimal TOLERANCE_MONTANT = new BigDecimal("0.01");
+    private static final BigDecimal CENT = new BigDecimal("100");
+
+    private final FactureFournisseurRepository factureFournisseurRepository;
+    private final LigneFactureFournisseurRepository ligneFactureFournisseurRepository;
+    private final LigneBCRepository ligneBCRepository;
+    private final LigneBRRepository ligneBRRepository;
+    private final AuditService auditService;
+    private final TransactionTemplate transactionTemplate;
+    private final BigDecimal tolerancePrixPourcent;
+    private final BigDecimal toleranceQuantitePourcent;
+    private final int parallelisme;
+
+    public RapprochementFactureService(FactureFournisseurRepository factureFournisseurRepository,
+                                       LigneFactureFournisseurRepository ligneFactureFournisseurRepository,
+                                       LigneBCRepository ligneBCRepository,
+                                       LigneBRRepository ligneBRRepository,
+                                       AuditService auditService,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${achat.rapprochement.tolerance-prix-pourcent:0}") BigDecimal tolerancePrixPourcent,
+                                       @Value("${achat.rapprochement.tolerance-quantite-pourcent:0}") BigDecimal toleranceQuantitePourcent,
+                                       @Value("${achat.rapprochement.parallelisme:4}") int parallelisme) {
+        this.factureFournisseurRepository = factureFournisseurRepository;
+        this.ligneFactureFournisseurRepository = ligneFactureFournisseurRepository;
+        this.ligneBCRepository = ligneBCRepository;
+        this.ligneBRRepository = ligneBRRepository;
+        this.auditService = auditService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.tolerancePrixPourcent = tolerancePrixPourcent;
+        this.toleranceQuantitePourcent = toleranceQuantitePourcent;
+        this.parallelisme = parallelisme;
+    }
+
+    /**
+     * TODO.YML Ligne 17: 3-way match d'une facture ; renvoie true si aucun écart
+     * TODO.YML Ligne 18: écart → facture BLOQUEE (paiement impossible)
+     */
+    @Transactional
+    public boolean rapprocher(Long factureId) {
+        FactureFournisseur facture = factureFournisseurRepository.findById(factureId)
+                .orElseThrow(() -> new RuntimeException("Facture fournisseur non trouvée: " + factureId));
+        BonCommande bc = facture.getBonCommande();
+
+        String ecarts;
+        if (bc == null) {
+            ecarts = "Aucun BC associé";
+        } else {
+            Map<Long, BigDecimal> recues = parArticle(ligneBRRepository.sumQuantiteConformeParArticle(bc.getId()));
+            ecarts = recues.isEmpty() ? "Aucune réception enregistrée" : comparer(facture, bc, recues);
+        }
+        boolean matchOk = ecarts.isEmpty();
+
+        facture.setThreeWayMatchOk(matchOk);
+        facture.setEcartsThreeWay(matchOk ? null : ecarts);
+        if (!matchOk) {
+            facture.setStatut("BLOQUEE");
+        } else if ("BLOQUEE".equals(facture.getStatut())) {
+            facture.setStatut("EN_ATTENTE");
+            auditService.logAction(null, "facture_fournisseur", factureId,
+                    "UNBLOCK", "BLOQUEE", "EN_ATTENTE", "Rapprochement 3-way sans écart");
+        }
+        factureFournisseurRepository.save(facture);
+        return matchOk;
+    }
+
+    /**
+     * TODO.YML Ligne 18: Nouveau rapprochement de toutes les factures bloquées (réceptions tardives),
+     * en parallèle, chaque facture dans sa propre transaction
+     */
+    public BilanRapprochement rapprocherFacturesBloquees() {
+        long debut = System.currentTimeMillis();
+        List<Long> factureIds = factureFournisseurRepository.findIdsFacturesBloquees();
+        List<Boolean> resultats;
+        ForkJoinPool pool = new ForkJoinPool(parallelisme);
+        try {
+            resultats = pool.submit(() -> factureIds.parallelStream().map(this::rapprocherSeule).toList()).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        int debloquees = 0;
+        int erreurs = 0;
+        for (Boolean resultat : resultats) {
+            if (resultat == null) {
+                erreurs++;
+            } else if (resultat) {
+                debloquees++;
+            }
+        }
+        BilanRapprochement bilan = new BilanRapprochement(factureIds.size(), debloquees,
+                factureIds.size() - debloquees - erreurs, erreurs, System.currentTimeMillis() - debut);
+        log.info("Rapprochement des factures bloquées: {}", bilan);
+        return bilan;
+    }
+
+    private Boolean rapprocherSeule(Long factureId) {
+        try {
+            return transactionTemplate.execute(status -> rapprocher(factureId));
+        } catch (RuntimeException e) {
+            log.error("Rapprochement de la facture {} impossible", factureId, e);
+            return null;
+        }
+    }
+
+    private String comparer(FactureFournisseur facture, BonCommande bc, Map<Long, BigDecimal> recues) {
+        StringBuilder ecarts = new StringBuilder();
+
+        BigDecimal montantBC = bc.getMontantTotalHt() != null ? bc.getMontantTotalHt() : BigDecimal.ZERO;
+        BigDecimal montantFacture = facture.getMontantHt() != null ? facture.getMontantHt() : BigDecimal.ZERO;
+        if (montantFacture.subtract(montantBC).compareTo(TOLERANCE_MONTANT) > 0) {
+            ecarts.append("Écart montant: BC=").append(montantBC)
+                    .append(" vs Facture=").append(montantFacture).append("; ");
+        }
+
+        Map<Long, Commande> commandes = new HashMap<>();
+        for (LigneBC ligne : ligneBCRepository.findByBonCommandeIdAvecArticle(bc.getId())) {
+            commandes.computeIfAbsent(ligne.getArticle().getId(), id -> new Commande()).ajouter(ligne);
+        }
+        Map<Long, BigDecimal> factureesAilleurs = parArticle(
+                ligneFactureFournisseurRepository.sumQuantiteFactureeAutresFactures(bc.getId(), facture.getId()));
+
+        // Lignes de la facture regroupées par article (un article peut être facturé sur plusieurs lignes)
+        Map<Long, List<LigneFactureFournisseur>> lignesParArticle = new LinkedHashMap<>();
+        for (LigneFactureFournisseur ligne
+                : ligneFactureFournisseurRepository.findByFactureFournisseurIdAvecArticle(facture.getId())) {
+            lignesParArticle.computeIfAbsent(ligne.getArticle().getId(), id -> new ArrayList<>()).add(ligne);
+        }
+
+        for (Map.Entry<Long, List<LigneFactureFournisseur>> entree : lignesParArticle.entrySet()) {
+            Long articleId = entree.getKey();
+            String code = entree.getValue().get(0).getArticle().getCode();
+            Commande commande = commandes.get(articleId);
+            // BC sans lignes enregistrées : seul le contrôle des quantités reçues est possible
+            if (commande == null && !commandes.isEmpty()) {
+                ecarts.append("Article ").append(code).append(": non commandé; ");
+                continue;
+            }
+
+            BigDecimal qteFacturee = BigDecimal.ZERO;
+            for (LigneFactureFournisseur ligne : entree.getValue()) {
+                BigDecimal quantite = ligne.getQuantite() != null ? ligne.getQuantite() : BigDecimal.ZERO;
+                qteFacturee = qteFacturee.add(quantite);
+                BigDecimal prixBC = commande != null ? commande.prixNet() : null;
+                if (prixBC != null && ligne.getPrixUnitaireHt() != null
+                        && ligne.getPrixUnitaireHt().subtract(prixBC).abs().compareTo(tolerance(prixBC, tolerancePrixPourcent)) > 0) {
+                    ecarts.append("Article ").append(code)
+                            .append(": Prix facturé=").append(ligne.getPrixUnitaireHt())
+                            .append(" vs BC=").append(prixBC).append("; ");
+                }
+            }
+
+            BigDecimal qteReceptionnee = recues.getOrDefault(articleId, BigDecimal.ZERO);
+            BigDecimal qteFactureeTotale = qteFacturee.add(factureesAilleurs.getOrDefault(articleId, BigDecimal.ZERO));
+            if (qteFactureeTotale.subtract(qteReceptionnee)
+                    .compareTo(tolerance(qteReceptionnee, toleranceQuantitePourcent)) > 0) {
+                ecarts.append("Article ").append(code)
+                        .append(": Facturé=").append(qteFactureeTotale)
+                        .append(" > Réceptionné=").append(qteReceptionnee).append("; ");
+            }
+        }
+        return ecarts.toString();
+    }
+
+    private static BigDecimal tolerance(BigDecimal reference, BigDecimal pourcent) {
+        BigDecimal relative = reference.abs().multiply(pourcent).divide(CENT, 4, RoundingMode.HALF_UP);
+        return relative.max(TOLERANCE_MONTANT);
+    }
+
+    private static Map<Long, BigDecimal> parArticle(List<QuantiteArticle> quantites) {
+        Map<Long, BigDecimal> parArticle = new HashMap<>();
+        for (QuantiteArticle quantite : quantites) {
+            parArticle.put(quantite.getArticleId(),
+                    quantite.getQuantite() != null ? quantite.getQuantite() : BigDecimal.ZERO);
+        }
+        return parArticle;
+    }
+
+    /**
+     * Lignes BC d'un article : quantité commandée et montant net (remise déduite)
+     */
+    private static final class Commande {
+        private BigDecimal quantite = BigDecimal.ZERO;
+        private BigDecimal montantNet = BigDecimal.ZERO;
+
+        private void ajouter(LigneBC ligne) {
+            BigDecimal qte = ligne.getQuantite() != null ? ligne.getQuantite() : BigDecimal.ZERO;
+            BigDecimal prix = ligne.getPrixUnitaireHt() != null ? ligne.getPrixUnitaireHt() : BigDecimal.ZERO;
+            BigDecimal remise = ligne.getRemisePourcent() != null ? ligne.getRemisePourcent() : BigDecimal.ZERO;
+            quantite = quantite.add(qte);
+            montantNet = montantNet.add(qte.multiply(prix)
+                    .multiply(CENT.subtract(remise)).divide(CENT, 4, RoundingMode.HALF_UP));
+        }
+
+        // Prix unitaire net moyen pondéré par les quantités
+        private BigDecimal prixNet() {
+            return quantite.signum() > 0 ? montantNet.divide(quantite, 4, RoundingMode.HALF_UP) : null;
+        }
+    }
+
+    /**
+     * Résultat d'un rapprochement en masse
+     */
+    public record BilanRapprochement(int factures, int debloquees, int toujoursBloquees, int erreurs,
+                                     long dureeMillis) {
+    }
+}
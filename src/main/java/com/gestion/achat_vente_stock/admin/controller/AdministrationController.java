@@ -0,0 +1,66 @@
+package com.gestion.achat_vente_stock.admin.controller;
+
+import com.gestion.achat_vente_stock.admin.service.EcritureAuditService;
+import com.gestion.achat_vente_stock.admin.service.EcritureAuditService.StatistiquesAudit;
+import com.gestion.achat_vente_stock.referentiel.service.CacheReferentiel.Statistiques;
+import com.gestion.achat_vente_stock.referentiel.service.ReferentielCacheService;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TODO.YML Ligne 60: Sécurité > Audit
+ * Supervision technique (JSON) : état de l'écriture du journal d'audit, cache des référentiels
+ */
+@Controller
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdministrationController {
+
+    private final EcritureAuditService ecritureAuditService;
+    private final ReferentielCacheService referentielCacheService;
+
+    /**
+     * TODO.YML Ligne 60: Profondeur de la file d'audit, retard d'écriture, entrées écrites et débordées
+     */
+    @GetMapping("/api/audit")
+    @ResponseBody
+    public Map<String, Object> statistiquesAudit() {
+        StatistiquesAudit statistiques = ecritureAuditService.getStatistiques();
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("profondeurFile", statistiques.profondeurFile());
+        resultat.put("capaciteRestante", statistiques.capaciteRestante());
+        resultat.put("ageEntreeLaPlusAncienneMillis", statistiques.ageEntreeLaPlusAncienneMillis());
+        resultat.put("dernierRetardEcritureMillis", statistiques.dernierRetardEcritureMillis());
+        resultat.put("entreesEcrites", statistiques.entreesEcrites());
+        resultat.put("entreesDebordees", statistiques.entreesDebordees());
+        return resultat;
+    }
+
+    /**
+     * TODO.YML Lignes 1-8: Taille et compteurs (succès, échecs, évictions) du cache des référentiels
+     */
+    @GetMapping("/api/cache")
+    @ResponseBody
+    public List<Map<String, Object>> statistiquesCache() {
+        List<Map<String, Object>> resultats = new ArrayList<>();
+        for (Statistiques statistiques : referentielCacheService.statistiques()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("cache", statistiques.nom());
+            item.put("taille", statistiques.taille());
+            item.put("tailleMax", statistiques.tailleMax());
+            item.put("succes", statistiques.succes());
+            item.put("echecs", statistiques.echecs());
+            item.put("evictions", statistiques.evictions());
+            item.put("tauxSucces", statistiques.tauxSucces());
+            resultats.add(item);
+        }
+        return resultats;
+    }
+}
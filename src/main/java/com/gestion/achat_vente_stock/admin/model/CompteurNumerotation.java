@@ -0,0 +1,33 @@
+package com.gestion.achat_vente_stock.admin.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * TODO.YML Ligne 33: Numérotation automatique et non réutilisable
+ * Compteur de numérotation par préfixe de document (ex: "MVT-20260115-", "BL")
+ *
+ * Table: compteur_numerotation (schema/02_admin_securite.sql)
+ */
+@Entity
+@Table(name = "compteur_numerotation")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompteurNumerotation {
+
+    // Préfixe complet du numéro (inclut la date pour les compteurs journaliers)
+    @Id
+    private String cle;
+
+    // Dernier numéro attribué (ou réservé par bloc)
+    @Column(name = "dernier_numero", nullable = false)
+    private Long dernierNumero;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
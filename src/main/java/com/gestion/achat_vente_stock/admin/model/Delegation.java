@@ -20,7 +20,8 @@ import java.time.LocalDateTime;
 public class Delegation {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "delegation_seq")
+    @SequenceGenerator(name = "delegation_seq", sequenceName = "delegation_id_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
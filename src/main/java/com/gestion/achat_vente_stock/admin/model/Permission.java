@@ -19,7 +19,8 @@ import lombok.NoArgsConstructor;
 public class Permission {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "permission_seq")
+    @SequenceGenerator(name = "permission_seq", sequenceName = "permission_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
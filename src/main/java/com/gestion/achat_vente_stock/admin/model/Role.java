@@ -19,7 +19,8 @@ import lombok.NoArgsConstructor;
 public class Role {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "role_seq")
+    @SequenceGenerator(name = "role_seq", sequenceName = "role_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
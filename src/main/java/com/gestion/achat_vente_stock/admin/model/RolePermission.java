@@ -19,7 +19,8 @@ import lombok.NoArgsConstructor;
 public class RolePermission {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "role_permission_seq")
+    @SequenceGenerator(name = "role_permission_seq", sequenceName = "role_permission_id_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -19,7 +19,8 @@ import lombok.ToString;
 public class Service {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "service_seq")
+    @SequenceGenerator(name = "service_seq", sequenceName = "service_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
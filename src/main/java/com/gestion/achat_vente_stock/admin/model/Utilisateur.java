@@ -23,7 +23,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Site;
 public class Utilisateur {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "utilisateur_seq")
+    @SequenceGenerator(name = "utilisateur_seq", sequenceName = "utilisateur_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
@@ -24,7 +24,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Site;
 public class UtilisateurRole {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "utilisateur_role_seq")
+    @SequenceGenerator(name = "utilisateur_role_seq", sequenceName = "utilisateur_role_id_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,35 @@
+package com.gestion.achat_vente_stock.admin.repository;
+
+import com.gestion.achat_vente_stock.admin.model.CompteurNumerotation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * TODO.YML Ligne 33: Numérotation automatique et non réutilisable
+ * Repository des compteurs de numérotation
+ */
+@Repository
+public interface CompteurNumerotationRepository extends JpaRepository<CompteurNumerotation, String> {
+
+    // Incrément atomique du compteur, retourne le nouveau dernier numéro (vide si compteur absent)
+    @Query(value = "UPDATE compteur_numerotation SET dernier_numero = dernier_numero + :increment, " +
+                   "updated_at = now() WHERE cle = :cle RETURNING dernier_numero", nativeQuery = true)
+    Optional<Long> incrementer(@Param("cle") String cle, @Param("increment") long increment);
+
+    // Création du compteur avec sa valeur de départ (sans effet s'il existe déjà)
+    @Modifying
+    @Query(value = "INSERT INTO compteur_numerotation (cle, dernier_numero, updated_at) " +
+                   "VALUES (:cle, :valeur, now()) ON CONFLICT (cle) DO NOTHING", nativeQuery = true)
+    int initialiser(@Param("cle") String cle, @Param("valeur") long valeur);
+
+    // Suppression des compteurs journaliers (clé CODE-yyyyMMdd-) des jours antérieurs à :suffixe (-yyyyMMdd-)
+    @Modifying
+    @Query(value = "DELETE FROM compteur_numerotation WHERE right(cle, 10) ~ '^-[0-9]+-$' " +
+                   "AND right(cle, 10) < :suffixe", nativeQuery = true)
+    int supprimerCompteursJournaliersAvant(@Param("suffixe") String suffixeDuJour);
+}
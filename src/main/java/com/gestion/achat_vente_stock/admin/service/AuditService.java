@@ -7,9 +7,13 @@ import com.gestion.achat_vente_stock.admin.repository.AuditLogRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * TODO.YML Ligne 60: Sécurité > Audit
@@ -20,24 +24,100 @@ import java.util.List;
 public class AuditService {
     
     private final AuditLogRepository auditLogRepository;
+    private final EcritureAuditService ecritureAuditService;
+    private final EncodeurAuditService encodeurAuditService;
+
+    // Clé de la ressource transactionnelle des entrées d'audit en attente
+    private final Object cleEntreesTransaction = new Object();
     
     /**
      * Enregistrer une action dans le log d'audit
+     * Dans une transaction, les entrées sont regroupées et écrites ensemble dans le spool avant le commit
+     * (un échec d'écriture empêche le commit), transmises à l'écriture en base après le commit, écartées
+     * après un rollback ; hors transaction, l'entrée est transmise immédiatement
      */
-    @Transactional
     public void logAction(Utilisateur utilisateur, String tableName, Long recordId, 
                          String action, String avant, String apres, String ipAddress) {
-        AuditLog log = new AuditLog();
-        log.setUtilisateur(utilisateur);
-        log.setTableName(tableName);
-        log.setRecordId(recordId);
-        log.setAction(action);
-        log.setAvant(avant);
-        log.setApres(apres);
-        log.setIpAddress(ipAddress);
-        log.setCreatedAt(LocalDateTime.now());
-        
-        auditLogRepository.save(log);
+        EcritureAuditService.EntreeAudit entree = new EcritureAuditService.EntreeAudit(
+                utilisateur != null ? utilisateur.getId() : null, tableName, recordId, action,
+                avant, apres, ipAddress, LocalDateTime.now());
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ecritureAuditService.soumettre(entree);
+            return;
+        }
+        entreesTransaction().add(entree);
+    }
+
+    /**
+     * Entrées de la transaction courante ; la première enregistre l'écriture unique avant le commit
+     */
+    @SuppressWarnings("unchecked")
+    private List<EcritureAuditService.EntreeAudit> entreesTransaction() {
+        List<EcritureAuditService.EntreeAudit> entrees =
+                (List<EcritureAuditService.EntreeAudit>) TransactionSynchronizationManager.getResource(cleEntreesTransaction);
+        if (entrees != null) {
+            return entrees;
+        }
+        List<EcritureAuditService.EntreeAudit> nouvelles = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(cleEntreesTransaction, nouvelles);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private Long jeton;
+
+            // Transaction suspendue (REQUIRES_NEW) : ses entrées ne reçoivent pas celles de la transaction interne
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResourceIfPossible(cleEntreesTransaction);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(cleEntreesTransaction, nouvelles);
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                jeton = ecritureAuditService.preparer(nouvelles);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(cleEntreesTransaction);
+                if (jeton == null) {
+                    return;
+                }
+                if (status == STATUS_COMMITTED) {
+                    ecritureAuditService.confirmer(jeton);
+                } else {
+                    ecritureAuditService.annuler(jeton);
+                }
+            }
+        });
+        return nouvelles;
+    }
+    
+    /**
+     * Enregistrer la création d'une entité : état complet en JSON compact
+     */
+    public void logCreation(Utilisateur utilisateur, String tableName, Long recordId,
+                            String action, Object entite) {
+        logAction(utilisateur, tableName, recordId, action, null, encodeurAuditService.encoder(entite), null);
+    }
+
+    /**
+     * Capturer l'état d'une entité avant modification (voir logModification)
+     */
+    public Map<String, Object> capturer(Object entite) {
+        return encodeurAuditService.capturer(entite);
+    }
+
+    /**
+     * Enregistrer la modification d'une entité : seuls les champs modifiés depuis l'état capturé
+     */
+    public void logModification(Utilisateur utilisateur, String tableName, Long recordId,
+                                String action, Map<String, Object> etatAvant, Object entite) {
+        EncodeurAuditService.Difference difference = encodeurAuditService.difference(etatAvant, entite);
+        logAction(utilisateur, tableName, recordId, action, difference.avant(), difference.apres(), null);
     }
     
     @Transactional(readOnly = true)
@@ -0,0 +1,432 @@
+package com.gestion.achat_vente_stock.admin.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * TODO.YML Ligne 60: Sécurité > Audit
+ * Écriture asynchrone et par lots du journal d'audit
+ * - Les entrées sont d'abord ajoutées au segment courant d'un fichier local (aucune perte en cas d'arrêt brutal),
+ *   puis placées dans une file bornée en mémoire
+ * - Périodiquement, le segment courant est clos et ses entrées insérées en base par lots JDBC,
+ *   puis le segment est supprimé ; un segment non écrit (base indisponible, redémarrage) est repris
+ *   à l'écriture suivante
+ * - File pleine : l'entrée reste dans le segment, relu depuis le disque à l'écriture
+ * - Entrées d'une transaction : regroupées par AuditService, écrites ensemble dans le segment avant le commit
+ *   (preparer : une écriture et un flush par transaction, sérialisation hors verrou), placées dans la file
+ *   après le commit (confirmer), annulées par une marque dans le segment après un rollback (annuler) ;
+ *   tant qu'elles sont en attente, elles suivent le segment courant et ne sont jamais insérées
+ * - Répertoire du spool absolu, ou relatif à audit.ecriture.repertoire-base (absolu)
+ * Livraison au moins une fois : un arrêt entre l'insertion et la suppression du segment peut
+ * dupliquer ses entrées ; un arrêt entre preparer et l'issue de la transaction laisse l'entrée,
+ * qui sera écrite.
+ */
+@Service
+@Slf4j
+public class EcritureAuditService {
+
+    private static final String SQL_INSERTION = "INSERT INTO audit_log " +
+            "(id, utilisateur_id, table_name, record_id, action, avant, apres, ip_address, created_at) " +
+            "VALUES (nextval('audit_log_id_seq'), ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SEGMENT_COURANT = "audit-courant.jsonl";
+    private static final String PREFIXE_SEGMENT_CLOS = "audit-lot-";
+    private static final String SUFFIXE_SEGMENT = ".jsonl";
+    private static final String ANNULEE = "ANNULEE";
+    private static final String REPORTEE = "REPORTEE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ArrayBlockingQueue<EntreeAudit> file;
+    private final int tailleLot;
+    private final Path repertoire;
+    private final boolean synchroDisque;
+
+    // Verrou du segment courant et de la file (ajout / clôture), tenu le temps d'une écriture déjà sérialisée
+    private final Object verrouSegment = new Object();
+    // Une seule écriture en base à la fois (planificateur, arrêt)
+    private final Object verrouEcriture = new Object();
+
+    private FileChannel canalSegment;
+    private BufferedWriter segmentCourant;
+    private int entreesSegmentCourant;
+    private boolean debordementSegmentCourant;
+    private long numeroSegment;
+    // Entrées préparées dont la transaction n'est pas terminée, par jeton de transaction (verrou du segment)
+    private final Map<Long, List<EntreeAudit>> enAttente = new LinkedHashMap<>();
+    private int entreesEnAttente;
+    private long dernierJeton;
+
+    // Statistiques
+    private final AtomicLong entreesEcrites = new AtomicLong();
+    private final AtomicLong entreesDebordees = new AtomicLong();
+    private volatile long dernierRetardMillis;
+
+    public EcritureAuditService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${audit.ecriture.capacite-file:10000}") int capaciteFile,
+                                @Value("${audit.ecriture.taille-lot:500}") int tailleLot,
+                                @Value("${audit.ecriture.repertoire:audit-spool}") String repertoire,
+                                @Value("${audit.ecriture.repertoire-base:}") String repertoireBase,
+                                @Value("${audit.ecriture.synchro-disque:false}") boolean synchroDisque) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.file = new ArrayBlockingQueue<>(capaciteFile);
+        this.tailleLot = tailleLot;
+        this.repertoire = resoudreRepertoire(repertoire, repertoireBase);
+        this.synchroDisque = synchroDisque;
+    }
+
+    /**
+     * Répertoire du spool : absolu tel quel, sinon résolu contre la base configurée (absolue) ;
+     * jamais contre le répertoire de lancement du processus
+     */
+    private static Path resoudreRepertoire(String repertoire, String repertoireBase) {
+        Path chemin = Paths.get(repertoire);
+        if (!chemin.isAbsolute()) {
+            if (repertoireBase.isBlank() || !Paths.get(repertoireBase).isAbsolute()) {
+                throw new IllegalStateException("Répertoire d'audit relatif (" + repertoire
+                        + ") sans audit.ecriture.repertoire-base absolu");
+            }
+            chemin = Paths.get(repertoireBase).resolve(chemin);
+        }
+        return chemin.normalize();
+    }
+
+    /**
+     * Reprise au démarrage : le segment courant laissé par un arrêt est clos pour être écrit
+     */
+    @PostConstruct
+    void demarrer() throws IOException {
+        Files.createDirectories(repertoire);
+        numeroSegment = System.currentTimeMillis();
+        Path orphelin = repertoire.resolve(SEGMENT_COURANT);
+        if (Files.exists(orphelin) && Files.size(orphelin) > 0) {
+            Files.move(orphelin, prochainSegmentClos(), StandardCopyOption.ATOMIC_MOVE);
+            log.warn("Segment d'audit non écrit repris au démarrage");
+        }
+        ouvrirSegmentCourant();
+    }
+
+    /**
+     * Ajoute une entrée au journal : durable dès le retour de la méthode
+     */
+    public void soumettre(EntreeAudit entree) {
+        String ligne = serialiser(entree) + System.lineSeparator();
+        synchronized (verrouSegment) {
+            ecrire(ligne);
+            entreesSegmentCourant++;
+            if (!file.offer(entree)) {
+                debordementSegmentCourant = true;
+                entreesDebordees.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Avant le commit d'une transaction : ses entrées sont écrites ensemble dans le segment (durables dès
+     * le retour), sans être écrites en base avant {@link #confirmer}. Une erreur d'écriture empêche le commit.
+     * Retourne le jeton de la transaction à passer à confirmer ou annuler.
+     */
+    public long preparer(List<EntreeAudit> entrees) {
+        long jeton;
+        synchronized (verrouSegment) {
+            jeton = ++dernierJeton;
+        }
+        // Sérialisation hors verrou : le verrou ne couvre que l'ajout au segment
+        String lignes = lignesAttente(jeton, entrees);
+        synchronized (verrouSegment) {
+            ecrire(lignes);
+            entreesSegmentCourant += entrees.size();
+            enAttente.put(jeton, List.copyOf(entrees));
+            entreesEnAttente += entrees.size();
+            return jeton;
+        }
+    }
+
+    /**
+     * Après le commit : les entrées préparées rejoignent la file d'écriture (sans accès disque)
+     */
+    public void confirmer(long jeton) {
+        synchronized (verrouSegment) {
+            List<EntreeAudit> entrees = enAttente.remove(jeton);
+            if (entrees == null) {
+                return;
+            }
+            entreesEnAttente -= entrees.size();
+            for (EntreeAudit entree : entrees) {
+                if (!file.offer(entree)) {
+                    debordementSegmentCourant = true;
+                    entreesDebordees.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Après un rollback : les entrées préparées sont écartées, et marquées annulées dans le segment
+     * pour une relecture
+     */
+    public void annuler(long jeton) {
+        String marque = serialiser(new Marque(jeton, ANNULEE)) + System.lineSeparator();
+        synchronized (verrouSegment) {
+            List<EntreeAudit> entrees = enAttente.remove(jeton);
+            if (entrees == null) {
+                return;
+            }
+            entreesEnAttente -= entrees.size();
+            try {
+                ecrire(marque);
+            } catch (UncheckedIOException e) {
+                log.error("Annulation de l'entrée d'audit {} non enregistrée: {}", jeton, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Écrit en base les entrées en attente : segments clos restants puis segment courant
+     */
+    @Scheduled(fixedDelayString = "${audit.ecriture.intervalle-ms:1000}")
+    public void ecrireEnAttente() {
+        synchronized (verrouEcriture) {
+            try {
+                SegmentClos dernier = clore();
+                List<Path> aEcrire;
+                try (Stream<Path> segments = Files.list(repertoire)) {
+                    aEcrire = segments
+                            .filter(p -> p.getFileName().toString().startsWith(PREFIXE_SEGMENT_CLOS))
+                            .sorted()
+                            .toList();
+                }
+                for (Path segment : aEcrire) {
+                    List<EntreeAudit> entrees = dernier != null && segment.equals(dernier.chemin()) && !dernier.debordement()
+                            ? dernier.entrees()
+                            : relire(segment);
+                    inserer(entrees);
+                    Files.delete(segment);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Écriture du journal d'audit reportée: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void arreter() throws IOException {
+        ecrireEnAttente();
+        synchronized (verrouSegment) {
+            segmentCourant.close();
+        }
+    }
+
+    /**
+     * Statistiques de la file d'audit (profondeur, retard)
+     */
+    public StatistiquesAudit getStatistiques() {
+        EntreeAudit plusAncienne = file.peek();
+        long age = plusAncienne != null
+                ? Duration.between(plusAncienne.createdAt(), LocalDateTime.now()).toMillis()
+                : 0;
+        return new StatistiquesAudit(file.size(), file.remainingCapacity(), age, dernierRetardMillis,
+                entreesEcrites.get(), entreesDebordees.get());
+    }
+
+    /**
+     * Clôt le segment courant et vide la file : les deux contiennent exactement les mêmes entrées,
+     * sauf débordement (le segment fait alors foi). Les entrées encore en attente sont marquées
+     * reportées dans le segment clos et réécrites dans le nouveau segment courant.
+     */
+    private SegmentClos clore() {
+        synchronized (verrouSegment) {
+            if (entreesSegmentCourant == entreesEnAttente) {
+                return null;
+            }
+            List<EntreeAudit> entrees = new ArrayList<>(file.size());
+            file.drainTo(entrees);
+            boolean debordement = debordementSegmentCourant;
+            try {
+                if (!enAttente.isEmpty()) {
+                    ecrire(enAttente.keySet().stream()
+                            .map(jeton -> serialiser(new Marque(jeton, REPORTEE)) + System.lineSeparator())
+                            .collect(Collectors.joining()));
+                }
+                segmentCourant.close();
+                Path clos = prochainSegmentClos();
+                Files.move(repertoire.resolve(SEGMENT_COURANT), clos, StandardCopyOption.ATOMIC_MOVE);
+                ouvrirSegmentCourant();
+                if (!enAttente.isEmpty()) {
+                    ecrire(enAttente.entrySet().stream()
+                            .map(attente -> lignesAttente(attente.getKey(), attente.getValue()))
+                            .collect(Collectors.joining()));
+                }
+                entreesSegmentCourant = entreesEnAttente;
+                return new SegmentClos(clos, entrees, debordement);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Clôture du segment d'audit impossible", e);
+            }
+        }
+    }
+
+    private void inserer(List<EntreeAudit> entrees) {
+        if (entrees.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int debut = 0; debut < entrees.size(); debut += tailleLot) {
+                List<Object[]> lot = entrees.subList(debut, Math.min(debut + tailleLot, entrees.size()))
+                        .stream()
+                        .map(e -> new Object[]{e.utilisateurId(), e.tableName(), e.recordId(), e.action(),
+                                e.avant(), e.apres(), e.ipAddress(), Timestamp.valueOf(e.createdAt())})
+                        .toList();
+                jdbcTemplate.batchUpdate(SQL_INSERTION, lot);
+            }
+        });
+        entreesEcrites.addAndGet(entrees.size());
+        dernierRetardMillis = Duration.between(entrees.get(0).createdAt(), LocalDateTime.now()).toMillis();
+        log.debug("{} entrées d'audit écrites, retard {} ms", entrees.size(), dernierRetardMillis);
+    }
+
+    /**
+     * Entrées d'un segment : entrées directes et préparées, moins les préparées annulées ou reportées
+     */
+    private List<EntreeAudit> relire(Path segment) throws IOException {
+        Map<Long, List<EntreeAudit>> preparees = new LinkedHashMap<>();
+        Set<Long> ecartees = new HashSet<>();
+        List<EntreeAudit> entrees = new ArrayList<>();
+        for (String ligne : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+            if (ligne.isBlank()) {
+                continue;
+            }
+            try {
+                JsonNode noeud = objectMapper.readTree(ligne);
+                if (noeud.has("marque")) {
+                    ecartees.add(noeud.get("jeton").asLong());
+                } else if (noeud.has("jeton")) {
+                    preparees.computeIfAbsent(noeud.get("jeton").asLong(), jeton -> new ArrayList<>())
+                            .add(objectMapper.treeToValue(noeud.get("entree"), EntreeAudit.class));
+                } else {
+                    entrees.add(objectMapper.treeToValue(noeud, EntreeAudit.class));
+                }
+            } catch (JsonProcessingException e) {
+                // Dernière ligne tronquée par un arrêt brutal
+                log.warn("Ligne d'audit illisible ignorée dans {}", segment.getFileName());
+            }
+        }
+        preparees.keySet().removeAll(ecartees);
+        preparees.values().forEach(entrees::addAll);
+        return entrees;
+    }
+
+    /**
+     * Lignes d'une transaction préparée : une par entrée, toutes avec le jeton de la transaction
+     */
+    private String lignesAttente(long jeton, List<EntreeAudit> entrees) {
+        StringBuilder lignes = new StringBuilder();
+        for (EntreeAudit entree : entrees) {
+            lignes.append(serialiser(new LigneAttente(jeton, entree))).append(System.lineSeparator());
+        }
+        return lignes.toString();
+    }
+
+    /**
+     * Ajoute des lignes déjà sérialisées au segment courant : une écriture et un flush (verrou du segment)
+     */
+    private void ecrire(String lignes) {
+        try {
+            segmentCourant.write(lignes);
+            segmentCourant.flush();
+            if (synchroDisque) {
+                canalSegment.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture du segment d'audit impossible", e);
+        }
+    }
+
+    private String serialiser(Object ligne) {
+        try {
+            return objectMapper.writeValueAsString(ligne);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Entrée d'audit non sérialisable", e);
+        }
+    }
+
+    private void ouvrirSegmentCourant() throws IOException {
+        canalSegment = FileChannel.open(repertoire.resolve(SEGMENT_COURANT),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        OutputStream flux = Channels.newOutputStream(canalSegment);
+        segmentCourant = new BufferedWriter(new OutputStreamWriter(flux, StandardCharsets.UTF_8));
+        entreesSegmentCourant = 0;
+        debordementSegmentCourant = false;
+    }
+
+    private Path prochainSegmentClos() {
+        return repertoire.resolve(PREFIXE_SEGMENT_CLOS + String.format("%020d", numeroSegment++) + SUFFIXE_SEGMENT);
+    }
+
+    /**
+     * Entrée du journal d'audit en attente d'écriture
+     */
+    public record EntreeAudit(Long utilisateurId, String tableName, Long recordId, String action,
+                              String avant, String apres, String ipAddress, LocalDateTime createdAt) {
+    }
+
+    public record StatistiquesAudit(int profondeurFile, int capaciteRestante, long ageEntreeLaPlusAncienneMillis,
+                                    long dernierRetardEcritureMillis, long entreesEcrites, long entreesDebordees) {
+    }
+
+    /**
+     * Ligne d'une entrée préparée dans une transaction (une ligne par entrée, jeton de la transaction)
+     */
+    private record LigneAttente(long jeton, EntreeAudit entree) {
+    }
+
+    /**
+     * Ligne marquant une entrée préparée comme annulée (rollback) ou reportée au segment suivant
+     */
+    private record Marque(long jeton, String marque) {
+    }
+
+    private record SegmentClos(Path chemin, List<EntreeAudit> entrees, boolean debordement) {
+    }
+}
@@ -0,0 +1,186 @@
+package com.gestion.achat_vente_stock.admin.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Transient;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TODO.YML Ligne 60: Sécurité > Audit
+ * Encodage JSON compact des entités pour le journal d'audit
+ * - Champs simples lus directement (pas de toString Lombok)
+ * - Associations réduites à leur identifiant, lu sans initialiser les proxies Hibernate
+ * - Collections ignorées
+ * - Différence : seuls les champs modifiés sont conservés
+ */
+@Service
+@RequiredArgsConstructor
+public class EncodeurAuditService {
+
+    private final ObjectMapper objectMapper;
+
+    // Champs audités et champ identifiant par classe d'entité
+    private final Map<Class<?>, List<ChampAudite>> champsParClasse = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<Field>> identifiantParClasse = new ConcurrentHashMap<>();
+
+    /**
+     * Capture l'état courant d'une entité (à prendre avant modification pour une différence)
+     */
+    public Map<String, Object> capturer(Object entite) {
+        Map<String, Object> etat = new LinkedHashMap<>();
+        if (entite == null) {
+            return etat;
+        }
+        if (entite instanceof HibernateProxy proxy) {
+            if (proxy.getHibernateLazyInitializer().isUninitialized()) {
+                etat.put("id", proxy.getHibernateLazyInitializer().getIdentifier());
+                return etat;
+            }
+            entite = proxy.getHibernateLazyInitializer().getImplementation();
+        }
+        for (ChampAudite champ : champs(entite.getClass())) {
+            Object valeur = lire(champ.champ(), entite);
+            etat.put(champ.nom(), champ.association() ? identifiant(valeur) : valeur);
+        }
+        return etat;
+    }
+
+    /**
+     * État complet d'une entité en JSON (création), champs nuls omis
+     */
+    public String encoder(Object entite) {
+        if (entite == null) {
+            return null;
+        }
+        Map<String, Object> etat = capturer(entite);
+        etat.values().removeIf(Objects::isNull);
+        return versJson(etat);
+    }
+
+    /**
+     * Différence entre un état capturé et l'état courant : champs modifiés uniquement
+     */
+    public Difference difference(Map<String, Object> avant, Object apres) {
+        Map<String, Object> etatApres = capturer(apres);
+        Map<String, Object> anciens = new LinkedHashMap<>();
+        Map<String, Object> nouveaux = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> champ : etatApres.entrySet()) {
+            Object ancien = avant.get(champ.getKey());
+            if (!identiques(ancien, champ.getValue())) {
+                anciens.put(champ.getKey(), ancien);
+                nouveaux.put(champ.getKey(), champ.getValue());
+            }
+        }
+        return new Difference(versJson(anciens), versJson(nouveaux));
+    }
+
+    private List<ChampAudite> champs(Class<?> classe) {
+        return champsParClasse.computeIfAbsent(classe, c -> {
+            List<ChampAudite> champs = new ArrayList<>();
+            for (Class<?> courante = c; courante != null && courante != Object.class; courante = courante.getSuperclass()) {
+                for (Field champ : courante.getDeclaredFields()) {
+                    if (Modifier.isStatic(champ.getModifiers()) || champ.isAnnotationPresent(Transient.class)
+                            || champ.isAnnotationPresent(OneToMany.class) || champ.isAnnotationPresent(ManyToMany.class)
+                            || Collection.class.isAssignableFrom(champ.getType())
+                            || Map.class.isAssignableFrom(champ.getType())) {
+                        continue;
+                    }
+                    boolean association = champ.isAnnotationPresent(ManyToOne.class)
+                            || champ.isAnnotationPresent(OneToOne.class);
+                    if (!association && !estSimple(champ.getType())) {
+                        continue;
+                    }
+                    champ.setAccessible(true);
+                    champs.add(new ChampAudite(champ, association ? champ.getName() + "Id" : champ.getName(),
+                            association));
+                }
+            }
+            return champs;
+        });
+    }
+
+    /**
+     * Identifiant d'une entité associée, sans charger un proxy non initialisé
+     */
+    private Object identifiant(Object associee) {
+        if (associee == null) {
+            return null;
+        }
+        if (associee instanceof HibernateProxy proxy) {
+            return proxy.getHibernateLazyInitializer().getIdentifier();
+        }
+        return identifiantParClasse.computeIfAbsent(associee.getClass(), EncodeurAuditService::champIdentifiant)
+                .map(champ -> lire(champ, associee))
+                .orElse(null);
+    }
+
+    private static Optional<Field> champIdentifiant(Class<?> classe) {
+        for (Class<?> courante = classe; courante != null && courante != Object.class; courante = courante.getSuperclass()) {
+            for (Field champ : courante.getDeclaredFields()) {
+                if (champ.isAnnotationPresent(Id.class)) {
+                    champ.setAccessible(true);
+                    return Optional.of(champ);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean estSimple(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || Number.class.isAssignableFrom(type)
+                || CharSequence.class.isAssignableFrom(type) || Boolean.class == type
+                || Character.class == type || Temporal.class.isAssignableFrom(type);
+    }
+
+    private static boolean identiques(Object a, Object b) {
+        if (a instanceof BigDecimal x && b instanceof BigDecimal y) {
+            return x.compareTo(y) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static Object lire(Field champ, Object cible) {
+        try {
+            return champ.get(cible);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Champ non lisible pour l'audit: " + champ.getName(), e);
+        }
+    }
+
+    private String versJson(Map<String, Object> etat) {
+        try {
+            return objectMapper.writeValueAsString(etat);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("État non sérialisable pour l'audit", e);
+        }
+    }
+
+    /**
+     * Champs modifiés : valeurs avant et après, en JSON
+     */
+    public record Difference(String avant, String apres) {
+    }
+
+    private record ChampAudite(Field champ, String nom, boolean association) {
+    }
+}
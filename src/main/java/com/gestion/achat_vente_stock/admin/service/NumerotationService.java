@@ -0,0 +1,158 @@
+package com.gestion.achat_vente_stock.admin.service;
+
+import com.gestion.achat_vente_stock.admin.repository.CompteurNumerotationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * TODO.YML Ligne 33: Numérotation automatique et non réutilisable
+ * Service central de numérotation des documents
+ * - Compteurs par préfixe (et par jour pour les numéros datés) dans compteur_numerotation ;
+ *   les compteurs journaliers des jours passés sont supprimés chaque nuit
+ * - Mode par blocs : les numéros sont réservés par blocs dans une transaction autonome
+ *   et distribués depuis la mémoire (uniques, croissants par instance, trous possibles)
+ * - Mode sans trou : incrément dans la transaction appelante (factures, avoirs)
+ *
+ * L'amorce n'est appelée qu'à la création d'un compteur : elle retourne la plus grande séquence
+ * déjà utilisée pour la clé, lue numériquement après le préfixe (reprise de l'existant ; le nombre
+ * de documents ne convient pas, des numéros existent au-delà dès qu'un document a été supprimé).
+ */
+@Service
+@Slf4j
+public class NumerotationService {
+
+    private static final DateTimeFormatter FORMAT_JOUR = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final CompteurNumerotationRepository compteurNumerotationRepository;
+    private final TransactionTemplate transactionAutonome;
+    private final int tailleBloc;
+
+    // Blocs de numéros réservés en mémoire, par clé
+    private final ConcurrentHashMap<String, BlocNumeros> blocs = new ConcurrentHashMap<>();
+
+    public NumerotationService(CompteurNumerotationRepository compteurNumerotationRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${numerotation.taille-bloc:50}") int tailleBloc) {
+        this.compteurNumerotationRepository = compteurNumerotationRepository;
+        this.transactionAutonome = new TransactionTemplate(transactionManager);
+        this.transactionAutonome.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.tailleBloc = tailleBloc;
+    }
+
+    /**
+     * Numéro daté par jour, format CODE-yyyyMMdd-NNNNN (compteur remis à zéro chaque jour)
+     */
+    public String genererNumeroJournalier(String code, int largeur, ToLongFunction<String> amorce) {
+        String cle = cleJournaliere(code, LocalDate.now());
+        return formater(cle, prochainNumero(cle, amorce), largeur);
+    }
+
+    /**
+     * Plusieurs numéros datés consécutifs pris sur un seul bloc (documents créés par lots)
+     */
+    public List<String> genererNumerosJournaliers(String code, int largeur, int nombre, ToLongFunction<String> amorce) {
+        String cle = cleJournaliere(code, LocalDate.now());
+        long premier = prochainsNumeros(cle, nombre, amorce);
+        List<String> numeros = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            numeros.add(formater(cle, premier + i, largeur));
+        }
+        return numeros;
+    }
+
+    /**
+     * Numéro continu, format PREFIXENNNNN (compteur global au préfixe)
+     */
+    public String genererNumero(String prefixe, int largeur, ToLongFunction<String> amorce) {
+        return formater(prefixe, prochainNumero(prefixe, amorce), largeur);
+    }
+
+    /**
+     * Numéro continu sans trou (obligation légale : factures, avoirs).
+     * Le compteur est verrouillé jusqu'à la fin de la transaction appelante :
+     * un rollback libère le numéro, les créations concurrentes sont sérialisées.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String genererNumeroSansTrou(String prefixe, int largeur, ToLongFunction<String> amorce) {
+        return formater(prefixe, incrementerCompteur(prefixe, 1, amorce), largeur);
+    }
+
+    /**
+     * Libère les blocs journaliers des jours précédents et supprime leurs compteurs en base
+     * (une ligne par code et par jour, jamais relue après ce jour). Un compteur supprimé puis
+     * redemandé (document créé à cheval sur minuit) est recréé par son amorce, au-delà des numéros existants.
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public void purgerBlocsJournaliers() {
+        String suffixeDuJour = "-" + LocalDate.now().format(FORMAT_JOUR) + "-";
+        blocs.keySet().removeIf(cle -> cle.matches(".*-\\d{8}-") && !cle.endsWith(suffixeDuJour));
+        Integer supprimes = transactionAutonome.execute(status ->
+                compteurNumerotationRepository.supprimerCompteursJournaliersAvant(suffixeDuJour));
+        log.info("Compteurs de numérotation journaliers supprimés: {}", supprimes);
+    }
+
+    private long prochainNumero(String cle, ToLongFunction<String> amorce) {
+        return prochainsNumeros(cle, 1, amorce);
+    }
+
+    /**
+     * Premier de {@code nombre} numéros consécutifs ; si le bloc courant n'y suffit pas,
+     * son reste est abandonné et un bloc d'au moins {@code nombre} numéros est réservé
+     */
+    private long prochainsNumeros(String cle, int nombre, ToLongFunction<String> amorce) {
+        BlocNumeros bloc = blocs.computeIfAbsent(cle, k -> new BlocNumeros());
+        synchronized (bloc) {
+            if (bloc.fin - bloc.prochain + 1 < nombre) {
+                long taille = Math.max(tailleBloc, nombre);
+                Long fin = transactionAutonome.execute(status -> incrementerCompteur(cle, taille, amorce));
+                bloc.prochain = fin - taille + 1;
+                bloc.fin = fin;
+                log.debug("Bloc de numéros {} réservé: {} à {}", cle, bloc.prochain, bloc.fin);
+            }
+            long premier = bloc.prochain;
+            bloc.prochain += nombre;
+            return premier;
+        }
+    }
+
+    private long incrementerCompteur(String cle, long increment, ToLongFunction<String> amorce) {
+        Optional<Long> fin = compteurNumerotationRepository.incrementer(cle, increment);
+        if (fin.isPresent()) {
+            return fin.get();
+        }
+        compteurNumerotationRepository.initialiser(cle, amorce.applyAsLong(cle));
+        return compteurNumerotationRepository.incrementer(cle, increment)
+                .orElseThrow(() -> new IllegalStateException("Compteur de numérotation introuvable: " + cle));
+    }
+
+    private static String cleJournaliere(String code, LocalDate jour) {
+        return code + "-" + jour.format(FORMAT_JOUR) + "-";
+    }
+
+    private static String formater(String cle, long numero, int largeur) {
+        return cle + String.format("%0" + largeur + "d", numero);
+    }
+
+    /**
+     * Plage [prochain, fin] de numéros réservés et non encore distribués
+     */
+    private static final class BlocNumeros {
+        private long prochain = 1;
+        private long fin = 0;
+    }
+}
@@ -2,13 +2,19 @@ package com.gestion.achat_vente_stock.inventaire.controller;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.repository.UtilisateurRepository;
+import com.gestion.achat_vente_stock.inventaire.model.AjustementStock;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire.StatutInventaire;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire.TypeInventaire;
 import com.gestion.achat_vente_stock.inventaire.model.LigneInventaire;
+import com.gestion.achat_vente_stock.inventaire.model.PerimetreInventaire;
 import com.gestion.achat_vente_stock.inventaire.service.AjustementStockService;
 import com.gestion.achat_vente_stock.inventaire.service.InventaireService;
+import com.gestion.achat_vente_stock.inventaire.service.InventaireService.AvancementOuverture;
 import com.gestion.achat_vente_stock.inventaire.service.LigneInventaireService;
+import com.gestion.achat_vente_stock.inventaire.service.OuvertureInventaireService;
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -17,6 +23,8 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,9 +38,11 @@ import java.util.Map;
 public class InventaireController {
 
     private final InventaireService inventaireService;
+    private final OuvertureInventaireService ouvertureInventaireService;
     private final LigneInventaireService ligneInventaireService;
     private final AjustementStockService ajustementStockService;
     private final DepotRepository depotRepository;
+    private final ArticleRepository articleRepository;
     private final UtilisateurRepository utilisateurRepository;
 
     /**
@@ -70,12 +80,14 @@ public class InventaireController {
     @PostMapping
     public String creer(@RequestParam Long depotId,
                        @RequestParam String type,
+                       @RequestParam(required = false) String perimetre,
                        RedirectAttributes redirectAttributes) {
         try {
             // TODO: Récupérer l'utilisateur connecté
             Utilisateur responsable = utilisateurRepository.findAll().stream().findFirst().orElse(null);
             
-            Inventaire inventaire = inventaireService.creer(depotId, TypeInventaire.valueOf(type), responsable);
+            Inventaire inventaire = inventaireService.creer(depotId, TypeInventaire.valueOf(type), responsable,
+                    lirePerimetre(perimetre));
             redirectAttributes.addFlashAttribute("success", "Inventaire " + inventaire.getNumero() + " créé avec succès");
             return "redirect:/inventaires/" + inventaire.getId();
         } catch (Exception e) {
@@ -84,6 +96,31 @@ public class InventaireController {
         }
     }
 
+    /**
+     * TODO.YML Ligne 42: Périmètre d'un inventaire tournant, une ligne par élément :
+     * CODE_ARTICLE[;LOT[;EMPLACEMENT]] (lot/emplacement vides = tous)
+     */
+    private List<PerimetreInventaire> lirePerimetre(String perimetre) {
+        List<PerimetreInventaire> elements = new ArrayList<>();
+        if (perimetre == null) {
+            return elements;
+        }
+        for (String ligne : perimetre.split("\\R")) {
+            if (ligne.isBlank()) {
+                continue;
+            }
+            String[] champs = ligne.split(";", -1);
+            Article article = articleRepository.findByCode(champs[0].trim())
+                    .orElseThrow(() -> new IllegalArgumentException("Article non trouvé: " + champs[0].trim()));
+            PerimetreInventaire element = new PerimetreInventaire();
+            element.setArticle(article);
+            element.setLotNumero(champs.length > 1 && !champs[1].isBlank() ? champs[1].trim() : null);
+            element.setEmplacement(champs.length > 2 && !champs[2].isBlank() ? champs[2].trim() : null);
+            elements.add(element);
+        }
+        return elements;
+    }
+
     /**
      * Détail d'un inventaire
      */
@@ -101,24 +138,40 @@ public class InventaireController {
         model.addAttribute("statsComptage", statsComptage);
         model.addAttribute("sommeEcarts", sommeEcarts);
         model.addAttribute("ajustements", ajustementStockService.findByInventaire(id));
+        model.addAttribute("avancementOuverture", ouvertureInventaireService.getAvancement(id).orElse(null));
 
         return "inventaires/detail";
     }
 
     /**
-     * Ouvrir un inventaire (générer le snapshot)
+     * Ouvrir un inventaire (générer le snapshot en arrière-plan)
      */
     @PostMapping("/{id}/ouvrir")
     public String ouvrir(@PathVariable Long id, RedirectAttributes redirectAttributes) {
         try {
-            inventaireService.ouvrir(id);
-            redirectAttributes.addFlashAttribute("success", "Inventaire ouvert - Stock théorique capturé");
+            ouvertureInventaireService.demarrer(id);
+            redirectAttributes.addFlashAttribute("success", "Ouverture lancée - Capture du stock théorique en cours");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", e.getMessage());
         }
         return "redirect:/inventaires/" + id;
     }
 
+    /**
+     * Avancement de l'ouverture (JSON, suivi par l'écran de détail)
+     */
+    @GetMapping("/{id}/ouverture/avancement")
+    @ResponseBody
+    public Map<String, Object> avancementOuverture(@PathVariable Long id) {
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        AvancementOuverture avancement = ouvertureInventaireService.getAvancement(id).orElse(null);
+        resultat.put("total", avancement != null ? avancement.getTotal() : 0);
+        resultat.put("lignesGenerees", avancement != null ? avancement.getLignesGenerees() : 0);
+        resultat.put("termine", avancement == null || avancement.isTermine());
+        resultat.put("erreur", avancement != null ? avancement.getErreur() : null);
+        return resultat;
+    }
+
     /**
      * Démarrer le comptage
      */
@@ -189,4 +242,23 @@ public class InventaireController {
         }
         return "redirect:/inventaires/" + id;
     }
+
+    /**
+     * Générer les ajustements et appliquer ceux validés automatiquement (sous le seuil)
+     */
+    @PostMapping("/{id}/regulariser")
+    public String regulariser(@PathVariable Long id, RedirectAttributes redirectAttributes) {
+        try {
+            Utilisateur utilisateur = utilisateurRepository.findAll().stream().findFirst().orElse(null);
+            var ajustements = ajustementStockService.regulariserInventaire(id, utilisateur);
+            long appliques = ajustements.stream()
+                    .filter(a -> a.getStatut() == AjustementStock.StatutAjustement.APPLIQUE)
+                    .count();
+            redirectAttributes.addFlashAttribute("success", ajustements.size() + " ajustement(s) créé(s), "
+                    + appliques + " appliqué(s), " + (ajustements.size() - appliques) + " en attente de validation");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        }
+        return "redirect:/inventaires/" + id;
+    }
 }
@@ -4,6 +4,8 @@ import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.repository.UtilisateurRepository;
 import com.gestion.achat_vente_stock.inventaire.model.LigneInventaire;
 import com.gestion.achat_vente_stock.inventaire.service.LigneInventaireService;
+import com.gestion.achat_vente_stock.inventaire.service.LigneInventaireService.ResultatScan;
+import com.gestion.achat_vente_stock.inventaire.service.LigneInventaireService.Scan;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -11,6 +13,9 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * TODO.YML Lignes 48-51: Inventaire > Saisie et Écarts
@@ -95,4 +100,26 @@ public class LigneInventaireController {
         }
         return "redirect:/inventaires/" + inventaireId;
     }
+
+    /**
+     * TODO.YML Ligne 49: Saisie quantités physiques (scan)
+     * Réception d'un lot de scans de terminal (JSON) ; le terminal peut renvoyer le même lot
+     * après une coupure, les scans déjà reçus ne sont pas réappliqués
+     */
+    @PostMapping("/api/scans")
+    @ResponseBody
+    public List<Map<String, Object>> integrerScans(@PathVariable Long inventaireId, @RequestBody List<Scan> scans) {
+        return ligneInventaireService.integrerScans(inventaireId, scans).stream()
+                .map(LigneInventaireController::versJson)
+                .toList();
+    }
+
+    private static Map<String, Object> versJson(ResultatScan resultat) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("idScan", resultat.idScan());
+        json.put("statut", resultat.statut());
+        json.put("ligneId", resultat.ligneId());
+        json.put("message", resultat.message());
+        return json;
+    }
 }
@@ -28,7 +28,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Depot;
 public class AjustementStock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ajustement_stock_seq")
+    @SequenceGenerator(name = "ajustement_stock_seq", sequenceName = "ajustement_stock_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -29,7 +29,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Depot;
 public class Inventaire {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventaire_seq")
+    @SequenceGenerator(name = "inventaire_seq", sequenceName = "inventaire_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -74,7 +75,8 @@ public class Inventaire {
 
     /**
      * TODO.YML Ligne 47: Geler mouvements sur périmètre inventorié
-     * Si true, les mouvements de stock sont bloqués pour ce dépôt
+     * Si true, les mouvements de stock sont bloqués sur le périmètre de l'inventaire
+     * (tout le dépôt si le périmètre est vide)
      */
     @Column(name = "bloque_mouvements")
     private Boolean bloqueMouvements = false;
@@ -82,6 +84,13 @@ public class Inventaire {
     @OneToMany(mappedBy = "inventaire", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<LigneInventaire> lignes = new ArrayList<>();
 
+    /**
+     * TODO.YML Ligne 42: Inventaire tournant
+     * Articles (lots/emplacements) inventoriés ; vide = tout le dépôt
+     */
+    @OneToMany(mappedBy = "inventaire", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<PerimetreInventaire> perimetre = new ArrayList<>();
+
     // Enum pour les types d'inventaire
     public enum TypeInventaire {
         TOURNANT,
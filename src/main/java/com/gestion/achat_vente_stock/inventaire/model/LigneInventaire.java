@@ -28,7 +28,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneInventaire {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_inventaire_seq")
+    @SequenceGenerator(name = "ligne_inventaire_seq", sequenceName = "ligne_inventaire_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
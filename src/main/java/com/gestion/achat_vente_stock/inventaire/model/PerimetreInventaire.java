@@ -0,0 +1,46 @@
+package com.gestion.achat_vente_stock.inventaire.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+
+/**
+ * TODO.YML Ligne 47: Geler mouvements sur périmètre inventorié
+ * Élément du périmètre d'un inventaire tournant : un article, éventuellement restreint
+ * à un lot et/ou un emplacement (null = tous). Un inventaire sans périmètre couvre tout le dépôt.
+ *
+ * Table: perimetre_inventaire (schema/06_inventaires.sql)
+ */
+@Entity
+@Table(name = "perimetre_inventaire")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = {"inventaire"})  // Exclude the circular reference
+@EqualsAndHashCode(exclude = {"inventaire"})
+public class PerimetreInventaire {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "perimetre_inventaire_seq")
+    @SequenceGenerator(name = "perimetre_inventaire_seq", sequenceName = "perimetre_inventaire_id_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "inventaire_id")
+    private Inventaire inventaire;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "article_id", nullable = false)
+    private Article article;
+
+    @Column(name = "lot_numero")
+    private String lotNumero;
+
+    @Column(name = "emplacement")
+    private String emplacement;
+}
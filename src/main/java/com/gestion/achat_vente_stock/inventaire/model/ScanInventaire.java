@@ -0,0 +1,43 @@
+package com.gestion.achat_vente_stock.inventaire.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * TODO.YML Ligne 49: Saisie quantités physiques (scan)
+ * Scan de comptage reçu d'un terminal, avec son résultat : identifiant fourni par le terminal,
+ * un scan renvoyé après une coupure est reconnu et n'est pas appliqué deux fois.
+ * Écrit en masse par LigneInventaireService.integrerScans
+ *
+ * Table: scan_inventaire (schema/06_inventaires.sql)
+ */
+@Entity
+@Table(name = "scan_inventaire")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanInventaire {
+
+    @Id
+    @Column(name = "id_scan")
+    private String idScan;
+
+    @Column(name = "inventaire_id", nullable = false)
+    private Long inventaireId;
+
+    @Column(name = "ligne_id")
+    private Long ligneId;
+
+    @Column(name = "statut")
+    private String statut;
+
+    @Column(name = "message")
+    private String message;
+
+    @Column(name = "recu_le", nullable = false)
+    private LocalDateTime recuLe;
+}
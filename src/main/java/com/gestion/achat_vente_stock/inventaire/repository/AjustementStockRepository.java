@@ -79,4 +79,10 @@ public interface AjustementStockRepository extends JpaRepository<AjustementStock
      */
     @Query("SELECT a.statut, COUNT(a), SUM(a.valeurAjustement) FROM AjustementStock a GROUP BY a.statut")
     List<Object[]> getStatistiques();
+
+    /** Plus grande séquence numérique des numéros du préfixe (amorce de la numérotation) */
+    @Query(value = "SELECT MAX(CAST(SUBSTRING(numero, LENGTH(:prefix) + 1) AS BIGINT)) FROM ajustement_stock " +
+            "WHERE numero LIKE :prefix || '%' AND SUBSTRING(numero, LENGTH(:prefix) + 1) ~ '^[0-9]+$'",
+            nativeQuery = true)
+    Optional<Long> findDerniereSequence(@Param("prefix") String prefix);
 }
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,6 +34,26 @@ public interface InventaireRepository extends JpaRepository<Inventaire, Long> {
            "WHERE i.depot.id = :depotId AND i.statut IN ('OUVERT', 'EN_COMPTAGE', 'EN_VALIDATION')")
     boolean existsInventaireEnCours(@Param("depotId") Long depotId);
 
+    /**
+     * TODO.YML Ligne 47: Un inventaire en cours couvre-t-il un de ces articles
+     * (inventaire complet du dépôt ou périmètre commun) ?
+     */
+    @Query("SELECT CASE WHEN COUNT(i) > 0 THEN true ELSE false END FROM Inventaire i " +
+           "WHERE i.depot.id = :depotId AND i.statut IN ('OUVERT', 'EN_COMPTAGE', 'EN_VALIDATION') " +
+           "AND (i.perimetre IS EMPTY OR EXISTS (SELECT p FROM PerimetreInventaire p " +
+           "WHERE p.inventaire = i AND p.article.id IN :articleIds))")
+    boolean existsInventaireEnCoursSurArticles(@Param("depotId") Long depotId,
+                                               @Param("articleIds") Collection<Long> articleIds);
+
+    /**
+     * TODO.YML Ligne 47: Périmètres gelés des inventaires en cours ;
+     * une ligne sans article = inventaire de tout le dépôt
+     */
+    @Query("SELECT i.depot.id AS depotId, p.article.id AS articleId, p.lotNumero AS lotNumero, " +
+           "p.emplacement AS emplacement FROM Inventaire i LEFT JOIN i.perimetre p " +
+           "WHERE i.bloqueMouvements = true AND i.statut IN ('OUVERT', 'EN_COMPTAGE', 'EN_VALIDATION')")
+    List<PerimetreGele> findPerimetresGeles();
+
     /**
      * Inventaires à clôturer (en validation depuis plus de X jours)
      */
@@ -62,4 +83,17 @@ public interface InventaireRepository extends JpaRepository<Inventaire, Long> {
      */
     @Query("SELECT i.statut, COUNT(i) FROM Inventaire i GROUP BY i.statut")
     List<Object[]> countByStatut();
+
+    /** Plus grande séquence numérique des numéros du préfixe (amorce de la numérotation) */
+    @Query(value = "SELECT MAX(CAST(SUBSTRING(numero, LENGTH(:prefix) + 1) AS BIGINT)) FROM inventaire " +
+            "WHERE numero LIKE :prefix || '%' AND SUBSTRING(numero, LENGTH(:prefix) + 1) ~ '^[0-9]+$'",
+            nativeQuery = true)
+    Optional<Long> findDerniereSequence(@Param("prefix") String prefix);
+
+    interface PerimetreGele {
+        Long getDepotId();
+        Long getArticleId();
+        String getLotNumero();
+        String getEmplacement();
+    }
 }
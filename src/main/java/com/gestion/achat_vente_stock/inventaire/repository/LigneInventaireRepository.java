@@ -1,13 +1,17 @@
 package com.gestion.achat_vente_stock.inventaire.repository;
 
 import com.gestion.achat_vente_stock.inventaire.model.LigneInventaire;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 @Repository
 public interface LigneInventaireRepository extends JpaRepository<LigneInventaire, Long> {
@@ -42,6 +46,21 @@ public interface LigneInventaireRepository extends JpaRepository<LigneInventaire
            "AND li.ecartQuantite IS NOT NULL AND li.ecartQuantite <> 0")
     List<LigneInventaire> findLignesAvecEcart(@Param("inventaireId") Long inventaireId);
 
+    /**
+     * Lignes avec écart et leur article, en une requête (génération des ajustements)
+     */
+    @Query("SELECT li FROM LigneInventaire li JOIN FETCH li.article WHERE li.inventaire.id = :inventaireId " +
+           "AND li.ecartQuantite IS NOT NULL AND li.ecartQuantite <> 0 ORDER BY li.id")
+    List<LigneInventaire> findLignesAvecEcartEtArticle(@Param("inventaireId") Long inventaireId);
+
+    /**
+     * TODO.YML Ligne 54: Articles de l'inventaire comptés (1er ou 2nd comptage) par un utilisateur
+     */
+    @Query("SELECT DISTINCT li.article.id FROM LigneInventaire li WHERE li.inventaire.id = :inventaireId " +
+           "AND (li.compteur1.id = :utilisateurId OR li.compteur2.id = :utilisateurId)")
+    Set<Long> findArticlesComptesPar(@Param("inventaireId") Long inventaireId,
+                                     @Param("utilisateurId") Long utilisateurId);
+
     /**
      * Lignes avec écart supérieur à un seuil (en valeur absolue)
      */
@@ -70,8 +89,34 @@ public interface LigneInventaireRepository extends JpaRepository<LigneInventaire
      */
     List<LigneInventaire> findByInventaireIdAndLotNumero(Long inventaireId, String lotNumero);
 
+    /**
+     * TODO.YML Ligne 49: Clés des lignes d'un inventaire (index des scans)
+     */
+    @Query("SELECT li.id AS id, a.id AS articleId, a.code AS articleCode, li.lotNumero AS lotNumero, " +
+           "li.emplacement AS emplacement FROM LigneInventaire li JOIN li.article a WHERE li.inventaire.id = :inventaireId")
+    List<CleLigne> findClesLignes(@Param("inventaireId") Long inventaireId);
+
+    /**
+     * TODO.YML Ligne 49: Lignes touchées par un lot de scans, verrouillées jusqu'à la fin de la transaction
+     * (cumul des quantités) ; dans l'ordre des identifiants, deux lots concurrents ne s'interbloquent pas
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT li FROM LigneInventaire li WHERE li.id IN :ids ORDER BY li.id")
+    List<LigneInventaire> findAllByIdPourMiseAJour(@Param("ids") Collection<Long> ids);
+
     /**
      * Supprime toutes les lignes d'un inventaire
      */
     void deleteByInventaireId(Long inventaireId);
+
+    /**
+     * Clé de rapprochement d'une ligne d'inventaire
+     */
+    interface CleLigne {
+        Long getId();
+        Long getArticleId();
+        String getArticleCode();
+        String getLotNumero();
+        String getEmplacement();
+    }
 }
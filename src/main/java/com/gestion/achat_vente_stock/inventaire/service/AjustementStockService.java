@@ -1,10 +1,12 @@
 package com.gestion.achat_vente_stock.inventaire.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.inventaire.model.AjustementStock;
 import com.gestion.achat_vente_stock.inventaire.model.AjustementStock.MotifAjustement;
 import com.gestion.achat_vente_stock.inventaire.model.AjustementStock.StatutAjustement;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire;
+import com.gestion.achat_vente_stock.inventaire.model.Inventaire.StatutInventaire;
 import com.gestion.achat_vente_stock.inventaire.model.LigneInventaire;
 import com.gestion.achat_vente_stock.inventaire.repository.AjustementStockRepository;
 import com.gestion.achat_vente_stock.inventaire.repository.InventaireRepository;
@@ -15,17 +17,22 @@ import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
 import com.gestion.achat_vente_stock.stock.model.MouvementStock;
 import com.gestion.achat_vente_stock.stock.service.MouvementStockService;
+import com.gestion.achat_vente_stock.stock.service.MouvementStockService.LigneMouvement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * TODO.YML Lignes 52-54: Inventaire > Ajustements
@@ -45,6 +52,7 @@ public class AjustementStockService {
     private final ArticleRepository articleRepository;
     private final DepotRepository depotRepository;
     private final MouvementStockService mouvementStockService;
+    private final NumerotationService numerotationService;
 
     // Seuil de validation chef magasin (en valeur absolue)
     private static final BigDecimal SEUIL_VALIDATION = new BigDecimal("1000.00");
@@ -53,9 +61,8 @@ public class AjustementStockService {
      * Génère un numéro d'ajustement unique
      */
     private String generateNumero() {
-        String prefix = "AJS-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + "-";
-        long count = ajustementStockRepository.count() + 1;
-        return prefix + String.format("%03d", count);
+        return numerotationService.genererNumeroJournalier("AJS", 3,
+                cle -> ajustementStockRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     /**
@@ -173,57 +180,79 @@ public class AjustementStockService {
      * TODO.YML Ligne 53: Appliquer ajustements au stock et journaliser
      */
     public AjustementStock appliquer(Long ajustementId, Utilisateur utilisateur) {
-        AjustementStock ajustement = ajustementStockRepository.findById(ajustementId)
-                .orElseThrow(() -> new IllegalArgumentException("Ajustement non trouvé: " + ajustementId));
+        return appliquerLot(List.of(ajustementId), utilisateur).get(0);
+    }
+
+    /**
+     * TODO.YML Ligne 53: Appliquer les ajustements validés d'un inventaire
+     */
+    public List<AjustementStock> appliquerInventaire(Long inventaireId, Utilisateur utilisateur) {
+        List<Long> valides = ajustementStockRepository.findByInventaireId(inventaireId).stream()
+                .filter(a -> a.getStatut() == StatutAjustement.VALIDE)
+                .map(AjustementStock::getId)
+                .toList();
+        return valides.isEmpty() ? List.of() : appliquerLot(valides, utilisateur);
+    }
 
-        if (ajustement.getStatut() != StatutAjustement.VALIDE) {
-            throw new IllegalStateException("L'ajustement doit être validé avant d'être appliqué");
+    /**
+     * TODO.YML Ligne 53: Appliquer plusieurs ajustements validés
+     * Tous les mouvements (entrée si écart positif, sortie sinon) sont postés en un seul lot
+     */
+    public List<AjustementStock> appliquerLot(List<Long> ajustementIds, Utilisateur utilisateur) {
+        List<AjustementStock> ajustements = ajustementStockRepository.findAllById(ajustementIds);
+        if (ajustements.size() != new HashSet<>(ajustementIds).size()) {
+            throw new IllegalArgumentException("Ajustement non trouvé parmi: " + ajustementIds);
         }
+        return appliquer(ajustements, utilisateur);
+    }
 
-        // Créer le mouvement de stock correspondant
-        BigDecimal ecart = ajustement.getEcart();
-        MouvementStock mouvement;
+    private List<AjustementStock> appliquer(List<AjustementStock> ajustements, Utilisateur utilisateur) {
+        List<LigneMouvement> lignes = new ArrayList<>();
+        for (AjustementStock ajustement : ajustements) {
+            if (ajustement.getStatut() != StatutAjustement.VALIDE) {
+                throw new IllegalStateException("L'ajustement doit être validé avant d'être appliqué: "
+                        + ajustement.getNumero());
+            }
 
-        if (ecart.compareTo(BigDecimal.ZERO) > 0) {
-            // Écart positif = entrée
-            BigDecimal coutUnitaire = ajustement.getValeurAjustement() != null && ecart.compareTo(BigDecimal.ZERO) != 0
-                    ? ajustement.getValeurAjustement().divide(ecart, 4, BigDecimal.ROUND_HALF_UP).abs()
-                    : BigDecimal.ZERO;
-            
-            mouvement = mouvementStockService.creerMouvementEntree(
-                    ajustement.getArticle(),
-                    ajustement.getDepot(),
-                    "ENTREE_AJUSTEMENT",
-                    ecart,
-                    coutUnitaire,
-                    null, // emplacement
-                    ajustement.getLotNumero(),
-                    null, // dluo
-                    ajustement.getId(), // documentId
-                    "AJUSTEMENT", // typeDocument
-                    utilisateur
-            );
-        } else {
-            // Écart négatif = sortie
-            mouvement = mouvementStockService.creerMouvementSortie(
-                    ajustement.getArticle(),
-                    ajustement.getDepot(),
-                    "SORTIE_AJUSTEMENT",
-                    ecart.abs(),
-                    null, // emplacement
-                    ajustement.getLotNumero(),
-                    ajustement.getId(), // documentId
-                    "AJUSTEMENT", // typeDocument
-                    utilisateur
-            );
+            // Créer le mouvement de stock correspondant
+            BigDecimal ecart = ajustement.getEcart();
+            if (ecart.compareTo(BigDecimal.ZERO) > 0) {
+                // Écart positif = entrée
+                BigDecimal coutUnitaire = ajustement.getValeurAjustement() != null
+                        ? ajustement.getValeurAjustement().divide(ecart, 4, RoundingMode.HALF_UP).abs()
+                        : BigDecimal.ZERO;
+                lignes.add(LigneMouvement.entree(
+                        ajustement.getArticle(),
+                        ajustement.getDepot(),
+                        "ENTREE_AJUSTEMENT",
+                        ecart,
+                        coutUnitaire,
+                        null, // emplacement
+                        ajustement.getLotNumero(),
+                        null, // dluo
+                        ajustement.getId(), // documentId
+                        "AJUSTEMENT")); // typeDocument
+            } else if (ecart.compareTo(BigDecimal.ZERO) < 0) {
+                // Écart négatif = sortie
+                lignes.add(LigneMouvement.sortie(
+                        ajustement.getArticle(),
+                        ajustement.getDepot(),
+                        "SORTIE_AJUSTEMENT",
+                        ecart.abs(),
+                        null, // emplacement
+                        ajustement.getLotNumero(),
+                        ajustement.getId(), // documentId
+                        "AJUSTEMENT")); // typeDocument
+            }
+            ajustement.setStatut(StatutAjustement.APPLIQUE);
         }
 
-        ajustement.setStatut(StatutAjustement.APPLIQUE);
-        ajustement = ajustementStockRepository.save(ajustement);
+        List<MouvementStock> mouvements = mouvementStockService.posterLot(lignes, utilisateur);
+        List<AjustementStock> appliques = ajustementStockRepository.saveAll(ajustements);
 
-        log.info("Ajustement {} appliqué: mouvement {} créé", ajustement.getNumero(), mouvement.getNumero());
+        log.info("{} ajustement(s) appliqué(s): {} mouvement(s) créé(s)", appliques.size(), mouvements.size());
         
-        return ajustement;
+        return appliques;
     }
 
     /**
@@ -249,16 +278,93 @@ public class AjustementStockService {
 
     /**
      * Génère tous les ajustements pour un inventaire
+     * En une opération : lignes en écart et articles lus en une requête, numéros pris sur un seul bloc,
+     * insertion par lots. Les lignes déjà ajustées (ajustement non refusé sur le même article/lot)
+     * sont ignorées : l'opération peut être relancée.
+     * TODO.YML Ligne 52: sous le seuil, validation automatique
+     * TODO.YML Ligne 54: sauf pour les articles que le demandeur a lui-même comptés (une requête
+     * pour tout l'inventaire) : ceux-là restent en attente d'un autre valideur
      */
     public List<AjustementStock> genererAjustementsInventaire(Long inventaireId, Utilisateur demandeur) {
         Inventaire inventaire = inventaireRepository.findById(inventaireId)
                 .orElseThrow(() -> new IllegalArgumentException("Inventaire non trouvé: " + inventaireId));
 
-        List<LigneInventaire> lignesAvecEcart = ligneInventaireRepository.findLignesAvecEcart(inventaireId);
+        Set<String> dejaAjustees = new HashSet<>();
+        for (AjustementStock existant : ajustementStockRepository.findByInventaireId(inventaireId)) {
+            if (existant.getStatut() != StatutAjustement.REFUSE) {
+                dejaAjustees.add(cle(existant.getArticle().getId(), existant.getLotNumero()));
+            }
+        }
+        List<LigneInventaire> lignes = ligneInventaireRepository.findLignesAvecEcartEtArticle(inventaireId).stream()
+                .filter(l -> !dejaAjustees.contains(cle(l.getArticle().getId(), l.getLotNumero())))
+                .toList();
+        if (lignes.isEmpty()) {
+            return List.of();
+        }
+
+        Set<Long> comptesParDemandeur = demandeur != null
+                ? ligneInventaireRepository.findArticlesComptesPar(inventaireId, demandeur.getId())
+                : Set.of();
+        List<String> numeros = numerotationService.genererNumerosJournaliers("AJS", 3, lignes.size(),
+                cle -> ajustementStockRepository.findDerniereSequence(cle).orElse(0L));
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        String justification = "Écart inventaire " + inventaire.getNumero();
+        List<AjustementStock> ajustements = new ArrayList<>(lignes.size());
+        for (int i = 0; i < lignes.size(); i++) {
+            LigneInventaire ligne = lignes.get(i);
+            AjustementStock ajustement = new AjustementStock();
+            ajustement.setNumero(numeros.get(i));
+            ajustement.setInventaire(inventaire);
+            ajustement.setArticle(ligne.getArticle());
+            ajustement.setDepot(inventaire.getDepot());
+            ajustement.setLotNumero(ligne.getLotNumero());
+            ajustement.setQuantiteAvant(ligne.getQuantiteTheorique());
+            ajustement.setQuantiteApres(ligne.getQuantiteRetenue());
+            ajustement.setEcart(ligne.getEcartQuantite());
+            ajustement.setValeurAjustement(ligne.getEcartValeur());
+            ajustement.setMotif(MotifAjustement.INVENTAIRE);
+            ajustement.setJustification(justification);
+            ajustement.setDemandeBy(demandeur);
+            ajustement.setDemandeAt(maintenant);
+            boolean sousSeuil = ligne.getEcartValeur() != null
+                    && ligne.getEcartValeur().abs().compareTo(SEUIL_VALIDATION) <= 0;
+            ajustement.setStatut(sousSeuil && !comptesParDemandeur.contains(ligne.getArticle().getId())
+                    ? StatutAjustement.VALIDE
+                    : StatutAjustement.EN_ATTENTE);
+            ajustements.add(ajustement);
+        }
+
+        List<AjustementStock> enregistres = ajustementStockRepository.saveAll(ajustements);
+        log.info("Inventaire {}: {} ajustement(s) générés, {} validés automatiquement", inventaire.getNumero(),
+                enregistres.size(), enregistres.stream().filter(a -> a.getStatut() == StatutAjustement.VALIDE).count());
+        return enregistres;
+    }
+
+    /**
+     * TODO.YML Lignes 52-53: Régularisation d'un inventaire en validation
+     * Génère les ajustements (voir genererAjustementsInventaire) puis applique ceux validés
+     * automatiquement en un seul lot de mouvements ; les autres attendent la validation du chef magasin.
+     */
+    public List<AjustementStock> regulariserInventaire(Long inventaireId, Utilisateur utilisateur) {
+        Inventaire inventaire = inventaireRepository.findById(inventaireId)
+                .orElseThrow(() -> new IllegalArgumentException("Inventaire non trouvé: " + inventaireId));
+        if (inventaire.getStatut() != StatutInventaire.EN_VALIDATION) {
+            throw new IllegalStateException("L'inventaire doit être EN_VALIDATION pour être régularisé");
+        }
 
-        return lignesAvecEcart.stream()
-                .map(ligne -> creerDepuisLigneInventaire(ligne.getId(), demandeur, "Écart inventaire " + inventaire.getNumero()))
+        List<AjustementStock> ajustements = genererAjustementsInventaire(inventaireId, utilisateur);
+        List<AjustementStock> valides = ajustements.stream()
+                .filter(a -> a.getStatut() == StatutAjustement.VALIDE)
                 .toList();
+        if (!valides.isEmpty()) {
+            appliquer(valides, utilisateur);
+        }
+        return ajustements;
+    }
+
+    private static String cle(Long articleId, String lotNumero) {
+        return articleId + "|" + Objects.toString(lotNumero, "");
     }
 
     // ===== Méthodes de consultation =====
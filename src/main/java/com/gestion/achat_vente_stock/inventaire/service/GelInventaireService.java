@@ -0,0 +1,106 @@
+package com.gestion.achat_vente_stock.inventaire.service;
+
+import com.gestion.achat_vente_stock.inventaire.repository.InventaireRepository;
+import com.gestion.achat_vente_stock.inventaire.repository.InventaireRepository.PerimetreGele;
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * TODO.YML Ligne 47: Geler mouvements sur périmètre inventorié
+ * Registre en mémoire des périmètres gelés par les inventaires en cours, consulté à chaque mouvement
+ * de stock : deux recherches dans des ensembles immuables, sans requête.
+ * - inventaire sans périmètre : tout le dépôt est gelé
+ * - inventaire tournant : articles (ou lots) du périmètre seulement, le reste du dépôt continue de sortir
+ * Le stock étant tenu par article/dépôt/lot, l'emplacement d'un périmètre restreint le comptage
+ * mais pas le gel. Rechargé après le commit de chaque changement d'état d'un inventaire,
+ * et périodiquement (changements faits par une autre instance).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GelInventaireService {
+
+    // Type de document des ajustements d'inventaire, jamais bloqués
+    private static final String DOCUMENT_AJUSTEMENT = "AJUSTEMENT";
+
+    private final InventaireRepository inventaireRepository;
+
+    private volatile Gel gel = new Gel(Set.of(), Set.of());
+
+    /**
+     * Mouvement sur un article/lot gelé : refusé, sauf ajustement d'inventaire
+     */
+    public void verifierMouvement(Article article, Depot depot, String lotNumero, String typeDocument) {
+        if (!DOCUMENT_AJUSTEMENT.equals(typeDocument) && estGele(depot.getId(), article.getId(), lotNumero)) {
+            throw new IllegalStateException("Mouvement impossible: article " + article.getCode()
+                    + (lotNumero != null ? " (lot " + lotNumero + ")" : "")
+                    + " gelé par un inventaire en cours sur le dépôt " + depot.getCode());
+        }
+    }
+
+    public boolean estGele(Long depotId, Long articleId, String lotNumero) {
+        Gel etat = gel;
+        if (etat.depots().contains(depotId)) {
+            return true;
+        }
+        return !etat.cles().isEmpty()
+                && (etat.cles().contains(new CleGel(depotId, articleId, null))
+                    || (lotNumero != null && etat.cles().contains(new CleGel(depotId, articleId, lotNumero))));
+    }
+
+    public boolean estDepotGele(Long depotId) {
+        return gel.depots().contains(depotId);
+    }
+
+    /**
+     * À appeler dans la transaction qui change l'état d'un inventaire : rechargement après son commit
+     */
+    public void rechargerApresCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recharger();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recharger();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${inventaire.gel.rechargement-ms:60000}")
+    public void recharger() {
+        Set<Long> depots = new HashSet<>();
+        Set<CleGel> cles = new HashSet<>();
+        for (PerimetreGele perimetre : inventaireRepository.findPerimetresGeles()) {
+            if (perimetre.getArticleId() == null) {
+                depots.add(perimetre.getDepotId());
+            } else {
+                cles.add(new CleGel(perimetre.getDepotId(), perimetre.getArticleId(), perimetre.getLotNumero()));
+            }
+        }
+        Gel nouveau = new Gel(Set.copyOf(depots), Set.copyOf(cles));
+        if (!nouveau.equals(gel)) {
+            log.info("Gel inventaire: {} dépôt(s) complet(s), {} article(s)/lot(s)", depots.size(), cles.size());
+        }
+        gel = nouveau;
+    }
+
+    /**
+     * Article/dépôt gelé, pour un lot ou tous les lots (lotNumero null)
+     */
+    private record CleGel(Long depotId, Long articleId, String lotNumero) {
+    }
+
+    private record Gel(Set<Long> depots, Set<CleGel> cles) {
+    }
+}
@@ -1,25 +1,28 @@
 package com.gestion.achat_vente_stock.inventaire.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire.StatutInventaire;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire.TypeInventaire;
 import com.gestion.achat_vente_stock.inventaire.model.LigneInventaire;
+import com.gestion.achat_vente_stock.inventaire.model.PerimetreInventaire;
 import com.gestion.achat_vente_stock.inventaire.repository.InventaireRepository;
 import com.gestion.achat_vente_stock.inventaire.repository.LigneInventaireRepository;
 import com.gestion.achat_vente_stock.referentiel.model.Depot;
 import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
-import com.gestion.achat_vente_stock.stock.model.StockDisponible;
-import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * TODO.YML Lignes 42-47: Inventaire > Configuration et Création
@@ -33,17 +36,39 @@ public class InventaireService {
 
     private final InventaireRepository inventaireRepository;
     private final LigneInventaireRepository ligneInventaireRepository;
-    private final StockDisponibleRepository stockDisponibleRepository;
     private final DepotRepository depotRepository;
+    private final NumerotationService numerotationService;
+    private final JdbcTemplate jdbcTemplate;
+    private final GelInventaireService gelInventaireService;
+
+    // Lignes de stock copiées par ordre SQL lors de l'ouverture
+    private static final int TAILLE_TRANCHE = 5000;
+
+    // Stock du périmètre de l'inventaire (tout le dépôt si le périmètre est vide)
+    private static final String SQL_DANS_PERIMETRE = "(NOT EXISTS (SELECT 1 FROM perimetre_inventaire p " +
+            "WHERE p.inventaire_id = ?) OR EXISTS (SELECT 1 FROM perimetre_inventaire p " +
+            "WHERE p.inventaire_id = ? AND p.article_id = s.article_id " +
+            "AND (p.lot_numero IS NULL OR p.lot_numero = s.lot_numero) " +
+            "AND (p.emplacement IS NULL OR p.emplacement = s.emplacement)))";
+    private static final String SQL_NOMBRE_STOCKS = "SELECT COUNT(*) FROM stock_disponible s " +
+            "WHERE s.depot_id = ? AND " + SQL_DANS_PERIMETRE;
+    // Copie une tranche de stock du dépôt en lignes d'inventaire ; renvoie sa taille et son dernier id
+    private static final String SQL_SNAPSHOT_TRANCHE = "WITH tranche AS (" +
+            "SELECT s.id, s.article_id, s.emplacement, s.lot_numero, s.quantite_physique FROM stock_disponible s " +
+            "WHERE s.depot_id = ? AND s.id > ? AND " + SQL_DANS_PERIMETRE + " ORDER BY s.id LIMIT ?), " +
+            "insertion AS (INSERT INTO ligne_inventaire " +
+            "(id, inventaire_id, article_id, emplacement, lot_numero, quantite_theorique) " +
+            "SELECT nextval('ligne_inventaire_id_seq'), ?, article_id, COALESCE(emplacement, ?), lot_numero, " +
+            "quantite_physique FROM tranche) " +
+            "SELECT COUNT(*) AS nombre, COALESCE(MAX(id), 0) AS dernier_id FROM tranche";
 
     /**
      * Génère un numéro d'inventaire unique
      * Format: INV-YYYYMMDD-XXX
      */
     private String generateNumero() {
-        String prefix = "INV-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + "-";
-        long count = inventaireRepository.count() + 1;
-        return prefix + String.format("%03d", count);
+        return numerotationService.genererNumeroJournalier("INV", 3,
+                cle -> inventaireRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     /**
@@ -51,8 +76,23 @@ public class InventaireService {
      * Crée un nouvel inventaire en statut BROUILLON
      */
     public Inventaire creer(Long depotId, TypeInventaire type, Utilisateur responsable) {
-        // Vérifier qu'il n'y a pas d'inventaire en cours pour ce dépôt
-        if (inventaireRepository.existsInventaireEnCours(depotId)) {
+        return creer(depotId, type, responsable, List.of());
+    }
+
+    /**
+     * TODO.YML Lignes 42, 47: Inventaire tournant
+     * Crée un inventaire limité à un périmètre (articles, lots, emplacements) ; seul ce périmètre
+     * sera gelé. Plusieurs inventaires tournants peuvent être en cours sur un dépôt s'ils ne
+     * portent pas sur les mêmes articles.
+     */
+    public Inventaire creer(Long depotId, TypeInventaire type, Utilisateur responsable,
+                            List<PerimetreInventaire> perimetre) {
+        // Vérifier qu'aucun inventaire en cours ne couvre le même stock
+        boolean conflit = perimetre.isEmpty()
+                ? inventaireRepository.existsInventaireEnCours(depotId)
+                : inventaireRepository.existsInventaireEnCoursSurArticles(depotId,
+                        perimetre.stream().map(p -> p.getArticle().getId()).collect(Collectors.toSet()));
+        if (conflit) {
             throw new IllegalStateException("Un inventaire est déjà en cours pour ce dépôt");
         }
 
@@ -67,6 +107,10 @@ public class InventaireService {
         inventaire.setStatut(StatutInventaire.BROUILLON);
         inventaire.setResponsable(responsable);
         inventaire.setBloqueMouvements(false);
+        for (PerimetreInventaire element : perimetre) {
+            element.setInventaire(inventaire);
+            inventaire.getPerimetre().add(element);
+        }
 
         inventaire = inventaireRepository.save(inventaire);
         log.info("Inventaire créé: {} pour dépôt {}", inventaire.getNumero(), depot.getCode());
@@ -79,6 +123,17 @@ public class InventaireService {
      * Ouvre l'inventaire et génère les lignes à partir du stock actuel
      */
     public Inventaire ouvrir(Long inventaireId) {
+        return ouvrir(inventaireId, new AvancementOuverture());
+    }
+
+    /**
+     * TODO.YML Ligne 46: Générer snapshot stock théorique à date T
+     * Lignes générées en base par INSERT … SELECT, par tranches de stock_disponible (ordre des id),
+     * sans charger les entités ; la transaction REPEATABLE READ fige le stock lu au premier ordre SQL,
+     * toutes les tranches voient donc le même état. L'avancement est mis à jour après chaque tranche.
+     */
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public Inventaire ouvrir(Long inventaireId, AvancementOuverture avancement) {
         Inventaire inventaire = inventaireRepository.findById(inventaireId)
                 .orElseThrow(() -> new IllegalArgumentException("Inventaire non trouvé: " + inventaireId));
 
@@ -86,26 +141,32 @@ public class InventaireService {
             throw new IllegalStateException("L'inventaire doit être en BROUILLON pour être ouvert");
         }
 
-        // Générer les lignes à partir du stock disponible
-        List<StockDisponible> stocks = stockDisponibleRepository.findByDepotId(inventaire.getDepot().getId());
-        
-        for (StockDisponible stock : stocks) {
-            LigneInventaire ligne = new LigneInventaire();
-            ligne.setInventaire(inventaire);
-            ligne.setArticle(stock.getArticle());
-            ligne.setLotNumero(stock.getLotNumero());
-            ligne.setQuantiteTheorique(stock.getQuantitePhysique());
-            ligne.setEmplacement(stock.getDepot().getCode()); // Simplification: utiliser le code dépôt
-            ligneInventaireRepository.save(ligne);
+        Long depotId = inventaire.getDepot().getId();
+        String emplacement = inventaire.getDepot().getCode(); // Stock sans emplacement : code dépôt
+        avancement.total = jdbcTemplate.queryForObject(SQL_NOMBRE_STOCKS, Long.class,
+                depotId, inventaire.getId(), inventaire.getId());
+
+        long apresId = 0;
+        while (true) {
+            Tranche tranche = jdbcTemplate.queryForObject(SQL_SNAPSHOT_TRANCHE,
+                    (rs, i) -> new Tranche(rs.getLong("nombre"), rs.getLong("dernier_id")),
+                    depotId, apresId, inventaire.getId(), inventaire.getId(), TAILLE_TRANCHE,
+                    inventaire.getId(), emplacement);
+            if (tranche.nombre() == 0) {
+                break;
+            }
+            avancement.lignesGenerees += tranche.nombre();
+            apresId = tranche.dernierId();
         }
 
-        // TODO.YML Ligne 47: Geler mouvements
+        // TODO.YML Ligne 47: Geler mouvements (périmètre de l'inventaire)
         inventaire.setBloqueMouvements(true);
         inventaire.setStatut(StatutInventaire.OUVERT);
         inventaire = inventaireRepository.save(inventaire);
-        
-        log.info("Inventaire {} ouvert avec {} lignes", inventaire.getNumero(), stocks.size());
-        
+        gelInventaireService.rechargerApresCommit();
+
+        log.info("Inventaire {} ouvert avec {} lignes", inventaire.getNumero(), avancement.lignesGenerees);
+
         return inventaire;
     }
 
@@ -160,6 +221,7 @@ public class InventaireService {
         inventaire.setDateFin(LocalDate.now());
         inventaire.setBloqueMouvements(false); // Débloquer les mouvements
         inventaire = inventaireRepository.save(inventaire);
+        gelInventaireService.rechargerApresCommit();
         
         log.info("Inventaire {} clôturé", inventaire.getNumero());
         
@@ -180,6 +242,7 @@ public class InventaireService {
         inventaire.setStatut(StatutInventaire.ANNULE);
         inventaire.setBloqueMouvements(false);
         inventaire.setDateFin(LocalDate.now());
+        gelInventaireService.rechargerApresCommit();
         
         log.info("Inventaire {} annulé", inventaire.getNumero());
         
@@ -213,9 +276,33 @@ public class InventaireService {
     }
 
     /**
-     * Vérifie si les mouvements sont bloqués pour un dépôt
+     * Vérifie si les mouvements sont bloqués pour tout un dépôt (inventaire complet en cours) ;
+     * le gel par article/lot est vérifié par GelInventaireService
      */
     public boolean isMouvementsBloquesForDepot(Long depotId) {
-        return inventaireRepository.existsInventaireEnCours(depotId);
+        return gelInventaireService.estDepotGele(depotId);
+    }
+
+    /**
+     * Avancement de la génération du snapshot, lu par l'écran pendant l'ouverture
+     */
+    @Getter
+    public static class AvancementOuverture {
+        private volatile long total;
+        private volatile long lignesGenerees;
+        private volatile boolean termine;
+        private volatile String erreur;
+
+        void terminer() {
+            termine = true;
+        }
+
+        void echouer(String message) {
+            erreur = message;
+            termine = true;
+        }
+    }
+
+    private record Tranche(long nombre, long dernierId) {
     }
 }
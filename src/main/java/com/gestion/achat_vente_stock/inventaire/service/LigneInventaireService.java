@@ -1,22 +1,38 @@
 package com.gestion.achat_vente_stock.inventaire.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.repository.UtilisateurRepository;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire;
 import com.gestion.achat_vente_stock.inventaire.model.Inventaire.StatutInventaire;
 import com.gestion.achat_vente_stock.inventaire.model.LigneInventaire;
 import com.gestion.achat_vente_stock.inventaire.repository.InventaireRepository;
 import com.gestion.achat_vente_stock.inventaire.repository.LigneInventaireRepository;
+import com.gestion.achat_vente_stock.inventaire.repository.LigneInventaireRepository.CleLigne;
 import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository.ValeurArticle;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * TODO.YML Lignes 48-51: Inventaire > Saisie et Écarts
@@ -31,6 +47,24 @@ public class LigneInventaireService {
     private final LigneInventaireRepository ligneInventaireRepository;
     private final InventaireRepository inventaireRepository;
     private final StockDisponibleRepository stockDisponibleRepository;
+    private final UtilisateurRepository utilisateurRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Statuts d'un scan
+    public static final String SCAN_APPLIQUE = "APPLIQUE";
+    public static final String SCAN_REJETE = "REJETE";
+    public static final String SCAN_DEJA_TRAITE = "DEJA_TRAITE";
+
+    // Enregistre les scans non encore reçus ; renvoie ceux qui sont à traiter par ce lot
+    private static final String SQL_RESERVATION_SCANS = "INSERT INTO scan_inventaire (id_scan, inventaire_id, recu_le) " +
+            "SELECT id, ?, ? FROM unnest(CAST(? AS TEXT[])) AS id ON CONFLICT (id_scan) DO NOTHING RETURNING id_scan";
+    private static final String SQL_SCANS_RECUS = "SELECT id_scan, ligne_id, statut, message FROM scan_inventaire " +
+            "WHERE id_scan = ANY(CAST(? AS TEXT[]))";
+    private static final String SQL_RESULTAT_SCAN = "UPDATE scan_inventaire SET ligne_id = ?, statut = ?, message = ? " +
+            "WHERE id_scan = ?";
+
+    // Index en mémoire des lignes des inventaires en cours de comptage
+    private final Map<Long, IndexInventaire> indexParInventaire = new ConcurrentHashMap<>();
 
     /**
      * TODO.YML Ligne 49: Saisie quantités physiques (manuel/scan)
@@ -107,6 +141,182 @@ public class LigneInventaireService {
         return ligne;
     }
 
+    /**
+     * TODO.YML Ligne 49: Saisie quantités physiques (scan)
+     * Intègre un lot de scans de terminaux en une seule transaction :
+     * - ligne retrouvée par code article/lot/emplacement dans l'index en mémoire de l'inventaire
+     * - quantités cumulées sur le comptage du scan (1 ou 2), dans l'ordre des horodatages, sur les lignes
+     *   verrouillées jusqu'au commit : deux lots concurrents sur une même ligne ne perdent aucun comptage
+     * - écart recalculé une fois par ligne touchée, coûts moyens lus en une requête
+     * - idempotent : chaque scan est enregistré avec son résultat ; un scan déjà reçu n'est pas
+     *   réappliqué et renvoie DEJA_TRAITE
+     * Résultats dans l'ordre des scans reçus.
+     */
+    public List<ResultatScan> integrerScans(Long inventaireId, List<Scan> scans) {
+        Inventaire inventaire = inventaireRepository.findById(inventaireId)
+                .orElseThrow(() -> new IllegalArgumentException("Inventaire non trouvé: " + inventaireId));
+        if (inventaire.getStatut() != StatutInventaire.EN_COMPTAGE &&
+            inventaire.getStatut() != StatutInventaire.OUVERT) {
+            oublierIndex(inventaireId);
+            throw new IllegalStateException("L'inventaire n'est pas en mode comptage");
+        }
+
+        Map<String, ResultatScan> resultats = new LinkedHashMap<>();
+        Map<String, Scan> aTraiter = new LinkedHashMap<>();
+        for (Scan scan : scans) {
+            if (scan.idScan() == null || scan.idScan().isBlank()) {
+                throw new IllegalArgumentException("Identifiant de scan manquant");
+            }
+            aTraiter.putIfAbsent(scan.idScan(), scan);
+            resultats.put(scan.idScan(), null);
+        }
+        if (aTraiter.isEmpty()) {
+            return List.of();
+        }
+
+        // Scans déjà reçus (lot renvoyé) : résultat initial renvoyé, rien n'est réappliqué
+        Set<String> nouveaux = reserverScans(inventaireId, aTraiter.keySet());
+        List<String> dejaRecus = aTraiter.keySet().stream().filter(id -> !nouveaux.contains(id)).toList();
+        if (!dejaRecus.isEmpty()) {
+            jdbcTemplate.query(SQL_SCANS_RECUS,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", dejaRecus.toArray())),
+                    rs -> {
+                        String idScan = rs.getString("id_scan");
+                        long ligneId = rs.getLong("ligne_id");
+                        resultats.put(idScan, new ResultatScan(idScan, SCAN_DEJA_TRAITE, rs.wasNull() ? null : ligneId,
+                                "Déjà reçu (" + rs.getString("statut") + ")"));
+                    });
+        }
+        aTraiter.keySet().retainAll(nouveaux);
+
+        // Lignes et compteurs concernés, chargés en une requête chacun
+        IndexInventaire index = indexParInventaire.computeIfAbsent(inventaireId,
+                id -> new IndexInventaire(ligneInventaireRepository.findClesLignes(id)));
+        Map<String, CleLigne> ligneParScan = new HashMap<>();
+        for (Scan scan : aTraiter.values()) {
+            index.trouver(scan.articleCode(), scan.lotNumero(), scan.emplacement())
+                    .ifPresent(cle -> ligneParScan.put(scan.idScan(), cle));
+        }
+        Set<Long> ligneIds = ligneParScan.values().stream().map(CleLigne::getId).collect(Collectors.toSet());
+        Map<Long, LigneInventaire> lignes = ligneIds.isEmpty() ? Map.of() : ligneInventaireRepository
+                .findAllByIdPourMiseAJour(ligneIds)
+                .stream().collect(Collectors.toMap(LigneInventaire::getId, Function.identity()));
+        Map<Long, Utilisateur> compteurs = utilisateurRepository
+                .findAllById(aTraiter.values().stream().map(Scan::compteurId).filter(Objects::nonNull)
+                        .collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Utilisateur::getId, Function.identity()));
+
+        List<Scan> ordonnes = new ArrayList<>(aTraiter.values());
+        ordonnes.sort(Comparator.comparing(Scan::horodatage, Comparator.nullsLast(Comparator.naturalOrder())));
+        Map<Long, LigneInventaire> touchees = new LinkedHashMap<>();
+        for (Scan scan : ordonnes) {
+            CleLigne cle = ligneParScan.get(scan.idScan());
+            LigneInventaire ligne = cle != null ? lignes.get(cle.getId()) : null;
+            String refus = appliquerScan(inventaire, ligne, scan, compteurs.get(scan.compteurId()));
+            if (refus == null) {
+                touchees.put(ligne.getId(), ligne);
+            }
+            resultats.put(scan.idScan(), new ResultatScan(scan.idScan(), refus == null ? SCAN_APPLIQUE : SCAN_REJETE,
+                    ligne != null ? ligne.getId() : null, refus));
+        }
+
+        // TODO.YML Ligne 50: Écarts recalculés une fois par ligne
+        if (!touchees.isEmpty()) {
+            Set<Long> articleIds = new HashSet<>();
+            touchees.values().forEach(l -> articleIds.add(l.getArticle().getId()));
+            Map<Long, BigDecimal> couts = new HashMap<>();
+            for (ValeurArticle valeur : stockDisponibleRepository.sumValeurParArticle(
+                    inventaire.getDepot().getId(), articleIds)) {
+                couts.put(valeur.getArticleId(), valeur.getQuantite().signum() > 0
+                        ? valeur.getValeur().divide(valeur.getQuantite(), 4, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO);
+            }
+            for (LigneInventaire ligne : touchees.values()) {
+                calculerEcart(ligne, couts.getOrDefault(ligne.getArticle().getId(), BigDecimal.ZERO));
+            }
+            ligneInventaireRepository.saveAll(touchees.values());
+        }
+
+        jdbcTemplate.batchUpdate(SQL_RESULTAT_SCAN, aTraiter.keySet().stream()
+                .map(resultats::get)
+                .map(r -> new Object[]{r.ligneId(), r.statut(), r.message(), r.idScan()})
+                .toList());
+        log.info("Inventaire {}: {} scans reçus, {} appliqués sur {} lignes, {} déjà reçus",
+                inventaire.getNumero(), resultats.size(),
+                resultats.values().stream().filter(r -> SCAN_APPLIQUE.equals(r.statut())).count(),
+                touchees.size(), dejaRecus.size());
+        return new ArrayList<>(resultats.values());
+    }
+
+    /**
+     * Applique un scan à sa ligne ; renvoie le motif de refus, ou null si le scan est appliqué
+     */
+    private String appliquerScan(Inventaire inventaire, LigneInventaire ligne, Scan scan, Utilisateur compteur) {
+        if (ligne == null) {
+            return "Article/lot/emplacement absent de l'inventaire ou emplacement à préciser";
+        }
+        if (scan.quantite() == null || scan.quantite().signum() < 0) {
+            return "Quantité invalide: " + scan.quantite();
+        }
+        if (compteur == null) {
+            return "Compteur inconnu: " + scan.compteurId();
+        }
+        LocalDateTime horodatage = scan.horodatage() != null ? scan.horodatage() : LocalDateTime.now();
+
+        if (scan.comptage() == 2) {
+            if (inventaire.getStatut() != StatutInventaire.EN_COMPTAGE) {
+                return "L'inventaire n'est pas en mode comptage";
+            }
+            if (ligne.getQuantiteComptee1() == null) {
+                return "Le premier comptage doit être effectué avant le second";
+            }
+            if (ligne.getCompteur1() != null && ligne.getCompteur1().getId().equals(compteur.getId())) {
+                return "Le second compteur doit être différent du premier";
+            }
+            BigDecimal quantite = (ligne.getQuantiteComptee2() != null ? ligne.getQuantiteComptee2() : BigDecimal.ZERO)
+                    .add(scan.quantite());
+            ligne.setQuantiteComptee2(quantite);
+            ligne.setCompteur2(compteur);
+            ligne.setComptage2At(horodatage);
+            // Comptages identiques : quantité retenue = comptage ; sinon moyenne (à valider manuellement)
+            ligne.setQuantiteRetenue(ligne.getQuantiteComptee1().compareTo(quantite) == 0
+                    ? quantite
+                    : ligne.getQuantiteComptee1().add(quantite).divide(BigDecimal.valueOf(2)));
+            return null;
+        }
+        if (scan.comptage() != 1) {
+            return "Comptage invalide: " + scan.comptage();
+        }
+        BigDecimal quantite = (ligne.getQuantiteComptee1() != null ? ligne.getQuantiteComptee1() : BigDecimal.ZERO)
+                .add(scan.quantite());
+        ligne.setQuantiteComptee1(quantite);
+        if (ligne.getCompteur1() == null) {
+            ligne.setCompteur1(compteur);
+        }
+        ligne.setComptage1At(horodatage);
+        if (ligne.getQuantiteComptee2() == null) {
+            ligne.setQuantiteRetenue(quantite);
+        }
+        return null;
+    }
+
+    private Set<String> reserverScans(Long inventaireId, Set<String> idScans) {
+        return new HashSet<>(jdbcTemplate.query(SQL_RESERVATION_SCANS,
+                ps -> {
+                    ps.setLong(1, inventaireId);
+                    ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                    ps.setArray(3, ps.getConnection().createArrayOf("text", idScans.toArray()));
+                },
+                (rs, i) -> rs.getString(1)));
+    }
+
+    /**
+     * Libère l'index en mémoire d'un inventaire sorti du comptage
+     */
+    private void oublierIndex(Long inventaireId) {
+        indexParInventaire.remove(inventaireId);
+    }
+
     /**
      * Valide/corrige manuellement la quantité retenue
      */
@@ -125,12 +335,16 @@ public class LigneInventaireService {
      */
     private void calculerEcart(LigneInventaire ligne) {
         if (ligne.getQuantiteRetenue() != null && ligne.getQuantiteTheorique() != null) {
-            BigDecimal ecart = ligne.getQuantiteRetenue().subtract(ligne.getQuantiteTheorique());
-            ligne.setEcartQuantite(ecart);
-
             // TODO.YML Ligne 51: Écarts valorisés
             // Récupérer le coût unitaire moyen pour valoriser l'écart
-            BigDecimal coutUnitaire = getCoutUnitaireMoyen(ligne);
+            calculerEcart(ligne, getCoutUnitaireMoyen(ligne));
+        }
+    }
+
+    private void calculerEcart(LigneInventaire ligne, BigDecimal coutUnitaire) {
+        if (ligne.getQuantiteRetenue() != null && ligne.getQuantiteTheorique() != null) {
+            BigDecimal ecart = ligne.getQuantiteRetenue().subtract(ligne.getQuantiteTheorique());
+            ligne.setEcartQuantite(ecart);
             if (coutUnitaire != null) {
                 ligne.setEcartValeur(ecart.multiply(coutUnitaire));
             }
@@ -196,4 +410,51 @@ public class LigneInventaireService {
         BigDecimal somme = ligneInventaireRepository.sumEcartValeurByInventaire(inventaireId);
         return somme != null ? somme : BigDecimal.ZERO;
     }
+
+    /**
+     * Scan de comptage envoyé par un terminal ; idScan unique, généré par le terminal
+     */
+    public record Scan(String idScan, int comptage, String articleCode, String lotNumero, String emplacement,
+                       BigDecimal quantite, Long compteurId, LocalDateTime horodatage) {
+    }
+
+    /**
+     * Résultat d'un scan : APPLIQUE, REJETE (avec motif) ou DEJA_TRAITE
+     */
+    public record ResultatScan(String idScan, String statut, Long ligneId, String message) {
+    }
+
+    /**
+     * Lignes d'un inventaire par code article et lot (les lignes ne changent plus après l'ouverture)
+     */
+    private static final class IndexInventaire {
+        private final Map<String, List<CleLigne>> parArticleLot = new HashMap<>();
+
+        private IndexInventaire(List<CleLigne> cles) {
+            for (CleLigne cle : cles) {
+                parArticleLot.computeIfAbsent(cle(cle.getArticleCode(), cle.getLotNumero()), c -> new ArrayList<>())
+                        .add(cle);
+            }
+        }
+
+        /**
+         * Ligne de l'article/lot à l'emplacement indiqué, ou seule ligne de l'article/lot
+         */
+        private Optional<CleLigne> trouver(String articleCode, String lotNumero, String emplacement) {
+            List<CleLigne> candidates = parArticleLot.getOrDefault(cle(articleCode, lotNumero), List.of());
+            if (emplacement != null) {
+                List<CleLigne> aLEmplacement = candidates.stream()
+                        .filter(c -> emplacement.equals(c.getEmplacement()))
+                        .toList();
+                if (aLEmplacement.size() == 1) {
+                    return Optional.of(aLEmplacement.get(0));
+                }
+            }
+            return candidates.size() == 1 ? Optional.of(candidates.get(0)) : Optional.empty();
+        }
+
+        private static String cle(String articleCode, String lotNumero) {
+            return articleCode + "|" + (lotNumero != null ? lotNumero : "");
+        }
+    }
 }
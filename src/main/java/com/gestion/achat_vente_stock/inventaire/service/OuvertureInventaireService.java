@@ -0,0 +1,78 @@
+package com.gestion.achat_vente_stock.inventaire.service;
+
+import com.gestion.achat_vente_stock.inventaire.model.Inventaire;
+import com.gestion.achat_vente_stock.inventaire.model.Inventaire.StatutInventaire;
+import com.gestion.achat_vente_stock.inventaire.service.InventaireService.AvancementOuverture;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TODO.YML Ligne 46: Générer snapshot stock théorique à date T
+ * Ouverture d'inventaire en arrière-plan : la requête HTTP rend la main aussitôt,
+ * l'écran suit l'avancement de la génération des lignes
+ * - Une ouverture à la fois (fil unique), une seule en cours par inventaire
+ * - L'avancement est terminé après validation de la transaction d'ouverture
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OuvertureInventaireService {
+
+    private final InventaireService inventaireService;
+
+    private final ExecutorService executeur = Executors.newSingleThreadExecutor(tache -> {
+        Thread fil = new Thread(tache, "ouverture-inventaire");
+        fil.setDaemon(true);
+        return fil;
+    });
+    private final Map<Long, AvancementOuverture> avancements = new ConcurrentHashMap<>();
+
+    /**
+     * Lance l'ouverture d'un inventaire en BROUILLON
+     */
+    public AvancementOuverture demarrer(Long inventaireId) {
+        Inventaire inventaire = inventaireService.findById(inventaireId)
+                .orElseThrow(() -> new IllegalArgumentException("Inventaire non trouvé: " + inventaireId));
+        if (inventaire.getStatut() != StatutInventaire.BROUILLON) {
+            throw new IllegalStateException("L'inventaire doit être en BROUILLON pour être ouvert");
+        }
+
+        AvancementOuverture avancement = avancements.compute(inventaireId, (id, existant) -> {
+            if (existant != null && !existant.isTermine()) {
+                throw new IllegalStateException("Ouverture déjà en cours pour l'inventaire " + inventaire.getNumero());
+            }
+            return new AvancementOuverture();
+        });
+
+        executeur.execute(() -> {
+            try {
+                inventaireService.ouvrir(inventaireId, avancement);
+                avancement.terminer();
+            } catch (RuntimeException e) {
+                log.warn("Échec de l'ouverture de l'inventaire {}: {}", inventaire.getNumero(), e.getMessage());
+                avancement.echouer(e.getMessage());
+            }
+        });
+        return avancement;
+    }
+
+    /**
+     * Avancement de la dernière ouverture lancée pour l'inventaire
+     */
+    public Optional<AvancementOuverture> getAvancement(Long inventaireId) {
+        return Optional.ofNullable(avancements.get(inventaireId));
+    }
+
+    @PreDestroy
+    void arreter() {
+        executeur.shutdown();
+    }
+}
@@ -9,6 +9,11 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * TODO.YML Ligne 1-2: Référentiels > Articles
  * Page "Gestion articles"
@@ -20,6 +25,9 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class ArticleController {
     
     private final ArticleService articleService;
+
+    // Nombre maximal de suggestions renvoyées par la recherche
+    private static final int LIMITE_RECHERCHE = 20;
     
     /**
      * TODO.YML Ligne 1: Liste des articles
@@ -111,4 +119,21 @@ public class ArticleController {
         model.addAttribute("titre", "Articles avec Traçabilité Lot");
         return "referentiel/articles/liste";
     }
+    
+    /**
+     * API JSON : recherche d'articles pour les sélecteurs à saisie assistée
+     */
+    @GetMapping("/api/recherche")
+    @ResponseBody
+    public List<Map<String, Object>> rechercherArticles(@RequestParam(defaultValue = "") String q) {
+        List<Map<String, Object>> resultats = new ArrayList<>();
+        for (Article article : articleService.rechercher(q, LIMITE_RECHERCHE)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", article.getId());
+            item.put("code", article.getCode());
+            item.put("libelle", article.getDesignation());
+            resultats.add(item);
+        }
+        return resultats;
+    }
 }
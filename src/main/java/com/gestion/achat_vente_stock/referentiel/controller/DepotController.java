@@ -9,6 +9,11 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * TODO.YML Ligne 5: Référentiels > Dépôts
  * Page "Gestion dépôts"
@@ -20,6 +25,9 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class DepotController {
     
     private final DepotService depotService;
+
+    // Nombre maximal de suggestions renvoyées par la recherche
+    private static final int LIMITE_RECHERCHE = 20;
     
     @GetMapping
     public String listerDepots(Model model) {
@@ -83,4 +91,21 @@ public class DepotController {
         }
         return "redirect:/depots";
     }
+    
+    /**
+     * API JSON : recherche de dépôts pour les sélecteurs à saisie assistée
+     */
+    @GetMapping("/api/recherche")
+    @ResponseBody
+    public List<Map<String, Object>> rechercherDepots(@RequestParam(defaultValue = "") String q) {
+        List<Map<String, Object>> resultats = new ArrayList<>();
+        for (Depot depot : depotService.rechercher(q, LIMITE_RECHERCHE)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", depot.getId());
+            item.put("code", depot.getCode());
+            item.put("libelle", depot.getLibelle());
+            resultats.add(item);
+        }
+        return resultats;
+    }
 }
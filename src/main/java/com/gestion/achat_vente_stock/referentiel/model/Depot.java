@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * TODO.YML Ligne 5: Référentiels > Dépôts
@@ -13,13 +15,16 @@ import lombok.NoArgsConstructor;
  */
 @Entity
 @Table(name = "depot")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Depot {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "depot_seq")
+    @SequenceGenerator(name = "depot_seq", sequenceName = "depot_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
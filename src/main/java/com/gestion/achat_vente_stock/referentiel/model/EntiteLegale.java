@@ -19,7 +19,8 @@ import lombok.NoArgsConstructor;
 public class EntiteLegale {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entite_legale_seq")
+    @SequenceGenerator(name = "entite_legale_seq", sequenceName = "entite_legale_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "raison_sociale")
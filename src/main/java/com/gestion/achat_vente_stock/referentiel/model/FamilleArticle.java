@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * TODO.YML Ligne 1: Référentiels > Articles > Famille
@@ -13,13 +15,16 @@ import lombok.NoArgsConstructor;
  */
 @Entity
 @Table(name = "famille_article")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class FamilleArticle {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "famille_article_seq")
+    @SequenceGenerator(name = "famille_article_seq", sequenceName = "famille_article_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 /**
@@ -14,13 +16,16 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "fournisseur")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Fournisseur {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "fournisseur_seq")
+    @SequenceGenerator(name = "fournisseur_seq", sequenceName = "fournisseur_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
@@ -19,7 +19,8 @@ import lombok.NoArgsConstructor;
 public class Site {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "site_seq")
+    @SequenceGenerator(name = "site_seq", sequenceName = "site_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
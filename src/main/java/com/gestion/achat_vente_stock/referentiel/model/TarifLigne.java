@@ -20,7 +20,8 @@ import java.math.BigDecimal;
 public class TarifLigne {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tarif_ligne_seq")
+    @SequenceGenerator(name = "tarif_ligne_seq", sequenceName = "tarif_ligne_id_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
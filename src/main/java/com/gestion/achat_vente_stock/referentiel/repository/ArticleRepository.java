@@ -1,10 +1,15 @@
 package com.gestion.achat_vente_stock.referentiel.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.gestion.achat_vente_stock.referentiel.model.Article;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,4 +31,35 @@ public interface ArticleRepository extends JpaRepository<Article, Long> {
     List<Article> findByVendable(Boolean vendable);
     
     List<Article> findByTracabiliteLot(Boolean tracabiliteLot);
+
+    // Recherche par début de code ou partie de désignation (sélecteurs à saisie assistée)
+    @Query("SELECT a FROM Article a WHERE LOWER(a.code) LIKE LOWER(CONCAT(:terme, '%')) " +
+           "OR LOWER(a.designation) LIKE LOWER(CONCAT('%', :terme, '%')) ORDER BY a.code")
+    List<Article> rechercher(@Param("terme") String terme, Pageable page);
+
+    // Lecture par le cache du référentiel : projection en lecture seule, partageable entre threads
+    @Query("SELECT a.id AS id, a.code AS code, a.designation AS designation FROM Article a WHERE a.id = :id")
+    Optional<ArticleResume> findResumeById(@Param("id") Long id);
+
+    @Query("SELECT a.id AS id, a.code AS code, a.designation AS designation FROM Article a ORDER BY a.code")
+    List<ArticleResume> findAllResumes();
+
+    // TODO.YML Ligne 39: Mise à jour du CUMP sans relire l'article
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Article a SET a.prixAchatMoyen = :cump WHERE a.id = :id")
+    int majPrixAchatMoyen(@Param("id") Long id, @Param("cump") BigDecimal cump);
+
+    // TODO.YML Ligne 39: Verrou de l'article jusqu'à la fin de la transaction (reprise FIFO unique) ;
+    // FOR NO KEY UPDATE : n'attend pas les insertions de mouvements qui référencent l'article
+    @Query(value = "SELECT id FROM article WHERE id = :id FOR NO KEY UPDATE", nativeQuery = true)
+    Optional<Long> verrouiller(@Param("id") Long id);
+
+    /**
+     * Article tel qu'affiché dans les listes et sélecteurs (cache du référentiel)
+     */
+    interface ArticleResume {
+        Long getId();
+        String getCode();
+        String getDesignation();
+    }
 }
@@ -1,6 +1,8 @@
 package com.gestion.achat_vente_stock.referentiel.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.gestion.achat_vente_stock.referentiel.model.Client;
@@ -17,4 +19,24 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
     Optional<Client> findByCode(String code);
     
     List<Client> findByStatut(String statut);
+
+    // Lecture par le cache du référentiel : projection en lecture seule, partageable entre threads
+    @Query("SELECT c.id AS id, c.code AS code, c.raisonSociale AS raisonSociale, c.statut AS statut, " +
+           "t.id AS tarifId FROM Client c LEFT JOIN c.tarif t WHERE c.id = :id")
+    Optional<ClientResume> findResumeById(@Param("id") Long id);
+
+    @Query("SELECT c.id AS id, c.code AS code, c.raisonSociale AS raisonSociale, c.statut AS statut, " +
+           "t.id AS tarifId FROM Client c LEFT JOIN c.tarif t ORDER BY c.code")
+    List<ClientResume> findAllResumes();
+
+    /**
+     * Client tel qu'affiché dans les listes et sélecteurs (cache du référentiel)
+     */
+    interface ClientResume {
+        Long getId();
+        String getCode();
+        String getRaisonSociale();
+        String getStatut();
+        Long getTarifId();
+    }
 }
@@ -1,6 +1,9 @@
 package com.gestion.achat_vente_stock.referentiel.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.gestion.achat_vente_stock.referentiel.model.Depot;
@@ -19,4 +22,25 @@ public interface DepotRepository extends JpaRepository<Depot, Long> {
     List<Depot> findBySiteId(Long siteId);
     
     List<Depot> findByActif(Boolean actif);
+
+    // Recherche par début de code ou partie de libellé (sélecteurs à saisie assistée)
+    @Query("SELECT d FROM Depot d WHERE LOWER(d.code) LIKE LOWER(CONCAT(:terme, '%')) " +
+           "OR LOWER(d.libelle) LIKE LOWER(CONCAT('%', :terme, '%')) ORDER BY d.code")
+    List<Depot> rechercher(@Param("terme") String terme, Pageable page);
+
+    // Lecture par le cache du référentiel : projection en lecture seule, partageable entre threads
+    @Query("SELECT d.id AS id, d.code AS code, d.libelle AS libelle FROM Depot d WHERE d.id = :id")
+    Optional<DepotResume> findResumeById(@Param("id") Long id);
+
+    @Query("SELECT d.id AS id, d.code AS code, d.libelle AS libelle FROM Depot d ORDER BY d.code")
+    List<DepotResume> findAllResumes();
+
+    /**
+     * Dépôt tel qu'affiché dans les listes et sélecteurs (cache du référentiel)
+     */
+    interface DepotResume {
+        Long getId();
+        String getCode();
+        String getLibelle();
+    }
 }
@@ -1,6 +1,8 @@
 package com.gestion.achat_vente_stock.referentiel.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.gestion.achat_vente_stock.referentiel.model.FamilleArticle;
@@ -19,4 +21,19 @@ public interface FamilleArticleRepository extends JpaRepository<FamilleArticle,
     List<FamilleArticle> findByParentId(Long parentId);
     
     List<FamilleArticle> findByTracabiliteLotDefaut(Boolean tracabiliteLot);
+
+    // Lecture par le cache du référentiel : projection en lecture seule, partageable entre threads
+    @Query("SELECT f.id AS id, f.code AS code, f.libelle AS libelle, p.id AS parentId " +
+           "FROM FamilleArticle f LEFT JOIN f.parent p WHERE f.id = :id")
+    Optional<FamilleResume> findResumeById(@Param("id") Long id);
+
+    /**
+     * Famille telle qu'affichée dans les listes et sélecteurs (cache du référentiel)
+     */
+    interface FamilleResume {
+        Long getId();
+        String getCode();
+        String getLibelle();
+        Long getParentId();
+    }
 }
@@ -1,6 +1,8 @@
 package com.gestion.achat_vente_stock.referentiel.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.gestion.achat_vente_stock.referentiel.model.Fournisseur;
@@ -17,4 +19,23 @@ public interface FournisseurRepository extends JpaRepository<Fournisseur, Long>
     Optional<Fournisseur> findByCode(String code);
     
     List<Fournisseur> findByStatut(String statut);
+
+    // Lecture par le cache du référentiel : projection en lecture seule, partageable entre threads
+    @Query("SELECT f.id AS id, f.code AS code, f.raisonSociale AS raisonSociale, f.statut AS statut " +
+           "FROM Fournisseur f WHERE f.id = :id")
+    Optional<FournisseurResume> findResumeById(@Param("id") Long id);
+
+    @Query("SELECT f.id AS id, f.code AS code, f.raisonSociale AS raisonSociale, f.statut AS statut " +
+           "FROM Fournisseur f ORDER BY f.code")
+    List<FournisseurResume> findAllResumes();
+
+    /**
+     * Fournisseur tel qu'affiché dans les listes et sélecteurs (cache du référentiel)
+     */
+    interface FournisseurResume {
+        Long getId();
+        String getCode();
+        String getRaisonSociale();
+        String getStatut();
+    }
 }
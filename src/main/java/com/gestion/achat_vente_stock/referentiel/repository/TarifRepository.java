@@ -1,10 +1,13 @@
 package com.gestion.achat_vente_stock.referentiel.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.gestion.achat_vente_stock.referentiel.model.Tarif;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 /**
@@ -14,4 +17,20 @@ import java.util.Optional;
 public interface TarifRepository extends JpaRepository<Tarif, Long> {
     
     Optional<Tarif> findByCode(String code);
+
+    // Lecture par le cache du référentiel : projection en lecture seule, partageable entre threads
+    @Query("SELECT t.id AS id, t.code AS code, t.libelle AS libelle, t.dateDebut AS dateDebut, " +
+           "t.dateFin AS dateFin FROM Tarif t WHERE t.id = :id")
+    Optional<TarifResume> findResumeById(@Param("id") Long id);
+
+    /**
+     * Tarif tel qu'affiché dans les listes et sélecteurs (cache du référentiel)
+     */
+    interface TarifResume {
+        Long getId();
+        String getCode();
+        String getLibelle();
+        LocalDateTime getDateDebut();
+        LocalDateTime getDateFin();
+    }
 }
@@ -4,11 +4,13 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * TODO.YML Ligne 1-2: Référentiels > Articles
@@ -21,6 +23,8 @@ import java.util.List;
 public class ArticleService {
     
     private final ArticleRepository articleRepository;
+    private final ReferentielCacheService referentielCacheService;
+    private final TarificationService tarificationService;
     
     /**
      * TODO.YML Ligne 1: Créer/modifier/supprimer articles
@@ -30,7 +34,12 @@ public class ArticleService {
         if (article.getStatut() == null) {
             article.setStatut("ACTIF");
         }
-        return articleRepository.save(article);
+        Article saved = articleRepository.save(article);
+        referentielCacheService.invaliderArticle(saved.getId());
+        if (saved.getPrixVentePublic() != null) {
+            tarificationService.rechargerApresCommit();
+        }
+        return saved;
     }
     
     public Article modifierArticle(Long id, Article article) {
@@ -48,16 +57,24 @@ public class ArticleService {
         existant.setDluoObligatoire(article.getDluoObligatoire());
         existant.setMethodeValorisation(article.getMethodeValorisation());
         existant.setPrixAchatMoyen(article.getPrixAchatMoyen());
+        boolean prixPublicModifie = !Objects.equals(existant.getPrixVentePublic(), article.getPrixVentePublic());
         existant.setPrixVentePublic(article.getPrixVentePublic());
         existant.setStockMinimum(article.getStockMinimum());
         existant.setStockMaximum(article.getStockMaximum());
         existant.setStatut(article.getStatut());
         
-        return articleRepository.save(existant);
+        Article saved = articleRepository.save(existant);
+        referentielCacheService.invaliderArticle(id);
+        if (prixPublicModifie) {
+            tarificationService.rechargerApresCommit();
+        }
+        return saved;
     }
     
     public void supprimerArticle(Long id) {
         articleRepository.deleteById(id);
+        referentielCacheService.invaliderArticle(id);
+        tarificationService.rechargerApresCommit();
     }
     
     @Transactional(readOnly = true)
@@ -77,6 +94,14 @@ public class ArticleService {
         return articleRepository.findAll();
     }
     
+    /**
+     * Recherche pour sélecteur à saisie assistée (nombre de résultats limité)
+     */
+    @Transactional(readOnly = true)
+    public List<Article> rechercher(String terme, int limite) {
+        return articleRepository.rechercher(terme.trim(), PageRequest.of(0, limite));
+    }
+    
     @Transactional(readOnly = true)
     public List<Article> listerParFamille(Long familleId) {
         return articleRepository.findByFamilleId(familleId);
@@ -0,0 +1,110 @@
+package com.gestion.achat_vente_stock.referentiel.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache borné d'une donnée de référentiel : nombre d'entrées limité (la moins récemment lue est évincée)
+ * et durée de vie par entrée. Compteurs de succès, d'échecs et d'évictions.
+ * Le chargement se fait hors verrou ; une valeur chargée pendant une invalidation n'est pas conservée.
+ * Une valeur absente (Optional vide) n'est pas mise en cache.
+ */
+public class CacheReferentiel<K, V> {
+
+    private final String nom;
+    private final int tailleMax;
+    private final long dureeVieNanos;
+    private final Map<K, Entree<V>> entrees;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder succes = new LongAdder();
+    private final LongAdder echecs = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CacheReferentiel(String nom, int tailleMax, Duration dureeVie) {
+        this.nom = nom;
+        this.tailleMax = tailleMax;
+        this.dureeVieNanos = dureeVie.toNanos();
+        this.entrees = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entree<V>> plusAncienne) {
+                if (size() > CacheReferentiel.this.tailleMax) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Valeur en cache, ou chargée puis mise en cache
+     */
+    public Optional<V> obtenir(K cle, Function<K, Optional<V>> chargeur) {
+        long maintenant = System.nanoTime();
+        synchronized (entrees) {
+            Entree<V> entree = entrees.get(cle);
+            if (entree != null) {
+                if (maintenant - entree.chargeeA() < dureeVieNanos) {
+                    succes.increment();
+                    return Optional.of(entree.valeur());
+                }
+                entrees.remove(cle);
+                evictions.increment();
+            }
+        }
+        echecs.increment();
+
+        long generationLue = generation.get();
+        Optional<V> valeur = chargeur.apply(cle);
+        if (valeur.isPresent()) {
+            synchronized (entrees) {
+                // Invalidation pendant le chargement : la valeur lue est peut-être antérieure
+                if (generation.get() == generationLue) {
+                    entrees.put(cle, new Entree<>(valeur.get(), maintenant));
+                }
+            }
+        }
+        return valeur;
+    }
+
+    public void invalider(K cle) {
+        synchronized (entrees) {
+            generation.incrementAndGet();
+            entrees.remove(cle);
+        }
+    }
+
+    public void vider() {
+        synchronized (entrees) {
+            generation.incrementAndGet();
+            entrees.clear();
+        }
+    }
+
+    public Statistiques statistiques() {
+        int taille;
+        synchronized (entrees) {
+            taille = entrees.size();
+        }
+        return new Statistiques(nom, taille, tailleMax, succes.sum(), echecs.sum(), evictions.sum());
+    }
+
+    private record Entree<V>(V valeur, long chargeeA) {
+    }
+
+    /**
+     * Taille et compteurs d'un cache depuis le démarrage
+     */
+    public record Statistiques(String nom, int taille, int tailleMax, long succes, long echecs, long evictions) {
+
+        public double tauxSucces() {
+            long total = succes + echecs;
+            return total == 0 ? 0 : (double) succes / total;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.gestion.achat_vente_stock.referentiel.service;
 
 import com.gestion.achat_vente_stock.referentiel.model.Client;
+import com.gestion.achat_vente_stock.referentiel.model.Tarif;
 import com.gestion.achat_vente_stock.referentiel.repository.ClientRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -8,6 +9,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * TODO.YML Ligne 4: Référentiels > Clients
@@ -19,12 +21,19 @@ import java.util.List;
 public class ClientService {
     
     private final ClientRepository clientRepository;
+    private final ReferentielCacheService referentielCacheService;
+    private final TarificationService tarificationService;
     
     public Client creerClient(Client client) {
         if (client.getStatut() == null) {
             client.setStatut("ACTIF");
         }
-        return clientRepository.save(client);
+        Client saved = clientRepository.save(client);
+        referentielCacheService.invaliderClient(saved.getId());
+        if (saved.getTarif() != null) {
+            tarificationService.rechargerApresCommit();
+        }
+        return saved;
     }
     
     public Client modifierClient(Long id, Client client) {
@@ -36,15 +45,22 @@ public class ClientService {
         existant.setAdresse(client.getAdresse());
         existant.setEmail(client.getEmail());
         existant.setLimiteCredit(client.getLimiteCredit());
+        boolean tarifModifie = !Objects.equals(idTarif(existant.getTarif()), idTarif(client.getTarif()));
         existant.setTarif(client.getTarif());
         existant.setConditionsPaiement(client.getConditionsPaiement());
         existant.setStatut(client.getStatut());
         
-        return clientRepository.save(existant);
+        Client saved = clientRepository.save(existant);
+        referentielCacheService.invaliderClient(id);
+        if (tarifModifie) {
+            tarificationService.rechargerApresCommit();
+        }
+        return saved;
     }
     
     public void supprimerClient(Long id) {
         clientRepository.deleteById(id);
+        referentielCacheService.invaliderClient(id);
     }
     
     @Transactional(readOnly = true)
@@ -62,4 +78,8 @@ public class ClientService {
     public List<Client> listerActifs() {
         return clientRepository.findByStatut("ACTIF");
     }
+
+    private static Long idTarif(Tarif tarif) {
+        return tarif != null ? tarif.getId() : null;
+    }
 }
@@ -4,6 +4,7 @@ import com.gestion.achat_vente_stock.referentiel.model.Depot;
 import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,12 +20,15 @@ import java.util.List;
 public class DepotService {
     
     private final DepotRepository depotRepository;
+    private final ReferentielCacheService referentielCacheService;
     
     public Depot creerDepot(Depot depot) {
         if (depot.getActif() == null) {
             depot.setActif(true);
         }
-        return depotRepository.save(depot);
+        Depot saved = depotRepository.save(depot);
+        referentielCacheService.invaliderDepot(saved.getId());
+        return saved;
     }
     
     public Depot modifierDepot(Long id, Depot depot) {
@@ -38,11 +42,14 @@ public class DepotService {
         existant.setType(depot.getType());
         existant.setActif(depot.getActif());
         
-        return depotRepository.save(existant);
+        Depot saved = depotRepository.save(existant);
+        referentielCacheService.invaliderDepot(id);
+        return saved;
     }
     
     public void supprimerDepot(Long id) {
         depotRepository.deleteById(id);
+        referentielCacheService.invaliderDepot(id);
     }
     
     @Transactional(readOnly = true)
@@ -56,6 +63,14 @@ public class DepotService {
         return depotRepository.findAll();
     }
     
+    /**
+     * Recherche pour sélecteur à saisie assistée (nombre de résultats limité)
+     */
+    @Transactional(readOnly = true)
+    public List<Depot> rechercher(String terme, int limite) {
+        return depotRepository.rechercher(terme.trim(), PageRequest.of(0, limite));
+    }
+    
     @Transactional(readOnly = true)
     public List<Depot> listerActifs() {
         return depotRepository.findByActif(true);
@@ -19,12 +19,15 @@ import java.util.List;
 public class FournisseurService {
     
     private final FournisseurRepository fournisseurRepository;
+    private final ReferentielCacheService referentielCacheService;
     
     public Fournisseur creerFournisseur(Fournisseur fournisseur) {
         if (fournisseur.getStatut() == null) {
             fournisseur.setStatut("ACTIF");
         }
-        return fournisseurRepository.save(fournisseur);
+        Fournisseur saved = fournisseurRepository.save(fournisseur);
+        referentielCacheService.invaliderFournisseur(saved.getId());
+        return saved;
     }
     
     public Fournisseur modifierFournisseur(Long id, Fournisseur fournisseur) {
@@ -40,11 +43,14 @@ public class FournisseurService {
         existant.setDelaiLivraisonJours(fournisseur.getDelaiLivraisonJours());
         existant.setStatut(fournisseur.getStatut());
         
-        return fournisseurRepository.save(existant);
+        Fournisseur saved = fournisseurRepository.save(existant);
+        referentielCacheService.invaliderFournisseur(id);
+        return saved;
     }
     
     public void supprimerFournisseur(Long id) {
         fournisseurRepository.deleteById(id);
+        referentielCacheService.invaliderFournisseur(id);
     }
     
     @Transactional(readOnly = true)
@@ -0,0 +1,183 @@
+package com.gestion.achat_vente_stock.referentiel.service;
+
+import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
+import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository.ArticleResume;
+import com.gestion.achat_vente_stock.referentiel.repository.ClientRepository;
+import com.gestion.achat_vente_stock.referentiel.repository.ClientRepository.ClientResume;
+import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
+import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository.DepotResume;
+import com.gestion.achat_vente_stock.referentiel.repository.FamilleArticleRepository;
+import com.gestion.achat_vente_stock.referentiel.repository.FamilleArticleRepository.FamilleResume;
+import com.gestion.achat_vente_stock.referentiel.repository.FournisseurRepository;
+import com.gestion.achat_vente_stock.referentiel.repository.FournisseurRepository.FournisseurResume;
+import com.gestion.achat_vente_stock.referentiel.repository.TarifRepository;
+import com.gestion.achat_vente_stock.referentiel.repository.TarifRepository.TarifResume;
+import com.gestion.achat_vente_stock.referentiel.service.CacheReferentiel.Statistiques;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * TODO.YML Lignes 1-8: Référentiels (articles, dépôts, clients, fournisseurs, familles, tarifs)
+ * Lecture des référentiels à travers un cache borné (taille, durée de vie), par identifiant,
+ * et listes complètes pour les listes déroulantes.
+ * - le cache ne contient que des projections en lecture seule (ArticleResume, DepotResume…), jamais
+ *   d'entités : une valeur partagée entre threads ne peut être ni modifiée ni rattachée à une session ;
+ *   une écriture qui référence un article ou un dépôt passe par getReferenceById
+ * - ArticleService, DepotService, ClientService, FournisseurService (et la mise à jour du CUMP) invalident
+ *   l'entrée et la liste concernées à la fin de la transaction (validée ou annulée)
+ * - familles et tarifs, sans service d'écriture, ne sont rafraîchis que par la durée de vie
+ */
+@Service
+public class ReferentielCacheService {
+
+    private static final String TOUS = "TOUS";
+
+    private final ArticleRepository articleRepository;
+    private final DepotRepository depotRepository;
+    private final ClientRepository clientRepository;
+    private final FournisseurRepository fournisseurRepository;
+    private final FamilleArticleRepository familleArticleRepository;
+    private final TarifRepository tarifRepository;
+
+    private final CacheReferentiel<Long, ArticleResume> articles;
+    private final CacheReferentiel<Long, DepotResume> depots;
+    private final CacheReferentiel<Long, ClientResume> clients;
+    private final CacheReferentiel<Long, FournisseurResume> fournisseurs;
+    private final CacheReferentiel<Long, FamilleResume> familles;
+    private final CacheReferentiel<Long, TarifResume> tarifs;
+    private final CacheReferentiel<String, List<ArticleResume>> listeArticles;
+    private final CacheReferentiel<String, List<DepotResume>> listeDepots;
+    private final CacheReferentiel<String, List<ClientResume>> listeClients;
+    private final CacheReferentiel<String, List<FournisseurResume>> listeFournisseurs;
+
+    public ReferentielCacheService(ArticleRepository articleRepository, DepotRepository depotRepository,
+                                   ClientRepository clientRepository, FournisseurRepository fournisseurRepository,
+                                   FamilleArticleRepository familleArticleRepository, TarifRepository tarifRepository,
+                                   @Value("${referentiel.cache.taille-max:5000}") int tailleMax,
+                                   @Value("${referentiel.cache.duree-vie-secondes:600}") long dureeVieSecondes) {
+        this.articleRepository = articleRepository;
+        this.depotRepository = depotRepository;
+        this.clientRepository = clientRepository;
+        this.fournisseurRepository = fournisseurRepository;
+        this.familleArticleRepository = familleArticleRepository;
+        this.tarifRepository = tarifRepository;
+
+        Duration dureeVie = Duration.ofSeconds(dureeVieSecondes);
+        this.articles = new CacheReferentiel<>("article", tailleMax, dureeVie);
+        this.depots = new CacheReferentiel<>("depot", tailleMax, dureeVie);
+        this.clients = new CacheReferentiel<>("client", tailleMax, dureeVie);
+        this.fournisseurs = new CacheReferentiel<>("fournisseur", tailleMax, dureeVie);
+        this.familles = new CacheReferentiel<>("famille_article", tailleMax, dureeVie);
+        this.tarifs = new CacheReferentiel<>("tarif", tailleMax, dureeVie);
+        this.listeArticles = new CacheReferentiel<>("liste_article", 1, dureeVie);
+        this.listeDepots = new CacheReferentiel<>("liste_depot", 1, dureeVie);
+        this.listeClients = new CacheReferentiel<>("liste_client", 1, dureeVie);
+        this.listeFournisseurs = new CacheReferentiel<>("liste_fournisseur", 1, dureeVie);
+    }
+
+    // ==================== LECTURE ====================
+
+    public Optional<ArticleResume> article(Long id) {
+        return articles.obtenir(id, articleRepository::findResumeById);
+    }
+
+    public List<ArticleResume> articles() {
+        return listeArticles.obtenir(TOUS, cle -> Optional.of(List.copyOf(articleRepository.findAllResumes())))
+                .orElseThrow();
+    }
+
+    public Optional<DepotResume> depot(Long id) {
+        return depots.obtenir(id, depotRepository::findResumeById);
+    }
+
+    public List<DepotResume> depots() {
+        return listeDepots.obtenir(TOUS, cle -> Optional.of(List.copyOf(depotRepository.findAllResumes())))
+                .orElseThrow();
+    }
+
+    public Optional<ClientResume> client(Long id) {
+        return clients.obtenir(id, clientRepository::findResumeById);
+    }
+
+    public List<ClientResume> clients() {
+        return listeClients.obtenir(TOUS, cle -> Optional.of(List.copyOf(clientRepository.findAllResumes())))
+                .orElseThrow();
+    }
+
+    public Optional<FournisseurResume> fournisseur(Long id) {
+        return fournisseurs.obtenir(id, fournisseurRepository::findResumeById);
+    }
+
+    public List<FournisseurResume> fournisseurs() {
+        return listeFournisseurs.obtenir(TOUS, cle -> Optional.of(List.copyOf(fournisseurRepository.findAllResumes())))
+                .orElseThrow();
+    }
+
+    public Optional<FamilleResume> famille(Long id) {
+        return familles.obtenir(id, familleArticleRepository::findResumeById);
+    }
+
+    public Optional<TarifResume> tarif(Long id) {
+        return tarifs.obtenir(id, tarifRepository::findResumeById);
+    }
+
+    public List<Statistiques> statistiques() {
+        return List.of(articles.statistiques(), depots.statistiques(), clients.statistiques(),
+                fournisseurs.statistiques(), familles.statistiques(), tarifs.statistiques(),
+                listeArticles.statistiques(), listeDepots.statistiques(), listeClients.statistiques(),
+                listeFournisseurs.statistiques());
+    }
+
+    // ==================== INVALIDATION ====================
+
+    public void invaliderArticle(Long id) {
+        aLaFinDeLaTransaction(() -> {
+            articles.invalider(id);
+            listeArticles.vider();
+        });
+    }
+
+    public void invaliderDepot(Long id) {
+        aLaFinDeLaTransaction(() -> {
+            depots.invalider(id);
+            listeDepots.vider();
+        });
+    }
+
+    public void invaliderClient(Long id) {
+        aLaFinDeLaTransaction(() -> {
+            clients.invalider(id);
+            listeClients.vider();
+        });
+    }
+
+    public void invaliderFournisseur(Long id) {
+        aLaFinDeLaTransaction(() -> {
+            fournisseurs.invalider(id);
+            listeFournisseurs.vider();
+        });
+    }
+
+    /**
+     * Après validation ou annulation : une valeur chargée pendant la transaction (y compris par elle-même,
+     * non validée) n'est pas conservée
+     */
+    private void aLaFinDeLaTransaction(Runnable invalidation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidation.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidation.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,189 @@
+package com.gestion.achat_vente_stock.referentiel.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TODO.YML Ligne 6: Référentiels > Taxes/Tarifs
+ * Résolution du prix de vente d'un article pour un client à une date : index immuable en mémoire
+ * client -> tarif (période de validité) -> article -> prix unitaire HT / remise, et prix public par article.
+ * - prix du tarif du client si le tarif est valide à la date et comporte une ligne pour l'article
+ * - sinon prix de vente public de l'article, sans remise
+ * Construit au démarrage (première exécution planifiée), reconstruit après le commit d'un changement
+ * d'affectation de tarif à un client (ClientService) ou de prix public (ArticleService), et périodiquement.
+ * Les tarifs et leurs lignes n'ont pas de service d'écriture : leurs changements ne sont vus qu'à la
+ * reconstruction périodique (vente.tarification.rechargement-ms).
+ * Le nouvel index remplace l'ancien d'un bloc : une résolution voit l'un ou l'autre, jamais un mélange.
+ * Reconstructions simultanées (planifiée et après commit) : chacune reçoit un numéro au démarrage, l'index
+ * d'une reconstruction commencée avant celle déjà appliquée est ignoré (pas de retour à un état plus ancien).
+ */
+@Service
+@Slf4j
+public class TarificationService {
+
+    public static final String SOURCE_TARIF = "TARIF";
+    public static final String SOURCE_PRIX_PUBLIC = "PRIX_PUBLIC";
+
+    private static final String SQL_CLIENTS = "SELECT id, tarif_id FROM client WHERE tarif_id IS NOT NULL";
+
+    private static final String SQL_TARIFS = "SELECT id, code, date_debut, date_fin FROM tarif";
+
+    // Plusieurs lignes pour un même article : la plus récente l'emporte
+    private static final String SQL_LIGNES = "SELECT tarif_id, article_id, prix_unitaire_ht, remise_pourcent " +
+            "FROM tarif_ligne WHERE tarif_id IS NOT NULL AND article_id IS NOT NULL AND prix_unitaire_ht IS NOT NULL " +
+            "ORDER BY id";
+
+    private static final String SQL_PRIX_PUBLICS = "SELECT id, prix_vente_public FROM article " +
+            "WHERE prix_vente_public IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Index index = new Index(Map.of(), Map.of(), Map.of());
+    private final AtomicLong generations = new AtomicLong();
+    // Numéro de la reconstruction dont l'index est en place (accès sous le verrou du service)
+    private long generationAppliquee;
+
+    public TarificationService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Prix de chaque article pour le client à la date (aujourd'hui si null), sans requête ;
+     * article sans tarif ni prix public : absent du résultat
+     */
+    public Map<Long, PrixResolu> resoudre(Long clientId, Collection<Long> articleIds, LocalDate date) {
+        Index courant = index;
+        LocalDate jour = date != null ? date : LocalDate.now();
+        TarifIndexe tarif = null;
+        Long tarifId = clientId != null ? courant.tarifParClient().get(clientId) : null;
+        if (tarifId != null) {
+            TarifIndexe candidat = courant.tarifs().get(tarifId);
+            if (candidat != null && candidat.valideLe(jour)) {
+                tarif = candidat;
+            }
+        }
+
+        Map<Long, PrixResolu> resultat = new LinkedHashMap<>();
+        for (Long articleId : articleIds) {
+            if (articleId == null || resultat.containsKey(articleId)) {
+                continue;
+            }
+            PrixTarif ligne = tarif != null ? tarif.lignes().get(articleId) : null;
+            if (ligne != null) {
+                resultat.put(articleId, new PrixResolu(articleId, ligne.prixUnitaireHt(), ligne.remisePourcent(),
+                        SOURCE_TARIF, tarif.code()));
+                continue;
+            }
+            BigDecimal prixPublic = courant.prixPublics().get(articleId);
+            if (prixPublic != null) {
+                resultat.put(articleId, new PrixResolu(articleId, prixPublic, BigDecimal.ZERO,
+                        SOURCE_PRIX_PUBLIC, null));
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * À appeler dans la transaction qui modifie un tarif, ses lignes, le tarif d'un client ou un prix public :
+     * reconstruction après son commit
+     */
+    public void rechargerApresCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recharger();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recharger();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${vente.tarification.rechargement-ms:300000}")
+    public void recharger() {
+        long generation = generations.incrementAndGet();
+        Map<Long, Long> tarifParClient = new HashMap<>();
+        jdbcTemplate.query(SQL_CLIENTS, rs -> {
+            tarifParClient.put(rs.getLong("id"), rs.getLong("tarif_id"));
+        });
+
+        Map<Long, Map<Long, PrixTarif>> lignesParTarif = new HashMap<>();
+        jdbcTemplate.query(SQL_LIGNES, rs -> {
+            BigDecimal remise = rs.getBigDecimal("remise_pourcent");
+            lignesParTarif.computeIfAbsent(rs.getLong("tarif_id"), id -> new HashMap<>())
+                    .put(rs.getLong("article_id"), new PrixTarif(rs.getBigDecimal("prix_unitaire_ht"),
+                            remise != null ? remise : BigDecimal.ZERO));
+        });
+
+        Map<Long, TarifIndexe> tarifs = new HashMap<>();
+        jdbcTemplate.query(SQL_TARIFS, rs -> {
+            long id = rs.getLong("id");
+            tarifs.put(id, new TarifIndexe(rs.getString("code"), enDate(rs.getTimestamp("date_debut")),
+                    enDate(rs.getTimestamp("date_fin")), Map.copyOf(lignesParTarif.getOrDefault(id, Map.of()))));
+        });
+
+        Map<Long, BigDecimal> prixPublics = new HashMap<>();
+        jdbcTemplate.query(SQL_PRIX_PUBLICS, rs -> {
+            prixPublics.put(rs.getLong("id"), rs.getBigDecimal("prix_vente_public"));
+        });
+
+        Index nouveau = new Index(Map.copyOf(tarifParClient), Map.copyOf(tarifs), Map.copyOf(prixPublics));
+        synchronized (this) {
+            if (generation < generationAppliquee) {
+                log.debug("Tarification: reconstruction {} ignorée, {} déjà appliquée", generation, generationAppliquee);
+                return;
+            }
+            if (!nouveau.equals(index)) {
+                log.info("Tarification: {} tarif(s), {} client(s) tarifé(s), {} prix public(s)",
+                        tarifs.size(), tarifParClient.size(), prixPublics.size());
+            }
+            index = nouveau;
+            generationAppliquee = generation;
+        }
+    }
+
+    private static LocalDateTime enDate(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    /**
+     * Prix retenu pour un article ; source TARIF (code du tarif) ou PRIX_PUBLIC
+     */
+    public record PrixResolu(Long articleId, BigDecimal prixUnitaireHt, BigDecimal remisePourcent,
+                             String source, String codeTarif) {
+    }
+
+    private record PrixTarif(BigDecimal prixUnitaireHt, BigDecimal remisePourcent) {
+    }
+
+    /**
+     * Tarif et ses lignes par article ; bornes de validité incluses, au jour près
+     */
+    private record TarifIndexe(String code, LocalDateTime dateDebut, LocalDateTime dateFin,
+                               Map<Long, PrixTarif> lignes) {
+
+        boolean valideLe(LocalDate jour) {
+            return (dateDebut == null || !dateDebut.toLocalDate().isAfter(jour))
+                    && (dateFin == null || !dateFin.toLocalDate().isBefore(jour));
+        }
+    }
+
+    private record Index(Map<Long, Long> tarifParClient, Map<Long, TarifIndexe> tarifs,
+                         Map<Long, BigDecimal> prixPublics) {
+    }
+}
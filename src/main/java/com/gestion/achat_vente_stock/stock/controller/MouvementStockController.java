@@ -4,9 +4,11 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.model.Depot;
 import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
+import com.gestion.achat_vente_stock.referentiel.service.ReferentielCacheService;
 import com.gestion.achat_vente_stock.stock.model.MouvementStock;
 import com.gestion.achat_vente_stock.stock.service.MouvementStockService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -15,6 +17,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -29,36 +32,40 @@ public class MouvementStockController {
     private final MouvementStockService mouvementStockService;
     private final ArticleRepository articleRepository;
     private final DepotRepository depotRepository;
+    private final ReferentielCacheService referentielCacheService;
+
+    // Nombre de mouvements par page
+    private static final int TAILLE_PAGE = 50;
 
     /**
-     * Liste des mouvements de stock
+     * Liste des mouvements de stock, filtres combinables, pagination par clé
      */
     @GetMapping
     public String liste(Model model,
                         @RequestParam(required = false) Long articleId,
                         @RequestParam(required = false) Long depotId,
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
-                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin) {
-        
-        List<MouvementStock> mouvements;
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin,
+                        @RequestParam(required = false) String type,
+                        @RequestParam(required = false) Long apres) {
         
-        if (dateDebut != null && dateFin != null) {
-            mouvements = mouvementStockService.listerParPeriode(dateDebut, dateFin);
-        } else if (articleId != null) {
-            mouvements = mouvementStockService.listerParArticle(articleId);
-        } else if (depotId != null) {
-            mouvements = mouvementStockService.listerParDepot(depotId);
-        } else {
-            mouvements = mouvementStockService.listerTous();
-        }
+        String typeMouvement = type != null && !type.isBlank() ? type : null;
+        Slice<MouvementStock> page = mouvementStockService.rechercher(articleId, depotId, dateDebut, dateFin,
+                typeMouvement, apres, TAILLE_PAGE);
+        List<MouvementStock> mouvements = page.getContent();
         
         model.addAttribute("mouvements", mouvements);
-        model.addAttribute("articles", articleRepository.findAll());
-        model.addAttribute("depots", depotRepository.findAll());
+        model.addAttribute("suivant", page.hasNext() ? mouvements.get(mouvements.size() - 1).getId() : null);
+        model.addAttribute("apres", apres);
+        // Seuls l'article et le dépôt sélectionnés sont chargés, les autres via la recherche
+        model.addAttribute("article", articleId != null ? referentielCacheService.article(articleId).orElse(null) : null);
+        model.addAttribute("depot", depotId != null ? referentielCacheService.depot(depotId).orElse(null) : null);
+        model.addAttribute("typesMouvement", getTypesMouvement());
         model.addAttribute("articleId", articleId);
         model.addAttribute("depotId", depotId);
         model.addAttribute("dateDebut", dateDebut);
         model.addAttribute("dateFin", dateFin);
+        model.addAttribute("type", typeMouvement);
         
         return "stocks/mouvements/liste";
     }
@@ -78,8 +85,8 @@ public class MouvementStockController {
      */
     @GetMapping("/entree/nouveau")
     public String formulaireEntree(Model model) {
-        model.addAttribute("articles", articleRepository.findAll());
-        model.addAttribute("depots", depotRepository.findAll());
+        model.addAttribute("articles", referentielCacheService.articles());
+        model.addAttribute("depots", referentielCacheService.depots());
         model.addAttribute("typesMouvement", getTypesEntree());
         return "stocks/mouvements/formulaire-entree";
     }
@@ -122,8 +129,8 @@ public class MouvementStockController {
      */
     @GetMapping("/sortie/nouveau")
     public String formulaireSortie(Model model) {
-        model.addAttribute("articles", articleRepository.findAll());
-        model.addAttribute("depots", depotRepository.findAll());
+        model.addAttribute("articles", referentielCacheService.articles());
+        model.addAttribute("depots", referentielCacheService.depots());
         model.addAttribute("typesMouvement", getTypesSortie());
         return "stocks/mouvements/formulaire-sortie";
     }
@@ -168,6 +175,12 @@ public class MouvementStockController {
         );
     }
 
+    private List<String> getTypesMouvement() {
+        List<String> types = new ArrayList<>(getTypesEntree());
+        types.addAll(getTypesSortie());
+        return types;
+    }
+
     private List<String> getTypesSortie() {
         return List.of(
                 MouvementStockService.SORTIE_LIVRAISON,
@@ -5,6 +5,7 @@ import com.gestion.achat_vente_stock.stock.service.ReservationStockService;
 import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -26,23 +27,25 @@ public class ReservationStockController {
     private final ArticleRepository articleRepository;
     private final DepotRepository depotRepository;
 
+    // Nombre de réservations par page
+    private static final int TAILLE_PAGE = 50;
+
     /**
      * Liste des réservations
      */
     @GetMapping
     public String liste(Model model,
-                        @RequestParam(required = false) String statut) {
-        
-        List<ReservationStock> reservations;
+                        @RequestParam(required = false) String statut,
+                        @RequestParam(required = false) Long apres) {
         
-        if ("ACTIVE".equals(statut)) {
-            reservations = reservationStockService.listerActives();
-        } else {
-            reservations = reservationStockService.listerTous();
-        }
+        String filtreStatut = statut != null && !statut.isBlank() ? statut : null;
+        Slice<ReservationStock> page = reservationStockService.rechercher(filtreStatut, apres, TAILLE_PAGE);
+        List<ReservationStock> reservations = page.getContent();
         
         model.addAttribute("reservations", reservations);
-        model.addAttribute("statut", statut);
+        model.addAttribute("suivant", page.hasNext() ? reservations.get(reservations.size() - 1).getId() : null);
+        model.addAttribute("apres", apres);
+        model.addAttribute("statut", filtreStatut);
         model.addAttribute("statuts", List.of("ACTIVE", "CONSOMMEE", "EXPIREE", "ANNULEE"));
         
         return "stocks/reservations/liste";
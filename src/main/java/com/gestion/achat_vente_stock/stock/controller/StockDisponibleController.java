@@ -1,17 +1,27 @@
 package com.gestion.achat_vente_stock.stock.controller;
 
 import com.gestion.achat_vente_stock.stock.model.StockDisponible;
+import com.gestion.achat_vente_stock.stock.service.PointStockService;
+import com.gestion.achat_vente_stock.stock.service.PointStockService.EtatStock;
+import com.gestion.achat_vente_stock.stock.service.ReconciliationStockService;
+import com.gestion.achat_vente_stock.stock.service.ReconciliationStockService.EcartStock;
+import com.gestion.achat_vente_stock.stock.service.ReconciliationStockService.ResultatReconciliation;
 import com.gestion.achat_vente_stock.stock.service.StockDisponibleService;
 import com.gestion.achat_vente_stock.stock.service.ValorisationService;
 import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Contrôleur pour la consultation du stock disponible
@@ -24,6 +34,8 @@ public class StockDisponibleController {
 
     private final StockDisponibleService stockDisponibleService;
     private final ValorisationService valorisationService;
+    private final PointStockService pointStockService;
+    private final ReconciliationStockService reconciliationStockService;
     private final ArticleRepository articleRepository;
     private final DepotRepository depotRepository;
 
@@ -91,4 +103,57 @@ public class StockDisponibleController {
         model.addAttribute("titre", "Stocks en surstock (au-dessus du maximum)");
         return "stocks/disponible/alertes";
     }
+
+    /**
+     * TODO.YML Lignes 40-41: Stock et valeur à une date passée (JSON), par article/dépôt/lot
+     */
+    @GetMapping("/api/a-date")
+    @ResponseBody
+    public List<Map<String, Object>> etatADate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                               @RequestParam(required = false) Long articleId,
+                                               @RequestParam(required = false) Long depotId) {
+        List<Map<String, Object>> resultat = new ArrayList<>();
+        for (EtatStock etat : pointStockService.etatADate(date, articleId, depotId)) {
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            ligne.put("articleId", etat.articleId());
+            ligne.put("depotId", etat.depotId());
+            ligne.put("lotNumero", etat.lotNumero());
+            ligne.put("quantite", etat.quantite());
+            ligne.put("valeur", etat.valeur());
+            resultat.add(ligne);
+        }
+        return resultat;
+    }
+
+    /**
+     * TODO.YML Ligne 39: Réconciliation du stock disponible avec les mouvements et réservations (JSON),
+     * avec correction facultative des écarts
+     */
+    @PostMapping("/api/reconciliation")
+    @ResponseBody
+    public Map<String, Object> reconcilier(@RequestParam(required = false) Long depotId,
+                                           @RequestParam(defaultValue = "false") boolean corriger) {
+        ResultatReconciliation resultat = reconciliationStockService.reconcilier(depotId, corriger);
+        List<Map<String, Object>> ecarts = new ArrayList<>();
+        for (EcartStock ecart : resultat.ecarts()) {
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            ligne.put("articleId", ecart.articleId());
+            ligne.put("depotId", ecart.depotId());
+            ligne.put("lotNumero", ecart.lotNumero());
+            ligne.put("physiqueAttendue", ecart.physiqueAttendue());
+            ligne.put("physique", ecart.physique());
+            ligne.put("reserveeAttendue", ecart.reserveeAttendue());
+            ligne.put("reservee", ecart.reservee());
+            ligne.put("disponible", ecart.disponible());
+            ligne.put("valeurAttendue", ecart.valeurAttendue());
+            ligne.put("valeur", ecart.valeur());
+            ligne.put("lignes", ecart.lignes());
+            ecarts.add(ligne);
+        }
+        Map<String, Object> reponse = new LinkedHashMap<>();
+        reponse.put("ecarts", ecarts);
+        reponse.put("corrections", resultat.corrections());
+        reponse.put("dureeMillis", resultat.dureeMillis());
+        return reponse;
+    }
 }
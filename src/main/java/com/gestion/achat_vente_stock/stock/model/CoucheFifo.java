@@ -0,0 +1,63 @@
+package com.gestion.achat_vente_stock.stock.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+
+/**
+ * TODO.YML Ligne 39: Stock > Valorisation FIFO
+ * Couche de coût FIFO : une entrée en stock et la quantité qui n'en a pas encore été sortie
+ *
+ * Table: couche_fifo (schema/05_stocks.sql)
+ */
+@Entity
+@Table(name = "couche_fifo")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoucheFifo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "couche_fifo_seq")
+    @SequenceGenerator(name = "couche_fifo_seq", sequenceName = "couche_fifo_id_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "article_id")
+    private Article article;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "depot_id")
+    private Depot depot;
+
+    // Mouvement d'entrée à l'origine de la couche (null pour une couche de reprise)
+    @Column(name = "mouvement_id")
+    private Long mouvementId;
+
+    @Column(name = "lot_numero")
+    private String lotNumero;
+
+    @Column(name = "date_entree")
+    private LocalDate dateEntree;
+
+    @Column(name = "cout_unitaire", precision = 18, scale = 6)
+    private BigDecimal coutUnitaire;
+
+    @Column(name = "quantite_initiale", precision = 18, scale = 4)
+    private BigDecimal quantiteInitiale;
+
+    // Quantité non encore consommée par les sorties
+    @Column(name = "quantite_restante", precision = 18, scale = 4)
+    private BigDecimal quantiteRestante;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
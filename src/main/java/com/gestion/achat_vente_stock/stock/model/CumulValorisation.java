@@ -0,0 +1,37 @@
+package com.gestion.achat_vente_stock.stock.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * TODO.YML Ligne 39: Stock > Valorisation CUMP
+ * Totaux courants quantité/valeur du stock d'un article (tous dépôts),
+ * mis à jour à chaque mouvement : CUMP = valeur totale / quantité totale
+ *
+ * Table: cumul_valorisation (schema/05_stocks.sql)
+ */
+@Entity
+@Table(name = "cumul_valorisation")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CumulValorisation {
+
+    @Id
+    @Column(name = "article_id")
+    private Long articleId;
+
+    @Column(name = "quantite_totale", precision = 18, scale = 4, nullable = false)
+    private BigDecimal quantiteTotale;
+
+    @Column(name = "valeur_totale", precision = 18, scale = 4, nullable = false)
+    private BigDecimal valeurTotale;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,47 @@
+package com.gestion.achat_vente_stock.stock.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * TODO.YML Lignes 40-41: Stock > Valorisation (clôture, rétrodatation, rapports)
+ * Quantité et valeur d'un article/dépôt/lot à un point de stock (lignes non nulles uniquement),
+ * écrites en masse par PointStockService
+ *
+ * Table: ligne_point_stock (schema/05_stocks.sql)
+ */
+@Entity
+@Table(name = "ligne_point_stock")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LignePointStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_point_stock_seq")
+    @SequenceGenerator(name = "ligne_point_stock_seq", sequenceName = "ligne_point_stock_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "date_point", nullable = false)
+    private LocalDate datePoint;
+
+    @Column(name = "article_id", nullable = false)
+    private Long articleId;
+
+    @Column(name = "depot_id", nullable = false)
+    private Long depotId;
+
+    @Column(name = "lot_numero")
+    private String lotNumero;
+
+    @Column(name = "quantite", precision = 18, scale = 4, nullable = false)
+    private BigDecimal quantite;
+
+    @Column(name = "valeur", precision = 18, scale = 4, nullable = false)
+    private BigDecimal valeur;
+}
@@ -25,7 +25,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneTransfert {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_transfert_seq")
+    @SequenceGenerator(name = "ligne_transfert_seq", sequenceName = "ligne_transfert_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
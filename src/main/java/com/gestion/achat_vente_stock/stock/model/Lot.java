@@ -26,7 +26,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Fournisseur;
 public class Lot {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lot_seq")
+    @SequenceGenerator(name = "lot_seq", sequenceName = "lot_id_seq", allocationSize = 50)
     private Long id;
 
     // TODO.YML Ligne 37: Numéro de lot unique
@@ -29,7 +29,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Depot;
 public class MouvementStock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mouvement_stock_seq")
+    @SequenceGenerator(name = "mouvement_stock_seq", sequenceName = "mouvement_stock_id_seq", allocationSize = 50)
     private Long id;
 
     // TODO.YML Ligne 33: Numérotation automatique et non réutilisable
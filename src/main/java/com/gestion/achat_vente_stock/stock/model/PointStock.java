@@ -0,0 +1,37 @@
+package com.gestion.achat_vente_stock.stock.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * TODO.YML Lignes 40-41: Stock > Valorisation (clôture, rétrodatation, rapports)
+ * Point de stock journalier : état figé en fin de journée (lignes dans ligne_point_stock).
+ * Un mouvement daté d'un jour déjà couvert invalide les points suivants, reconstruits ensuite.
+ *
+ * Table: point_stock (schema/05_stocks.sql)
+ */
+@Entity
+@Table(name = "point_stock")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PointStock {
+
+    @Id
+    @Column(name = "date_point")
+    private LocalDate datePoint;
+
+    @Column(name = "construit_le", nullable = false)
+    private LocalDateTime construitLe;
+
+    @Column(name = "nombre_lignes")
+    private Integer nombreLignes;
+
+    @Column(name = "valide", nullable = false)
+    private Boolean valide;
+}
@@ -25,7 +25,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Depot;
 public class ReservationStock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_stock_seq")
+    @SequenceGenerator(name = "reservation_stock_seq", sequenceName = "reservation_stock_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -25,7 +25,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Depot;
 public class StockDisponible {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_disponible_seq")
+    @SequenceGenerator(name = "stock_disponible_seq", sequenceName = "stock_disponible_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
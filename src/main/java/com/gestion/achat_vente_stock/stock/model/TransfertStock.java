@@ -29,7 +29,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Depot;
 public class TransfertStock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfert_stock_seq")
+    @SequenceGenerator(name = "transfert_stock_seq", sequenceName = "transfert_stock_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
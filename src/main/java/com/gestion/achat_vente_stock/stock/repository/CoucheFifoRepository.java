@@ -0,0 +1,43 @@
+package com.gestion.achat_vente_stock.stock.repository;
+
+import com.gestion.achat_vente_stock.stock.model.CoucheFifo;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * TODO.YML Ligne 39: Stock > Valorisation FIFO
+ * Repository des couches de coût FIFO
+ */
+@Repository
+public interface CoucheFifoRepository extends JpaRepository<CoucheFifo, Long> {
+
+    // Couches non épuisées, de la plus ancienne à la plus récente, verrouillées pour consommation
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CoucheFifo c WHERE c.article.id = :articleId AND c.depot.id = :depotId " +
+           "AND c.quantiteRestante > 0 ORDER BY c.dateEntree ASC, c.id ASC")
+    List<CoucheFifo> findCouchesOuvertes(@Param("articleId") Long articleId, @Param("depotId") Long depotId,
+                                         Pageable page);
+
+    // Couches non épuisées d'un lot, verrouillées pour consommation
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CoucheFifo c WHERE c.article.id = :articleId AND c.depot.id = :depotId " +
+           "AND c.lotNumero = :lotNumero AND c.quantiteRestante > 0 ORDER BY c.dateEntree ASC, c.id ASC")
+    List<CoucheFifo> findCouchesOuvertesParLot(@Param("articleId") Long articleId, @Param("depotId") Long depotId,
+                                               @Param("lotNumero") String lotNumero, Pageable page);
+
+    // Couches non épuisées, sans verrou (estimation du coût de sortie)
+    @Query("SELECT c FROM CoucheFifo c WHERE c.article.id = :articleId AND c.depot.id = :depotId " +
+           "AND c.quantiteRestante > 0 ORDER BY c.dateEntree ASC, c.id ASC")
+    List<CoucheFifo> findCouchesOuvertesLecture(@Param("articleId") Long articleId, @Param("depotId") Long depotId,
+                                                Pageable page);
+
+    // Présence de couches (épuisées ou non) pour l'article/dépôt
+    boolean existsByArticleIdAndDepotId(Long articleId, Long depotId);
+}
@@ -0,0 +1,49 @@
+package com.gestion.achat_vente_stock.stock.repository;
+
+import com.gestion.achat_vente_stock.stock.model.CumulValorisation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * TODO.YML Ligne 39: Stock > Valorisation CUMP
+ * Repository des totaux courants de valorisation par article
+ */
+@Repository
+public interface CumulValorisationRepository extends JpaRepository<CumulValorisation, Long> {
+
+    // Ajout atomique d'un delta quantité/valeur, retourne les nouveaux totaux (vide si cumul absent)
+    @Query(value = "UPDATE cumul_valorisation SET quantite_totale = quantite_totale + :quantite, " +
+                   "valeur_totale = valeur_totale + :valeur, updated_at = now() WHERE article_id = :articleId " +
+                   "RETURNING quantite_totale AS quantiteTotale, valeur_totale AS valeurTotale", nativeQuery = true)
+    Optional<Totaux> cumuler(@Param("articleId") Long articleId, @Param("quantite") BigDecimal quantite,
+                             @Param("valeur") BigDecimal valeur);
+
+    // Création du cumul avec ses totaux de départ (sans effet s'il existe déjà)
+    @Modifying
+    @Query(value = "INSERT INTO cumul_valorisation (article_id, quantite_totale, valeur_totale, updated_at) " +
+                   "VALUES (:articleId, :quantite, :valeur, now()) ON CONFLICT (article_id) DO NOTHING",
+           nativeQuery = true)
+    int initialiser(@Param("articleId") Long articleId, @Param("quantite") BigDecimal quantite,
+                    @Param("valeur") BigDecimal valeur);
+
+    // Remise des totaux aux valeurs recalculées
+    @Modifying
+    @Query(value = "INSERT INTO cumul_valorisation (article_id, quantite_totale, valeur_totale, updated_at) " +
+                   "VALUES (:articleId, :quantite, :valeur, now()) ON CONFLICT (article_id) DO UPDATE " +
+                   "SET quantite_totale = EXCLUDED.quantite_totale, valeur_totale = EXCLUDED.valeur_totale, " +
+                   "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    int reinitialiser(@Param("articleId") Long articleId, @Param("quantite") BigDecimal quantite,
+                      @Param("valeur") BigDecimal valeur);
+
+    interface Totaux {
+        BigDecimal getQuantiteTotale();
+
+        BigDecimal getValeurTotale();
+    }
+}
@@ -47,7 +47,9 @@ public interface LotRepository extends JpaRepository<Lot, Long> {
     @Query("SELECT l FROM Lot l WHERE l.article.id = :articleId AND l.statut = 'ACTIF' ORDER BY l.dateFabrication ASC NULLS LAST")
     List<Lot> findLotsActifsByArticleFIFO(@Param("articleId") Long articleId);
 
-    // Dernière numéro de lot
-    @Query("SELECT MAX(l.numero) FROM Lot l WHERE l.numero LIKE :prefix%")
-    Optional<String> findLastNumeroByPrefix(@Param("prefix") String prefix);
+    /** Plus grande séquence numérique des numéros du préfixe (amorce de la numérotation) */
+    @Query(value = "SELECT MAX(CAST(SUBSTRING(numero, LENGTH(:prefix) + 1) AS BIGINT)) FROM lot " +
+            "WHERE numero LIKE :prefix || '%' AND SUBSTRING(numero, LENGTH(:prefix) + 1) ~ '^[0-9]+$'",
+            nativeQuery = true)
+    Optional<Long> findDerniereSequence(@Param("prefix") String prefix);
 }
@@ -1,12 +1,20 @@
 package com.gestion.achat_vente_stock.stock.repository;
 
 import com.gestion.achat_vente_stock.stock.model.MouvementStock;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,7 +23,8 @@ import java.util.Optional;
  * Repository pour la gestion des mouvements de stock
  */
 @Repository
-public interface MouvementStockRepository extends JpaRepository<MouvementStock, Long> {
+public interface MouvementStockRepository extends JpaRepository<MouvementStock, Long>,
+        JpaSpecificationExecutor<MouvementStock> {
 
     Optional<MouvementStock> findByNumero(String numero);
 
@@ -33,6 +42,38 @@ public interface MouvementStockRepository extends JpaRepository<MouvementStock,
     // Mouvements par période
     List<MouvementStock> findByDateMouvementBetween(LocalDate debut, LocalDate fin);
 
+    // Recherche paginée par clé (id décroissant) avec filtres combinés, article et dépôt chargés
+    // Seuls les filtres renseignés entrent dans la requête : chaque combinaison a son propre plan,
+    // qui peut utiliser l'index de l'article, de la période ou du type
+    default Slice<MouvementStock> rechercher(Long articleId, Long depotId, LocalDate dateDebut, LocalDate dateFin,
+                                             String typeMouvement, Long apresId, Pageable page) {
+        Specification<MouvementStock> filtres = (root, query, cb) -> {
+            root.fetch("article", JoinType.LEFT);
+            root.fetch("depot", JoinType.LEFT);
+            List<Predicate> predicats = new ArrayList<>();
+            if (articleId != null) {
+                predicats.add(cb.equal(root.get("article").get("id"), articleId));
+            }
+            if (depotId != null) {
+                predicats.add(cb.equal(root.get("depot").get("id"), depotId));
+            }
+            if (dateDebut != null) {
+                predicats.add(cb.greaterThanOrEqualTo(root.get("dateMouvement"), dateDebut));
+            }
+            if (dateFin != null) {
+                predicats.add(cb.lessThanOrEqualTo(root.get("dateMouvement"), dateFin));
+            }
+            if (typeMouvement != null) {
+                predicats.add(cb.equal(root.get("typeMouvement"), typeMouvement));
+            }
+            if (apresId != null) {
+                predicats.add(cb.lessThan(root.get("id"), apresId));
+            }
+            return cb.and(predicats.toArray(Predicate[]::new));
+        };
+        return findBy(filtres, requete -> requete.sortBy(Sort.by(Sort.Direction.DESC, "id")).slice(page));
+    }
+
     // Mouvements par document source
     List<MouvementStock> findByTypeDocumentAndDocumentId(String typeDocument, Long documentId);
 
@@ -40,9 +81,11 @@ public interface MouvementStockRepository extends JpaRepository<MouvementStock,
     @Query("SELECT m FROM MouvementStock m WHERE m.dateMouvement < :dateCloture AND m.createdAt > :dateCloture")
     List<MouvementStock> findMouvementsRetrodates(@Param("dateCloture") LocalDate dateCloture);
 
-    // Dernier numéro généré
-    @Query("SELECT MAX(m.numero) FROM MouvementStock m WHERE m.numero LIKE :prefix%")
-    Optional<String> findLastNumeroByPrefix(@Param("prefix") String prefix);
+    /** Plus grande séquence numérique des numéros du préfixe (amorce de la numérotation) */
+    @Query(value = "SELECT MAX(CAST(SUBSTRING(numero, LENGTH(:prefix) + 1) AS BIGINT)) FROM mouvement_stock " +
+            "WHERE numero LIKE :prefix || '%' AND SUBSTRING(numero, LENGTH(:prefix) + 1) ~ '^[0-9]+$'",
+            nativeQuery = true)
+    Optional<Long> findDerniereSequence(@Param("prefix") String prefix);
 
     // Mouvements d'entrée par article/dépôt (pour FIFO)
     @Query("SELECT m FROM MouvementStock m WHERE m.article.id = :articleId AND m.depot.id = :depotId " +
@@ -0,0 +1,31 @@
+package com.gestion.achat_vente_stock.stock.repository;
+
+import com.gestion.achat_vente_stock.stock.model.PointStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * TODO.YML Lignes 40-41: Stock > Valorisation (clôture, rétrodatation, rapports)
+ * Repository des points de stock journaliers
+ */
+@Repository
+public interface PointStockRepository extends JpaRepository<PointStock, LocalDate> {
+
+    // Dernier point construit (valide ou non)
+    Optional<PointStock> findFirstByOrderByDatePointDesc();
+
+    // Points à reconstruire, du plus ancien au plus récent
+    List<PointStock> findByValideFalseOrderByDatePointAsc();
+
+    // Mouvement daté d'un jour déjà couvert : les points à partir de ce jour ne sont plus exacts
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE PointStock p SET p.valide = false WHERE p.datePoint >= :date AND p.valide = true")
+    int invaliderDepuis(@Param("date") LocalDate date);
+}
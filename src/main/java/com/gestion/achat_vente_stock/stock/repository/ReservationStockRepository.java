@@ -1,13 +1,22 @@
 package com.gestion.achat_vente_stock.stock.repository;
 
 import com.gestion.achat_vente_stock.stock.model.ReservationStock;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -15,7 +24,8 @@ import java.util.List;
  * Repository pour la gestion des réservations de stock
  */
 @Repository
-public interface ReservationStockRepository extends JpaRepository<ReservationStock, Long> {
+public interface ReservationStockRepository extends JpaRepository<ReservationStock, Long>,
+        JpaSpecificationExecutor<ReservationStock> {
 
     List<ReservationStock> findByArticleId(Long articleId);
 
@@ -28,6 +38,24 @@ public interface ReservationStockRepository extends JpaRepository<ReservationSto
     // Réservations actives pour un article/dépôt
     List<ReservationStock> findByArticleIdAndDepotIdAndStatut(Long articleId, Long depotId, String statut);
 
+    // Recherche paginée par clé (id décroissant), article et dépôt chargés ;
+    // seuls les filtres renseignés entrent dans la requête
+    default Slice<ReservationStock> rechercher(String statut, Long apresId, Pageable page) {
+        Specification<ReservationStock> filtres = (root, query, cb) -> {
+            root.fetch("article", JoinType.LEFT);
+            root.fetch("depot", JoinType.LEFT);
+            List<Predicate> predicats = new ArrayList<>();
+            if (statut != null) {
+                predicats.add(cb.equal(root.get("statut"), statut));
+            }
+            if (apresId != null) {
+                predicats.add(cb.lessThan(root.get("id"), apresId));
+            }
+            return cb.and(predicats.toArray(Predicate[]::new));
+        };
+        return findBy(filtres, requete -> requete.sortBy(Sort.by(Sort.Direction.DESC, "id")).slice(page));
+    }
+
     // Réservations expirées à annuler
     @Query("SELECT r FROM ReservationStock r WHERE r.dateExpiration < :today AND r.statut = 'ACTIVE'")
     List<ReservationStock> findReservationsExpirees(@Param("today") LocalDate today);
@@ -37,6 +65,36 @@ public interface ReservationStockRepository extends JpaRepository<ReservationSto
            "WHERE r.article.id = :articleId AND r.depot.id = :depotId AND r.statut = 'ACTIVE'")
     BigDecimal sumReservationsActives(@Param("articleId") Long articleId, @Param("depotId") Long depotId);
 
+    // Changement de statut de toutes les réservations actives d'une commande client
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ReservationStock r SET r.statut = :statut " +
+           "WHERE r.commandeClientId = :commandeClientId AND r.statut = 'ACTIVE'")
+    int changerStatutReservationsActives(@Param("commandeClientId") Long commandeClientId,
+                                         @Param("statut") String statut);
+
+    // Articles réservés (réservations actives) par une commande client
+    @Query("SELECT DISTINCT r.article.id FROM ReservationStock r " +
+           "WHERE r.commandeClientId = :commandeClientId AND r.statut = 'ACTIVE'")
+    List<Long> findArticlesReservationsActives(@Param("commandeClientId") Long commandeClientId);
+
     // Réservations par lot
     List<ReservationStock> findByLotNumeroAndStatut(String lotNumero, String statut);
+
+    // TODO.YML Ligne 25: Réservations actives d'une commande sur un dépôt, sans charger les entités (livraison)
+    @Query("SELECT r.id AS id, r.article.id AS articleId, r.lotNumero AS lotNumero, " +
+           "r.quantiteReservee AS quantiteReservee FROM ReservationStock r " +
+           "WHERE r.commandeClientId = :commandeClientId AND r.depot.id = :depotId AND r.statut = 'ACTIVE' " +
+           "ORDER BY r.id")
+    List<ReservationActive> findReservationsActivesCommande(@Param("commandeClientId") Long commandeClientId,
+                                                            @Param("depotId") Long depotId);
+
+    /**
+     * Réservation active d'une commande (identifiant, clé article/lot et quantité)
+     */
+    interface ReservationActive {
+        Long getId();
+        Long getArticleId();
+        String getLotNumero();
+        BigDecimal getQuantiteReservee();
+    }
 }
@@ -8,6 +8,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +32,13 @@ public interface StockDisponibleRepository extends JpaRepository<StockDisponible
     // Stock par lot
     Optional<StockDisponible> findByArticleIdAndDepotIdAndLotNumero(Long articleId, Long depotId, String lotNumero);
 
+    // Lignes de stock des articles et dépôts d'un lot de mouvements (sans charger les entités)
+    @Query("SELECT s.id AS id, s.article.id AS articleId, s.depot.id AS depotId, s.lotNumero AS lotNumero, " +
+           "s.quantiteDisponible AS quantiteDisponible FROM StockDisponible s " +
+           "WHERE s.article.id IN :articleIds AND s.depot.id IN :depotIds ORDER BY s.id")
+    List<LigneStock> findLignesStock(@Param("articleIds") Collection<Long> articleIds,
+                                     @Param("depotIds") Collection<Long> depotIds);
+
     // Stock par emplacement
     List<StockDisponible> findByDepotIdAndEmplacement(Long depotId, String emplacement);
 
@@ -45,6 +54,24 @@ public interface StockDisponibleRepository extends JpaRepository<StockDisponible
     @Query("SELECT s FROM StockDisponible s WHERE s.quantitePhysique > s.article.stockMaximum")
     List<StockDisponible> findStocksEnSurstock();
 
+    // Somme stock disponible par article dans un dépôt
+    @Query("SELECT COALESCE(SUM(s.quantiteDisponible), 0) FROM StockDisponible s " +
+           "WHERE s.article.id = :articleId AND s.depot.id = :depotId")
+    BigDecimal sumQuantiteDisponibleByArticleAndDepot(@Param("articleId") Long articleId,
+                                                      @Param("depotId") Long depotId);
+
+    // Stock réservable d'un dépôt pour un ensemble d'articles, avec les dates du lot (FEFO/FIFO).
+    // Lignes sans lot ou de lot actif non périmé ; verrouillées (dans l'ordre des id) jusqu'à la fin de la transaction
+    @Query(value = "SELECT s.id AS id, s.article_id AS articleId, s.lot_numero AS lotNumero, " +
+                   "s.quantite_disponible AS quantiteDisponible, l.dluo AS dluo, l.date_fabrication AS dateFabrication " +
+                   "FROM stock_disponible s LEFT JOIN lot l ON l.numero = s.lot_numero " +
+                   "WHERE s.depot_id = :depotId AND s.article_id IN (:articleIds) AND s.quantite_disponible > 0 " +
+                   "AND (s.lot_numero IS NULL OR (l.statut = 'ACTIF' " +
+                   "AND (l.dlc IS NULL OR l.dlc >= CURRENT_DATE) AND (l.dluo IS NULL OR l.dluo >= CURRENT_DATE))) " +
+                   "ORDER BY s.id FOR UPDATE OF s", nativeQuery = true)
+    List<StockReservable> findStocksReservables(@Param("depotId") Long depotId,
+                                                @Param("articleIds") Collection<Long> articleIds);
+
     // Somme stock par article (tous dépôts)
     @Query("SELECT COALESCE(SUM(s.quantitePhysique), 0) FROM StockDisponible s WHERE s.article.id = :articleId")
     BigDecimal sumQuantitePhysiqueByArticle(@Param("articleId") Long articleId);
@@ -61,6 +88,91 @@ public interface StockDisponibleRepository extends JpaRepository<StockDisponible
     @Query("SELECT COALESCE(SUM(s.valeurStock), 0) FROM StockDisponible s WHERE s.depot.id = :depotId")
     BigDecimal sumValeurStockByDepot(@Param("depotId") Long depotId);
 
+    // Somme des quantités en stock positif par article (base du CUMP)
+    @Query("SELECT COALESCE(SUM(s.quantitePhysique), 0) FROM StockDisponible s " +
+           "WHERE s.article.id = :articleId AND s.quantitePhysique > 0")
+    BigDecimal sumQuantitePhysiquePositiveByArticle(@Param("articleId") Long articleId);
+
+    // Somme des valeurs en stock positif par article (base du CUMP)
+    @Query("SELECT COALESCE(SUM(s.valeurStock), 0) FROM StockDisponible s " +
+           "WHERE s.article.id = :articleId AND s.quantitePhysique > 0")
+    BigDecimal sumValeurStockPositifByArticle(@Param("articleId") Long articleId);
+
+    // ===== Mises à jour atomiques (delta) =====
+    // Chaque opération est un seul UPDATE : le nombre de lignes modifiées indique le résultat
+    // (0 = ligne absente ou condition non remplie)
+
+    // Sortie physique sans contrôle (ajustement, correction)
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE StockDisponible s SET " +
+           "s.quantitePhysique = COALESCE(s.quantitePhysique, 0) - :quantite, " +
+           "s.quantiteDisponible = COALESCE(s.quantitePhysique, 0) - :quantite - COALESCE(s.quantiteReservee, 0), " +
+           "s.valeurStock = COALESCE(s.valeurStock, 0) - :valeur, " +
+           "s.lastUpdate = LOCAL DATETIME " +
+           "WHERE s.article.id = :articleId AND s.depot.id = :depotId " +
+           "AND (s.lotNumero = :lotNumero OR (s.lotNumero IS NULL AND :lotNumero IS NULL))")
+    int retirerStock(@Param("articleId") Long articleId, @Param("depotId") Long depotId,
+                     @Param("lotNumero") String lotNumero, @Param("quantite") BigDecimal quantite,
+                     @Param("valeur") BigDecimal valeur);
+
+    // Sortie physique uniquement si la quantité disponible est suffisante
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE StockDisponible s SET " +
+           "s.quantitePhysique = COALESCE(s.quantitePhysique, 0) - :quantite, " +
+           "s.quantiteDisponible = COALESCE(s.quantitePhysique, 0) - :quantite - COALESCE(s.quantiteReservee, 0), " +
+           "s.valeurStock = COALESCE(s.valeurStock, 0) - :valeur, " +
+           "s.lastUpdate = LOCAL DATETIME " +
+           "WHERE s.article.id = :articleId AND s.depot.id = :depotId " +
+           "AND (s.lotNumero = :lotNumero OR (s.lotNumero IS NULL AND :lotNumero IS NULL)) " +
+           "AND s.quantiteDisponible >= :quantite")
+    int retirerStockSiDisponible(@Param("articleId") Long articleId, @Param("depotId") Long depotId,
+                                 @Param("lotNumero") String lotNumero, @Param("quantite") BigDecimal quantite,
+                                 @Param("valeur") BigDecimal valeur);
+
+    // Variation de la seule valeur du stock (réévaluation)
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE StockDisponible s SET s.valeurStock = COALESCE(s.valeurStock, 0) + :delta, " +
+           "s.lastUpdate = LOCAL DATETIME WHERE s.id = :id")
+    int ajusterValeurStock(@Param("id") Long id, @Param("delta") BigDecimal delta);
+
+    // Réservation uniquement si la quantité disponible est suffisante
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE StockDisponible s SET " +
+           "s.quantiteReservee = COALESCE(s.quantiteReservee, 0) + :quantite, " +
+           "s.quantiteDisponible = COALESCE(s.quantitePhysique, 0) - COALESCE(s.quantiteReservee, 0) - :quantite, " +
+           "s.lastUpdate = LOCAL DATETIME " +
+           "WHERE s.id = :id AND s.quantiteDisponible >= :quantite")
+    int reserverSiDisponible(@Param("id") Long id, @Param("quantite") BigDecimal quantite);
+
+    // Libération d'une réservation
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE StockDisponible s SET " +
+           "s.quantiteReservee = COALESCE(s.quantiteReservee, 0) - :quantite, " +
+           "s.quantiteDisponible = COALESCE(s.quantitePhysique, 0) - COALESCE(s.quantiteReservee, 0) + :quantite, " +
+           "s.lastUpdate = LOCAL DATETIME " +
+           "WHERE s.id = :id")
+    int libererReservation(@Param("id") Long id, @Param("quantite") BigDecimal quantite);
+
+    // Libération de toutes les réservations actives d'une commande client (une mise à jour par ligne de stock)
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE stock_disponible s SET " +
+                   "quantite_reservee = COALESCE(s.quantite_reservee, 0) - r.quantite, " +
+                   "quantite_disponible = COALESCE(s.quantite_physique, 0) - COALESCE(s.quantite_reservee, 0) + r.quantite, " +
+                   "last_update = LOCALTIMESTAMP " +
+                   "FROM (SELECT article_id, depot_id, lot_numero, SUM(quantite_reservee) AS quantite " +
+                   "      FROM reservation_stock WHERE commande_client_id = :commandeClientId AND statut = 'ACTIVE' " +
+                   "      GROUP BY article_id, depot_id, lot_numero) r " +
+                   "WHERE s.article_id = r.article_id AND s.depot_id = r.depot_id " +
+                   "AND s.lot_numero IS NOT DISTINCT FROM r.lot_numero", nativeQuery = true)
+    int libererReservationsCommande(@Param("commandeClientId") Long commandeClientId);
+
+    // Quantité physique et valeur par article d'un dépôt (coût moyen des écarts d'inventaire)
+    @Query("SELECT s.article.id AS articleId, COALESCE(SUM(s.quantitePhysique), 0) AS quantite, " +
+           "COALESCE(SUM(s.valeurStock), 0) AS valeur FROM StockDisponible s " +
+           "WHERE s.depot.id = :depotId AND s.article.id IN :articleIds GROUP BY s.article.id")
+    List<ValeurArticle> sumValeurParArticle(@Param("depotId") Long depotId,
+                                            @Param("articleIds") Collection<Long> articleIds);
+
     // Mise à jour de la quantité réservée
     @Modifying
     @Query("UPDATE StockDisponible s SET s.quantiteReservee = s.quantiteReservee + :quantite, " +
@@ -73,4 +185,55 @@ public interface StockDisponibleRepository extends JpaRepository<StockDisponible
            "s.quantiteDisponible = s.quantitePhysique - (s.quantiteReservee - :quantite) " +
            "WHERE s.id = :id")
     void decrementerReservation(@Param("id") Long id, @Param("quantite") BigDecimal quantite);
+
+    // TODO.YML Ligne 26: Disponible par article d'un dépôt, augmenté de ce que la commande y a déjà réservé
+    @Query(value = "SELECT s.article_id AS articleId, SUM(COALESCE(s.quantite_disponible, 0)) + " +
+                   "COALESCE((SELECT SUM(r.quantite_reservee) FROM reservation_stock r " +
+                   "WHERE r.commande_client_id = :commandeClientId AND r.depot_id = :depotId " +
+                   "AND r.article_id = s.article_id AND r.statut = 'ACTIVE'), 0) AS quantite " +
+                   "FROM stock_disponible s WHERE s.depot_id = :depotId AND s.article_id IN (:articleIds) " +
+                   "GROUP BY s.article_id", nativeQuery = true)
+    List<QuantiteArticle> sumDisponiblePourCommande(@Param("depotId") Long depotId,
+                                                    @Param("commandeClientId") Long commandeClientId,
+                                                    @Param("articleIds") Collection<Long> articleIds);
+
+    /**
+     * Clé et disponible d'une ligne de stock
+     */
+    interface LigneStock {
+        Long getId();
+        Long getArticleId();
+        Long getDepotId();
+        String getLotNumero();
+        BigDecimal getQuantiteDisponible();
+    }
+
+    /**
+     * Ligne de stock candidate à une réservation
+     */
+    interface StockReservable {
+        Long getId();
+        Long getArticleId();
+        String getLotNumero();
+        BigDecimal getQuantiteDisponible();
+        LocalDate getDluo();
+        LocalDate getDateFabrication();
+    }
+
+    /**
+     * Quantité physique et valeur cumulées d'un article
+     */
+    interface ValeurArticle {
+        Long getArticleId();
+        BigDecimal getQuantite();
+        BigDecimal getValeur();
+    }
+
+    /**
+     * Quantité cumulée d'un article
+     */
+    interface QuantiteArticle {
+        Long getArticleId();
+        BigDecimal getQuantite();
+    }
 }
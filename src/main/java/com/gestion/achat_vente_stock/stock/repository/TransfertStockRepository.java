@@ -38,7 +38,9 @@ public interface TransfertStockRepository extends JpaRepository<TransfertStock,
     // Transferts par période
     List<TransfertStock> findByDateDemandeBetween(LocalDate debut, LocalDate fin);
 
-    // Dernier numéro de transfert
-    @Query("SELECT MAX(t.numero) FROM TransfertStock t WHERE t.numero LIKE :prefix%")
-    Optional<String> findLastNumeroByPrefix(@Param("prefix") String prefix);
+    /** Plus grande séquence numérique des numéros du préfixe (amorce de la numérotation) */
+    @Query(value = "SELECT MAX(CAST(SUBSTRING(numero, LENGTH(:prefix) + 1) AS BIGINT)) FROM transfert_stock " +
+            "WHERE numero LIKE :prefix || '%' AND SUBSTRING(numero, LENGTH(:prefix) + 1) ~ '^[0-9]+$'",
+            nativeQuery = true)
+    Optional<Long> findDerniereSequence(@Param("prefix") String prefix);
 }
@@ -0,0 +1,211 @@
+package com.gestion.achat_vente_stock.stock.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TODO.YML Lignes 21-23, 36: Disponible à promettre (ATP) pour la saisie des devis et commandes
+ * Par article et dépôt : stock physique, réservé et disponible (stock_disponible), quantités à recevoir
+ * des BC validés non encore entrées en stock, et quantités expédiées par des transferts en transit.
+ * Projection en mémoire tenue par article :
+ * - un article absent est chargé à la demande, avec tous les autres absents de la demande, en une requête
+ * - un article est retiré de la projection après le commit de toute opération qui modifie l'une de ses
+ *   composantes (mouvement, réservation, BC validé), puis rechargé à la demande suivante
+ * - la projection est vidée périodiquement (changements faits par une autre instance ou hors services)
+ * Un numéro de génération par article évite de conserver une valeur lue avant une invalidation concurrente.
+ */
+@Service
+@Slf4j
+public class DisponibiliteService {
+
+    // BC dont les quantités non reçues sont attendues en stock
+    private static final String STATUTS_BC_ATTENDUS = "'VALIDEE', 'APPROUVEE', 'ENVOYEE'";
+
+    private static final String SQL_DISPONIBILITE = "WITH articles AS (SELECT unnest(CAST(? AS BIGINT[])) AS id), " +
+            "stock AS (" +
+            "SELECT s.article_id, s.depot_id, SUM(COALESCE(s.quantite_physique, 0)) AS physique, " +
+            "SUM(COALESCE(s.quantite_reservee, 0)) AS reservee, SUM(COALESCE(s.quantite_disponible, 0)) AS disponible " +
+            "FROM stock_disponible s JOIN articles a ON a.id = s.article_id GROUP BY s.article_id, s.depot_id), " +
+            "commande AS (" +
+            "SELECT bc.id AS bc_id, bc.depot_livraison_id AS depot_id, l.article_id, SUM(l.quantite) AS quantite " +
+            "FROM ligne_bc l JOIN bon_commande bc ON bc.id = l.bon_commande_id JOIN articles a ON a.id = l.article_id " +
+            "WHERE bc.statut IN (" + STATUTS_BC_ATTENDUS + ") AND bc.depot_livraison_id IS NOT NULL " +
+            "GROUP BY bc.id, bc.depot_livraison_id, l.article_id), " +
+            // Reçu : réceptions déjà entrées en stock (le conforme est alors compté dans le physique)
+            "recu AS (" +
+            "SELECT br.bon_commande_id AS bc_id, l.article_id, SUM(COALESCE(l.quantite_recue, 0)) AS quantite " +
+            "FROM ligne_br l JOIN bon_reception br ON br.id = l.bon_reception_id JOIN articles a ON a.id = l.article_id " +
+            "WHERE br.entree_stock_at IS NOT NULL GROUP BY br.bon_commande_id, l.article_id), " +
+            "a_recevoir AS (" +
+            "SELECT c.article_id, c.depot_id, SUM(GREATEST(c.quantite - COALESCE(r.quantite, 0), 0)) AS quantite " +
+            "FROM commande c LEFT JOIN recu r ON r.bc_id = c.bc_id AND r.article_id = c.article_id " +
+            "GROUP BY c.article_id, c.depot_id), " +
+            "en_transit AS (" +
+            "SELECT l.article_id, t.depot_destination_id AS depot_id, SUM(COALESCE(l.quantite_expedie, 0)) AS quantite " +
+            "FROM ligne_transfert l JOIN transfert_stock t ON t.id = l.transfert_id JOIN articles a ON a.id = l.article_id " +
+            "WHERE t.statut = 'EN_TRANSIT' GROUP BY l.article_id, t.depot_destination_id) " +
+            "SELECT article_id, depot_id, SUM(physique) AS physique, SUM(reservee) AS reservee, " +
+            "SUM(disponible) AS disponible, SUM(a_recevoir) AS a_recevoir, SUM(en_transit) AS en_transit FROM (" +
+            "SELECT article_id, depot_id, physique, reservee, disponible, 0 AS a_recevoir, 0 AS en_transit FROM stock " +
+            "UNION ALL SELECT article_id, depot_id, 0, 0, 0, quantite, 0 FROM a_recevoir " +
+            "UNION ALL SELECT article_id, depot_id, 0, 0, 0, 0, quantite FROM en_transit) d " +
+            "GROUP BY article_id, depot_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Article -> disponibilité par dépôt (table immuable, vide si l'article n'a ni stock ni flux)
+    private final Map<Long, Map<Long, Disponibilite>> projection = new ConcurrentHashMap<>();
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+
+    public DisponibiliteService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Disponibilité de chaque article dans chaque dépôt demandé (N articles x M dépôts) ;
+     * sans dépôt précisé, tous les dépôts où l'article a du stock ou des flux attendus
+     */
+    public List<Disponibilite> consulter(Collection<Long> articleIds, Collection<Long> depotIds) {
+        Set<Long> articles = new LinkedHashSet<>(articleIds);
+        Map<Long, Map<Long, Disponibilite>> parArticle = new HashMap<>();
+        List<Long> manquants = new ArrayList<>();
+        for (Long articleId : articles) {
+            Map<Long, Disponibilite> parDepot = projection.get(articleId);
+            if (parDepot != null) {
+                parArticle.put(articleId, parDepot);
+            } else {
+                manquants.add(articleId);
+            }
+        }
+        if (!manquants.isEmpty()) {
+            parArticle.putAll(charger(manquants));
+        }
+
+        List<Disponibilite> resultat = new ArrayList<>();
+        for (Long articleId : articles) {
+            Map<Long, Disponibilite> parDepot = parArticle.get(articleId);
+            Collection<Long> depots = depotIds == null || depotIds.isEmpty()
+                    ? new TreeSet<>(parDepot.keySet()) : depotIds;
+            for (Long depotId : depots) {
+                Disponibilite disponibilite = parDepot.get(depotId);
+                resultat.add(disponibilite != null ? disponibilite : Disponibilite.vide(articleId, depotId));
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Disponibilité d'un article dans un dépôt
+     */
+    public Disponibilite consulter(Long articleId, Long depotId) {
+        return consulter(List.of(articleId), List.of(depotId)).get(0);
+    }
+
+    /**
+     * À appeler dans la transaction qui modifie le stock, les réservations ou les flux attendus des articles :
+     * retrait de la projection après son commit
+     */
+    public void invaliderApresCommit(Collection<Long> articleIds) {
+        Set<Long> articles = Set.copyOf(articleIds);
+        if (articles.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            articles.forEach(this::invalider);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                articles.forEach(DisponibiliteService.this::invalider);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${stock.disponibilite.rechargement-ms:300000}")
+    public void vider() {
+        int articles = projection.size();
+        projection.keySet().forEach(this::invalider);
+        if (articles > 0) {
+            log.debug("Disponibilité: projection vidée ({} article(s))", articles);
+        }
+    }
+
+    private void invalider(Long articleId) {
+        generations.merge(articleId, 1L, Long::sum);
+        projection.remove(articleId);
+    }
+
+    /**
+     * Charge les articles en une requête ; un article invalidé pendant le chargement n'est pas conservé
+     */
+    private Map<Long, Map<Long, Disponibilite>> charger(List<Long> articleIds) {
+        Map<Long, Long> generationsLues = new HashMap<>();
+        for (Long articleId : articleIds) {
+            generationsLues.put(articleId, generations.getOrDefault(articleId, 0L));
+        }
+
+        Map<Long, Map<Long, Disponibilite>> chargees = new HashMap<>();
+        articleIds.forEach(id -> chargees.put(id, new HashMap<>()));
+        jdbcTemplate.query(SQL_DISPONIBILITE,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", articleIds.toArray())),
+                rs -> {
+                    Disponibilite disponibilite = Disponibilite.de(rs.getLong("article_id"), rs.getLong("depot_id"),
+                            rs.getBigDecimal("physique"), rs.getBigDecimal("reservee"), rs.getBigDecimal("disponible"),
+                            rs.getBigDecimal("a_recevoir"), rs.getBigDecimal("en_transit"));
+                    chargees.get(disponibilite.articleId()).put(disponibilite.depotId(), disponibilite);
+                });
+
+        // Lecture dans une transaction d'écriture : elle peut contenir des changements non validés
+        boolean conserver = !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        Map<Long, Map<Long, Disponibilite>> resultat = new HashMap<>();
+        chargees.forEach((articleId, parDepot) -> {
+            Map<Long, Disponibilite> fige = Map.copyOf(parDepot);
+            resultat.put(articleId, fige);
+            if (!conserver) {
+                return;
+            }
+            projection.put(articleId, fige);
+            // Invalidation survenue depuis la lecture : la valeur chargée est peut-être antérieure au commit
+            if (!generationsLues.get(articleId).equals(generations.getOrDefault(articleId, 0L))) {
+                projection.remove(articleId, fige);
+            }
+        });
+        return resultat;
+    }
+
+    /**
+     * Disponibilité d'un article dans un dépôt ; à promettre = disponible + à recevoir + en transit
+     */
+    public record Disponibilite(Long articleId, Long depotId, BigDecimal physique, BigDecimal reservee,
+                                BigDecimal disponible, BigDecimal aRecevoir, BigDecimal enTransit,
+                                BigDecimal aPromettre) {
+
+        static Disponibilite de(Long articleId, Long depotId, BigDecimal physique, BigDecimal reservee,
+                                BigDecimal disponible, BigDecimal aRecevoir, BigDecimal enTransit) {
+            return new Disponibilite(articleId, depotId, physique, reservee, disponible, aRecevoir, enTransit,
+                    disponible.add(aRecevoir).add(enTransit));
+        }
+
+        static Disponibilite vide(Long articleId, Long depotId) {
+            return de(articleId, depotId, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+                    BigDecimal.ZERO);
+        }
+    }
+}
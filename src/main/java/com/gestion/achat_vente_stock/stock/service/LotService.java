@@ -2,6 +2,7 @@ package com.gestion.achat_vente_stock.stock.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.model.Fournisseur;
 import com.gestion.achat_vente_stock.stock.model.Lot;
@@ -14,8 +15,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -30,6 +34,7 @@ public class LotService {
 
     private final LotRepository lotRepository;
     private final AuditService auditService;
+    private final NumerotationService numerotationService;
 
     // Statuts de lot
     public static final String STATUT_ACTIF = "ACTIF";
@@ -61,18 +66,64 @@ public class LotService {
         Lot saved = lotRepository.save(lot);
 
         // Audit
-        auditService.logAction(utilisateur, "lot", saved.getId(),
-                "CREATE", null, saved.toString(), null);
+        auditService.logCreation(utilisateur, "lot", saved.getId(),
+                "CREATE", saved);
 
         return saved;
     }
 
+    /**
+     * TODO.YML Ligne 37: Créer les lots d'une réception en une fois
+     * Numéros pris sur un bloc par article, lots insérés par lots JDBC ; résultat dans l'ordre des demandes
+     */
+    public List<Lot> creerLots(List<NouveauLot> demandes, Utilisateur utilisateur) {
+        if (demandes.isEmpty()) {
+            return List.of();
+        }
+        Map<String, List<NouveauLot>> parArticle = new LinkedHashMap<>();
+        for (NouveauLot demande : demandes) {
+            if (Boolean.TRUE.equals(demande.article().getTracabiliteLot())) {
+                validateDates(demande.dateFabrication(), demande.dluo(), demande.dlc());
+            }
+            parArticle.computeIfAbsent(demande.article().getCode(), code -> new ArrayList<>()).add(demande);
+        }
+
+        Map<NouveauLot, String> numeros = new IdentityHashMap<>();
+        for (Map.Entry<String, List<NouveauLot>> entree : parArticle.entrySet()) {
+            String prefixe = "LOT-" + entree.getKey();
+            List<String> bloc = numerotationService.genererNumerosJournaliers(prefixe, 4, entree.getValue().size(),
+                    cle -> lotRepository.findDerniereSequence(cle).orElse(0L));
+            for (int i = 0; i < bloc.size(); i++) {
+                numeros.put(entree.getValue().get(i), bloc.get(i));
+            }
+        }
+
+        List<Lot> lots = new ArrayList<>(demandes.size());
+        for (NouveauLot demande : demandes) {
+            Lot lot = new Lot();
+            lot.setNumero(numeros.get(demande));
+            lot.setArticle(demande.article());
+            lot.setFournisseur(demande.fournisseur());
+            lot.setDateFabrication(demande.dateFabrication());
+            lot.setDluo(demande.dluo());
+            lot.setDlc(demande.dlc());
+            lot.setStatut(STATUT_ACTIF);
+            lots.add(lot);
+        }
+        List<Lot> saved = lotRepository.saveAll(lots);
+
+        for (Lot lot : saved) {
+            auditService.logCreation(utilisateur, "lot", lot.getId(), "CREATE", lot);
+        }
+        return saved;
+    }
+
     /**
      * TODO.YML Ligne 38: Bloquer un lot (manuellement)
      */
     public Lot bloquerLot(Long lotId, String motifBlocage, Utilisateur utilisateur) {
         Lot lot = trouverParId(lotId);
-        String ancienStatut = lot.getStatut();
+        Map<String, Object> etatAvant = auditService.capturer(lot);
 
         lot.setStatut(STATUT_BLOQUE);
         lot.setMotifBlocage(motifBlocage);
@@ -81,8 +132,7 @@ public class LotService {
         Lot saved = lotRepository.save(lot);
 
         // Audit
-        auditService.logAction(utilisateur, "lot", saved.getId(),
-                "BLOQUER", ancienStatut, STATUT_BLOQUE + " - " + motifBlocage, null);
+        auditService.logModification(utilisateur, "lot", saved.getId(), "BLOQUER", etatAvant, saved);
 
         return saved;
     }
@@ -98,7 +148,7 @@ public class LotService {
             throw new RuntimeException("Impossible de débloquer un lot expiré");
         }
 
-        String ancienStatut = lot.getStatut();
+        Map<String, Object> etatAvant = auditService.capturer(lot);
         lot.setStatut(STATUT_ACTIF);
         lot.setMotifBlocage(null);
         lot.setBloqueAt(null);
@@ -106,8 +156,7 @@ public class LotService {
         Lot saved = lotRepository.save(lot);
 
         // Audit
-        auditService.logAction(utilisateur, "lot", saved.getId(),
-                "DEBLOQUER", ancienStatut, STATUT_ACTIF, null);
+        auditService.logModification(utilisateur, "lot", saved.getId(), "DEBLOQUER", etatAvant, saved);
 
         return saved;
     }
@@ -166,18 +215,8 @@ public class LotService {
      * Générer un numéro de lot unique
      */
     private String genererNumeroLot(String codeArticle) {
-        String prefix = "LOT-" + codeArticle + "-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"))
-                + "-";
-        Optional<String> lastNumero = lotRepository.findLastNumeroByPrefix(prefix);
-
-        int sequence = 1;
-        if (lastNumero.isPresent()) {
-            String last = lastNumero.get();
-            String seqStr = last.substring(last.lastIndexOf("-") + 1);
-            sequence = Integer.parseInt(seqStr) + 1;
-        }
-
-        return prefix + String.format("%04d", sequence);
+        return numerotationService.genererNumeroJournalier("LOT-" + codeArticle, 4,
+                cle -> lotRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     private void validateDates(LocalDate dateFabrication, LocalDate dluo, LocalDate dlc) {
@@ -233,4 +272,11 @@ public class LotService {
     public List<Lot> getLotsActifsFIFO(Long articleId) {
         return lotRepository.findLotsActifsByArticleFIFO(articleId);
     }
+
+    /**
+     * Lot à créer (création en masse)
+     */
+    public record NouveauLot(Article article, Fournisseur fournisseur, LocalDate dateFabrication,
+                             LocalDate dluo, LocalDate dlc) {
+    }
 }
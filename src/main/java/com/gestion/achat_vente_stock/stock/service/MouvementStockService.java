@@ -2,22 +2,38 @@ package com.gestion.achat_vente_stock.stock.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
+import com.gestion.achat_vente_stock.inventaire.service.GelInventaireService;
 import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.model.Depot;
 import com.gestion.achat_vente_stock.stock.model.MouvementStock;
 import com.gestion.achat_vente_stock.stock.model.StockDisponible;
 import com.gestion.achat_vente_stock.stock.repository.MouvementStockRepository;
 import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import com.gestion.achat_vente_stock.stock.service.RegistreStockService.VariationStock;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -35,6 +51,17 @@ public class MouvementStockService {
     private final StockDisponibleRepository stockDisponibleRepository;
     private final AuditService auditService;
     private final ValorisationService valorisationService;
+    private final NumerotationService numerotationService;
+    private final RegistreStockService registreStockService;
+    private final PointStockService pointStockService;
+    private final GelInventaireService gelInventaireService;
+    private final DisponibiliteService disponibiliteService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String SQL_INSERTION = "INSERT INTO mouvement_stock " +
+            "(id, numero, article_id, depot_id, type_mouvement, quantite, unite, cout_unitaire, valeur_totale, " +
+            "document_id, type_document, date_mouvement, created_at, created_by, emplacement, lot_numero, dluo) " +
+            "VALUES (nextval('mouvement_stock_id_seq'), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
     // Types de mouvement
     public static final String ENTREE_RECEPTION = "ENTREE_RECEPTION";
@@ -57,6 +84,8 @@ public class MouvementStockService {
                                                 Utilisateur utilisateur) {
         
         validateTypeMouvementEntree(typeMouvement);
+        // TODO.YML Ligne 47: Article/lot gelé par un inventaire en cours
+        gelInventaireService.verifierMouvement(article, depot, lotNumero, typeDocument);
         
         MouvementStock mouvement = new MouvementStock();
         mouvement.setNumero(genererNumeroMouvement("MVT"));
@@ -77,18 +106,18 @@ public class MouvementStockService {
         mouvement.setCreatedBy(utilisateur);
 
         MouvementStock saved = mouvementStockRepository.save(mouvement);
+        pointStockService.invaliderDepuis(saved.getDateMouvement());
 
         // Mettre à jour le stock disponible
         mettreAJourStockEntree(article, depot, emplacement, lotNumero, quantite, coutUnitaire);
+        disponibiliteService.invaliderApresCommit(List.of(article.getId()));
 
-        // TODO.YML Ligne 39: Mettre à jour le CUMP si méthode valorisation = CUMP
-        if ("CUMP".equals(article.getMethodeValorisation())) {
-            valorisationService.recalculerCUMP(article.getId());
-        }
+        // TODO.YML Ligne 39: Nouvelle couche de coût (FIFO) ou mise à jour du CUMP
+        valorisationService.enregistrerEntree(saved);
 
         // Audit
-        auditService.logAction(utilisateur, "mouvement_stock", saved.getId(),
-                "CREATE_ENTREE", null, saved.toString(), null);
+        auditService.logCreation(utilisateur, "mouvement_stock", saved.getId(),
+                "CREATE_ENTREE", saved);
 
         return saved;
     }
@@ -102,15 +131,11 @@ public class MouvementStockService {
                                                 Utilisateur utilisateur) {
         
         validateTypeMouvementSortie(typeMouvement);
-        
-        // Vérifier le stock disponible
-        BigDecimal stockDispo = getQuantiteDisponible(article.getId(), depot.getId(), lotNumero);
-        if (stockDispo.compareTo(quantite) < 0) {
-            throw new RuntimeException("Stock insuffisant. Disponible: " + stockDispo + ", Demandé: " + quantite);
-        }
+        // TODO.YML Ligne 47: Article/lot gelé par un inventaire en cours
+        gelInventaireService.verifierMouvement(article, depot, lotNumero, typeDocument);
 
-        // TODO.YML Ligne 39: Obtenir le coût unitaire selon méthode valorisation
-        BigDecimal coutUnitaire = valorisationService.getCoutSortie(article, depot, quantite);
+        // TODO.YML Ligne 39: Obtenir le coût unitaire selon méthode valorisation (consomme les couches FIFO)
+        BigDecimal coutUnitaire = valorisationService.consommerCoutSortie(article, depot, lotNumero, quantite);
 
         MouvementStock mouvement = new MouvementStock();
         mouvement.setNumero(genererNumeroMouvement("MVT"));
@@ -130,32 +155,183 @@ public class MouvementStockService {
         mouvement.setCreatedBy(utilisateur);
 
         MouvementStock saved = mouvementStockRepository.save(mouvement);
+        pointStockService.invaliderDepuis(saved.getDateMouvement());
 
         // Mettre à jour le stock disponible
         mettreAJourStockSortie(article, depot, emplacement, lotNumero, quantite, coutUnitaire);
+        disponibiliteService.invaliderApresCommit(List.of(article.getId()));
+
+        // TODO.YML Ligne 39: Retirer la sortie des totaux CUMP
+        valorisationService.enregistrerSortie(saved);
 
         // Audit
-        auditService.logAction(utilisateur, "mouvement_stock", saved.getId(),
-                "CREATE_SORTIE", null, saved.toString(), null);
+        auditService.logCreation(utilisateur, "mouvement_stock", saved.getId(),
+                "CREATE_SORTIE", saved);
 
         return saved;
     }
 
+    /**
+     * TODO.YML Lignes 31-33: Poster un lot de mouvements (transfert, ajustements, réception...)
+     * en un nombre constant d'échanges avec la base :
+     * - toutes les lignes validées avant toute écriture (dont le gel d'inventaire), numéros pris sur un seul bloc
+     * - entrées enregistrées (mouvements, stock, couches FIFO et CUMP) avant la valorisation des sorties :
+     *   une sortie peut consommer une entrée du même lot
+     * - puis sorties enregistrées de la même façon
+     * - mouvements insérés par lot JDBC, stock disponible mis à jour par lots (RegistreStockService.appliquerLot),
+     *   CUMP recalculé une fois par article
+     */
+    public List<MouvementStock> posterLot(List<LigneMouvement> lignes, Utilisateur utilisateur) {
+        if (lignes.isEmpty()) {
+            return List.of();
+        }
+        for (LigneMouvement ligne : lignes) {
+            if (ligne.entree()) {
+                validateTypeMouvementEntree(ligne.typeMouvement());
+            } else {
+                validateTypeMouvementSortie(ligne.typeMouvement());
+            }
+            if (ligne.quantite() == null || ligne.quantite().signum() <= 0) {
+                throw new RuntimeException("Quantité invalide pour l'article " + ligne.article().getCode()
+                        + ": " + ligne.quantite());
+            }
+            if (ligne.entree() && ligne.coutUnitaire() == null) {
+                throw new RuntimeException("Coût unitaire manquant pour l'entrée de l'article "
+                        + ligne.article().getCode());
+            }
+            gelInventaireService.verifierMouvement(ligne.article(), ligne.depot(), ligne.lotNumero(),
+                    ligne.typeDocument());
+        }
+
+        List<String> numeros = numerotationService.genererNumerosJournaliers("MVT", 5, lignes.size(),
+                cle -> mouvementStockRepository.findDerniereSequence(cle).orElse(0L));
+        LocalDateTime maintenant = LocalDateTime.now();
+        MouvementStock[] mouvements = new MouvementStock[lignes.size()];
+
+        // Entrées : coût fourni ; couches FIFO et CUMP enregistrés avant les sorties
+        List<MouvementStock> entrees = new ArrayList<>();
+        for (int i = 0; i < lignes.size(); i++) {
+            LigneMouvement ligne = lignes.get(i);
+            if (ligne.entree()) {
+                mouvements[i] = nouveauMouvement(ligne, numeros.get(i), ligne.coutUnitaire(), maintenant, utilisateur);
+                entrees.add(mouvements[i]);
+            }
+        }
+        enregistrer(entrees, true);
+
+        // Sorties : coût hors FIFO calculé une fois par article, FIFO consommé ligne à ligne
+        Map<Long, BigDecimal> coutsSortie = new HashMap<>();
+        List<MouvementStock> sorties = new ArrayList<>();
+        for (int i = 0; i < lignes.size(); i++) {
+            LigneMouvement ligne = lignes.get(i);
+            if (ligne.entree()) {
+                continue;
+            }
+            Article article = ligne.article();
+            BigDecimal coutUnitaire = "FIFO".equals(article.getMethodeValorisation())
+                    ? valorisationService.consommerCoutSortie(article, ligne.depot(), ligne.lotNumero(), ligne.quantite())
+                    : coutsSortie.computeIfAbsent(article.getId(),
+                            id -> valorisationService.getCoutSortie(article, ligne.depot(), ligne.quantite()));
+            mouvements[i] = nouveauMouvement(ligne, numeros.get(i), coutUnitaire, maintenant, utilisateur);
+            sorties.add(mouvements[i]);
+        }
+        enregistrer(sorties, false);
+
+        pointStockService.invaliderDepuis(maintenant.toLocalDate());
+        disponibiliteService.invaliderApresCommit(lignes.stream().map(l -> l.article().getId()).toList());
+
+        for (MouvementStock mouvement : mouvements) {
+            auditService.logCreation(utilisateur, "mouvement_stock", mouvement.getId(),
+                    mouvement.getTypeMouvement().startsWith("ENTREE") ? "CREATE_ENTREE" : "CREATE_SORTIE", mouvement);
+        }
+        return List.of(mouvements);
+    }
+
+    /**
+     * Mouvements valorisés d'un même sens : insertion par lot, stock disponible, puis couches FIFO et CUMP
+     * (la reprise CUMP d'un premier mouvement lit le stock, qui doit déjà l'inclure)
+     */
+    private void enregistrer(List<MouvementStock> mouvements, boolean entree) {
+        insererLot(mouvements);
+        List<VariationStock> variations = new ArrayList<>(mouvements.size());
+        for (MouvementStock m : mouvements) {
+            variations.add(new VariationStock(m.getArticle(), m.getDepot(), m.getEmplacement(), m.getLotNumero(),
+                    m.getQuantite(), m.getQuantite().multiply(m.getCoutUnitaire()), entree));
+        }
+        registreStockService.appliquerLot(variations);
+        valorisationService.enregistrerLot(mouvements);
+    }
+
+    private static MouvementStock nouveauMouvement(LigneMouvement ligne, String numero, BigDecimal coutUnitaire,
+                                                   LocalDateTime maintenant, Utilisateur utilisateur) {
+        MouvementStock mouvement = new MouvementStock();
+        mouvement.setNumero(numero);
+        mouvement.setArticle(ligne.article());
+        mouvement.setDepot(ligne.depot());
+        mouvement.setTypeMouvement(ligne.typeMouvement());
+        mouvement.setQuantite(ligne.quantite());
+        mouvement.setUnite(ligne.article().getUniteMesure());
+        mouvement.setCoutUnitaire(coutUnitaire);
+        mouvement.setValeurTotale(ligne.quantite().multiply(coutUnitaire).setScale(4, RoundingMode.HALF_UP));
+        mouvement.setEmplacement(ligne.emplacement());
+        mouvement.setLotNumero(ligne.lotNumero());
+        mouvement.setDluo(ligne.entree() ? ligne.dluo() : null);
+        mouvement.setDocumentId(ligne.documentId());
+        mouvement.setTypeDocument(ligne.typeDocument());
+        mouvement.setDateMouvement(maintenant.toLocalDate());
+        mouvement.setCreatedAt(maintenant);
+        mouvement.setCreatedBy(utilisateur);
+        return mouvement;
+    }
+
+    /**
+     * Insertion JDBC par lot ; les identifiants générés sont reportés sur les mouvements
+     */
+    private void insererLot(List<MouvementStock> mouvements) {
+        if (mouvements.isEmpty()) {
+            return;
+        }
+        KeyHolder cles = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connexion -> connexion.prepareStatement(SQL_INSERTION, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        MouvementStock m = mouvements.get(i);
+                        ps.setString(1, m.getNumero());
+                        ps.setLong(2, m.getArticle().getId());
+                        ps.setLong(3, m.getDepot().getId());
+                        ps.setString(4, m.getTypeMouvement());
+                        ps.setBigDecimal(5, m.getQuantite());
+                        ps.setString(6, m.getUnite());
+                        ps.setBigDecimal(7, m.getCoutUnitaire());
+                        ps.setBigDecimal(8, m.getValeurTotale());
+                        ps.setObject(9, m.getDocumentId(), Types.BIGINT);
+                        ps.setString(10, m.getTypeDocument());
+                        ps.setDate(11, Date.valueOf(m.getDateMouvement()));
+                        ps.setTimestamp(12, Timestamp.valueOf(m.getCreatedAt()));
+                        ps.setObject(13, m.getCreatedBy() != null ? m.getCreatedBy().getId() : null, Types.BIGINT);
+                        ps.setString(14, m.getEmplacement());
+                        ps.setString(15, m.getLotNumero());
+                        ps.setDate(16, m.getDluo() != null ? Date.valueOf(m.getDluo()) : null);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return mouvements.size();
+                    }
+                }, cles);
+        List<Map<String, Object>> identifiants = cles.getKeyList();
+        for (int i = 0; i < mouvements.size(); i++) {
+            mouvements.get(i).setId(((Number) identifiants.get(i).get("id")).longValue());
+        }
+    }
+
     /**
      * TODO.YML Ligne 33: Générer un numéro de mouvement unique et non réutilisable
      */
     private String genererNumeroMouvement(String prefix) {
-        String datePrefix = prefix + "-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + "-";
-        Optional<String> lastNumero = mouvementStockRepository.findLastNumeroByPrefix(datePrefix);
-        
-        int sequence = 1;
-        if (lastNumero.isPresent()) {
-            String last = lastNumero.get();
-            String seqStr = last.substring(last.lastIndexOf("-") + 1);
-            sequence = Integer.parseInt(seqStr) + 1;
-        }
-        
-        return datePrefix + String.format("%05d", sequence);
+        return numerotationService.genererNumeroJournalier(prefix, 5,
+                cle -> mouvementStockRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     /**
@@ -163,57 +339,18 @@ public class MouvementStockService {
      */
     private void mettreAJourStockEntree(Article article, Depot depot, String emplacement,
                                          String lotNumero, BigDecimal quantite, BigDecimal coutUnitaire) {
-        Optional<StockDisponible> stockOpt = stockDisponibleRepository
-                .findByArticleIdAndDepotIdAndLotNumero(article.getId(), depot.getId(), lotNumero);
-
-        StockDisponible stock;
-        if (stockOpt.isPresent()) {
-            stock = stockOpt.get();
-            // Recalculer la valeur moyenne
-            BigDecimal ancienneValeur = stock.getValeurStock() != null ? stock.getValeurStock() : BigDecimal.ZERO;
-            BigDecimal nouvelleValeur = quantite.multiply(coutUnitaire);
-            BigDecimal ancienneQte = stock.getQuantitePhysique() != null ? stock.getQuantitePhysique() : BigDecimal.ZERO;
-            BigDecimal nouvelleQte = ancienneQte.add(quantite);
-            
-            stock.setQuantitePhysique(nouvelleQte);
-            stock.setValeurStock(ancienneValeur.add(nouvelleValeur));
-        } else {
-            stock = new StockDisponible();
-            stock.setArticle(article);
-            stock.setDepot(depot);
-            stock.setEmplacement(emplacement);
-            stock.setLotNumero(lotNumero);
-            stock.setQuantitePhysique(quantite);
-            stock.setQuantiteReservee(BigDecimal.ZERO);
-            stock.setValeurStock(quantite.multiply(coutUnitaire));
-        }
-        
-        // Recalculer quantité disponible
-        stock.setQuantiteDisponible(stock.getQuantitePhysique().subtract(
-                stock.getQuantiteReservee() != null ? stock.getQuantiteReservee() : BigDecimal.ZERO));
-        
-        stockDisponibleRepository.save(stock);
+        registreStockService.appliquerEntree(article, depot, emplacement, lotNumero,
+                quantite, quantite.multiply(coutUnitaire));
     }
 
     /**
      * Mettre à jour le stock disponible après une sortie
+     * Le contrôle de disponibilité est fait par le décrément conditionnel du registre
      */
     private void mettreAJourStockSortie(Article article, Depot depot, String emplacement,
                                          String lotNumero, BigDecimal quantite, BigDecimal coutUnitaire) {
-        Optional<StockDisponible> stockOpt = stockDisponibleRepository
-                .findByArticleIdAndDepotIdAndLotNumero(article.getId(), depot.getId(), lotNumero);
-
-        if (stockOpt.isEmpty()) {
-            throw new RuntimeException("Stock non trouvé pour cet article/dépôt/lot");
-        }
-
-        StockDisponible stock = stockOpt.get();
-        stock.setQuantitePhysique(stock.getQuantitePhysique().subtract(quantite));
-        stock.setValeurStock(stock.getValeurStock().subtract(quantite.multiply(coutUnitaire)));
-        stock.setQuantiteDisponible(stock.getQuantitePhysique().subtract(
-                stock.getQuantiteReservee() != null ? stock.getQuantiteReservee() : BigDecimal.ZERO));
-        
-        stockDisponibleRepository.save(stock);
+        registreStockService.appliquerSortie(article, depot, lotNumero,
+                quantite, quantite.multiply(coutUnitaire));
     }
 
     /**
@@ -270,6 +407,17 @@ public class MouvementStockService {
         return mouvementStockRepository.findByDateMouvementBetween(debut, fin);
     }
 
+    /**
+     * Page de mouvements (du plus récent au plus ancien) avec filtres combinés facultatifs.
+     * Pagination par clé : la page suivante commence après l'id du dernier mouvement affiché.
+     */
+    @Transactional(readOnly = true)
+    public Slice<MouvementStock> rechercher(Long articleId, Long depotId, LocalDate dateDebut, LocalDate dateFin,
+                                            String typeMouvement, Long apresId, int taille) {
+        return mouvementStockRepository.rechercher(articleId, depotId, dateDebut, dateFin,
+                typeMouvement, apresId, PageRequest.of(0, taille));
+    }
+
     // TODO.YML Ligne 40: Vérifier les mouvements rétrodatés
     @Transactional(readOnly = true)
     public List<MouvementStock> getMouvementsRetrodates(LocalDate dateCloture) {
@@ -286,4 +434,26 @@ public class MouvementStockService {
                 .map(sd -> sd.getQuantitePhysique() != null ? sd.getQuantitePhysique() : BigDecimal.ZERO)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
+
+    /**
+     * Ligne d'un lot de mouvements ; le coût unitaire n'est utilisé que pour les entrées
+     */
+    public record LigneMouvement(boolean entree, Article article, Depot depot, String typeMouvement,
+                                 BigDecimal quantite, BigDecimal coutUnitaire, String emplacement,
+                                 String lotNumero, LocalDate dluo, Long documentId, String typeDocument) {
+
+        public static LigneMouvement entree(Article article, Depot depot, String typeMouvement, BigDecimal quantite,
+                                            BigDecimal coutUnitaire, String emplacement, String lotNumero,
+                                            LocalDate dluo, Long documentId, String typeDocument) {
+            return new LigneMouvement(true, article, depot, typeMouvement, quantite, coutUnitaire, emplacement,
+                    lotNumero, dluo, documentId, typeDocument);
+        }
+
+        public static LigneMouvement sortie(Article article, Depot depot, String typeMouvement, BigDecimal quantite,
+                                            String emplacement, String lotNumero, Long documentId,
+                                            String typeDocument) {
+            return new LigneMouvement(false, article, depot, typeMouvement, quantite, null, emplacement,
+                    lotNumero, null, documentId, typeDocument);
+        }
+    }
 }
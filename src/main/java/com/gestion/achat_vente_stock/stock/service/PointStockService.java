@@ -0,0 +1,152 @@
+package com.gestion.achat_vente_stock.stock.service;
+
+import com.gestion.achat_vente_stock.stock.repository.PointStockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * TODO.YML Lignes 40-41: Stock > Valorisation (clôture, rétrodatation, rapports)
+ * Stock et valeur à une date passée :
+ * - un point de stock par jour (fin de journée) est construit à partir du point précédent
+ *   et des mouvements du jour, sans relire tout l'historique
+ * - l'état à une date T = lignes du dernier point valide ≤ T + mouvements datés après ce point et jusqu'à T
+ * - un mouvement daté d'un jour déjà couvert (rétrodatation) invalide les points à partir de ce jour,
+ *   reconstruits au passage suivant du planificateur
+ * La construction verrouille mouvement_stock en écriture (SHARE) : le point contient exactement
+ * les mouvements validés, aucun ne peut être inséré pendant sa construction.
+ */
+@Service
+@Slf4j
+public class PointStockService {
+
+    // État à une date : lignes du point le plus proche + mouvements postérieurs au point (entrées +, sorties -)
+    private static final String SQL_ETAT = "WITH point AS (" +
+            "SELECT date_point FROM point_stock WHERE valide AND date_point <= ? " +
+            "ORDER BY date_point DESC LIMIT 1), " +
+            "variations AS (" +
+            "SELECT l.article_id, l.depot_id, l.lot_numero, l.quantite, l.valeur " +
+            "FROM ligne_point_stock l JOIN point p ON l.date_point = p.date_point " +
+            "WHERE (CAST(? AS BIGINT) IS NULL OR l.article_id = ?) AND (CAST(? AS BIGINT) IS NULL OR l.depot_id = ?) " +
+            "UNION ALL " +
+            "SELECT m.article_id, m.depot_id, m.lot_numero, " +
+            "CASE WHEN m.type_mouvement LIKE 'ENTREE%' THEN m.quantite ELSE -m.quantite END, " +
+            "CASE WHEN m.type_mouvement LIKE 'ENTREE%' THEN COALESCE(m.valeur_totale, 0) " +
+            "ELSE -COALESCE(m.valeur_totale, 0) END " +
+            "FROM mouvement_stock m " +
+            "WHERE m.date_mouvement <= ? AND m.date_mouvement > COALESCE((SELECT date_point FROM point), DATE '-infinity') " +
+            "AND (CAST(? AS BIGINT) IS NULL OR m.article_id = ?) AND (CAST(? AS BIGINT) IS NULL OR m.depot_id = ?)) " +
+            "SELECT article_id, depot_id, lot_numero, SUM(quantite) AS quantite, SUM(valeur) AS valeur " +
+            "FROM variations GROUP BY article_id, depot_id, lot_numero " +
+            "HAVING SUM(quantite) <> 0 OR SUM(valeur) <> 0";
+    private static final String SQL_VERROU_MOUVEMENTS = "LOCK TABLE mouvement_stock IN SHARE MODE";
+    private static final String SQL_SUPPRESSION_LIGNES = "DELETE FROM ligne_point_stock WHERE date_point = ?";
+    private static final String SQL_SUPPRESSION_POINT = "DELETE FROM point_stock WHERE date_point = ?";
+    // Point créé invalide : il n'est pas pris comme base de son propre calcul
+    private static final String SQL_CREATION_POINT = "INSERT INTO point_stock (date_point, construit_le, nombre_lignes, valide) " +
+            "VALUES (?, now(), 0, false)";
+    private static final String SQL_INSERTION_LIGNES = "INSERT INTO ligne_point_stock " +
+            "(id, date_point, article_id, depot_id, lot_numero, quantite, valeur) " +
+            "SELECT nextval('ligne_point_stock_id_seq'), ?, e.article_id, e.depot_id, e.lot_numero, e.quantite, e.valeur " +
+            "FROM (" + SQL_ETAT + ") e";
+    private static final String SQL_VALIDATION_POINT = "UPDATE point_stock SET nombre_lignes = ?, valide = true " +
+            "WHERE date_point = ?";
+
+    private final PointStockRepository pointStockRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public PointStockService(PointStockRepository pointStockRepository, JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager) {
+        this.pointStockRepository = pointStockRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Stock et valeur par article/dépôt/lot à la fin de la journée indiquée (filtres facultatifs)
+     */
+    @Transactional(readOnly = true)
+    public List<EtatStock> etatADate(LocalDate date, Long articleId, Long depotId) {
+        return jdbcTemplate.query(SQL_ETAT,
+                (rs, i) -> new EtatStock(rs.getLong("article_id"), rs.getLong("depot_id"), rs.getString("lot_numero"),
+                        rs.getBigDecimal("quantite"), rs.getBigDecimal("valeur")),
+                parametresEtat(date, articleId, depotId));
+    }
+
+    /**
+     * (Re)construit le point de stock d'une journée, dans sa propre transaction
+     */
+    public int construirePoint(LocalDate date) {
+        Integer nombre = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(SQL_VERROU_MOUVEMENTS);
+            jdbcTemplate.update(SQL_SUPPRESSION_LIGNES, Date.valueOf(date));
+            jdbcTemplate.update(SQL_SUPPRESSION_POINT, Date.valueOf(date));
+            jdbcTemplate.update(SQL_CREATION_POINT, Date.valueOf(date));
+
+            Object[] parametres = new Object[11];
+            parametres[0] = Date.valueOf(date);
+            System.arraycopy(parametresEtat(date, null, null), 0, parametres, 1, 10);
+            int lignes = jdbcTemplate.update(SQL_INSERTION_LIGNES, parametres);
+            jdbcTemplate.update(SQL_VALIDATION_POINT, lignes, Date.valueOf(date));
+            return lignes;
+        });
+        log.info("Point de stock du {} construit: {} lignes", date, nombre);
+        return nombre != null ? nombre : 0;
+    }
+
+    /**
+     * Mouvement daté d'un jour déjà couvert : appelé dans la transaction qui enregistre le mouvement,
+     * après son insertion
+     */
+    public void invaliderDepuis(LocalDate dateMouvement) {
+        int invalides = pointStockRepository.invaliderDepuis(dateMouvement);
+        if (invalides > 0) {
+            log.info("Mouvement rétrodaté au {}: {} point(s) de stock à reconstruire", dateMouvement, invalides);
+        }
+    }
+
+    /**
+     * Construit les points manquants jusqu'à la veille et reconstruit les points invalidés,
+     * du plus ancien au plus récent (chaque point s'appuie sur le précédent)
+     */
+    @Scheduled(cron = "${stock.points.cron:0 30 0 * * *}")
+    public void construirePointsEnAttente() {
+        LocalDate veille = LocalDate.now().minusDays(1);
+        TreeSet<LocalDate> dates = new TreeSet<>();
+        pointStockRepository.findByValideFalseOrderByDatePointAsc().forEach(p -> dates.add(p.getDatePoint()));
+        LocalDate suivante = pointStockRepository.findFirstByOrderByDatePointDesc()
+                .map(p -> p.getDatePoint().plusDays(1))
+                .orElse(veille);
+        for (LocalDate date = suivante; !date.isAfter(veille); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        for (LocalDate date : dates) {
+            construirePoint(date);
+        }
+    }
+
+    private static Object[] parametresEtat(LocalDate date, Long articleId, Long depotId) {
+        Date jour = Date.valueOf(date);
+        return new Object[]{jour, articleId, articleId, depotId, depotId,
+                jour, articleId, articleId, depotId, depotId};
+    }
+
+    /**
+     * Quantité et valeur d'un article/dépôt/lot à une date
+     */
+    public record EtatStock(Long articleId, Long depotId, String lotNumero, BigDecimal quantite, BigDecimal valeur) {
+    }
+}
@@ -0,0 +1,242 @@
+package com.gestion.achat_vente_stock.stock.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * TODO.YML Ligne 39: Stock > Valorisation (contrôle)
+ * Réconciliation de stock_disponible avec mouvement_stock et reservation_stock :
+ * - quantité physique attendue = entrées - sorties, valeur attendue = valeur des entrées - valeur des sorties,
+ *   réservé attendu = réservations ACTIVE, disponible = physique - réservé ; une seule ligne par article/dépôt/lot
+ * - les identifiants d'article sont découpés en tranches traitées en parallèle (fork/join) ;
+ *   chaque tranche est une seule requête agrégée en base qui ne renvoie que les écarts
+ * - correction facultative, clé par clé dans une transaction courte : ligne de la clé créée si absente
+ *   (index unique article/dépôt/lot) puis verrouillée, et recalcul ; un mouvement concurrent s'applique
+ *   en delta sur la valeur corrigée. L'écart de quantité et de valeur corrigé est reporté dans les totaux
+ *   CUMP de l'article (cumul_valorisation) dans la même transaction.
+ * Lecture seule hors corrections : exécutable en production.
+ */
+@Service
+@Slf4j
+public class ReconciliationStockService {
+
+    // Écarts d'une tranche d'articles (dépôt facultatif) ; lot NULL comparé comme ''
+    private static final String SQL_ECARTS = "WITH mouvements AS (" +
+            "SELECT article_id, depot_id, COALESCE(lot_numero, '') AS lot, " +
+            "SUM(CASE WHEN type_mouvement LIKE 'ENTREE%' THEN quantite ELSE -quantite END) AS quantite, " +
+            "SUM(CASE WHEN type_mouvement LIKE 'ENTREE%' THEN COALESCE(valeur_totale, 0) " +
+            "ELSE -COALESCE(valeur_totale, 0) END) AS valeur " +
+            "FROM mouvement_stock WHERE article_id BETWEEN ? AND ? AND (CAST(? AS BIGINT) IS NULL OR depot_id = ?) " +
+            "GROUP BY article_id, depot_id, COALESCE(lot_numero, '')), " +
+            "reservations AS (" +
+            "SELECT article_id, depot_id, COALESCE(lot_numero, '') AS lot, SUM(quantite_reservee) AS quantite " +
+            "FROM reservation_stock WHERE statut = 'ACTIVE' AND article_id BETWEEN ? AND ? " +
+            "AND (CAST(? AS BIGINT) IS NULL OR depot_id = ?) " +
+            "GROUP BY article_id, depot_id, COALESCE(lot_numero, '')), " +
+            "projection AS (" +
+            "SELECT article_id, depot_id, COALESCE(lot_numero, '') AS lot, " +
+            "SUM(COALESCE(quantite_physique, 0)) AS physique, SUM(COALESCE(quantite_reservee, 0)) AS reservee, " +
+            "SUM(COALESCE(quantite_disponible, 0)) AS disponible, SUM(COALESCE(valeur_stock, 0)) AS valeur, " +
+            "COUNT(*) AS lignes " +
+            "FROM stock_disponible WHERE article_id BETWEEN ? AND ? AND (CAST(? AS BIGINT) IS NULL OR depot_id = ?) " +
+            "GROUP BY article_id, depot_id, COALESCE(lot_numero, '')) " +
+            "SELECT * FROM (" +
+            "SELECT COALESCE(p.article_id, m.article_id, r.article_id) AS article_id, " +
+            "COALESCE(p.depot_id, m.depot_id, r.depot_id) AS depot_id, " +
+            "NULLIF(COALESCE(p.lot, m.lot, r.lot), '') AS lot_numero, " +
+            "COALESCE(m.quantite, 0) AS physique_attendue, COALESCE(p.physique, 0) AS physique, " +
+            "COALESCE(r.quantite, 0) AS reservee_attendue, COALESCE(p.reservee, 0) AS reservee, " +
+            "COALESCE(p.disponible, 0) AS disponible, " +
+            "COALESCE(m.valeur, 0) AS valeur_attendue, COALESCE(p.valeur, 0) AS valeur, " +
+            "COALESCE(p.lignes, 0) AS lignes " +
+            "FROM projection p " +
+            "FULL JOIN mouvements m ON m.article_id = p.article_id AND m.depot_id = p.depot_id AND m.lot = p.lot " +
+            "FULL JOIN reservations r ON r.article_id = COALESCE(p.article_id, m.article_id) " +
+            "AND r.depot_id = COALESCE(p.depot_id, m.depot_id) AND r.lot = COALESCE(p.lot, m.lot)) c " +
+            "WHERE c.physique <> c.physique_attendue OR c.reservee <> c.reservee_attendue " +
+            "OR c.disponible <> c.physique - c.reservee OR ABS(c.valeur - c.valeur_attendue) > ? OR c.lignes > 1";
+    private static final String SQL_BORNES_ARTICLES = "SELECT MIN(id) AS debut, MAX(id) AS fin FROM article";
+
+    // Correction d'une clé
+    private static final String SQL_CREATION_CLE = "INSERT INTO stock_disponible (id, article_id, depot_id, " +
+            "lot_numero, quantite_physique, quantite_reservee, quantite_disponible, valeur_stock, last_update) " +
+            "VALUES (nextval('stock_disponible_id_seq'), ?, ?, ?, 0, 0, 0, 0, ?) " +
+            "ON CONFLICT (article_id, depot_id, lot_numero) DO NOTHING";
+    private static final String SQL_LIGNE_CLE = "SELECT id, COALESCE(quantite_physique, 0) AS physique, " +
+            "COALESCE(valeur_stock, 0) AS valeur FROM stock_disponible " +
+            "WHERE article_id = ? AND depot_id = ? AND lot_numero IS NOT DISTINCT FROM ? FOR UPDATE";
+    private static final String SQL_MOUVEMENTS_CLE = "SELECT " +
+            "COALESCE(SUM(CASE WHEN type_mouvement LIKE 'ENTREE%' THEN quantite ELSE -quantite END), 0) AS quantite, " +
+            "COALESCE(SUM(CASE WHEN type_mouvement LIKE 'ENTREE%' THEN COALESCE(valeur_totale, 0) " +
+            "ELSE -COALESCE(valeur_totale, 0) END), 0) AS valeur " +
+            "FROM mouvement_stock WHERE article_id = ? AND depot_id = ? AND lot_numero IS NOT DISTINCT FROM ?";
+    private static final String SQL_RESERVATIONS_CLE = "SELECT COALESCE(SUM(quantite_reservee), 0) " +
+            "FROM reservation_stock WHERE statut = 'ACTIVE' AND article_id = ? AND depot_id = ? " +
+            "AND lot_numero IS NOT DISTINCT FROM ?";
+    private static final String SQL_MISE_A_JOUR = "UPDATE stock_disponible SET quantite_physique = ?, " +
+            "quantite_reservee = ?, quantite_disponible = ?, valeur_stock = ?, last_update = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ValorisationService valorisationService;
+    private final TransactionTemplate transactionTemplate;
+    private final int parallelisme;
+    private final int tailleTranche;
+    private final BigDecimal toleranceValeur;
+
+    private final AtomicBoolean enCours = new AtomicBoolean();
+
+    public ReconciliationStockService(JdbcTemplate jdbcTemplate, ValorisationService valorisationService,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${stock.reconciliation.parallelisme:4}") int parallelisme,
+                                      @Value("${stock.reconciliation.taille-tranche:5000}") int tailleTranche,
+                                      @Value("${stock.reconciliation.tolerance-valeur:0.01}") BigDecimal toleranceValeur) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.valorisationService = valorisationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.parallelisme = parallelisme;
+        this.tailleTranche = tailleTranche;
+        this.toleranceValeur = toleranceValeur;
+    }
+
+    /**
+     * Compare stock_disponible aux mouvements et réservations (tous dépôts ou un seul),
+     * et corrige les écarts si demandé
+     */
+    public ResultatReconciliation reconcilier(Long depotId, boolean corriger) {
+        if (!enCours.compareAndSet(false, true)) {
+            throw new IllegalStateException("Une réconciliation du stock est déjà en cours");
+        }
+        try {
+            long debut = System.currentTimeMillis();
+            BornesArticles bornes = jdbcTemplate.queryForObject(SQL_BORNES_ARTICLES,
+                    (rs, i) -> new BornesArticles(rs.getLong("debut"), rs.getLong("fin")));
+            List<EcartStock> ecarts;
+            ForkJoinPool pool = new ForkJoinPool(parallelisme);
+            try {
+                ecarts = pool.invoke(new TacheReconciliation(depotId, bornes.debut(), bornes.fin()));
+            } finally {
+                pool.shutdown();
+            }
+
+            int corrections = 0;
+            if (corriger) {
+                for (EcartStock ecart : ecarts) {
+                    corriger(ecart);
+                    corrections++;
+                }
+            }
+            long duree = System.currentTimeMillis() - debut;
+            log.info("Réconciliation du stock: {} écart(s), {} correction(s) en {} ms", ecarts.size(), corrections, duree);
+            return new ResultatReconciliation(ecarts, corrections, duree);
+        } finally {
+            enCours.set(false);
+        }
+    }
+
+    /**
+     * Écarts d'une tranche d'identifiants d'article
+     */
+    private List<EcartStock> ecarts(Long depotId, long debut, long fin) {
+        return jdbcTemplate.query(SQL_ECARTS,
+                (rs, i) -> new EcartStock(rs.getLong("article_id"), rs.getLong("depot_id"), rs.getString("lot_numero"),
+                        rs.getBigDecimal("physique_attendue"), rs.getBigDecimal("physique"),
+                        rs.getBigDecimal("reservee_attendue"), rs.getBigDecimal("reservee"),
+                        rs.getBigDecimal("disponible"),
+                        rs.getBigDecimal("valeur_attendue"), rs.getBigDecimal("valeur"),
+                        rs.getInt("lignes")),
+                debut, fin, depotId, depotId,
+                debut, fin, depotId, depotId,
+                debut, fin, depotId, depotId,
+                toleranceValeur);
+    }
+
+    /**
+     * Remet une clé article/dépôt/lot aux valeurs recalculées après verrouillage de sa ligne,
+     * et reporte l'écart corrigé dans les totaux CUMP de l'article
+     */
+    private void corriger(EcartStock ecart) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.update(SQL_CREATION_CLE, ecart.articleId(), ecart.depotId(), ecart.lotNumero(), maintenant);
+            LigneCle ligne = jdbcTemplate.queryForObject(SQL_LIGNE_CLE,
+                    (rs, i) -> new LigneCle(rs.getLong("id"), rs.getBigDecimal("physique"), rs.getBigDecimal("valeur")),
+                    ecart.articleId(), ecart.depotId(), ecart.lotNumero());
+
+            // Recalcul après verrouillage : inclut tout mouvement validé entre-temps
+            BigDecimal[] mouvements = jdbcTemplate.queryForObject(SQL_MOUVEMENTS_CLE,
+                    (rs, i) -> new BigDecimal[]{rs.getBigDecimal("quantite"), rs.getBigDecimal("valeur")},
+                    ecart.articleId(), ecart.depotId(), ecart.lotNumero());
+            BigDecimal physique = mouvements[0];
+            BigDecimal valeur = mouvements[1];
+            BigDecimal reservee = jdbcTemplate.queryForObject(SQL_RESERVATIONS_CLE, BigDecimal.class,
+                    ecart.articleId(), ecart.depotId(), ecart.lotNumero());
+            jdbcTemplate.update(SQL_MISE_A_JOUR, physique, reservee, physique.subtract(reservee), valeur,
+                    maintenant, ligne.id());
+            valorisationService.ajusterCUMP(ecart.articleId(), physique.subtract(ligne.physique()),
+                    valeur.subtract(ligne.valeur()));
+        });
+        log.info("Stock corrigé: article {} dépôt {} lot {}", ecart.articleId(), ecart.depotId(), ecart.lotNumero());
+    }
+
+    /**
+     * Tranche d'articles [debut, fin] : coupée en deux tant qu'elle dépasse la taille de tranche
+     */
+    private final class TacheReconciliation extends RecursiveTask<List<EcartStock>> {
+        private final Long depotId;
+        private final long debut;
+        private final long fin;
+
+        private TacheReconciliation(Long depotId, long debut, long fin) {
+            this.depotId = depotId;
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        @Override
+        protected List<EcartStock> compute() {
+            if (fin - debut < tailleTranche) {
+                return ecarts(depotId, debut, fin);
+            }
+            long milieu = debut + (fin - debut) / 2;
+            TacheReconciliation gauche = new TacheReconciliation(depotId, debut, milieu);
+            TacheReconciliation droite = new TacheReconciliation(depotId, milieu + 1, fin);
+            gauche.fork();
+            List<EcartStock> resultat = new ArrayList<>(droite.compute());
+            resultat.addAll(0, gauche.join());
+            return resultat;
+        }
+    }
+
+    /**
+     * Écart d'une clé article/dépôt/lot : valeurs attendues (mouvements, réservations) et enregistrées
+     */
+    public record EcartStock(Long articleId, Long depotId, String lotNumero,
+                             BigDecimal physiqueAttendue, BigDecimal physique,
+                             BigDecimal reserveeAttendue, BigDecimal reservee, BigDecimal disponible,
+                             BigDecimal valeurAttendue, BigDecimal valeur, int lignes) {
+    }
+
+    public record ResultatReconciliation(List<EcartStock> ecarts, int corrections, long dureeMillis) {
+    }
+
+    private record BornesArticles(long debut, long fin) {
+    }
+
+    private record LigneCle(Long id, BigDecimal physique, BigDecimal valeur) {
+    }
+}
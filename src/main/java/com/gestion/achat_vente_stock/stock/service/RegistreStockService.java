@@ -0,0 +1,199 @@
+package com.gestion.achat_vente_stock.stock.service;
+
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.stock.model.StockDisponible;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository.LigneStock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * TODO.YML Lignes 31-32: Stock > Mouvements
+ * Registre du stock disponible par article/dépôt/lot, point d'entrée unique des mises à jour
+ * de stock_disponible par les mouvements
+ * - Chaque mouvement est une seule instruction en delta, contrôlée par le nombre de lignes modifiées
+ * - Sortie : décrément conditionnel (disponible >= quantité) fait par la base
+ * - Entrée : INSERT … ON CONFLICT sur l'index unique article/dépôt/lot (lot NULL compris) ;
+ *   la base crée la ligne une seule fois, quel que soit le nombre d'instances de l'application
+ * - Lot de mouvements : lignes lues en une requête, mises à jour par lots JDBC
+ */
+@Service
+public class RegistreStockService {
+
+    private static final String SQL_ENTREE = "INSERT INTO stock_disponible (id, article_id, depot_id, emplacement, " +
+            "lot_numero, quantite_physique, quantite_reservee, quantite_disponible, valeur_stock, last_update) " +
+            "VALUES (nextval('stock_disponible_id_seq'), ?, ?, ?, ?, ?, 0, ?, ?, ?) " +
+            "ON CONFLICT (article_id, depot_id, lot_numero) DO UPDATE SET " +
+            "quantite_physique = COALESCE(stock_disponible.quantite_physique, 0) + EXCLUDED.quantite_physique, " +
+            "quantite_disponible = COALESCE(stock_disponible.quantite_physique, 0) + EXCLUDED.quantite_physique " +
+            "- COALESCE(stock_disponible.quantite_reservee, 0), " +
+            "valeur_stock = COALESCE(stock_disponible.valeur_stock, 0) + EXCLUDED.valeur_stock, " +
+            "last_update = EXCLUDED.last_update";
+    private static final String SQL_SORTIE = "UPDATE stock_disponible SET " +
+            "quantite_physique = COALESCE(quantite_physique, 0) - ?, " +
+            "quantite_disponible = COALESCE(quantite_physique, 0) - ? - COALESCE(quantite_reservee, 0), " +
+            "valeur_stock = COALESCE(valeur_stock, 0) - ?, last_update = ? " +
+            "WHERE article_id = ? AND depot_id = ? AND lot_numero IS NOT DISTINCT FROM ? AND quantite_disponible >= ?";
+
+    private static final Comparator<CleStock> ORDRE_CLES = Comparator.comparing(CleStock::articleId)
+            .thenComparing(CleStock::depotId)
+            .thenComparing(CleStock::lotNumero, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final StockDisponibleRepository stockDisponibleRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public RegistreStockService(StockDisponibleRepository stockDisponibleRepository, JdbcTemplate jdbcTemplate) {
+        this.stockDisponibleRepository = stockDisponibleRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Ajoute une quantité et sa valeur au stock (crée la ligne si besoin)
+     */
+    public void appliquerEntree(Article article, Depot depot, String emplacement, String lotNumero,
+                                BigDecimal quantite, BigDecimal valeur) {
+        exigerTransaction();
+        jdbcTemplate.update(SQL_ENTREE, article.getId(), depot.getId(), emplacement, lotNumero,
+                quantite, quantite, valeur, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Retire une quantité et sa valeur du stock, si la quantité disponible le permet
+     */
+    public void appliquerSortie(Article article, Depot depot, String lotNumero,
+                                BigDecimal quantite, BigDecimal valeur) {
+        int lignes = stockDisponibleRepository.retirerStockSiDisponible(article.getId(), depot.getId(), lotNumero,
+                quantite, valeur);
+        if (lignes > 0) {
+            return;
+        }
+
+        // Refus : relecture uniquement pour expliquer le motif
+        StockDisponible stock = stockDisponibleRepository
+                .findByArticleIdAndDepotIdAndLotNumero(article.getId(), depot.getId(), lotNumero)
+                .orElseThrow(() -> new RuntimeException("Stock non trouvé pour cet article/dépôt/lot"));
+        BigDecimal disponible = stock.getQuantiteDisponible() != null ? stock.getQuantiteDisponible() : BigDecimal.ZERO;
+        throw new RuntimeException("Stock insuffisant. Disponible: " + disponible + ", Demandé: " + quantite);
+    }
+
+    /**
+     * Applique un lot de variations de stock (entrées puis sorties) en un nombre constant d'échanges :
+     * lecture des lignes concernées en une requête, contrôle des sorties, puis mises à jour par lots JDBC.
+     * Les variations d'une même clé article/dépôt/lot sont cumulées ; tout ou rien.
+     */
+    public void appliquerLot(List<VariationStock> variations) {
+        Map<CleStock, Cumul> entrees = new LinkedHashMap<>();
+        Map<CleStock, Cumul> sorties = new LinkedHashMap<>();
+        Set<Long> articleIds = new HashSet<>();
+        Set<Long> depotIds = new HashSet<>();
+        for (VariationStock variation : variations) {
+            CleStock cle = new CleStock(variation.article().getId(), variation.depot().getId(), variation.lotNumero());
+            (variation.entree() ? entrees : sorties).computeIfAbsent(cle, c -> new Cumul(variation)).ajouter(variation);
+            articleIds.add(cle.articleId());
+            depotIds.add(cle.depotId());
+        }
+        if (articleIds.isEmpty()) {
+            return;
+        }
+
+        exigerTransaction();
+
+        Map<CleStock, BigDecimal> disponibles = new HashMap<>();
+        for (LigneStock ligne : stockDisponibleRepository.findLignesStock(articleIds, depotIds)) {
+            CleStock cle = new CleStock(ligne.getArticleId(), ligne.getDepotId(), ligne.getLotNumero());
+            disponibles.put(cle, ligne.getQuantiteDisponible() != null ? ligne.getQuantiteDisponible() : BigDecimal.ZERO);
+        }
+
+        // Contrôle des sorties avant toute écriture (les entrées du lot comptent)
+        for (Map.Entry<CleStock, Cumul> sortie : sorties.entrySet()) {
+            CleStock cle = sortie.getKey();
+            Cumul entree = entrees.get(cle);
+            if (!disponibles.containsKey(cle) && entree == null) {
+                throw new RuntimeException("Stock non trouvé pour cet article/dépôt/lot");
+            }
+            BigDecimal disponible = disponibles.getOrDefault(cle, BigDecimal.ZERO)
+                    .add(entree != null ? entree.quantite : BigDecimal.ZERO);
+            if (disponible.compareTo(sortie.getValue().quantite) < 0) {
+                throw new RuntimeException("Stock insuffisant. Disponible: " + disponible
+                        + ", Demandé: " + sortie.getValue().quantite);
+            }
+        }
+
+        // Entrées avant sorties : une sortie du lot trouve la ligne créée par une entrée du même lot ;
+        // lignes modifiées dans l'ordre des clés : pas d'interblocage entre deux lots
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> majEntrees = new ArrayList<>();
+        trier(entrees).forEach((cle, cumul) -> majEntrees.add(new Object[]{cle.articleId(), cle.depotId(),
+                cumul.premiere.emplacement(), cle.lotNumero(), cumul.quantite, cumul.quantite, cumul.valeur, maintenant}));
+        jdbcTemplate.batchUpdate(SQL_ENTREE, majEntrees);
+
+        List<Object[]> majSorties = new ArrayList<>();
+        trier(sorties).forEach((cle, cumul) -> majSorties.add(new Object[]{cumul.quantite, cumul.quantite, cumul.valeur,
+                maintenant, cle.articleId(), cle.depotId(), cle.lotNumero(), cumul.quantite}));
+        int[] resultats = jdbcTemplate.batchUpdate(SQL_SORTIE, majSorties);
+        for (int resultat : resultats) {
+            // Disponible diminué entre le contrôle et la mise à jour (réservation concurrente)
+            if (resultat == 0) {
+                throw new RuntimeException("Stock insuffisant : stock modifié par une autre opération, veuillez réessayer");
+            }
+        }
+    }
+
+    private static Map<CleStock, Cumul> trier(Map<CleStock, Cumul> cumuls) {
+        Map<CleStock, Cumul> tries = new TreeMap<>(ORDRE_CLES);
+        tries.putAll(cumuls);
+        return tries;
+    }
+
+    /**
+     * Lot ou mouvement hors transaction refusé : les variations d'une opération sont validées ensemble
+     */
+    private void exigerTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Les mises à jour du stock doivent s'exécuter dans une transaction");
+        }
+    }
+
+    /**
+     * Variation de stock d'un mouvement : quantité et valeur positives, sens donné par {@code entree}
+     */
+    public record VariationStock(Article article, Depot depot, String emplacement, String lotNumero,
+                                 BigDecimal quantite, BigDecimal valeur, boolean entree) {
+    }
+
+    private record CleStock(Long articleId, Long depotId, String lotNumero) {
+    }
+
+    /**
+     * Variations cumulées d'une clé ; la première fournit l'emplacement d'une ligne à créer
+     */
+    private static final class Cumul {
+        private final VariationStock premiere;
+        private BigDecimal quantite = BigDecimal.ZERO;
+        private BigDecimal valeur = BigDecimal.ZERO;
+
+        private Cumul(VariationStock premiere) {
+            this.premiere = premiere;
+        }
+
+        private void ajouter(VariationStock variation) {
+            quantite = quantite.add(variation.quantite());
+            valeur = valeur.add(variation.valeur());
+        }
+    }
+}
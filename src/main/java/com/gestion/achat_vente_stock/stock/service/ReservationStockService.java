@@ -4,18 +4,33 @@ import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
 import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 import com.gestion.achat_vente_stock.stock.model.ReservationStock;
 import com.gestion.achat_vente_stock.stock.model.StockDisponible;
 import com.gestion.achat_vente_stock.stock.repository.ReservationStockRepository;
+import com.gestion.achat_vente_stock.stock.repository.ReservationStockRepository.ReservationActive;
 import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository.StockReservable;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * TODO.YML Ligne 36: Stock > Réservations
@@ -30,6 +45,9 @@ public class ReservationStockService {
     private final StockDisponibleRepository stockDisponibleRepository;
     private final LotService lotService;
     private final AuditService auditService;
+    private final ArticleRepository articleRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final DisponibiliteService disponibiliteService;
 
     // Statuts de réservation
     public static final String STATUT_ACTIVE = "ACTIVE";
@@ -40,6 +58,22 @@ public class ReservationStockService {
     // Durée par défaut d'une réservation (en jours)
     private static final int DUREE_RESERVATION_DEFAUT = 7;
 
+    private static final String SQL_INSERTION_RESERVATION = "INSERT INTO reservation_stock " +
+            "(id, article_id, depot_id, lot_numero, quantite_reservee, commande_client_id, " +
+            "date_reservation, date_expiration, statut) " +
+            "VALUES (nextval('reservation_stock_id_seq'), ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_RESERVATION_STOCK = "UPDATE stock_disponible SET " +
+            "quantite_reservee = COALESCE(quantite_reservee, 0) + ?, " +
+            "quantite_disponible = COALESCE(quantite_physique, 0) - COALESCE(quantite_reservee, 0) - ?, " +
+            "last_update = ? WHERE id = ? AND quantite_disponible >= ?";
+    // Réservation entièrement consommée : quantité conservée ; partiellement : reste actif
+    private static final String SQL_CONSOMMATION_RESERVATION = "UPDATE reservation_stock SET " +
+            "quantite_reservee = ?, statut = ? WHERE id = ? AND statut = 'ACTIVE'";
+    private static final String SQL_LIBERATION_STOCK = "UPDATE stock_disponible SET " +
+            "quantite_reservee = COALESCE(quantite_reservee, 0) - ?, " +
+            "quantite_disponible = COALESCE(quantite_physique, 0) - COALESCE(quantite_reservee, 0) + ?, " +
+            "last_update = ? WHERE article_id = ? AND depot_id = ? AND lot_numero IS NOT DISTINCT FROM ?";
+
     /**
      * TODO.YML Ligne 36: Créer une réservation de stock
      * Allocation FIFO/FEFO selon nature produit (périssables → FEFO)
@@ -75,12 +109,212 @@ public class ReservationStockService {
         mettreAJourReservationStock(article.getId(), depot.getId(), lotNumero, quantite, true);
 
         // Audit
-        auditService.logAction(utilisateur, "reservation_stock", saved.getId(),
-                "CREATE", null, saved.toString(), null);
+        auditService.logCreation(utilisateur, "reservation_stock", saved.getId(),
+                "CREATE", saved);
 
         return saved;
     }
 
+    /**
+     * TODO.YML Lignes 23, 36: Réserver en une fois toutes les lignes d'une commande client
+     * - Lignes regroupées par article, stock réservable du dépôt lu et verrouillé en une requête
+     * - Chaque quantité est répartie sur plusieurs lots si besoin : FEFO (DLUO) pour les articles
+     *   périssables, FIFO (date de fabrication) sinon, stock sans lot en dernier
+     * - Réservations et mises à jour du stock écrites par lots JDBC ; tout ou rien
+     * Les entités StockDisponible déjà chargées dans la transaction ne reflètent pas ces mises à jour.
+     */
+    public List<AllocationReservation> reserverCommande(Long commandeClientId, Depot depot,
+                                                        Map<Long, BigDecimal> quantitesParArticle) {
+        Map<Long, BigDecimal> besoins = new LinkedHashMap<>();
+        quantitesParArticle.forEach((articleId, quantite) -> {
+            if (quantite != null && quantite.signum() > 0) {
+                besoins.merge(articleId, quantite, BigDecimal::add);
+            }
+        });
+        if (besoins.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Article> articles = articleRepository.findAllById(besoins.keySet()).stream()
+                .collect(Collectors.toMap(Article::getId, Function.identity()));
+        Map<Long, List<StockReservable>> stocksParArticle = stockDisponibleRepository
+                .findStocksReservables(depot.getId(), besoins.keySet()).stream()
+                .collect(Collectors.groupingBy(StockReservable::getArticleId));
+
+        List<AllocationReservation> allocations = new ArrayList<>();
+        for (Map.Entry<Long, BigDecimal> besoin : besoins.entrySet()) {
+            Article article = articles.get(besoin.getKey());
+            if (article == null) {
+                throw new RuntimeException("Article non trouvé: " + besoin.getKey());
+            }
+            allouer(article, besoin.getValue(),
+                    stocksParArticle.getOrDefault(article.getId(), List.of()), allocations);
+        }
+
+        LocalDate aujourdhui = LocalDate.now();
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(SQL_INSERTION_RESERVATION, allocations.stream()
+                .map(a -> new Object[]{a.articleId(), depot.getId(), a.lotNumero(), a.quantite(), commandeClientId,
+                        Date.valueOf(aujourdhui), Date.valueOf(aujourdhui.plusDays(DUREE_RESERVATION_DEFAUT)),
+                        STATUT_ACTIVE})
+                .toList());
+        int[] lignes = jdbcTemplate.batchUpdate(SQL_RESERVATION_STOCK, allocations.stream()
+                .map(a -> new Object[]{a.quantite(), a.quantite(), maintenant, a.stockId(), a.quantite()})
+                .toList());
+        for (int i = 0; i < lignes.length; i++) {
+            // Lignes verrouillées : un refus ici signale une écriture hors verrou
+            if (lignes[i] == 0) {
+                throw new IllegalStateException("Stock modifié pendant la réservation: ligne " + allocations.get(i).stockId());
+            }
+        }
+        disponibiliteService.invaliderApresCommit(besoins.keySet());
+        return allocations;
+    }
+
+    /**
+     * Répartit la quantité demandée sur les lignes de stock de l'article, dans l'ordre FEFO/FIFO
+     */
+    private void allouer(Article article, BigDecimal quantite, List<StockReservable> stocks,
+                         List<AllocationReservation> allocations) {
+        Comparator<LocalDate> dates = Comparator.nullsLast(Comparator.naturalOrder());
+        Comparator<StockReservable> ordre = Boolean.TRUE.equals(article.getDluoObligatoire())
+                ? Comparator.comparing(StockReservable::getDluo, dates)
+                : Comparator.comparing(StockReservable::getDateFabrication, dates);
+        ordre = Comparator.comparing((StockReservable s) -> s.getLotNumero() == null)
+                .thenComparing(ordre)
+                .thenComparing(StockReservable::getId);
+
+        BigDecimal reste = quantite;
+        for (StockReservable stock : stocks.stream().sorted(ordre).toList()) {
+            if (reste.signum() <= 0) {
+                break;
+            }
+            BigDecimal prise = reste.min(stock.getQuantiteDisponible());
+            allocations.add(new AllocationReservation(article.getId(), stock.getId(), stock.getLotNumero(), prise));
+            reste = reste.subtract(prise);
+        }
+        if (reste.signum() > 0) {
+            throw new RuntimeException("Stock insuffisant pour l'article " + article.getCode()
+                    + ". Disponible: " + quantite.subtract(reste) + ", Demandé: " + quantite);
+        }
+    }
+
+    /**
+     * Libère toutes les réservations actives d'une commande client (annulation de la réservation)
+     */
+    public int libererCommande(Long commandeClientId) {
+        disponibiliteService.invaliderApresCommit(
+                reservationStockRepository.findArticlesReservationsActives(commandeClientId));
+        stockDisponibleRepository.libererReservationsCommande(commandeClientId);
+        return reservationStockRepository.changerStatutReservationsActives(commandeClientId, STATUT_ANNULEE);
+    }
+
+    /**
+     * TODO.YML Lignes 25, 36: Consommer en une fois les réservations d'une commande pour une livraison
+     * - Réservations actives de la commande sur le dépôt lues en une requête
+     * - Prélèvement d'un lot : consomme les réservations de ce lot seulement
+     * - Prélèvement sans lot : réparti sur les lots réservés, le reste sur le stock non réservé de l'article
+     *   dans l'ordre FEFO/FIFO de reserverCommande (lignes lues et verrouillées en une requête)
+     * - Réservations et stock réservé mis à jour par lots JDBC
+     * Retourne les prélèvements avec leur lot, à sortir du stock dans la même transaction.
+     */
+    public List<Prelevement> consommerLivraison(Long commandeClientId, Depot depot, List<Prelevement> prelevements) {
+        Map<Long, List<ReservationActive>> reservationsParArticle = reservationStockRepository
+                .findReservationsActivesCommande(commandeClientId, depot.getId()).stream()
+                .collect(Collectors.groupingBy(ReservationActive::getArticleId, LinkedHashMap::new, Collectors.toList()));
+        Map<Long, BigDecimal> restants = new LinkedHashMap<>();
+        Map<Long, ReservationActive> consommees = new LinkedHashMap<>();
+        Map<Long, BigDecimal> restesSansLot = new LinkedHashMap<>();
+        List<Prelevement> resolus = new ArrayList<>();
+
+        for (Prelevement prelevement : prelevements) {
+            List<ReservationActive> candidates = reservationsParArticle.getOrDefault(prelevement.articleId(), List.of());
+            if (prelevement.lotNumero() != null) {
+                candidates = candidates.stream()
+                        .filter(r -> prelevement.lotNumero().equals(r.getLotNumero()))
+                        .toList();
+            }
+            BigDecimal reste = prelevement.quantite();
+            for (ReservationActive reservation : candidates) {
+                if (reste.signum() <= 0) {
+                    break;
+                }
+                BigDecimal disponible = restants.computeIfAbsent(reservation.getId(), id -> reservation.getQuantiteReservee());
+                BigDecimal prise = reste.min(disponible);
+                if (prise.signum() <= 0) {
+                    continue;
+                }
+                restants.put(reservation.getId(), disponible.subtract(prise));
+                consommees.put(reservation.getId(), reservation);
+                if (prelevement.lotNumero() == null) {
+                    resolus.add(new Prelevement(prelevement.articleId(), reservation.getLotNumero(), prise));
+                }
+                reste = reste.subtract(prise);
+            }
+            if (prelevement.lotNumero() != null) {
+                resolus.add(prelevement);
+            } else if (reste.signum() > 0) {
+                restesSansLot.merge(prelevement.articleId(), reste, BigDecimal::add);
+            }
+        }
+        resolus.addAll(repartirSurStock(depot, restesSansLot));
+        if (consommees.isEmpty()) {
+            return resolus;
+        }
+
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> majReservations = new ArrayList<>();
+        Map<CleLot, BigDecimal> liberations = new LinkedHashMap<>();
+        consommees.values().forEach(reservation -> {
+            BigDecimal restant = restants.get(reservation.getId());
+            majReservations.add(restant.signum() > 0
+                    ? new Object[]{restant, STATUT_ACTIVE, reservation.getId()}
+                    : new Object[]{reservation.getQuantiteReservee(), STATUT_CONSOMMEE, reservation.getId()});
+            liberations.merge(new CleLot(reservation.getArticleId(), reservation.getLotNumero()),
+                    reservation.getQuantiteReservee().subtract(restant), BigDecimal::add);
+        });
+        int[] lignes = jdbcTemplate.batchUpdate(SQL_CONSOMMATION_RESERVATION, majReservations);
+        for (int i = 0; i < lignes.length; i++) {
+            if (lignes[i] == 0) {
+                throw new IllegalStateException("Réservation modifiée pendant la livraison: " + majReservations.get(i)[2]);
+            }
+        }
+        jdbcTemplate.batchUpdate(SQL_LIBERATION_STOCK, liberations.entrySet().stream()
+                .map(e -> new Object[]{e.getValue(), e.getValue(), maintenant, e.getKey().articleId(), depot.getId(),
+                        e.getKey().lotNumero()})
+                .toList());
+        disponibiliteService.invaliderApresCommit(consommees.values().stream()
+                .map(ReservationActive::getArticleId).toList());
+        return resolus;
+    }
+
+    /**
+     * Quantités sans lot ni réservation, réparties sur le stock non réservé du dépôt dans l'ordre FEFO/FIFO
+     * (lignes de lot d'abord, stock sans lot en dernier) ; stock insuffisant refusé
+     */
+    private List<Prelevement> repartirSurStock(Depot depot, Map<Long, BigDecimal> quantitesParArticle) {
+        if (quantitesParArticle.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Article> articles = articleRepository.findAllById(quantitesParArticle.keySet()).stream()
+                .collect(Collectors.toMap(Article::getId, Function.identity()));
+        Map<Long, List<StockReservable>> stocksParArticle = stockDisponibleRepository
+                .findStocksReservables(depot.getId(), quantitesParArticle.keySet()).stream()
+                .collect(Collectors.groupingBy(StockReservable::getArticleId));
+
+        List<AllocationReservation> allocations = new ArrayList<>();
+        quantitesParArticle.forEach((articleId, quantite) -> {
+            Article article = articles.get(articleId);
+            if (article == null) {
+                throw new RuntimeException("Article non trouvé: " + articleId);
+            }
+            allouer(article, quantite, stocksParArticle.getOrDefault(articleId, List.of()), allocations);
+        });
+        return allocations.stream()
+                .map(a -> new Prelevement(a.articleId(), a.lotNumero(), a.quantite()))
+                .toList();
+    }
+
     /**
      * TODO.YML Ligne 36: Sélectionner le lot selon FIFO ou FEFO
      */
@@ -182,31 +416,30 @@ public class ReservationStockService {
 
     /**
      * Mettre à jour la quantité réservée dans le stock disponible
+     * Mise à jour atomique en base ; une réservation n'est posée que si le disponible suffit
      */
     private void mettreAJourReservationStock(Long articleId, Long depotId, String lotNumero,
                                               BigDecimal quantite, boolean ajouter) {
-        List<StockDisponible> stocks;
+        disponibiliteService.invaliderApresCommit(List.of(articleId));
+        List<StockDisponible> stocks = stockDisponibleRepository.findByArticleIdAndDepotId(articleId, depotId);
         if (lotNumero != null) {
-            stocks = stockDisponibleRepository.findByArticleIdAndDepotId(articleId, depotId);
             stocks = stocks.stream()
                     .filter(s -> lotNumero.equals(s.getLotNumero()))
                     .toList();
-        } else {
-            stocks = stockDisponibleRepository.findByArticleIdAndDepotId(articleId, depotId);
         }
 
-        if (!stocks.isEmpty()) {
-            StockDisponible stock = stocks.get(0);
-            BigDecimal qteReservee = stock.getQuantiteReservee() != null ? stock.getQuantiteReservee() : BigDecimal.ZERO;
-            
+        if (stocks.isEmpty()) {
             if (ajouter) {
-                stock.setQuantiteReservee(qteReservee.add(quantite));
-            } else {
-                stock.setQuantiteReservee(qteReservee.subtract(quantite));
+                throw new RuntimeException("Stock non trouvé pour cet article/dépôt/lot");
             }
-            
-            stock.setQuantiteDisponible(stock.getQuantitePhysique().subtract(stock.getQuantiteReservee()));
-            stockDisponibleRepository.save(stock);
+            return;
+        }
+
+        Long stockId = stocks.get(0).getId();
+        if (!ajouter) {
+            stockDisponibleRepository.libererReservation(stockId, quantite);
+        } else if (stockDisponibleRepository.reserverSiDisponible(stockId, quantite) == 0) {
+            throw new RuntimeException("Stock insuffisant pour la réservation. Demandé: " + quantite);
         }
     }
 
@@ -214,7 +447,7 @@ public class ReservationStockService {
      * Obtenir la quantité disponible (non réservée)
      */
     public BigDecimal getQuantiteDisponible(Long articleId, Long depotId) {
-        BigDecimal qteTotale = stockDisponibleRepository.sumQuantiteDisponibleByArticle(articleId);
+        BigDecimal qteTotale = stockDisponibleRepository.sumQuantiteDisponibleByArticleAndDepot(articleId, depotId);
         return qteTotale != null ? qteTotale : BigDecimal.ZERO;
     }
 
@@ -229,6 +462,14 @@ public class ReservationStockService {
         return reservationStockRepository.findAll();
     }
 
+    /**
+     * Page de réservations (de la plus récente à la plus ancienne), pagination par clé
+     */
+    @Transactional(readOnly = true)
+    public Slice<ReservationStock> rechercher(String statut, Long apresId, int taille) {
+        return reservationStockRepository.rechercher(statut, apresId, PageRequest.of(0, taille));
+    }
+
     @Transactional(readOnly = true)
     public List<ReservationStock> listerParCommande(Long commandeClientId) {
         return reservationStockRepository.findByCommandeClientId(commandeClientId);
@@ -238,4 +479,19 @@ public class ReservationStockService {
     public List<ReservationStock> listerActives() {
         return reservationStockRepository.findByStatut(STATUT_ACTIVE);
     }
+
+    /**
+     * Part d'une quantité commandée réservée sur une ligne de stock
+     */
+    public record AllocationReservation(Long articleId, Long stockId, String lotNumero, BigDecimal quantite) {
+    }
+
+    /**
+     * Quantité d'un article (et d'un lot, si connu) sortie du stock pour une livraison
+     */
+    public record Prelevement(Long articleId, String lotNumero, BigDecimal quantite) {
+    }
+
+    private record CleLot(Long articleId, String lotNumero) {
+    }
 }
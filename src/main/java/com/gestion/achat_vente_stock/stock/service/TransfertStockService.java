@@ -2,23 +2,25 @@ package com.gestion.achat_vente_stock.stock.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.model.Depot;
 import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
+import com.gestion.achat_vente_stock.referentiel.service.ReferentielCacheService;
 import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
 import com.gestion.achat_vente_stock.stock.model.LigneTransfert;
 import com.gestion.achat_vente_stock.stock.model.TransfertStock;
 import com.gestion.achat_vente_stock.stock.repository.LigneTransfertRepository;
 import com.gestion.achat_vente_stock.stock.repository.TransfertStockRepository;
+import com.gestion.achat_vente_stock.stock.service.MouvementStockService.LigneMouvement;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * TODO.YML Lignes 34-35: Stock > Transferts
@@ -35,7 +37,9 @@ public class TransfertStockService {
     private final MouvementStockService mouvementStockService;
     private final DepotRepository depotRepository;
     private final ArticleRepository articleRepository;
+    private final ReferentielCacheService referentielCacheService;
     private final AuditService auditService;
+    private final NumerotationService numerotationService;
 
     // Statuts de transfert
     public static final String STATUT_BROUILLON = "BROUILLON";
@@ -70,8 +74,8 @@ public class TransfertStockService {
         TransfertStock saved = transfertStockRepository.save(transfert);
 
         // Audit
-        auditService.logAction(demandeur, "transfert_stock", saved.getId(),
-                "CREATE", null, saved.toString(), null);
+        auditService.logCreation(demandeur, "transfert_stock", saved.getId(),
+                "CREATE", saved);
 
         return saved;
     }
@@ -88,8 +92,10 @@ public class TransfertStockService {
             throw new RuntimeException("Impossible d'ajouter des lignes à un transfert déjà soumis");
         }
 
-        Article article = articleRepository.findById(articleId)
+        // Existence vérifiée dans le cache du référentiel ; la ligne ne reçoit qu'une référence de l'article
+        referentielCacheService.article(articleId)
                 .orElseThrow(() -> new RuntimeException("Article non trouvé"));
+        Article article = articleRepository.getReferenceById(articleId);
 
         // Vérifier le stock disponible au dépôt source
         BigDecimal stockDispo = mouvementStockService.getQuantiteDisponible(
@@ -107,8 +113,8 @@ public class TransfertStockService {
         LigneTransfert saved = ligneTransfertRepository.save(ligne);
 
         // Audit
-        auditService.logAction(utilisateur, "ligne_transfert", saved.getId(),
-                "ADD", null, saved.toString(), null);
+        auditService.logCreation(utilisateur, "ligne_transfert", saved.getId(),
+                "ADD", saved);
 
         return saved;
     }
@@ -171,10 +177,11 @@ public class TransfertStockService {
             throw new RuntimeException("Ce transfert doit être validé avant expédition");
         }
 
-        // Créer les mouvements de sortie pour chaque ligne
+        // Mouvements de sortie de toutes les lignes postés en un lot
+        chargerArticles(transfert);
+        List<LigneMouvement> sorties = new ArrayList<>();
         for (LigneTransfert ligne : transfert.getLignes()) {
-            // Créer mouvement de sortie
-            mouvementStockService.creerMouvementSortie(
+            sorties.add(LigneMouvement.sortie(
                     ligne.getArticle(),
                     transfert.getDepotSource(),
                     MouvementStockService.SORTIE_TRANSFERT,
@@ -182,14 +189,13 @@ public class TransfertStockService {
                     null, // emplacement
                     ligne.getLotNumero(),
                     transfert.getId(),
-                    "TRANSFERT",
-                    magasinier
-            );
+                    "TRANSFERT"));
 
             // Marquer comme expédié
             ligne.setQuantiteExpedie(ligne.getQuantiteDemandee());
-            ligneTransfertRepository.save(ligne);
         }
+        mouvementStockService.posterLot(sorties, magasinier);
+        ligneTransfertRepository.saveAll(transfert.getLignes());
 
         transfert.setStatut(STATUT_EN_TRANSIT);
         transfert.setDateExpedition(LocalDate.now());
@@ -212,12 +218,13 @@ public class TransfertStockService {
             throw new RuntimeException("Ce transfert n'est pas en transit");
         }
 
-        // Créer les mouvements d'entrée pour chaque ligne
+        // Mouvements d'entrée de toutes les lignes postés en un lot
+        chargerArticles(transfert);
+        List<LigneMouvement> entrees = new ArrayList<>();
         for (LigneTransfert ligne : transfert.getLignes()) {
             BigDecimal quantiteRecue = ligne.getQuantiteExpedie(); // Par défaut, reçu = expédié
             
-            // Créer mouvement d'entrée
-            mouvementStockService.creerMouvementEntree(
+            entrees.add(LigneMouvement.entree(
                     ligne.getArticle(),
                     transfert.getDepotDestination(),
                     MouvementStockService.ENTREE_TRANSFERT,
@@ -227,14 +234,13 @@ public class TransfertStockService {
                     ligne.getLotNumero(),
                     null, // dluo
                     transfert.getId(),
-                    "TRANSFERT",
-                    magasinier
-            );
+                    "TRANSFERT"));
 
             // Marquer comme reçu
             ligne.setQuantiteRecue(quantiteRecue);
-            ligneTransfertRepository.save(ligne);
         }
+        mouvementStockService.posterLot(entrees, magasinier);
+        ligneTransfertRepository.saveAll(transfert.getLignes());
 
         transfert.setStatut(STATUT_RECUE);
         transfert.setDateReception(LocalDate.now());
@@ -293,21 +299,22 @@ public class TransfertStockService {
         return saved;
     }
 
+    /**
+     * Charge en une requête les articles des lignes (évite une lecture par proxy)
+     */
+    private void chargerArticles(TransfertStock transfert) {
+        articleRepository.findAllById(transfert.getLignes().stream()
+                .map(ligne -> ligne.getArticle().getId())
+                .distinct()
+                .toList());
+    }
+
     /**
      * Générer un numéro de transfert unique
      */
     private String genererNumeroTransfert() {
-        String prefix = "TRF-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + "-";
-        Optional<String> lastNumero = transfertStockRepository.findLastNumeroByPrefix(prefix);
-        
-        int sequence = 1;
-        if (lastNumero.isPresent()) {
-            String last = lastNumero.get();
-            String seqStr = last.substring(last.lastIndexOf("-") + 1);
-            sequence = Integer.parseInt(seqStr) + 1;
-        }
-        
-        return prefix + String.format("%04d", sequence);
+        return numerotationService.genererNumeroJournalier("TRF", 4,
+                cle -> transfertStockRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     @Transactional(readOnly = true)
@@ -3,32 +3,73 @@ package com.gestion.achat_vente_stock.stock.service;
 import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.model.Depot;
 import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
+import com.gestion.achat_vente_stock.referentiel.service.ReferentielCacheService;
+import com.gestion.achat_vente_stock.stock.model.CoucheFifo;
 import com.gestion.achat_vente_stock.stock.model.MouvementStock;
 import com.gestion.achat_vente_stock.stock.model.StockDisponible;
+import com.gestion.achat_vente_stock.stock.repository.CoucheFifoRepository;
+import com.gestion.achat_vente_stock.stock.repository.CumulValorisationRepository;
 import com.gestion.achat_vente_stock.stock.repository.MouvementStockRepository;
 import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * TODO.YML Lignes 39-41: Stock > Valorisation
  * - Ligne 39: Implémenter FIFO et CUMP (coût moyen pondéré)
  * - Ligne 40: Clôture mensuelle : gel coûts et contrôle rétrodatation
  * - Ligne 41: Rapports variation coût et écarts valorisation
+ *
+ * FIFO : chaque entrée crée une couche de coût (couche_fifo) dont la quantité restante
+ * est consommée par les sorties, de la plus ancienne à la plus récente.
+ * CUMP : chaque mouvement ajoute son delta aux totaux courants de l'article (cumul_valorisation),
+ * le nouveau CUMP en découle sans relire le stock. En mode par transaction, les deltas
+ * sont regroupés par article et appliqués une seule fois avant le commit.
  */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 @Transactional
 public class ValorisationService {
 
+    // Nombre de couches FIFO lues par requête lors d'une sortie
+    private static final int TAILLE_PAGE_COUCHES = 20;
+
     private final MouvementStockRepository mouvementStockRepository;
     private final StockDisponibleRepository stockDisponibleRepository;
     private final ArticleRepository articleRepository;
+    private final ReferentielCacheService referentielCacheService;
+    private final CoucheFifoRepository coucheFifoRepository;
+
+    private final CumulValorisationRepository cumulValorisationRepository;
+
+    // Article/dépôt dont les couches FIFO existent déjà (reprise de l'historique faite)
+    private final Set<String> couchesAmorcees = ConcurrentHashMap.newKeySet();
+
+    // Clé de la ressource transactionnelle des deltas CUMP en attente
+    private final Object cleDeltasCUMP = new Object();
+
+    // Mode par transaction : un seul recalcul CUMP par article et par transaction
+    @Value("${stock.valorisation.cump-par-transaction:false}")
+    private boolean cumpParTransaction;
 
     /**
      * TODO.YML Ligne 39: Obtenir le coût de sortie selon la méthode de valorisation
@@ -47,75 +88,342 @@ public class ValorisationService {
     }
 
     /**
-     * TODO.YML Ligne 39: Méthode FIFO (First In, First Out)
-     * Retourne le coût unitaire moyen pondéré des entrées les plus anciennes
+     * TODO.YML Ligne 39: Coût de sortie effectif, appelé une fois par mouvement de sortie
+     * En FIFO, consomme les couches les plus anciennes (celles du lot si précisé)
      */
-    private BigDecimal getCoutFIFO(Article article, Depot depot, BigDecimal quantiteDemandee) {
-        List<MouvementStock> entrees = mouvementStockRepository.findEntreesFIFO(article.getId(), depot.getId());
+    public BigDecimal consommerCoutSortie(Article article, Depot depot, String lotNumero, BigDecimal quantite) {
+        if (!"FIFO".equals(article.getMethodeValorisation())) {
+            return getCoutSortie(article, depot, quantite);
+        }
+        amorcerCouchesFIFO(article, depot);
 
-        if (entrees.isEmpty()) {
-            return article.getPrixAchatMoyen() != null ? article.getPrixAchatMoyen() : BigDecimal.ZERO;
+        BigDecimal quantiteRestante = quantite;
+        BigDecimal valeurTotale = BigDecimal.ZERO;
+        PageRequest page = PageRequest.of(0, TAILLE_PAGE_COUCHES);
+
+        // Les couches épuisées sortent de la requête : on relit toujours la première page
+        while (quantiteRestante.signum() > 0) {
+            List<CoucheFifo> couches = lotNumero != null
+                    ? coucheFifoRepository.findCouchesOuvertesParLot(article.getId(), depot.getId(), lotNumero, page)
+                    : coucheFifoRepository.findCouchesOuvertes(article.getId(), depot.getId(), page);
+            if (couches.isEmpty()) {
+                break;
+            }
+            for (CoucheFifo couche : couches) {
+                BigDecimal qteAPrendre = couche.getQuantiteRestante().min(quantiteRestante);
+                couche.setQuantiteRestante(couche.getQuantiteRestante().subtract(qteAPrendre));
+                valeurTotale = valeurTotale.add(qteAPrendre.multiply(couche.getCoutUnitaire()));
+                quantiteRestante = quantiteRestante.subtract(qteAPrendre);
+                if (quantiteRestante.signum() == 0) {
+                    break;
+                }
+            }
+            coucheFifoRepository.saveAll(couches);
+        }
+
+        // Quantité non couverte par les couches : valorisée au prix d'achat moyen
+        if (quantiteRestante.signum() > 0) {
+            valeurTotale = valeurTotale.add(quantiteRestante.multiply(prixAchatMoyen(article)));
+        }
+        return valeurTotale.divide(quantite, 6, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * TODO.YML Ligne 39: Enregistrer une entrée en stock
+     * - FIFO : nouvelle couche de coût
+     * - CUMP : ajout aux totaux courants et nouveau CUMP
+     */
+    public void enregistrerEntree(MouvementStock entree) {
+        Article article = entree.getArticle();
+        if ("CUMP".equals(article.getMethodeValorisation())) {
+            cumulerCUMP(article, entree.getQuantite(), entree.getValeurTotale());
+            return;
+        }
+        if (!"FIFO".equals(article.getMethodeValorisation())) {
+            return;
+        }
+        // La reprise de l'historique inclut déjà cette entrée
+        if (amorcerCouchesFIFO(article, entree.getDepot())) {
+            return;
         }
 
+        coucheFifoRepository.save(nouvelleCouche(entree));
+    }
+
+    /**
+     * TODO.YML Ligne 39: Enregistrer un lot de mouvements déjà valorisés
+     * - CUMP : un seul delta (et un seul nouveau CUMP) par article
+     * - FIFO : couches des entrées créées ensemble
+     */
+    public void enregistrerLot(List<MouvementStock> mouvements) {
+        Map<Long, DeltaCUMP> deltas = new LinkedHashMap<>();
+        List<CoucheFifo> couches = new ArrayList<>();
+        Set<String> reprisesHistorique = new HashSet<>();
+        for (MouvementStock mouvement : mouvements) {
+            Article article = mouvement.getArticle();
+            boolean entree = mouvement.getTypeMouvement().startsWith("ENTREE");
+            if ("CUMP".equals(article.getMethodeValorisation())) {
+                DeltaCUMP delta = deltas.computeIfAbsent(article.getId(), id -> new DeltaCUMP(article));
+                delta.quantite = delta.quantite.add(entree ? mouvement.getQuantite() : mouvement.getQuantite().negate());
+                delta.valeur = delta.valeur.add(entree ? mouvement.getValeurTotale() : mouvement.getValeurTotale().negate());
+            } else if ("FIFO".equals(article.getMethodeValorisation()) && entree) {
+                String cle = article.getId() + "/" + mouvement.getDepot().getId();
+                // La reprise de l'historique inclut déjà les entrées du lot
+                if (reprisesHistorique.contains(cle) || amorcerCouchesFIFO(article, mouvement.getDepot())) {
+                    reprisesHistorique.add(cle);
+                    continue;
+                }
+                couches.add(nouvelleCouche(mouvement));
+            }
+        }
+        coucheFifoRepository.saveAll(couches);
+        for (DeltaCUMP delta : deltas.values()) {
+            cumulerCUMP(delta.article, delta.quantite, delta.valeur);
+        }
+    }
+
+    private static CoucheFifo nouvelleCouche(MouvementStock entree) {
+        CoucheFifo couche = new CoucheFifo();
+        couche.setArticle(entree.getArticle());
+        couche.setDepot(entree.getDepot());
+        couche.setMouvementId(entree.getId());
+        couche.setLotNumero(entree.getLotNumero());
+        couche.setDateEntree(entree.getDateMouvement());
+        couche.setCoutUnitaire(entree.getCoutUnitaire());
+        couche.setQuantiteInitiale(entree.getQuantite());
+        couche.setQuantiteRestante(entree.getQuantite());
+        couche.setCreatedAt(LocalDateTime.now());
+        return couche;
+    }
+
+    /**
+     * TODO.YML Ligne 39: Enregistrer une sortie de stock (CUMP : retrait des totaux courants)
+     */
+    public void enregistrerSortie(MouvementStock sortie) {
+        Article article = sortie.getArticle();
+        if ("CUMP".equals(article.getMethodeValorisation())) {
+            cumulerCUMP(article, sortie.getQuantite().negate(), sortie.getValeurTotale().negate());
+        }
+    }
+
+    /**
+     * TODO.YML Ligne 39: Méthode FIFO (First In, First Out)
+     * Estimation sans consommation : coût moyen des couches les plus anciennes
+     */
+    private BigDecimal getCoutFIFO(Article article, Depot depot, BigDecimal quantiteDemandee) {
         BigDecimal quantiteRestante = quantiteDemandee;
         BigDecimal valeurTotale = BigDecimal.ZERO;
         BigDecimal quantiteUtilisee = BigDecimal.ZERO;
 
-        for (MouvementStock entree : entrees) {
-            if (quantiteRestante.compareTo(BigDecimal.ZERO) <= 0) {
+        for (int numeroPage = 0; quantiteRestante.signum() > 0; numeroPage++) {
+            List<CoucheFifo> couches = coucheFifoRepository.findCouchesOuvertesLecture(article.getId(), depot.getId(),
+                    PageRequest.of(numeroPage, TAILLE_PAGE_COUCHES));
+            if (couches.isEmpty()) {
                 break;
             }
-
-            BigDecimal qteDisponible = entree.getQuantite();
-            BigDecimal qteAPrendre = qteDisponible.min(quantiteRestante);
-
-            valeurTotale = valeurTotale.add(qteAPrendre.multiply(entree.getCoutUnitaire()));
-            quantiteUtilisee = quantiteUtilisee.add(qteAPrendre);
-            quantiteRestante = quantiteRestante.subtract(qteAPrendre);
+            for (CoucheFifo couche : couches) {
+                BigDecimal qteAPrendre = couche.getQuantiteRestante().min(quantiteRestante);
+                valeurTotale = valeurTotale.add(qteAPrendre.multiply(couche.getCoutUnitaire()));
+                quantiteUtilisee = quantiteUtilisee.add(qteAPrendre);
+                quantiteRestante = quantiteRestante.subtract(qteAPrendre);
+                if (quantiteRestante.signum() == 0) {
+                    break;
+                }
+            }
         }
 
         if (quantiteUtilisee.compareTo(BigDecimal.ZERO) == 0) {
-            return article.getPrixAchatMoyen() != null ? article.getPrixAchatMoyen() : BigDecimal.ZERO;
+            return prixAchatMoyen(article);
         }
 
         return valeurTotale.divide(quantiteUtilisee, 6, RoundingMode.HALF_UP);
     }
 
+    /**
+     * Reprise de l'existant : si l'article/dépôt n'a encore aucune couche, les reconstruit
+     * une seule fois depuis l'historique (entrées les plus anciennes diminuées du total des sorties)
+     * Contrôle et reprise sous le verrou de la ligne article : deux premiers mouvements simultanés
+     * (même sur deux instances) ne reconstruisent pas deux fois les couches. Le verrou n'est pris
+     * qu'en l'absence de couches, et une seule fois pour un article/dépôt sans entrée dans l'historique
+     * (ses entrées suivantes créent leur couche) : les sorties d'un article sans historique ne sont pas sérialisées.
+     * Retourne true si des couches ont été créées depuis l'historique
+     */
+    private boolean amorcerCouchesFIFO(Article article, Depot depot) {
+        String cle = article.getId() + "/" + depot.getId();
+        if (couchesAmorcees.contains(cle)) {
+            return false;
+        }
+        if (coucheFifoRepository.existsByArticleIdAndDepotId(article.getId(), depot.getId())) {
+            couchesAmorcees.add(cle);
+            return false;
+        }
+        articleRepository.verrouiller(article.getId());
+        if (coucheFifoRepository.existsByArticleIdAndDepotId(article.getId(), depot.getId())) {
+            couchesAmorcees.add(cle);
+            return false;
+        }
+
+        List<MouvementStock> entrees = mouvementStockRepository.findEntreesFIFO(article.getId(), depot.getId());
+        BigDecimal sortiesAImputer = mouvementStockRepository.sumSortiesByArticleAndDepot(article.getId(), depot.getId());
+        int creees = 0;
+        for (MouvementStock entree : entrees) {
+            if (entree.getQuantite() == null) {
+                continue;
+            }
+            BigDecimal imputee = entree.getQuantite().min(sortiesAImputer);
+            sortiesAImputer = sortiesAImputer.subtract(imputee);
+
+            CoucheFifo couche = new CoucheFifo();
+            couche.setArticle(article);
+            couche.setDepot(depot);
+            couche.setMouvementId(entree.getId());
+            couche.setLotNumero(entree.getLotNumero());
+            couche.setDateEntree(entree.getDateMouvement());
+            couche.setCoutUnitaire(entree.getCoutUnitaire() != null ? entree.getCoutUnitaire() : BigDecimal.ZERO);
+            couche.setQuantiteInitiale(entree.getQuantite());
+            couche.setQuantiteRestante(entree.getQuantite().subtract(imputee));
+            couche.setCreatedAt(LocalDateTime.now());
+            coucheFifoRepository.save(couche);
+            creees++;
+        }
+        // Couches créées : la clé n'est mémorisée qu'une fois les couches validées (relues par existsBy...) ;
+        // aucune entrée : rien à reprendre, même si la transaction est annulée
+        if (creees > 0) {
+            log.info("Couches FIFO reconstruites depuis l'historique: article {} dépôt {} ({} couches)",
+                    article.getId(), depot.getId(), creees);
+        } else {
+            couchesAmorcees.add(cle);
+        }
+        return creees > 0;
+    }
+
+    private static BigDecimal prixAchatMoyen(Article article) {
+        return article.getPrixAchatMoyen() != null ? article.getPrixAchatMoyen() : BigDecimal.ZERO;
+    }
+
     /**
      * TODO.YML Ligne 39: Méthode CUMP (Coût Unitaire Moyen Pondéré)
      * Retourne le CUMP actuel de l'article
      */
     private BigDecimal getCoutCUMP(Article article) {
+        // Mode par transaction : les entrées en attente de l'article doivent compter pour la sortie
+        Map<Long, DeltaCUMP> deltas = deltasEnAttente();
+        if (deltas != null) {
+            DeltaCUMP delta = deltas.remove(article.getId());
+            if (delta != null) {
+                appliquerCUMP(delta.article, delta.quantite, delta.valeur);
+            }
+        }
         return article.getPrixAchatMoyen() != null ? article.getPrixAchatMoyen() : BigDecimal.ZERO;
     }
 
     /**
-     * TODO.YML Ligne 39: Recalculer le CUMP après une entrée
-     * CUMP = (Valeur stock existant + Valeur nouvelle entrée) / (Qté existante +
-     * Qté entrée)
+     * TODO.YML Ligne 39: Ajouter un delta quantité/valeur au CUMP de l'article
+     * Immédiat, ou regroupé jusqu'au commit en mode par transaction
      */
-    public void recalculerCUMP(Long articleId) {
-        Article article = articleRepository.findById(articleId)
-                .orElseThrow(() -> new RuntimeException("Article non trouvé: " + articleId));
+    private void cumulerCUMP(Article article, BigDecimal quantite, BigDecimal valeur) {
+        if (!cumpParTransaction || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            appliquerCUMP(article, quantite, valeur);
+            return;
+        }
+        Map<Long, DeltaCUMP> deltas = deltasEnAttente();
+        if (deltas == null) {
+            Map<Long, DeltaCUMP> nouveaux = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(cleDeltasCUMP, nouveaux);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    for (DeltaCUMP delta : nouveaux.values()) {
+                        appliquerCUMP(delta.article, delta.quantite, delta.valeur);
+                    }
+                    nouveaux.clear();
+                }
 
-        // Somme des valeurs et quantités de tout le stock
-        List<StockDisponible> stocks = stockDisponibleRepository.findByArticleId(articleId);
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(cleDeltasCUMP);
+                }
+            });
+            deltas = nouveaux;
+        }
+        DeltaCUMP delta = deltas.computeIfAbsent(article.getId(), id -> new DeltaCUMP(article));
+        delta.quantite = delta.quantite.add(quantite);
+        delta.valeur = delta.valeur.add(valeur);
+    }
 
-        BigDecimal valeurTotale = BigDecimal.ZERO;
-        BigDecimal quantiteTotale = BigDecimal.ZERO;
+    /**
+     * TODO.YML Ligne 39: Répercuter sur les totaux CUMP une correction du stock faite hors mouvement
+     * (réconciliation), dans la transaction de la correction
+     */
+    public void ajusterCUMP(Long articleId, BigDecimal quantite, BigDecimal valeur) {
+        if (quantite.signum() == 0 && valeur.signum() == 0) {
+            return;
+        }
+        Article article = articleRepository.findById(articleId)
+                .orElseThrow(() -> new RuntimeException("Article non trouvé: " + articleId));
+        appliquerCUMP(article, quantite, valeur);
+    }
 
-        for (StockDisponible stock : stocks) {
-            if (stock.getQuantitePhysique() != null && stock.getQuantitePhysique().compareTo(BigDecimal.ZERO) > 0) {
-                valeurTotale = valeurTotale
-                        .add(stock.getValeurStock() != null ? stock.getValeurStock() : BigDecimal.ZERO);
-                quantiteTotale = quantiteTotale.add(stock.getQuantitePhysique());
+    /**
+     * Applique un delta aux totaux courants (une requête) et met à jour le CUMP de l'article
+     */
+    private void appliquerCUMP(Article article, BigDecimal quantite, BigDecimal valeur) {
+        Optional<CumulValorisationRepository.Totaux> totaux =
+                cumulValorisationRepository.cumuler(article.getId(), quantite, valeur);
+        if (totaux.isEmpty()) {
+            // Premier mouvement suivi : reprise depuis le stock, qui inclut déjà ce mouvement
+            BigDecimal quantiteStock = stockDisponibleRepository.sumQuantitePhysiquePositiveByArticle(article.getId());
+            BigDecimal valeurStock = stockDisponibleRepository.sumValeurStockPositifByArticle(article.getId());
+            if (cumulValorisationRepository.initialiser(article.getId(), quantiteStock, valeurStock) > 0) {
+                majPrixAchatMoyen(article, quantiteStock, valeurStock);
+                return;
             }
+            totaux = cumulValorisationRepository.cumuler(article.getId(), quantite, valeur);
+        }
+        CumulValorisationRepository.Totaux nouveaux = totaux
+                .orElseThrow(() -> new IllegalStateException("Cumul de valorisation introuvable: " + article.getId()));
+        majPrixAchatMoyen(article, nouveaux.getQuantiteTotale(), nouveaux.getValeurTotale());
+    }
+
+    private void majPrixAchatMoyen(Article article, BigDecimal quantiteTotale, BigDecimal valeurTotale) {
+        // Stock épuisé : le dernier CUMP reste valable
+        if (quantiteTotale.signum() <= 0) {
+            return;
+        }
+        BigDecimal nouveauCUMP = valeurTotale.divide(quantiteTotale, 4, RoundingMode.HALF_UP);
+        if (article.getPrixAchatMoyen() == null || nouveauCUMP.compareTo(article.getPrixAchatMoyen()) != 0) {
+            // Mise à jour ciblée : l'article reçu peut être détaché, un save le fusionnerait en écrasant
+            // les autres champs ; l'instance reçue est seulement tenue à jour
+            articleRepository.majPrixAchatMoyen(article.getId(), nouveauCUMP);
+            article.setPrixAchatMoyen(nouveauCUMP);
+            referentielCacheService.invaliderArticle(article.getId());
         }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, DeltaCUMP> deltasEnAttente() {
+        return (Map<Long, DeltaCUMP>) TransactionSynchronizationManager.getResource(cleDeltasCUMP);
+    }
+
+    /**
+     * TODO.YML Ligne 39: Recalcul complet du CUMP depuis le stock (reprise, contrôle)
+     * CUMP = (Valeur stock existant + Valeur nouvelle entrée) / (Qté existante +
+     * Qté entrée)
+     * Les totaux courants de l'article sont remis aux valeurs recalculées
+     */
+    public void recalculerCUMP(Long articleId) {
+        // Somme des valeurs et quantités de tout le stock (agrégées en base, à jour des deltas)
+        BigDecimal valeurTotale = stockDisponibleRepository.sumValeurStockPositifByArticle(articleId);
+        BigDecimal quantiteTotale = stockDisponibleRepository.sumQuantitePhysiquePositiveByArticle(articleId);
+        cumulValorisationRepository.reinitialiser(articleId, quantiteTotale, valeurTotale);
 
         if (quantiteTotale.compareTo(BigDecimal.ZERO) > 0) {
             BigDecimal nouveauCUMP = valeurTotale.divide(quantiteTotale, 4, RoundingMode.HALF_UP);
-            article.setPrixAchatMoyen(nouveauCUMP);
-            articleRepository.save(article);
+            // Mise à jour ciblée : l'article n'est pas relu
+            if (articleRepository.majPrixAchatMoyen(articleId, nouveauCUMP) == 0) {
+                throw new RuntimeException("Article non trouvé: " + articleId);
+            }
+            referentielCacheService.invaliderArticle(articleId);
         }
     }
 
@@ -160,4 +468,17 @@ public class ValorisationService {
                 .divide(ancienCout, 4, RoundingMode.HALF_UP)
                 .multiply(new BigDecimal("100")); // En pourcentage
     }
+
+    /**
+     * Delta quantité/valeur CUMP d'un article en attente du commit
+     */
+    private static final class DeltaCUMP {
+        private final Article article;
+        private BigDecimal quantite = BigDecimal.ZERO;
+        private BigDecimal valeur = BigDecimal.ZERO;
+
+        private DeltaCUMP(Article article) {
+            this.article = article;
+        }
+    }
 }
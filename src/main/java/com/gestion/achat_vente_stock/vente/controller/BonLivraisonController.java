@@ -63,7 +63,7 @@ public class BonLivraisonController {
             RedirectAttributes redirectAttributes) {
         try {
             // TODO.YML Ligne 26: Vérifier la disponibilité du stock
-            boolean stockDisponible = bonLivraisonService.verifierDisponibiliteStock(commandeId);
+            boolean stockDisponible = bonLivraisonService.verifierDisponibiliteStock(commandeId, depotId);
             if (!stockDisponible) {
                 redirectAttributes.addFlashAttribute("error",
                         "Stock insuffisant pour cette commande. Livraison bloquée.");
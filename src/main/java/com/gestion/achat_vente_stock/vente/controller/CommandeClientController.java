@@ -5,16 +5,23 @@ import com.gestion.achat_vente_stock.admin.model.Utilisateur;
 import com.gestion.achat_vente_stock.admin.repository.UtilisateurRepository;
 import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 import com.gestion.achat_vente_stock.referentiel.repository.ClientRepository;
+import com.gestion.achat_vente_stock.referentiel.service.DepotService;
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService;
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService.PrixResolu;
+import com.gestion.achat_vente_stock.stock.service.DisponibiliteService;
+import com.gestion.achat_vente_stock.stock.service.DisponibiliteService.Disponibilite;
 import com.gestion.achat_vente_stock.vente.model.CommandeClient;
 import com.gestion.achat_vente_stock.vente.model.LigneCommandeClient;
 import com.gestion.achat_vente_stock.vente.service.CommandeClientService;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +44,9 @@ public class CommandeClientController {
     private final ArticleRepository articleRepository;
     private final UtilisateurRepository utilisateurRepository;
     private final ObjectMapper objectMapper;
+    private final DepotService depotService;
+    private final DisponibiliteService disponibiliteService;
+    private final TarificationService tarificationService;
 
     // ==================== LISTE ====================
 
@@ -109,6 +119,7 @@ public class CommandeClientController {
     public String detail(@PathVariable Long id, Model model) {
         CommandeClient commande = commandeClientService.obtenirParId(id);
         model.addAttribute("commande", commande);
+        model.addAttribute("depots", depotService.listerActifs());
         return "ventes/commandes/detail";
     }
 
@@ -169,10 +180,11 @@ public class CommandeClientController {
      * TODO.YML Ligne 23: Réserver le stock
      */
     @PostMapping("/{id}/reserver-stock")
-    public String reserverStock(@PathVariable Long id, RedirectAttributes redirectAttributes) {
+    public String reserverStock(@PathVariable Long id, @RequestParam Long depotId,
+                                RedirectAttributes redirectAttributes) {
         try {
             Utilisateur utilisateur = utilisateurRepository.findById(1L).orElse(null);
-            commandeClientService.reserverStock(id, utilisateur);
+            commandeClientService.reserverStock(id, depotId, utilisateur);
             redirectAttributes.addFlashAttribute("success", "Stock réservé pour la commande");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Erreur: " + e.getMessage());
@@ -239,6 +251,26 @@ public class CommandeClientController {
         return convertLignesToList(commande.getLignes());
     }
 
+    /**
+     * TODO.YML Ligne 23: Disponible à promettre des articles saisis, par dépôt (tous les dépôts si aucun)
+     */
+    @GetMapping("/api/disponibilite")
+    @ResponseBody
+    public List<Disponibilite> getDisponibilite(@RequestParam List<Long> articleIds,
+            @RequestParam(required = false) List<Long> depotIds) {
+        return disponibiliteService.consulter(articleIds, depotIds);
+    }
+
+    /**
+     * TODO.YML Ligne 22: Prix des articles saisis pour le client (tarif valide à la date, prix public à défaut)
+     */
+    @GetMapping("/api/prix")
+    @ResponseBody
+    public List<PrixResolu> getPrix(@RequestParam(required = false) Long clientId, @RequestParam List<Long> articleIds,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return new ArrayList<>(tarificationService.resoudre(clientId, articleIds, date).values());
+    }
+
     // ==================== UTILITAIRES ====================
 
     private String convertLignesToJson(List<LigneCommandeClient> lignes) throws Exception {
@@ -8,18 +8,24 @@ import com.gestion.achat_vente_stock.referentiel.dto.ArticleDTO;
 import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
 import com.gestion.achat_vente_stock.referentiel.repository.ClientRepository;
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService;
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService.PrixResolu;
+import com.gestion.achat_vente_stock.stock.service.DisponibiliteService;
+import com.gestion.achat_vente_stock.stock.service.DisponibiliteService.Disponibilite;
 import com.gestion.achat_vente_stock.vente.model.Devis;
 import com.gestion.achat_vente_stock.vente.model.LigneDevis;
 import com.gestion.achat_vente_stock.vente.repository.LigneDevisRepository;
 import com.gestion.achat_vente_stock.vente.service.DevisService;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -43,6 +49,8 @@ public class DevisController {
     private final ArticleRepository articleRepository;
     private final UtilisateurRepository utilisateurRepository;
     private final ObjectMapper objectMapper;
+    private final DisponibiliteService disponibiliteService;
+    private final TarificationService tarificationService;
 
     // ==================== LISTE ====================
 
@@ -239,6 +247,42 @@ public class DevisController {
         return convertLignesToList(devis.getLignes());
     }
 
+    /**
+     * TODO.YML Ligne 21: Disponible à promettre des articles saisis, par dépôt (tous les dépôts si aucun)
+     */
+    @GetMapping("/api/disponibilite")
+    @ResponseBody
+    public List<Disponibilite> getDisponibilite(@RequestParam List<Long> articleIds,
+            @RequestParam(required = false) List<Long> depotIds) {
+        return disponibiliteService.consulter(articleIds, depotIds);
+    }
+
+    /**
+     * TODO.YML Ligne 20: Prix des articles saisis pour le client (tarif valide à la date, prix public à défaut)
+     */
+    @GetMapping("/api/prix")
+    @ResponseBody
+    public List<PrixResolu> getPrix(@RequestParam(required = false) Long clientId, @RequestParam List<Long> articleIds,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return new ArrayList<>(tarificationService.resoudre(clientId, articleIds, date).values());
+    }
+
+    /**
+     * TODO.YML Ligne 21: Disponible à promettre de tous les articles d'un devis, en un appel
+     */
+    @GetMapping("/api/{id}/disponibilite")
+    @ResponseBody
+    public List<Disponibilite> getDisponibiliteDevis(@PathVariable Long id,
+            @RequestParam(required = false) List<Long> depotIds) {
+        Devis devis = devisService.obtenirParId(id);
+        List<Long> articleIds = devis.getLignes().stream()
+                .filter(l -> l.getArticle() != null)
+                .map(l -> l.getArticle().getId())
+                .distinct()
+                .collect(Collectors.toList());
+        return disponibiliteService.consulter(articleIds, depotIds);
+    }
+
     // ==================== UTILITAIRES ====================
 
     /**
@@ -26,7 +26,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Client;
 public class AvoirClient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "avoir_client_seq")
+    @SequenceGenerator(name = "avoir_client_seq", sequenceName = "avoir_client_id_seq", allocationSize = 50)
     private Long id;
 
     /** Numéro unique de l'avoir (ex: AV00001) */
@@ -29,7 +29,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Depot;
 public class BonLivraison {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bon_livraison_seq")
+    @SequenceGenerator(name = "bon_livraison_seq", sequenceName = "bon_livraison_id_seq", allocationSize = 50)
     private Long id;
 
     /** Numéro unique du bon de livraison (ex: BL00001) */
@@ -29,7 +29,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Client;
 public class CommandeClient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "commande_client_seq")
+    @SequenceGenerator(name = "commande_client_seq", sequenceName = "commande_client_id_seq", allocationSize = 50)
     private Long id;
 
     /** Numéro unique de la commande (ex: CC00001) */
@@ -29,7 +29,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Client;
 public class Devis {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "devis_seq")
+    @SequenceGenerator(name = "devis_seq", sequenceName = "devis_id_seq", allocationSize = 50)
     private Long id;
 
     /** Numéro unique du devis (ex: DV00001) */
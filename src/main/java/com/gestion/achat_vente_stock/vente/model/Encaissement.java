@@ -23,7 +23,8 @@ import java.time.LocalDate;
 public class Encaissement {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "encaissement_seq")
+    @SequenceGenerator(name = "encaissement_seq", sequenceName = "encaissement_id_seq", allocationSize = 50)
     private Long id;
 
     /** Numéro unique de l'encaissement (ex: ENC00001) */
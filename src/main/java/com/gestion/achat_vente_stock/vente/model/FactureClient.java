@@ -28,7 +28,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Client;
 public class FactureClient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "facture_client_seq")
+    @SequenceGenerator(name = "facture_client_seq", sequenceName = "facture_client_id_seq", allocationSize = 50)
     private Long id;
 
     /** Numéro unique de la facture (ex: FC00001) */
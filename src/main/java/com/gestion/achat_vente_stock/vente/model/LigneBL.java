@@ -25,7 +25,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneBL {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_bl_seq")
+    @SequenceGenerator(name = "ligne_bl_seq", sequenceName = "ligne_bl_id_seq", allocationSize = 50)
     private Long id;
 
     /** Bon de livraison parent */
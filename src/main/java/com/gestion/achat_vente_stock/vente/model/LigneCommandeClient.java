@@ -25,7 +25,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneCommandeClient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_commande_client_seq")
+    @SequenceGenerator(name = "ligne_commande_client_seq", sequenceName = "ligne_commande_client_id_seq", allocationSize = 50)
     private Long id;
 
     /** Commande parent */
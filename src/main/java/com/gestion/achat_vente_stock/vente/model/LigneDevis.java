@@ -24,7 +24,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneDevis {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_devis_seq")
+    @SequenceGenerator(name = "ligne_devis_seq", sequenceName = "ligne_devis_id_seq", allocationSize = 50)
     private Long id;
 
     /** Devis parent */
@@ -24,7 +24,8 @@ import com.gestion.achat_vente_stock.referentiel.model.Article;
 public class LigneFactureClient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_facture_client_seq")
+    @SequenceGenerator(name = "ligne_facture_client_seq", sequenceName = "ligne_facture_client_id_seq", allocationSize = 50)
     private Long id;
 
     /** Facture parent */
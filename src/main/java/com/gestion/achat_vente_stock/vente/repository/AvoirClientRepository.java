@@ -2,6 +2,8 @@ package com.gestion.achat_vente_stock.vente.repository;
 
 import com.gestion.achat_vente_stock.vente.model.AvoirClient;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -31,4 +33,10 @@ public interface AvoirClientRepository extends JpaRepository<AvoirClient, Long>
 
     /** Compter le nombre d'avoirs */
     long count();
+
+    /** Plus grande séquence numérique des numéros du préfixe (amorce de la numérotation) */
+    @Query(value = "SELECT MAX(CAST(SUBSTRING(numero, LENGTH(:prefix) + 1) AS BIGINT)) FROM avoir_client " +
+            "WHERE numero LIKE :prefix || '%' AND SUBSTRING(numero, LENGTH(:prefix) + 1) ~ '^[0-9]+$'",
+            nativeQuery = true)
+    Optional<Long> findDerniereSequence(@Param("prefix") String prefix);
 }
@@ -2,6 +2,8 @@ package com.gestion.achat_vente_stock.vente.repository;
 
 import com.gestion.achat_vente_stock.vente.model.LigneBL;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,6 +18,11 @@ public interface LigneBLRepository extends JpaRepository<LigneBL, Long> {
     /** Rechercher les lignes par bon de livraison */
     List<LigneBL> findByBonLivraisonId(Long bonLivraisonId);
 
+    /** TODO.YML Ligne 25: Lignes d'un BL avec article et ligne de commande en une requête (sortie de stock) */
+    @Query("SELECT l FROM LigneBL l JOIN FETCH l.article JOIN FETCH l.ligneCommande " +
+           "WHERE l.bonLivraison.id = :bonLivraisonId ORDER BY l.id")
+    List<LigneBL> findByBonLivraisonIdAvecArticle(@Param("bonLivraisonId") Long bonLivraisonId);
+
     /** Supprimer les lignes d'un BL */
     void deleteByBonLivraisonId(Long bonLivraisonId);
 }
@@ -1,6 +1,7 @@
 package com.gestion.achat_vente_stock.vente.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
 import com.gestion.achat_vente_stock.vente.model.AvoirClient;
 import com.gestion.achat_vente_stock.vente.model.FactureClient;
@@ -28,6 +29,8 @@ public class AvoirClientService {
     private final AvoirClientRepository avoirClientRepository;
     private final FactureClientRepository factureClientRepository;
     private final AuditService auditService;
+    private final NumerotationService numerotationService;
+    private final ExpositionCreditService expositionCreditService;
 
     /** Préfixe pour les numéros d'avoir */
     private static final String PREFIXE_NUMERO = "AV";
@@ -181,6 +184,7 @@ public class AvoirClientService {
         }
 
         avoirClientRepository.save(avoir);
+        actualiserFacture(avoir);
 
         auditService.logAction(valideur, "avoir_client", avoirId,
                 approuve ? "APPROVE" : "REJECT", ancienStatut, avoir.getStatut(), commentaire);
@@ -245,6 +249,7 @@ public class AvoirClientService {
         String ancienStatut = avoir.getStatut();
         avoir.setStatut("ANNULE");
         avoirClientRepository.save(avoir);
+        actualiserFacture(avoir);
 
         if (utilisateur != null) {
             auditService.logAction(utilisateur, "avoir_client", avoirId,
@@ -258,7 +263,16 @@ public class AvoirClientService {
      * Générer un numéro unique d'avoir
      */
     private String genererNumero() {
-        long count = avoirClientRepository.count() + 1;
-        return PREFIXE_NUMERO + String.format("%05d", count);
+        return numerotationService.genererNumeroSansTrou(PREFIXE_NUMERO, 5,
+                cle -> avoirClientRepository.findDerniereSequence(cle).orElse(0L));
+    }
+
+    /**
+     * Un avoir validé réduit le solde de sa facture, donc l'encours du client
+     */
+    private void actualiserFacture(AvoirClient avoir) {
+        if (avoir.getFactureClient() != null) {
+            expositionCreditService.actualiserFactureApresCommit(avoir.getFactureClient().getId());
+        }
     }
 }
@@ -1,8 +1,17 @@
 package com.gestion.achat_vente_stock.vente.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
+import com.gestion.achat_vente_stock.referentiel.model.Article;
 import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository.LigneStock;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository.QuantiteArticle;
+import com.gestion.achat_vente_stock.stock.service.MouvementStockService;
+import com.gestion.achat_vente_stock.stock.service.MouvementStockService.LigneMouvement;
+import com.gestion.achat_vente_stock.stock.service.ReservationStockService;
+import com.gestion.achat_vente_stock.stock.service.ReservationStockService.Prelevement;
 import com.gestion.achat_vente_stock.vente.model.*;
 import com.gestion.achat_vente_stock.vente.repository.*;
 
@@ -12,7 +21,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * TODO.YML Lignes 24-26: Ventes > Livraison
@@ -30,9 +43,15 @@ public class BonLivraisonService {
     private final CommandeClientRepository commandeClientRepository;
     private final LigneCommandeClientRepository ligneCommandeClientRepository;
     private final AuditService auditService;
+    private final NumerotationService numerotationService;
+    private final ReservationStockService reservationStockService;
+    private final MouvementStockService mouvementStockService;
+    private final StockDisponibleRepository stockDisponibleRepository;
 
     /** Préfixe pour les numéros de BL */
     private static final String PREFIXE_NUMERO = "BL";
+    /** Type de document des mouvements de sortie */
+    private static final String TYPE_DOCUMENT = "BON_LIVRAISON";
 
     // ==================== CRUD ====================
 
@@ -186,7 +205,13 @@ public class BonLivraisonService {
     }
 
     /**
-     * Confirmer la livraison
+     * TODO.YML Lignes 25-26: Confirmer la livraison et sortir la marchandise du stock
+     * - Lignes du BL lues avec article et ligne de commande en une requête
+     * - Réservations de la commande consommées en une fois (ReservationStockService.consommerLivraison)
+     * - Disponible contrôlé pour toutes les lignes en une requête : livraison bloquée si une ligne manque de stock
+     * - Sorties SORTIE_LIVRAISON valorisées et postées en un lot (MouvementStockService.posterLot)
+     * Quantités livrées des lignes de commande mises à jour sans enregistrement ligne à ligne
+     * (lots JDBC Hibernate à la fin de la transaction). Tout ou rien.
      */
     public void confirmerLivraison(Long blId, Utilisateur utilisateur) {
         BonLivraison bl = obtenirParId(blId);
@@ -194,21 +219,44 @@ public class BonLivraisonService {
         if (!"EXPEDIE".equals(bl.getStatut())) {
             throw new IllegalStateException("Ce BL n'est pas en cours d'expédition");
         }
+        Depot depot = bl.getDepot();
+        if (depot == null) {
+            throw new IllegalStateException("Aucun dépôt renseigné sur le BL " + bl.getNumero());
+        }
+        CommandeClient commande = bl.getCommandeClient();
+
+        List<LigneBL> lignes = ligneBLRepository.findByBonLivraisonIdAvecArticle(blId).stream()
+                .filter(l -> l.getQuantiteLivree() != null && l.getQuantiteLivree().signum() > 0)
+                .toList();
+        Map<Long, Article> articles = new HashMap<>();
+        List<Prelevement> prelevements = new ArrayList<>(lignes.size());
+        for (LigneBL ligne : lignes) {
+            articles.putIfAbsent(ligne.getArticle().getId(), ligne.getArticle());
+            prelevements.add(new Prelevement(ligne.getArticle().getId(), ligne.getLotNumero(), ligne.getQuantiteLivree()));
+        }
+
+        if (!prelevements.isEmpty()) {
+            // Réservations libérées d'abord : le stock réservé pour cette commande redevient disponible pour sa sortie
+            List<Prelevement> sorties = reservationStockService.consommerLivraison(commande.getId(), depot, prelevements);
+            controlerDisponibilite(depot, sorties, articles);
+            mouvementStockService.posterLot(sorties.stream()
+                    .map(p -> LigneMouvement.sortie(articles.get(p.articleId()), depot,
+                            MouvementStockService.SORTIE_LIVRAISON, p.quantite(), null, p.lotNumero(), blId,
+                            TYPE_DOCUMENT))
+                    .toList(), utilisateur);
+        }
 
         bl.setStatut("LIVRE");
-        bonLivraisonRepository.save(bl);
 
-        // Mettre à jour les quantités livrées sur la commande
-        for (LigneBL ligneBL : bl.getLignes()) {
+        // Mettre à jour les quantités livrées sur la commande (entités déjà chargées avec les lignes du BL)
+        for (LigneBL ligneBL : lignes) {
             LigneCommandeClient ligneCC = ligneBL.getLigneCommande();
-            BigDecimal totalLivree = ligneCC.getQuantiteLivree() != null 
+            BigDecimal totalLivree = ligneCC.getQuantiteLivree() != null
                     ? ligneCC.getQuantiteLivree() : BigDecimal.ZERO;
             ligneCC.setQuantiteLivree(totalLivree.add(ligneBL.getQuantiteLivree()));
-            ligneCommandeClientRepository.save(ligneCC);
         }
 
         // Vérifier si la commande est totalement livrée
-        CommandeClient commande = bl.getCommandeClient();
         boolean toutLivre = true;
         for (LigneCommandeClient ligne : commande.getLignes()) {
             if (ligne.getQuantiteLivree() == null 
@@ -220,31 +268,78 @@ public class BonLivraisonService {
 
         if (toutLivre) {
             commande.setStatut("LIVREE");
-            commandeClientRepository.save(commande);
         }
 
         auditService.logAction(utilisateur, "bon_livraison", blId,
                 "DELIVER", "EXPEDIE", "LIVRE", null);
     }
 
+    /**
+     * TODO.YML Ligne 26: Bloquer la livraison si stock insuffisant
+     * Contrôle de toutes les sorties en une requête ; le message liste chaque article/lot en défaut
+     */
+    private void controlerDisponibilite(Depot depot, List<Prelevement> sorties, Map<Long, Article> articles) {
+        Map<String, BigDecimal> disponibles = new HashMap<>();
+        for (LigneStock stock : stockDisponibleRepository.findLignesStock(articles.keySet(), List.of(depot.getId()))) {
+            disponibles.merge(stock.getArticleId() + "|" + stock.getLotNumero(),
+                    stock.getQuantiteDisponible() != null ? stock.getQuantiteDisponible() : BigDecimal.ZERO,
+                    BigDecimal::add);
+        }
+        Map<String, BigDecimal> demandes = new LinkedHashMap<>();
+        Map<String, Prelevement> premiers = new HashMap<>();
+        for (Prelevement sortie : sorties) {
+            String cle = sortie.articleId() + "|" + sortie.lotNumero();
+            demandes.merge(cle, sortie.quantite(), BigDecimal::add);
+            premiers.putIfAbsent(cle, sortie);
+        }
+
+        List<String> manquants = new ArrayList<>();
+        demandes.forEach((cle, demande) -> {
+            BigDecimal disponible = disponibles.getOrDefault(cle, BigDecimal.ZERO);
+            if (disponible.compareTo(demande) < 0) {
+                Prelevement sortie = premiers.get(cle);
+                manquants.add(articles.get(sortie.articleId()).getCode()
+                        + (sortie.lotNumero() != null ? " (lot " + sortie.lotNumero() + ")" : "")
+                        + " : disponible " + disponible + ", demandé " + demande);
+            }
+        });
+        if (!manquants.isEmpty()) {
+            throw new IllegalStateException("Stock insuffisant, livraison bloquée: " + String.join("; ", manquants));
+        }
+    }
+
     /**
      * TODO.YML Ligne 26: Vérifier la disponibilité du stock
+     * Reste à livrer de chaque article comparé, en une requête, au disponible du dépôt
+     * augmenté de ce que la commande y a déjà réservé
      */
-    public boolean verifierDisponibiliteStock(Long commandeId) {
+    @Transactional(readOnly = true)
+    public boolean verifierDisponibiliteStock(Long commandeId, Long depotId) {
         CommandeClient commande = commandeClientRepository.findById(commandeId)
                 .orElseThrow(() -> new IllegalArgumentException("Commande non trouvée: " + commandeId));
 
-        // TODO: Implémenter la vérification réelle avec le module Stock
-        // Pour l'instant, retourne toujours true
+        Map<Long, BigDecimal> restes = new HashMap<>();
         for (LigneCommandeClient ligne : commande.getLignes()) {
-            // Vérifier stock disponible pour chaque article
-            // BigDecimal stockDisponible = stockService.getStockDisponible(ligne.getArticle().getId());
-            // if (stockDisponible.compareTo(ligne.getQuantite()) < 0) {
-            //     return false;
-            // }
+            if (ligne.getArticle() == null || ligne.getQuantite() == null) {
+                continue;
+            }
+            BigDecimal reste = ligne.getQuantite()
+                    .subtract(ligne.getQuantiteLivree() != null ? ligne.getQuantiteLivree() : BigDecimal.ZERO);
+            if (reste.signum() > 0) {
+                restes.merge(ligne.getArticle().getId(), reste, BigDecimal::add);
+            }
+        }
+        if (restes.isEmpty()) {
+            return true;
         }
 
-        return true;
+        Map<Long, BigDecimal> disponibles = new HashMap<>();
+        for (QuantiteArticle disponible : stockDisponibleRepository.sumDisponiblePourCommande(
+                depotId, commandeId, restes.keySet())) {
+            disponibles.put(disponible.getArticleId(), disponible.getQuantite());
+        }
+        return restes.entrySet().stream().allMatch(reste ->
+                disponibles.getOrDefault(reste.getKey(), BigDecimal.ZERO).compareTo(reste.getValue()) >= 0);
     }
 
     // ==================== UTILITAIRES ====================
@@ -253,7 +348,7 @@ public class BonLivraisonService {
      * Générer un numéro unique de BL
      */
     private String genererNumero() {
-        long count = bonLivraisonRepository.count() + 1;
-        return PREFIXE_NUMERO + String.format("%05d", count);
+        return numerotationService.genererNumero(PREFIXE_NUMERO, 5,
+                cle -> bonLivraisonRepository.findDerniereSequence(cle).orElse(0L));
     }
 }
@@ -1,7 +1,14 @@
 package com.gestion.achat_vente_stock.vente.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.referentiel.repository.DepotRepository;
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService;
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService.PrixResolu;
+import com.gestion.achat_vente_stock.stock.service.ReservationStockService;
+import com.gestion.achat_vente_stock.stock.service.ReservationStockService.AllocationReservation;
 import com.gestion.achat_vente_stock.vente.model.*;
 import com.gestion.achat_vente_stock.vente.repository.CommandeClientRepository;
 import com.gestion.achat_vente_stock.vente.repository.LigneCommandeClientRepository;
@@ -14,7 +21,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * TODO.YML Lignes 22-23: Ventes > Commande Client
@@ -30,6 +39,11 @@ public class CommandeClientService {
     private final LigneCommandeClientRepository ligneCommandeClientRepository;
     private final DevisRepository devisRepository;
     private final AuditService auditService;
+    private final NumerotationService numerotationService;
+    private final ReservationStockService reservationStockService;
+    private final DepotRepository depotRepository;
+    private final TarificationService tarificationService;
+    private final ExpositionCreditService expositionCreditService;
 
     /** Préfixe pour les numéros de commande */
     private static final String PREFIXE_NUMERO = "CC";
@@ -46,6 +60,7 @@ public class CommandeClientService {
         commande.setStatut("BROUILLON");
         commande.setStockReserve(false);
 
+        tarifer(commande);
         calculerTotaux(commande);
 
         CommandeClient saved = commandeClientRepository.save(commande);
@@ -118,8 +133,11 @@ public class CommandeClientService {
             commande.setStatut("BROUILLON");
             commande.setStockReserve(false);
         }
+        tarifer(commande);
         calculerTotaux(commande);
-        return commandeClientRepository.save(commande);
+        CommandeClient saved = commandeClientRepository.save(commande);
+        expositionCreditService.actualiserCommandeApresCommit(saved.getId());
+        return saved;
     }
 
     /**
@@ -157,6 +175,8 @@ public class CommandeClientService {
         }
 
         commande.setStatut("CONFIRMEE");
+        // Contrôle de la limite de crédit du client, commande comprise
+        expositionCreditService.engagerCommande(commande);
         commandeClientRepository.save(commande);
 
         auditService.logAction(utilisateur, "commande_client", commandeId,
@@ -166,20 +186,31 @@ public class CommandeClientService {
     /**
      * TODO.YML Ligne 23: Réserver le stock pour une commande
      */
-    public void reserverStock(Long commandeId, Utilisateur utilisateur) {
+    public void reserverStock(Long commandeId, Long depotId, Utilisateur utilisateur) {
         CommandeClient commande = obtenirParId(commandeId);
 
-        if (commande.getStockReserve()) {
+        if (Boolean.TRUE.equals(commande.getStockReserve())) {
             throw new IllegalStateException("Le stock est déjà réservé pour cette commande");
         }
+        Depot depot = depotRepository.findById(depotId)
+                .orElseThrow(() -> new RuntimeException("Dépôt non trouvé"));
+
+        // Toutes les lignes réservées en une fois, réparties par lot (FEFO/FIFO)
+        Map<Long, BigDecimal> quantitesParArticle = new LinkedHashMap<>();
+        for (LigneCommandeClient ligne : commande.getLignes()) {
+            if (ligne.getArticle() != null && ligne.getQuantite() != null) {
+                quantitesParArticle.merge(ligne.getArticle().getId(), ligne.getQuantite(), BigDecimal::add);
+            }
+        }
+        List<AllocationReservation> allocations = reservationStockService.reserverCommande(
+                commandeId, depot, quantitesParArticle);
 
-        // TODO: Implémenter la réservation réelle dans le module Stock
-        // Pour l'instant, on marque juste la commande
         commande.setStockReserve(true);
         commandeClientRepository.save(commande);
 
         auditService.logAction(utilisateur, "commande_client", commandeId,
-                "RESERVE_STOCK", null, "Stock réservé", null);
+                "RESERVE_STOCK", null, "Stock réservé: " + allocations.size() + " réservation(s), dépôt "
+                        + depot.getCode(), null);
     }
 
     /**
@@ -192,7 +223,7 @@ public class CommandeClientService {
             throw new IllegalStateException("Aucun stock réservé pour cette commande");
         }
 
-        // TODO: Implémenter la libération réelle dans le module Stock
+        reservationStockService.libererCommande(commandeId);
         commande.setStockReserve(false);
         commandeClientRepository.save(commande);
 
@@ -236,6 +267,7 @@ public class CommandeClientService {
         }
         
         commandeClientRepository.save(commande);
+        expositionCreditService.actualiserCommandeApresCommit(commandeId);
 
         auditService.logAction(utilisateur, "commande_client", commandeId,
                 "CANCEL", ancienStatut, "ANNULEE", motif);
@@ -243,6 +275,38 @@ public class CommandeClientService {
 
     // ==================== CALCULS ====================
 
+    /**
+     * Prix des lignes sans prix unitaire, selon le tarif du client à la date de commande
+     * (prix public à défaut), en une résolution sans requête ; la remise saisie est conservée
+     * @return nombre de lignes tarifées
+     */
+    public int tarifer(CommandeClient commande) {
+        List<Long> articleIds = commande.getLignes().stream()
+                .filter(l -> l.getArticle() != null && l.getPrixUnitaireHt() == null)
+                .map(l -> l.getArticle().getId())
+                .toList();
+        if (articleIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, PrixResolu> prix = tarificationService.resoudre(
+                commande.getClient() != null ? commande.getClient().getId() : null, articleIds,
+                commande.getDateCommande());
+
+        int tarifees = 0;
+        for (LigneCommandeClient ligne : commande.getLignes()) {
+            PrixResolu resolu = ligne.getArticle() != null && ligne.getPrixUnitaireHt() == null
+                    ? prix.get(ligne.getArticle().getId()) : null;
+            if (resolu != null) {
+                ligne.setPrixUnitaireHt(resolu.prixUnitaireHt());
+                if (ligne.getRemisePourcent() == null) {
+                    ligne.setRemisePourcent(resolu.remisePourcent());
+                }
+                tarifees++;
+            }
+        }
+        return tarifees;
+    }
+
     /**
      * Calculer les totaux de la commande
      */
@@ -272,7 +336,7 @@ public class CommandeClientService {
      * Générer un numéro unique de commande
      */
     private String genererNumero() {
-        long count = commandeClientRepository.count() + 1;
-        return PREFIXE_NUMERO + String.format("%05d", count);
+        return numerotationService.genererNumero(PREFIXE_NUMERO, 5,
+                cle -> commandeClientRepository.findDerniereSequence(cle).orElse(0L));
     }
 }
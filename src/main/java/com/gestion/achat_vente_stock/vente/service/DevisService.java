@@ -1,7 +1,10 @@
 package com.gestion.achat_vente_stock.vente.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService;
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService.PrixResolu;
 import com.gestion.achat_vente_stock.vente.model.Devis;
 import com.gestion.achat_vente_stock.vente.model.LigneDevis;
 import com.gestion.achat_vente_stock.vente.repository.DevisRepository;
@@ -15,6 +18,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 /**
  * TODO.YML Lignes 20-21: Ventes > Devis
@@ -29,6 +33,8 @@ public class DevisService {
     private final DevisRepository devisRepository;
     private final LigneDevisRepository ligneDevisRepository;
     private final AuditService auditService;
+    private final NumerotationService numerotationService;
+    private final TarificationService tarificationService;
 
     /** Préfixe pour les numéros de devis */
     private static final String PREFIXE_NUMERO = "DV";
@@ -50,7 +56,8 @@ public class DevisService {
         devis.setDateDevis(LocalDate.now());
         devis.setStatut("BROUILLON");
 
-        // Calcul des totaux
+        // Prix des lignes saisies sans prix, puis totaux
+        tarifer(devis);
         calculerTotaux(devis);
 
         Devis saved = devisRepository.save(devis);
@@ -74,6 +81,7 @@ public class DevisService {
             devis.setDateDevis(LocalDate.now());
             devis.setStatut("BROUILLON");
         }
+        tarifer(devis);
         calculerTotaux(devis);
         return devisRepository.save(devis);
     }
@@ -205,6 +213,37 @@ public class DevisService {
 
     // ==================== CALCULS ====================
 
+    /**
+     * TODO.YML Ligne 20: Prix des lignes sans prix unitaire, selon le tarif du client à la date du devis
+     * (prix public à défaut), en une résolution sans requête ; la remise saisie est conservée
+     * @return nombre de lignes tarifées
+     */
+    public int tarifer(Devis devis) {
+        List<Long> articleIds = devis.getLignes().stream()
+                .filter(l -> l.getArticle() != null && l.getPrixUnitaireHt() == null)
+                .map(l -> l.getArticle().getId())
+                .toList();
+        if (articleIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, PrixResolu> prix = tarificationService.resoudre(
+                devis.getClient() != null ? devis.getClient().getId() : null, articleIds, devis.getDateDevis());
+
+        int tarifees = 0;
+        for (LigneDevis ligne : devis.getLignes()) {
+            PrixResolu resolu = ligne.getArticle() != null && ligne.getPrixUnitaireHt() == null
+                    ? prix.get(ligne.getArticle().getId()) : null;
+            if (resolu != null) {
+                ligne.setPrixUnitaireHt(resolu.prixUnitaireHt());
+                if (ligne.getRemisePourcent() == null) {
+                    ligne.setRemisePourcent(resolu.remisePourcent());
+                }
+                tarifees++;
+            }
+        }
+        return tarifees;
+    }
+
     /**
      * Calculer les totaux du devis
      */
@@ -243,8 +282,8 @@ public class DevisService {
      * Générer un numéro unique de devis
      */
     private String genererNumero() {
-        long count = devisRepository.count() + 1;
-        return PREFIXE_NUMERO + String.format("%05d", count);
+        return numerotationService.genererNumero(PREFIXE_NUMERO, 5,
+                cle -> devisRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     /**
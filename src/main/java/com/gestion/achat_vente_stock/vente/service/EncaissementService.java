@@ -1,6 +1,7 @@
 package com.gestion.achat_vente_stock.vente.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
 import com.gestion.achat_vente_stock.vente.model.Encaissement;
 import com.gestion.achat_vente_stock.vente.model.FactureClient;
@@ -28,6 +29,8 @@ public class EncaissementService {
     private final FactureClientRepository factureClientRepository;
     private final FactureClientService factureClientService;
     private final AuditService auditService;
+    private final NumerotationService numerotationService;
+    private final ExpositionCreditService expositionCreditService;
 
     /** Préfixe pour les numéros d'encaissement */
     private static final String PREFIXE_NUMERO = "ENC";
@@ -70,6 +73,7 @@ public class EncaissementService {
         encaissement.setStatut("EN_ATTENTE");
 
         Encaissement saved = encaissementRepository.save(encaissement);
+        expositionCreditService.actualiserFactureApresCommit(factureId);
 
         auditService.logAction(utilisateur, "encaissement", saved.getId(),
                 "CREATE", null, "Encaissement de " + montant + " € pour facture " + facture.getNumero(), null);
@@ -179,6 +183,7 @@ public class EncaissementService {
             facture.setStatut("PAYEE_PARTIELLEMENT");
         }
         factureClientRepository.save(facture);
+        expositionCreditService.actualiserFactureApresCommit(facture.getId());
 
         if (utilisateur != null) {
             auditService.logAction(utilisateur, "encaissement", encaissementId,
@@ -192,8 +197,8 @@ public class EncaissementService {
      * Générer un numéro unique d'encaissement
      */
     private String genererNumero() {
-        long count = encaissementRepository.count() + 1;
-        return PREFIXE_NUMERO + String.format("%05d", count);
+        return numerotationService.genererNumero(PREFIXE_NUMERO, 5,
+                cle -> encaissementRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     /**
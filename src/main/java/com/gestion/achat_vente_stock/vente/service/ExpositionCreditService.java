@@ -0,0 +1,277 @@
+package com.gestion.achat_vente_stock.vente.service;
+
+import com.gestion.achat_vente_stock.referentiel.model.Client;
+import com.gestion.achat_vente_stock.vente.model.CommandeClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TODO.YML Lignes 4, 22: Encours client et contrôle de la limite de crédit à la confirmation des commandes
+ * Encours d'un client = commandes confirmées non encore facturées (TTC)
+ *                     + soldes des factures validées non payées (TTC - encaissements non rejetés - avoirs validés)
+ * Compteurs en mémoire par client, tenus document par document (la contribution d'un document remplace
+ * la précédente : une mise à jour rejouée ne compte pas deux fois) :
+ * - confirmation : contrôle et engagement de la commande sous le verrou du client, en temps constant ;
+ *   deux confirmations simultanées pour un même client ne peuvent pas dépasser la limite ensemble
+ * - après la fin de la transaction (validée ou annulée), la contribution du document est relue en base
+ * - factures, encaissements et avoirs : contribution de la facture relue après le commit
+ * - chaque relecture prend un numéro avant sa requête ; une relecture plus ancienne que la valeur en place
+ *   (relecture plus récente, engagement, reconstruction) est ignorée : l'ordre d'arrivée n'importe pas
+ * - reconstruction complète au démarrage et périodiquement ; les documents relus ou engagés pendant la
+ *   reconstruction gardent leur valeur en mémoire
+ * Limite : les compteurs sont propres à chaque instance de l'application. Le contrôle n'est garanti
+ * qu'avec une seule instance ; avec plusieurs, une instance ne voit les confirmations des autres qu'à la
+ * reconstruction suivante (vente.credit.reconstruction-ms) et la limite peut être dépassée entre-temps.
+ */
+@Service
+@Slf4j
+public class ExpositionCreditService {
+
+    private static final String COMMANDE = "CC:";
+    private static final String FACTURE = "FC:";
+
+    private static final String STATUTS_COMMANDE_OUVERTE = "'CONFIRMEE', 'EN_PREPARATION', 'PREPAREE', 'LIVREE'";
+    private static final String STATUTS_FACTURE_OUVERTE = "'VALIDEE', 'ENVOYEE', 'PAYEE_PARTIELLEMENT'";
+
+    private static final String SQL_COMMANDES = "SELECT id, client_id, COALESCE(montant_total_ttc, 0) AS montant " +
+            "FROM commande_client WHERE client_id IS NOT NULL AND statut IN (" + STATUTS_COMMANDE_OUVERTE + ")";
+
+    private static final String SQL_COMMANDE = SQL_COMMANDES + " AND id = ?";
+
+    private static final String SQL_FACTURES = "SELECT f.id, f.client_id, " +
+            "GREATEST(COALESCE(f.montant_ttc, 0) - COALESCE(e.montant, 0) - COALESCE(a.montant, 0), 0) AS montant " +
+            "FROM facture_client f " +
+            "LEFT JOIN (SELECT facture_client_id, SUM(COALESCE(montant_encaisse, 0)) AS montant FROM encaissement " +
+            "WHERE COALESCE(statut, '') <> 'REJETE' GROUP BY facture_client_id) e ON e.facture_client_id = f.id " +
+            "LEFT JOIN (SELECT facture_client_id, SUM(COALESCE(montant_ttc, 0)) AS montant FROM avoir_client " +
+            "WHERE statut IN ('VALIDE', 'APPLIQUE') GROUP BY facture_client_id) a ON a.facture_client_id = f.id " +
+            "WHERE f.client_id IS NOT NULL AND f.statut IN (" + STATUTS_FACTURE_OUVERTE + ") " +
+            "AND COALESCE(f.est_payee, FALSE) = FALSE";
+
+    private static final String SQL_FACTURE = SQL_FACTURES + " AND f.id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Compte> comptes = new ConcurrentHashMap<>();
+    private final Map<String, Long> clientParDocument = new ConcurrentHashMap<>();
+    // Document -> numéro de la valeur en place : numéro de la relecture dont elle vient, ou de l'engagement
+    // (comparé aux relectures concurrentes et au début d'une reconstruction)
+    private final Map<String, Long> modifications = new ConcurrentHashMap<>();
+    private final Set<String> engagements = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ExpositionCreditService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Encours courant du client
+     */
+    public BigDecimal encours(Long clientId) {
+        Compte compte = comptes.get(clientId);
+        if (compte == null) {
+            return BigDecimal.ZERO;
+        }
+        synchronized (compte) {
+            return compte.total;
+        }
+    }
+
+    /**
+     * À appeler dans la transaction qui confirme la commande : refus si l'encours du client, commande comprise,
+     * dépasse sa limite de crédit (sans limite : pas de contrôle) ; sinon la commande est comptée immédiatement
+     */
+    public void engagerCommande(CommandeClient commande) {
+        Client client = commande.getClient();
+        if (client == null) {
+            return;
+        }
+        String cle = COMMANDE + commande.getId();
+        BigDecimal montant = commande.getMontantTotalTtc() != null ? commande.getMontantTotalTtc() : BigDecimal.ZERO;
+        BigDecimal limite = client.getLimiteCredit();
+
+        Compte compte = compte(client.getId());
+        synchronized (compte) {
+            BigDecimal encours = compte.total.subtract(compte.documents.getOrDefault(cle, BigDecimal.ZERO));
+            if (limite != null && encours.add(montant).compareTo(limite) > 0) {
+                throw new IllegalStateException("Limite de crédit dépassée pour le client " + client.getCode()
+                        + ": encours " + encours + " + commande " + montant + " > limite " + limite);
+            }
+            engagements.add(cle);
+            appliquer(compte, client.getId(), cle, montant, sequence.incrementAndGet());
+        }
+
+        Long commandeId = commande.getId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            engagements.remove(cle);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    recharger(cle, SQL_COMMANDE, commandeId);
+                } finally {
+                    engagements.remove(cle);
+                }
+            }
+        });
+    }
+
+    /**
+     * À appeler dans la transaction qui change le statut ou le montant d'une commande
+     */
+    public void actualiserCommandeApresCommit(Long commandeId) {
+        apresCommit(() -> recharger(COMMANDE + commandeId, SQL_COMMANDE, commandeId));
+    }
+
+    /**
+     * À appeler dans la transaction qui change une facture, ses encaissements ou ses avoirs
+     */
+    public void actualiserFactureApresCommit(Long factureId) {
+        apresCommit(() -> recharger(FACTURE + factureId, SQL_FACTURE, factureId));
+    }
+
+    @Scheduled(fixedDelayString = "${vente.credit.reconstruction-ms:3600000}")
+    public void reconstruire() {
+        long debut = sequence.get();
+        Map<Long, Map<String, BigDecimal>> parClient = new HashMap<>();
+        jdbcTemplate.query(SQL_COMMANDES, rs -> {
+            parClient.computeIfAbsent(rs.getLong("client_id"), id -> new HashMap<>())
+                    .put(COMMANDE + rs.getLong("id"), rs.getBigDecimal("montant"));
+        });
+        jdbcTemplate.query(SQL_FACTURES, rs -> {
+            parClient.computeIfAbsent(rs.getLong("client_id"), id -> new HashMap<>())
+                    .put(FACTURE + rs.getLong("id"), rs.getBigDecimal("montant"));
+        });
+
+        Set<Long> clients = new HashSet<>(comptes.keySet());
+        clients.addAll(parClient.keySet());
+        int ecarts = 0;
+        for (Long clientId : clients) {
+            Map<String, BigDecimal> lus = parClient.getOrDefault(clientId, Map.of());
+            Compte compte = compte(clientId);
+            synchronized (compte) {
+                Map<String, BigDecimal> documents = new HashMap<>();
+                lus.forEach((cle, montant) -> {
+                    if (!recent(cle, debut) && montant.signum() != 0) {
+                        documents.put(cle, montant);
+                    }
+                });
+                compte.documents.forEach((cle, montant) -> {
+                    if (recent(cle, debut)) {
+                        documents.put(cle, montant);
+                    }
+                });
+                compte.documents.keySet().stream()
+                        .filter(cle -> !documents.containsKey(cle))
+                        .forEach(cle -> clientParDocument.remove(cle, clientId));
+                documents.keySet().forEach(cle -> clientParDocument.put(cle, clientId));
+
+                BigDecimal total = documents.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+                if (total.compareTo(compte.total) != 0) {
+                    ecarts++;
+                }
+                compte.documents = documents;
+                compte.total = total;
+                compte.plancher = debut;
+            }
+        }
+        modifications.values().removeIf(numero -> numero <= debut);
+        log.info("Encours clients reconstruits: {} client(s), {} encours corrigé(s)", parClient.size(), ecarts);
+    }
+
+    private boolean recent(String cle, long debut) {
+        return engagements.contains(cle) || modifications.getOrDefault(cle, 0L) > debut;
+    }
+
+    /**
+     * Contribution du document relue en base ; absent des documents ouverts : contribution nulle
+     */
+    private void recharger(String cle, String sql, Long id) {
+        // Numéro pris avant la requête : une relecture commencée plus tôt a pu voir un état plus ancien
+        long lecture = sequence.incrementAndGet();
+        List<Contribution> lues = jdbcTemplate.query(sql,
+                (rs, i) -> new Contribution(rs.getLong("client_id"), rs.getBigDecimal("montant")), id);
+        Long clientId = lues.isEmpty() ? null : lues.get(0).clientId();
+        Long ancienClient = clientParDocument.get(cle);
+        if (ancienClient != null && !ancienClient.equals(clientId)) {
+            appliquerLecture(ancienClient, cle, BigDecimal.ZERO, lecture);
+        }
+        if (clientId != null) {
+            appliquerLecture(clientId, cle, lues.get(0).montant(), lecture);
+        }
+    }
+
+    /**
+     * Applique une contribution relue, sauf si la valeur en place vient d'une lecture plus récente
+     * (relecture, engagement ou reconstruction du compte)
+     */
+    private void appliquerLecture(Long clientId, String cle, BigDecimal montant, long lecture) {
+        Compte compte = compte(clientId);
+        synchronized (compte) {
+            if (lecture < compte.plancher || lecture < modifications.getOrDefault(cle, 0L)) {
+                log.debug("Encours: relecture {} de {} ignorée (valeur en place plus récente)", lecture, cle);
+                return;
+            }
+            appliquer(compte, clientId, cle, montant, lecture);
+        }
+    }
+
+    /**
+     * Remplace la contribution du document (verrou du compte détenu) ; numero : version de la valeur
+     */
+    private void appliquer(Compte compte, Long clientId, String cle, BigDecimal montant, long numero) {
+        BigDecimal ancien = montant.signum() != 0 ? compte.documents.put(cle, montant) : compte.documents.remove(cle);
+        compte.total = compte.total.add(montant).subtract(ancien != null ? ancien : BigDecimal.ZERO);
+        if (montant.signum() != 0) {
+            clientParDocument.put(cle, clientId);
+        } else {
+            clientParDocument.remove(cle, clientId);
+        }
+        modifications.put(cle, numero);
+    }
+
+    private Compte compte(Long clientId) {
+        return comptes.computeIfAbsent(clientId, id -> new Compte());
+    }
+
+    private void apresCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Encours d'un client et contribution de chacun de ses documents ouverts ; accès sous son verrou.
+     * plancher : numéro de début de la dernière reconstruction du compte (relectures antérieures ignorées)
+     */
+    private static final class Compte {
+        private BigDecimal total = BigDecimal.ZERO;
+        private Map<String, BigDecimal> documents = new HashMap<>();
+        private long plancher;
+    }
+
+    private record Contribution(Long clientId, BigDecimal montant) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.gestion.achat_vente_stock.vente.service;
 
 import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
 import com.gestion.achat_vente_stock.admin.service.AuditService;
 import com.gestion.achat_vente_stock.vente.model.*;
 import com.gestion.achat_vente_stock.vente.repository.*;
@@ -29,6 +30,8 @@ public class FactureClientService {
     private final BonLivraisonRepository bonLivraisonRepository;
     private final CommandeClientRepository commandeClientRepository;
     private final AuditService auditService;
+    private final NumerotationService numerotationService;
+    private final ExpositionCreditService expositionCreditService;
 
     /** Préfixe pour les numéros de facture */
     private static final String PREFIXE_NUMERO = "FC";
@@ -125,7 +128,9 @@ public class FactureClientService {
             facture.setDateFacture(LocalDate.now());
             facture.setStatut("BROUILLON");
         }
-        return factureClientRepository.save(facture);
+        FactureClient saved = factureClientRepository.save(facture);
+        expositionCreditService.actualiserFactureApresCommit(saved.getId());
+        return saved;
     }
 
     /**
@@ -195,12 +200,14 @@ public class FactureClientService {
 
         facture.setStatut("VALIDEE");
         factureClientRepository.save(facture);
+        expositionCreditService.actualiserFactureApresCommit(factureId);
 
         // Mettre à jour le statut de la commande
         CommandeClient commande = facture.getCommandeClient();
         if (commande != null) {
             commande.setStatut("FACTUREE");
             commandeClientRepository.save(commande);
+            expositionCreditService.actualiserCommandeApresCommit(commande.getId());
         }
 
         auditService.logAction(comptable, "facture_client", factureId,
@@ -239,6 +246,7 @@ public class FactureClientService {
         facture.setStatut("PAYEE");
         facture.setEstPayee(true);
         factureClientRepository.save(facture);
+        expositionCreditService.actualiserFactureApresCommit(factureId);
     }
 
     /**
@@ -249,6 +257,7 @@ public class FactureClientService {
 
         facture.setStatut("PAYEE");
         factureClientRepository.save(facture);
+        expositionCreditService.actualiserFactureApresCommit(factureId);
 
         auditService.logAction(utilisateur, "facture_client", factureId,
                 "PAID", facture.getStatut(), "PAYEE", null);
@@ -274,6 +283,7 @@ public class FactureClientService {
         String ancienStatut = facture.getStatut();
         facture.setStatut("ANNULEE");
         factureClientRepository.save(facture);
+        expositionCreditService.actualiserFactureApresCommit(factureId);
 
         if (utilisateur != null) {
             auditService.logAction(utilisateur, "facture_client", factureId,
@@ -287,8 +297,8 @@ public class FactureClientService {
      * Générer un numéro unique de facture
      */
     private String genererNumero() {
-        long count = factureClientRepository.count() + 1;
-        return PREFIXE_NUMERO + String.format("%05d", count);
+        return numerotationService.genererNumeroSansTrou(PREFIXE_NUMERO, 5,
+                cle -> factureClientRepository.findDerniereSequence(cle).orElse(0L));
     }
 
     /**
@@ -0,0 +1,29 @@
+-- =========================
+-- Migration de données : une seule ligne stock_disponible par article/dépôt/lot (lot NULL compris)
+-- Les doublons d'une clé sont regroupés sur leur plus petite ligne (quantités et valeur cumulées),
+-- les autres lignes sont supprimées. Préalable à l'index unique de 02_stock_disponible_cle_unique.sql.
+-- Sans effet une fois l'index unique créé (plus aucun doublon possible) : la table n'est alors pas parcourue.
+-- Exécuté au démarrage (spring.sql.init, après la mise à jour du schéma par Hibernate) ;
+-- sur une base créée par schema/*.sql, à appliquer avant schema/07_index.sql.
+-- =========================
+
+UPDATE stock_disponible s SET
+  quantite_physique = d.physique,
+  quantite_reservee = d.reservee,
+  quantite_disponible = d.physique - d.reservee,
+  valeur_stock = d.valeur
+FROM (
+  SELECT MIN(id) AS id, SUM(COALESCE(quantite_physique, 0)) AS physique,
+         SUM(COALESCE(quantite_reservee, 0)) AS reservee, SUM(COALESCE(valeur_stock, 0)) AS valeur
+  FROM stock_disponible
+  WHERE NOT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'idx_stock_disponible_cle_unique')
+  GROUP BY article_id, depot_id, lot_numero
+  HAVING COUNT(*) > 1
+) d
+WHERE s.id = d.id;
+
+DELETE FROM stock_disponible s
+USING stock_disponible p
+WHERE NOT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'idx_stock_disponible_cle_unique')
+  AND p.article_id = s.article_id AND p.depot_id = s.depot_id
+  AND p.lot_numero IS NOT DISTINCT FROM s.lot_numero AND p.id < s.id;
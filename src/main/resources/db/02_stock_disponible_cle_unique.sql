@@ -0,0 +1,12 @@
+-- =========================
+-- Index unique article/dépôt/lot de stock_disponible (PostgreSQL 15+ : NULLS NOT DISTINCT)
+-- Requis par l'INSERT … ON CONFLICT (article_id, depot_id, lot_numero) de RegistreStockService ;
+-- le lot NULL compte comme une valeur, une seule ligne sans lot par article/dépôt.
+-- Non déclaré sur l'entité StockDisponible : Hibernate ne sait pas générer NULLS NOT DISTINCT.
+-- Exécuté au démarrage après 01_stock_disponible_doublons.sql ; idempotent.
+-- =========================
+
+DROP INDEX IF EXISTS idx_stock_disponible_cle;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_stock_disponible_cle_unique
+  ON stock_disponible (article_id, depot_id, lot_numero) NULLS NOT DISTINCT;
@@ -0,0 +1,136 @@
+package com.gestion.achat_vente_stock;
+
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.stock.service.ValorisationService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Banc d'essai du coût de sortie FIFO (ValorisationService.consommerCoutSortie)
+ * Un article/dépôt reçoit un historique croissant d'entrées, presque toutes consommées ; à chaque palier,
+ * on mesure des sorties d'une unité valorisées par le service (page de couches ouvertes verrouillée par
+ * CoucheFifoRepository.findCouchesOuvertes, puis consommation de la couche entamée).
+ * Échec si le temps médian d'une sortie au plus grand palier dépasse {@code benchmark.fifo.facteur-max}
+ * fois celui du plus petit : le coût doit dépendre des couches touchées, pas de l'historique.
+ * Les données sont créées dans une transaction annulée à la fin.
+ *
+ * Exécution : mvn test -Dtest=CoutSortieFIFOBenchmarkTest -Dplans.url=jdbc:postgresql://localhost:5433/achat_vente_stock
+ * (facultatif : -Dplans.utilisateur, -Dplans.mot-de-passe, -Dbenchmark.fifo.historique=1000000,
+ * -Dbenchmark.fifo.facteur-max=3)
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${plans.url}",
+        "spring.datasource.username=${plans.utilisateur:postgres}",
+        "spring.datasource.password=${plans.mot-de-passe:postgres}",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.show-sql=false"
+})
+@EnabledIfSystemProperty(named = "plans.url", matches = ".+")
+class CoutSortieFIFOBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CoutSortieFIFOBenchmarkTest.class);
+    private static final int COUCHES_OUVERTES = 5;
+    private static final int SORTIES_MESUREES = 200;
+
+    private static final String SQL_HISTORIQUE = "INSERT INTO mouvement_stock (id, numero, article_id, depot_id, " +
+            "type_mouvement, quantite, cout_unitaire, valeur_totale, date_mouvement, created_at) " +
+            "SELECT nextval('mouvement_stock_id_seq'), 'BENCH-FIFO-' || n, ?, ?, 'ENTREE_ACHAT', 10, 1.5, 15, " +
+            "DATE '2000-01-01' + (n / 1000), NOW() FROM generate_series(?, ?) n";
+    private static final String SQL_COUCHES = "INSERT INTO couche_fifo (id, article_id, depot_id, mouvement_id, " +
+            "date_entree, cout_unitaire, quantite_initiale, quantite_restante, created_at) " +
+            "SELECT nextval('couche_fifo_id_seq'), m.article_id, m.depot_id, m.id, m.date_mouvement, m.cout_unitaire, " +
+            "m.quantite, 0, NOW() FROM mouvement_stock m WHERE m.article_id = ? AND m.depot_id = ? AND m.id > ?";
+    // Seules les couches les plus récentes restent ouvertes, comme après des sorties régulières
+    private static final String SQL_OUVERTURE = "UPDATE couche_fifo SET quantite_restante = 1000000 WHERE id IN (" +
+            "SELECT id FROM couche_fifo WHERE article_id = ? AND depot_id = ? " +
+            "ORDER BY date_entree DESC, id DESC LIMIT " + COUCHES_OUVERTES + ")";
+    private static final String SQL_FERMETURE = "UPDATE couche_fifo SET quantite_restante = 0 " +
+            "WHERE article_id = ? AND depot_id = ? AND quantite_restante > 0";
+
+    @Autowired
+    ValorisationService valorisationService;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @PersistenceContext
+    EntityManager entityManager;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void coutDeSortieIndependantDeLHistorique() {
+        long historique = Long.getLong("benchmark.fifo.historique", 1_000_000L);
+        double facteurMax = Double.parseDouble(System.getProperty("benchmark.fifo.facteur-max", "3"));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Article article = new Article();
+            article.setCode("BENCH-FIFO-" + System.nanoTime());
+            article.setMethodeValorisation("FIFO");
+            article.setId(jdbcTemplate.queryForObject("INSERT INTO article (id, code, designation, " +
+                    "methode_valorisation) VALUES (nextval('article_id_seq'), ?, 'Banc d''essai FIFO', 'FIFO') " +
+                    "RETURNING id", Long.class, article.getCode()));
+            Depot depot = new Depot();
+            depot.setId(jdbcTemplate.queryForObject("INSERT INTO depot (id, code, libelle) " +
+                    "VALUES (nextval('depot_id_seq'), ?, 'Banc d''essai FIFO') RETURNING id", Long.class,
+                    article.getCode()));
+
+            Map<Long, Long> medianes = new LinkedHashMap<>();
+            long dejaInseres = 0;
+            long dernierMouvement = 0;
+            for (long palier = historique / 100; palier <= historique; palier *= 10) {
+                // Couches consommées par le palier précédent écrites, puis relues après les mises à jour SQL
+                entityManager.flush();
+                entityManager.clear();
+                jdbcTemplate.update(SQL_HISTORIQUE, article.getId(), depot.getId(), dejaInseres + 1, palier);
+                dejaInseres = palier;
+                jdbcTemplate.update(SQL_FERMETURE, article.getId(), depot.getId());
+                jdbcTemplate.update(SQL_COUCHES, article.getId(), depot.getId(), dernierMouvement);
+                dernierMouvement = jdbcTemplate.queryForObject(
+                        "SELECT MAX(id) FROM mouvement_stock WHERE article_id = ?", Long.class, article.getId());
+                jdbcTemplate.update(SQL_OUVERTURE, article.getId(), depot.getId());
+                jdbcTemplate.execute("ANALYZE mouvement_stock");
+                jdbcTemplate.execute("ANALYZE couche_fifo");
+                medianes.put(palier, medianeSortie(article, depot));
+            }
+
+            log.info("Sortie FIFO médiane (ns) par taille d'historique : {}", medianes);
+            long premiere = medianes.values().iterator().next();
+            long derniere = medianes.values().stream().reduce((a, b) -> b).orElseThrow();
+            assertTrue(derniere <= premiere * facteurMax,
+                    "Le coût d'une sortie FIFO croît avec l'historique (ns par historique) : " + medianes);
+            status.setRollbackOnly();
+        });
+    }
+
+    /**
+     * Temps médian (ns) d'une sortie d'une unité valorisée par le service, au coût des couches ouvertes
+     */
+    private long medianeSortie(Article article, Depot depot) {
+        long[] durees = new long[SORTIES_MESUREES];
+        for (int i = 0; i < SORTIES_MESUREES; i++) {
+            long debut = System.nanoTime();
+            BigDecimal cout = valorisationService.consommerCoutSortie(article, depot, null, BigDecimal.ONE);
+            durees[i] = System.nanoTime() - debut;
+            assertEquals(0, new BigDecimal("1.5").compareTo(cout), "Sortie non valorisée par les couches ouvertes");
+        }
+        Arrays.sort(durees);
+        return durees[SORTIES_MESUREES / 2];
+    }
+}
@@ -0,0 +1,145 @@
+package com.gestion.achat_vente_stock;
+
+import com.gestion.achat_vente_stock.admin.service.NumerotationService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Banc d'essai de la numérotation des documents (NumerotationService) sur une base PostgreSQL
+ * - Une journée de {@code benchmark.numerotation.documents} numéros de mouvement, mesurée par tranches
+ *   de 1000 : échec si la dernière tranche dépasse {@code benchmark.numerotation.facteur-max} fois la
+ *   première (le coût d'un numéro ne doit pas croître avec les numéros déjà émis), et au plus un accès
+ *   au compteur par bloc de numerotation.taille-bloc numéros
+ * - Les mêmes numéros demandés par plusieurs threads : tous distincts
+ * - Purge de la nuit : compteurs journaliers des jours passés supprimés, compteur du jour conservé
+ * Les compteurs de test sont supprimés à la fin.
+ *
+ * Exécution : mvn test -Dtest=NumerotationBenchmarkTest -Dplans.url=jdbc:postgresql://localhost:5433/achat_vente_stock
+ * (facultatif : -Dplans.utilisateur, -Dplans.mot-de-passe, -Dbenchmark.numerotation.documents=10000,
+ * -Dbenchmark.numerotation.facteur-max=3)
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${plans.url}",
+        "spring.datasource.username=${plans.utilisateur:postgres}",
+        "spring.datasource.password=${plans.mot-de-passe:postgres}",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.show-sql=false"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "plans.url", matches = ".+")
+class NumerotationBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(NumerotationBenchmarkTest.class);
+    private static final int TRANCHE = 1000;
+    private static final int THREADS = 8;
+    private static final String CODE = "BENCH" + System.nanoTime();
+
+    @Autowired
+    NumerotationService numerotationService;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Value("${numerotation.taille-bloc:50}")
+    int tailleBloc;
+
+    @AfterAll
+    void supprimerCompteurs() {
+        jdbcTemplate.update("DELETE FROM compteur_numerotation WHERE cle LIKE ?", CODE + "%");
+    }
+
+    @Test
+    void coutDUnNumeroIndependantDuVolumeDuJour() {
+        int documents = Integer.getInteger("benchmark.numerotation.documents", 10_000);
+        double facteurMax = Double.parseDouble(System.getProperty("benchmark.numerotation.facteur-max", "3"));
+        String code = CODE + "-MVT";
+
+        List<Long> tranches = new ArrayList<>();
+        for (int emis = 0; emis < documents; emis += TRANCHE) {
+            long debut = System.nanoTime();
+            for (int i = 0; i < TRANCHE; i++) {
+                numerotationService.genererNumeroJournalier(code, 5, cle -> 0L);
+            }
+            tranches.add(System.nanoTime() - debut);
+        }
+
+        long dernier = dernierNumero(code);
+        log.info("{} numéros émis, tranches de {} (µs) : {}", documents, TRANCHE,
+                tranches.stream().map(t -> t / 1000).toList());
+        assertTrue(dernier >= documents && dernier < documents + tailleBloc,
+                "Compteur avancé par blocs de " + tailleBloc + " attendu, dernier numéro réservé : " + dernier);
+        assertTrue(tranches.get(tranches.size() - 1) <= tranches.get(0) * facteurMax,
+                "Le coût d'un numéro croît avec les numéros déjà émis (µs par tranche) : "
+                        + tranches.stream().map(t -> t / 1000).toList());
+    }
+
+    @Test
+    void numerosConcurrentsTousDistincts() throws Exception {
+        String code = CODE + "-CONC";
+        Set<String> numeros = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> resultats = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                resultats.add(executor.submit(() -> {
+                    for (int i = 0; i < TRANCHE; i++) {
+                        String numero = numerotationService.genererNumeroJournalier(code, 5, cle -> 0L);
+                        assertTrue(numeros.add(numero), "Numéro en double : " + numero);
+                    }
+                }));
+            }
+            for (Future<?> resultat : resultats) {
+                resultat.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(THREADS * TRANCHE, numeros.size());
+    }
+
+    @Test
+    void purgeDesCompteursDesJoursPasses() {
+        String ancien = CODE + "-PURGE-20000101-";
+        String continu = CODE + "-PURGE";
+        jdbcTemplate.update("INSERT INTO compteur_numerotation (cle, dernier_numero, updated_at) VALUES (?, 7, now())",
+                ancien);
+        numerotationService.genererNumero(continu, 5, cle -> 0L);
+        String duJour = numerotationService.genererNumeroJournalier(CODE + "-PURGE", 5, cle -> 0L);
+
+        numerotationService.purgerBlocsJournaliers();
+
+        assertFalse(existe(ancien));
+        assertTrue(existe(continu));
+        assertTrue(existe(CODE + "-PURGE-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + "-"), duJour);
+    }
+
+    private long dernierNumero(String code) {
+        return jdbcTemplate.queryForObject("SELECT dernier_numero FROM compteur_numerotation WHERE cle = ?",
+                Long.class, code + "-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + "-");
+    }
+
+    private boolean existe(String cle) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM compteur_numerotation WHERE cle = ?",
+                Integer.class, cle) > 0;
+    }
+}
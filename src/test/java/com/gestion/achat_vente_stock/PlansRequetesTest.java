@@ -0,0 +1,316 @@
+package com.gestion.achat_vente_stock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gestion.achat_vente_stock.admin.repository.AuditLogRepository;
+import com.gestion.achat_vente_stock.inventaire.repository.LigneInventaireRepository;
+import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
+import com.gestion.achat_vente_stock.stock.repository.CoucheFifoRepository;
+import com.gestion.achat_vente_stock.stock.repository.LotRepository;
+import com.gestion.achat_vente_stock.stock.repository.MouvementStockRepository;
+import com.gestion.achat_vente_stock.stock.repository.ReservationStockRepository;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import com.gestion.achat_vente_stock.stock.service.PointStockService;
+import com.gestion.achat_vente_stock.vente.repository.LigneCommandeClientRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Non-régression des plans d'exécution (schema/07_index.sql)
+ * Chaque requête critique est exécutée par son repository (ou service) sur une base PostgreSQL locale alimentée,
+ * dans une transaction annulée ; le SQL réellement envoyé par Hibernate ou JdbcTemplate est capturé avec ses
+ * paramètres liés, puis passé à EXPLAIN avec les mêmes paramètres : échec si un parcours séquentiel porte
+ * sur une table de plus de {@code plans.seuil-lignes} lignes.
+ *
+ * Exécution : mvn test -Dtest=PlansRequetesTest -Dplans.url=jdbc:postgresql://localhost:5433/achat_vente_stock
+ * (facultatif : -Dplans.utilisateur, -Dplans.mot-de-passe, -Dplans.seuil-lignes)
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${plans.url}",
+        "spring.datasource.username=${plans.utilisateur:postgres}",
+        "spring.datasource.password=${plans.mot-de-passe:postgres}",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.show-sql=false"
+})
+@Import(PlansRequetesTest.CaptureRequetes.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "plans.url", matches = ".+")
+class PlansRequetesTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    CaptureRequetes capture;
+
+    @Autowired
+    StockDisponibleRepository stockDisponibleRepository;
+    @Autowired
+    MouvementStockRepository mouvementStockRepository;
+    @Autowired
+    CoucheFifoRepository coucheFifoRepository;
+    @Autowired
+    AuditLogRepository auditLogRepository;
+    @Autowired
+    ReservationStockRepository reservationStockRepository;
+    @Autowired
+    LotRepository lotRepository;
+    @Autowired
+    ArticleRepository articleRepository;
+    @Autowired
+    LigneCommandeClientRepository ligneCommandeClientRepository;
+    @Autowired
+    LigneInventaireRepository ligneInventaireRepository;
+    @Autowired
+    PointStockService pointStockService;
+
+    private long seuilLignes;
+
+    @BeforeAll
+    void analyser() throws SQLException {
+        seuilLignes = Long.getLong("plans.seuil-lignes", 10_000L);
+        // Statistiques à jour pour que le planificateur voie le volume réel
+        try (Connection connexion = dataSource.getConnection(); Statement statement = connexion.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    /**
+     * Appels des repositories avec des valeurs de paramètres représentatives
+     */
+    static Stream<RequeteSurveillee> requetes() {
+        LocalDate aujourdhui = LocalDate.now();
+        return Stream.of(
+                new RequeteSurveillee("StockDisponibleRepository.findByArticleIdAndDepotIdAndLotNumero",
+                        t -> t.stockDisponibleRepository.findByArticleIdAndDepotIdAndLotNumero(1L, 1L, "L1")),
+                new RequeteSurveillee("StockDisponibleRepository.retirerStockSiDisponible",
+                        t -> t.stockDisponibleRepository.retirerStockSiDisponible(1L, 1L, "L1",
+                                BigDecimal.ONE, BigDecimal.ONE)),
+                new RequeteSurveillee("MouvementStockRepository.findEntreesFIFO",
+                        t -> t.mouvementStockRepository.findEntreesFIFO(1L, 1L)),
+                new RequeteSurveillee("MouvementStockRepository.sumSortiesByArticleAndDepot",
+                        t -> t.mouvementStockRepository.sumSortiesByArticleAndDepot(1L, 1L)),
+                new RequeteSurveillee("MouvementStockRepository.findByDateMouvementBetween",
+                        t -> t.mouvementStockRepository.findByDateMouvementBetween(aujourdhui.minusDays(7), aujourdhui)),
+                new RequeteSurveillee("MouvementStockRepository.rechercher (article)",
+                        t -> t.mouvementStockRepository.rechercher(1L, null, null, null, null, 1_000_000L,
+                                PageRequest.of(0, 50))),
+                new RequeteSurveillee("MouvementStockRepository.findByTypeDocumentAndDocumentId",
+                        t -> t.mouvementStockRepository.findByTypeDocumentAndDocumentId("BON_RECEPTION", 1L)),
+                new RequeteSurveillee("PointStockService.etatADate (article)",
+                        t -> t.pointStockService.etatADate(aujourdhui, 1L, null)),
+                new RequeteSurveillee("CoucheFifoRepository.findCouchesOuvertes",
+                        t -> t.coucheFifoRepository.findCouchesOuvertes(1L, 1L, PageRequest.of(0, 20))),
+                new RequeteSurveillee("AuditLogRepository.findByTableNameAndRecordId",
+                        t -> t.auditLogRepository.findByTableNameAndRecordId("mouvement_stock", 1L)),
+                new RequeteSurveillee("ReservationStockRepository.findReservationsExpirees",
+                        t -> t.reservationStockRepository.findReservationsExpirees(aujourdhui)),
+                new RequeteSurveillee("ReservationStockRepository.sumReservationsActives",
+                        t -> t.reservationStockRepository.sumReservationsActives(1L, 1L)),
+                new RequeteSurveillee("ReservationStockRepository.findByCommandeClientId",
+                        t -> t.reservationStockRepository.findByCommandeClientId(1L)),
+                new RequeteSurveillee("LotRepository.findLotsActifsByArticleFEFO",
+                        t -> t.lotRepository.findLotsActifsByArticleFEFO(1L)),
+                new RequeteSurveillee("ArticleRepository.rechercher (code)",
+                        t -> t.articleRepository.rechercher("art", PageRequest.of(0, 20))),
+                new RequeteSurveillee("LigneCommandeClientRepository.findByCommandeClientId",
+                        t -> t.ligneCommandeClientRepository.findByCommandeClientId(1L)),
+                new RequeteSurveillee("LigneInventaireRepository.findByInventaireId",
+                        t -> t.ligneInventaireRepository.findByInventaireId(1L))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("requetes")
+    void aucunParcoursSequentielSurUneGrandeTable(RequeteSurveillee requete) throws Exception {
+        List<RequeteCapturee> capturees = executer(requete);
+        assertFalse(capturees.isEmpty(), requete.nom() + " : aucune requête SQL exécutée");
+
+        for (RequeteCapturee capturee : capturees) {
+            JsonNode plan = expliquer(capturee);
+            List<String> fautifs = new ArrayList<>();
+            collecterParcoursSequentiels(plan, fautifs);
+            assertTrue(fautifs.isEmpty(), requete.nom() + " : parcours séquentiel sur " + fautifs + "\n"
+                    + capturee.sql() + "\n" + plan.toPrettyString());
+        }
+    }
+
+    /**
+     * Exécute l'appel dans une transaction annulée et renvoie les requêtes envoyées à la base
+     */
+    private List<RequeteCapturee> executer(RequeteSurveillee requete) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<RequeteCapturee> capturees = new ArrayList<>();
+        transaction.executeWithoutResult(status -> {
+            capture.demarrer();
+            try {
+                requete.appel().accept(this);
+            } finally {
+                capturees.addAll(capture.arreter());
+            }
+            status.setRollbackOnly();
+        });
+        return capturees;
+    }
+
+    /**
+     * EXPLAIN du SQL capturé, paramètres liés par les mêmes appels JDBC que lors de l'exécution
+     */
+    private JsonNode expliquer(RequeteCapturee requete) throws Exception {
+        try (Connection connexion = dataSource.getConnection();
+             PreparedStatement statement = connexion.prepareStatement("EXPLAIN (FORMAT JSON) " + requete.sql())) {
+            for (Liaison liaison : requete.liaisons()) {
+                liaison.methode().invoke(statement, liaison.arguments());
+            }
+            try (ResultSet resultat = statement.executeQuery()) {
+                resultat.next();
+                return MAPPER.readTree(resultat.getString(1)).get(0).get("Plan");
+            }
+        }
+    }
+
+    private void collecterParcoursSequentiels(JsonNode noeud, List<String> fautifs) throws SQLException {
+        if ("Seq Scan".equals(noeud.path("Node Type").asText())) {
+            String table = noeud.path("Relation Name").asText();
+            long lignes = lignesEstimees(table);
+            if (lignes > seuilLignes) {
+                fautifs.add(table + " (" + lignes + " lignes)");
+            }
+        }
+        for (JsonNode enfant : noeud.path("Plans")) {
+            collecterParcoursSequentiels(enfant, fautifs);
+        }
+    }
+
+    private long lignesEstimees(String table) throws SQLException {
+        try (Connection connexion = dataSource.getConnection();
+             PreparedStatement statement = connexion.prepareStatement(
+                     "SELECT reltuples::bigint FROM pg_class WHERE relname = ? AND relkind = 'r'")) {
+            statement.setString(1, table);
+            try (ResultSet resultat = statement.executeQuery()) {
+                return resultat.next() ? resultat.getLong(1) : 0;
+            }
+        }
+    }
+
+    record RequeteSurveillee(String nom, Consumer<PlansRequetesTest> appel) {
+        @Override
+        public String toString() {
+            return nom;
+        }
+    }
+
+    /**
+     * Appel setXxx(index, valeur…) d'un PreparedStatement, rejoué sur l'EXPLAIN
+     */
+    record Liaison(Method methode, Object[] arguments) {
+    }
+
+    record RequeteCapturee(String sql, List<Liaison> liaisons) {
+    }
+
+    /**
+     * Enveloppe la DataSource : pendant une capture, chaque PreparedStatement exécuté par le thread
+     * est enregistré avec son SQL et ses paramètres liés
+     */
+    static class CaptureRequetes implements BeanPostProcessor {
+
+        private final ThreadLocal<List<RequeteCapturee>> capturees = new ThreadLocal<>();
+
+        void demarrer() {
+            capturees.set(new ArrayList<>());
+        }
+
+        List<RequeteCapturee> arreter() {
+            List<RequeteCapturee> resultat = capturees.get();
+            capturees.remove();
+            return resultat;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource source)) {
+                return bean;
+            }
+            return envelopper(DataSource.class, source, (methode, resultat, arguments) ->
+                    resultat instanceof Connection connexion
+                            ? envelopper(Connection.class, connexion, this::preparation)
+                            : resultat);
+        }
+
+        /**
+         * Connection.prepareStatement(sql, …) : PreparedStatement enregistreur
+         */
+        private Object preparation(Method methode, Object resultat, Object[] arguments) {
+            if (!(resultat instanceof PreparedStatement statement) || !methode.getName().equals("prepareStatement")) {
+                return resultat;
+            }
+            String sql = (String) arguments[0];
+            List<Liaison> liaisons = new ArrayList<>();
+            return envelopper(PreparedStatement.class, statement, (appel, retour, args) -> {
+                String nom = appel.getName();
+                if (nom.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    liaisons.add(new Liaison(appel, args.clone()));
+                } else if (nom.equals("clearParameters")) {
+                    liaisons.clear();
+                } else if (nom.startsWith("execute") && capturees.get() != null) {
+                    capturees.get().add(new RequeteCapturee(sql, List.copyOf(liaisons)));
+                }
+                return retour;
+            });
+        }
+
+        /**
+         * Proxy qui délègue chaque appel à la cible puis laisse {@code apres} transformer ou observer le résultat
+         */
+        @SuppressWarnings("unchecked")
+        private static <T> T envelopper(Class<T> type, T cible, Observateur apres) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, methode, arguments) -> {
+                Object resultat;
+                try {
+                    resultat = methode.invoke(cible, arguments);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                return apres.apres(methode, resultat, arguments);
+            });
+        }
+
+        @FunctionalInterface
+        private interface Observateur {
+            Object apres(Method methode, Object resultat, Object[] arguments);
+        }
+    }
+}
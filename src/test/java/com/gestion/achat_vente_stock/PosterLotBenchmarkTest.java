@@ -0,0 +1,223 @@
+package com.gestion.achat_vente_stock;
+
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.stock.model.MouvementStock;
+import com.gestion.achat_vente_stock.stock.service.MouvementStockService;
+import com.gestion.achat_vente_stock.stock.service.MouvementStockService.LigneMouvement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Banc d'essai de l'insertion par lots des mouvements (MouvementStockService.posterLot) sur une base PostgreSQL
+ * Une réception de {@code benchmark.lot.lignes} lignes (50 000 par défaut) répartie sur 100 articles est
+ * postée après une réception de 5 000 lignes sur les mêmes articles ; les instructions JDBC envoyées par le
+ * thread sont comptées :
+ * - aussi peu d'allers-retours pour 50 000 lignes que pour 5 000 (le nombre d'échanges dépend des articles,
+ *   pas des lignes)
+ * - mouvements insérés par un seul lot JDBC d'autant de lignes que la réception
+ * Le débit obtenu est journalisé. Les données sont créées dans une transaction annulée à la fin
+ * (seuls les compteurs de numérotation, pris dans une transaction autonome, avancent).
+ *
+ * Exécution : mvn test -Dtest=PosterLotBenchmarkTest -Dplans.url=jdbc:postgresql://localhost:5433/achat_vente_stock
+ * (facultatif : -Dplans.utilisateur, -Dplans.mot-de-passe, -Dbenchmark.lot.lignes=50000)
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${plans.url}",
+        "spring.datasource.username=${plans.utilisateur:postgres}",
+        "spring.datasource.password=${plans.mot-de-passe:postgres}",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.show-sql=false"
+})
+@Import(PosterLotBenchmarkTest.ComptageRequetes.class)
+@EnabledIfSystemProperty(named = "plans.url", matches = ".+")
+class PosterLotBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PosterLotBenchmarkTest.class);
+    private static final int ARTICLES = 100;
+
+    @Autowired
+    MouvementStockService mouvementStockService;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    ComptageRequetes comptage;
+
+    @Test
+    void allersRetoursIndependantsDuNombreDeLignes() {
+        int lignes = Integer.getInteger("benchmark.lot.lignes", 50_000);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            String code = "BENCH-LOT-" + System.nanoTime();
+            Depot depot = new Depot();
+            depot.setId(jdbcTemplate.queryForObject("INSERT INTO depot (id, code, libelle) " +
+                    "VALUES (nextval('depot_id_seq'), ?, 'Banc d''essai lot') RETURNING id", Long.class, code));
+            List<Article> articles = new ArrayList<>();
+            for (int i = 0; i < ARTICLES; i++) {
+                Article article = new Article();
+                article.setCode(code + "-" + i);
+                article.setMethodeValorisation("CUMP");
+                article.setUniteMesure("U");
+                article.setId(jdbcTemplate.queryForObject("INSERT INTO article (id, code, designation, " +
+                        "methode_valorisation, unite_mesure) VALUES (nextval('article_id_seq'), ?, 'Banc d''essai lot', " +
+                        "'CUMP', 'U') RETURNING id", Long.class, article.getCode()));
+                articles.add(article);
+            }
+
+            // Premier mouvement de chaque article : création des lignes de stock et des totaux CUMP
+            poster(articles, depot, ARTICLES);
+            Comptage reference = poster(articles, depot, 5_000);
+            Comptage mesure = poster(articles, depot, lignes);
+
+            log.info("posterLot : {} lignes en {} ms ({} lignes/s), {} allers-retours, lots {}",
+                    lignes, mesure.duree() / 1_000_000, lignes * 1_000_000_000L / Math.max(mesure.duree(), 1),
+                    mesure.allersRetours(), mesure.lignesParLot());
+            assertEquals(reference.allersRetours(), mesure.allersRetours(),
+                    "Allers-retours de posterLot dépendant du nombre de lignes : " + reference.allersRetours()
+                            + " pour 5000, " + mesure.allersRetours() + " pour " + lignes);
+            assertEquals(List.of(lignes), mesure.lignesParLot().get("INSERT INTO mouvement_stock"),
+                    "Mouvements non insérés en un seul lot JDBC : " + mesure.lignesParLot());
+            status.setRollbackOnly();
+        });
+    }
+
+    /**
+     * Réception de {@code lignes} lignes réparties sur les articles, comptée et chronométrée
+     */
+    private Comptage poster(List<Article> articles, Depot depot, int lignes) {
+        List<LigneMouvement> reception = new ArrayList<>(lignes);
+        for (int i = 0; i < lignes; i++) {
+            reception.add(LigneMouvement.entree(articles.get(i % ARTICLES), depot,
+                    MouvementStockService.ENTREE_RECEPTION, BigDecimal.ONE, new BigDecimal("2.50"),
+                    "A1", null, null, null, "BENCH"));
+        }
+        comptage.demarrer();
+        long debut = System.nanoTime();
+        List<MouvementStock> mouvements = mouvementStockService.posterLot(reception, null);
+        Comptage resultat = comptage.arreter(System.nanoTime() - debut);
+        assertEquals(lignes, mouvements.size());
+        return resultat;
+    }
+
+    record Comptage(long duree, int allersRetours, Map<String, List<Integer>> lignesParLot) {
+    }
+
+    /**
+     * Enveloppe la DataSource : pendant un comptage, chaque exécution d'instruction du thread est comptée
+     * comme un aller-retour, et chaque lot (executeBatch) enregistré avec son nombre de lignes
+     */
+    static class ComptageRequetes implements BeanPostProcessor {
+
+        private final ThreadLocal<Compteurs> compteurs = new ThreadLocal<>();
+
+        void demarrer() {
+            compteurs.set(new Compteurs());
+        }
+
+        Comptage arreter(long duree) {
+            Compteurs resultat = compteurs.get();
+            compteurs.remove();
+            return new Comptage(duree, resultat.allersRetours, resultat.lignesParLot);
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource source)) {
+                return bean;
+            }
+            return envelopper(DataSource.class, source, (methode, resultat, arguments) ->
+                    resultat instanceof Connection connexion
+                            ? envelopper(Connection.class, connexion, this::preparation)
+                            : resultat);
+        }
+
+        /**
+         * Connection.prepareStatement(sql, …) / createStatement() : instruction comptée
+         */
+        private Object preparation(Method methode, Object resultat, Object[] arguments) {
+            if (resultat instanceof PreparedStatement statement) {
+                String sql = (String) arguments[0];
+                int[] lignesDuLot = new int[1];
+                return envelopper(PreparedStatement.class, statement, (appel, retour, args) -> {
+                    Compteurs courants = compteurs.get();
+                    if (courants != null) {
+                        String nom = appel.getName();
+                        if (nom.equals("addBatch")) {
+                            lignesDuLot[0]++;
+                        } else if (nom.equals("executeBatch")) {
+                            courants.allersRetours++;
+                            courants.lignesParLot.computeIfAbsent(debut(sql), k -> new ArrayList<>()).add(lignesDuLot[0]);
+                            lignesDuLot[0] = 0;
+                        } else if (nom.startsWith("execute")) {
+                            courants.allersRetours++;
+                        }
+                    }
+                    return retour;
+                });
+            }
+            if (resultat instanceof Statement statement) {
+                return envelopper(Statement.class, statement, (appel, retour, args) -> {
+                    if (compteurs.get() != null && appel.getName().startsWith("execute")) {
+                        compteurs.get().allersRetours++;
+                    }
+                    return retour;
+                });
+            }
+            return resultat;
+        }
+
+        private static String debut(String sql) {
+            String[] mots = sql.trim().split("\\s+", 4);
+            return mots.length >= 3 ? mots[0] + " " + mots[1] + " " + mots[2] : sql;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T envelopper(Class<T> type, T cible, Observateur apres) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, methode, arguments) -> {
+                Object resultat;
+                try {
+                    resultat = methode.invoke(cible, arguments);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                return apres.apres(methode, resultat, arguments);
+            });
+        }
+
+        @FunctionalInterface
+        private interface Observateur {
+            Object apres(Method methode, Object resultat, Object[] arguments);
+        }
+
+        private static final class Compteurs {
+            private int allersRetours;
+            private final Map<String, List<Integer>> lignesParLot = new HashMap<>();
+        }
+    }
+}
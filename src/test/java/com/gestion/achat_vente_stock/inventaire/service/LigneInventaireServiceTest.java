@@ -0,0 +1,251 @@
+package com.gestion.achat_vente_stock.inventaire.service;
+
+import com.gestion.achat_vente_stock.admin.model.Utilisateur;
+import com.gestion.achat_vente_stock.admin.repository.UtilisateurRepository;
+import com.gestion.achat_vente_stock.inventaire.model.Inventaire;
+import com.gestion.achat_vente_stock.inventaire.model.Inventaire.StatutInventaire;
+import com.gestion.achat_vente_stock.inventaire.model.LigneInventaire;
+import com.gestion.achat_vente_stock.inventaire.repository.InventaireRepository;
+import com.gestion.achat_vente_stock.inventaire.repository.LigneInventaireRepository;
+import com.gestion.achat_vente_stock.inventaire.repository.LigneInventaireRepository.CleLigne;
+import com.gestion.achat_vente_stock.inventaire.service.LigneInventaireService.ResultatScan;
+import com.gestion.achat_vente_stock.inventaire.service.LigneInventaireService.Scan;
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test de charge de l'intégration des scans : plusieurs terminaux envoient en même temps des lots
+ * de scans sur les mêmes lignes d'inventaire, aucun comptage ne doit être perdu.
+ * La table ligne_inventaire est simulée : chaque lecture renvoie une copie de la ligne, l'écriture
+ * remplace la ligne, et la lecture pour mise à jour verrouille la ligne jusqu'à la fin de la transaction,
+ * comme SELECT … FOR UPDATE.
+ */
+class LigneInventaireServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int LOTS_PAR_THREAD = 200;
+    private static final long INVENTAIRE_ID = 1L;
+    private static final long COMPTEUR_ID = 10L;
+
+    private final Map<Long, LigneInventaire> table = new ConcurrentHashMap<>();
+    private final Map<Long, ReentrantLock> verrous = new ConcurrentHashMap<>();
+    private final Inventaire inventaire = inventaire();
+    private final LigneInventaireService service = new LigneInventaireService(
+            fauxLigneRepository(),
+            simule(InventaireRepository.class, (methode, args) -> Optional.of(inventaire)),
+            simule(StockDisponibleRepository.class, (methode, args) -> List.of()),
+            simule(UtilisateurRepository.class, (methode, args) -> List.of(compteur())),
+            fauxJdbcTemplate());
+
+    @Test
+    void lotsConcurrentsSansPerteDeComptage() throws Exception {
+        ajouterLigne(1L, "ART-1");
+        ajouterLigne(2L, "ART-2");
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> resultats = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                resultats.add(executor.submit(() -> {
+                    for (int i = 0; i < LOTS_PAR_THREAD; i++) {
+                        String lot = thread + "-" + i;
+                        List<ResultatScan> lus = enTransaction(() -> service.integrerScans(INVENTAIRE_ID, List.of(
+                                scan(lot + "-a", "ART-1"), scan(lot + "-b", "ART-2"), scan(lot + "-c", "ART-1"))));
+                        assertTrue(lus.stream().allMatch(r -> LigneInventaireService.SCAN_APPLIQUE.equals(r.statut())));
+                    }
+                }));
+            }
+            for (Future<?> resultat : resultats) {
+                resultat.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int lots = THREADS * LOTS_PAR_THREAD;
+        assertEquals(0, BigDecimal.valueOf(2L * lots).compareTo(table.get(1L).getQuantiteComptee1()));
+        assertEquals(0, BigDecimal.valueOf(lots).compareTo(table.get(2L).getQuantiteComptee1()));
+        assertEquals(0, BigDecimal.valueOf(lots).compareTo(table.get(2L).getQuantiteRetenue()));
+    }
+
+    private static Scan scan(String idScan, String articleCode) {
+        return new Scan(idScan, 1, articleCode, null, null, BigDecimal.ONE, COMPTEUR_ID, LocalDateTime.now());
+    }
+
+    /**
+     * Simule une transaction Spring : les verrous pris pendant l'opération sont libérés à la fin
+     */
+    private <T> T enTransaction(java.util.function.Supplier<T> operation) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            int statut = TransactionSynchronization.STATUS_ROLLED_BACK;
+            try {
+                T resultat = operation.get();
+                statut = TransactionSynchronization.STATUS_COMMITTED;
+                return resultat;
+            } finally {
+                int fin = statut;
+                TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(fin));
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Repository simulé : clés des lignes, lecture verrouillée dans l'ordre des identifiants, écriture
+     */
+    private LigneInventaireRepository fauxLigneRepository() {
+        return simule(LigneInventaireRepository.class, (methode, args) -> switch (methode) {
+            case "findClesLignes" -> table.values().stream().map(LigneInventaireServiceTest::cle).toList();
+            case "findAllByIdPourMiseAJour" -> {
+                List<Long> ids = ((Collection<?>) args[0]).stream().map(Long.class::cast).sorted().toList();
+                List<LigneInventaire> lignes = new ArrayList<>();
+                for (Long id : ids) {
+                    ReentrantLock verrou = verrous.computeIfAbsent(id, k -> new ReentrantLock());
+                    verrou.lock();
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            verrou.unlock();
+                        }
+                    });
+                    lignes.add(copier(table.get(id)));
+                }
+                yield lignes;
+            }
+            case "saveAll" -> {
+                List<LigneInventaire> enregistrees = new ArrayList<>();
+                for (Object ligne : (Iterable<?>) args[0]) {
+                    Thread.yield();
+                    table.put(((LigneInventaire) ligne).getId(), copier((LigneInventaire) ligne));
+                    enregistrees.add((LigneInventaire) ligne);
+                }
+                yield enregistrees;
+            }
+            default -> throw new UnsupportedOperationException(methode);
+        });
+    }
+
+    /**
+     * JdbcTemplate simulé : tous les scans d'un lot sont nouveaux, résultats des scans ignorés
+     */
+    private JdbcTemplate fauxJdbcTemplate() {
+        return new JdbcTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> List<T> query(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper) {
+                List<T> idScans = new ArrayList<>();
+                Connection connexion = simule(Connection.class, (methode, args) -> {
+                    for (Object idScan : (Object[]) args[1]) {
+                        idScans.add((T) idScan);
+                    }
+                    return null;
+                });
+                try {
+                    pss.setValues(simule(PreparedStatement.class,
+                            (methode, args) -> "getConnection".equals(methode) ? connexion : null));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                return idScans;
+            }
+
+            @Override
+            public void query(String sql, PreparedStatementSetter pss, RowCallbackHandler rch) {
+                throw new UnsupportedOperationException("Aucun scan déjà reçu attendu");
+            }
+
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> lignes) {
+                return new int[lignes.size()];
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T simule(Class<T> type, BiFunction<String, Object[], Object> reponse) {
+        return (T) Proxy.newProxyInstance(LigneInventaireServiceTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> type.getSimpleName() + " simulé";
+                    default -> reponse.apply(method.getName(), args);
+                });
+    }
+
+    private void ajouterLigne(Long id, String articleCode) {
+        Article article = new Article();
+        article.setId(id);
+        article.setCode(articleCode);
+        LigneInventaire ligne = new LigneInventaire();
+        ligne.setId(id);
+        ligne.setInventaire(inventaire);
+        ligne.setArticle(article);
+        table.put(id, ligne);
+    }
+
+    private static LigneInventaire copier(LigneInventaire ligne) {
+        LigneInventaire copie = new LigneInventaire();
+        BeanUtils.copyProperties(ligne, copie);
+        return copie;
+    }
+
+    private static CleLigne cle(LigneInventaire ligne) {
+        return new CleLigne() {
+            public Long getId() { return ligne.getId(); }
+            public Long getArticleId() { return ligne.getArticle().getId(); }
+            public String getArticleCode() { return ligne.getArticle().getCode(); }
+            public String getLotNumero() { return ligne.getLotNumero(); }
+            public String getEmplacement() { return ligne.getEmplacement(); }
+        };
+    }
+
+    private static Inventaire inventaire() {
+        Depot depot = new Depot();
+        depot.setId(1L);
+        Inventaire inventaire = new Inventaire();
+        inventaire.setId(INVENTAIRE_ID);
+        inventaire.setNumero("INV-TEST");
+        inventaire.setDepot(depot);
+        inventaire.setStatut(StatutInventaire.EN_COMPTAGE);
+        return inventaire;
+    }
+
+    private static Utilisateur compteur() {
+        Utilisateur compteur = new Utilisateur();
+        compteur.setId(COMPTEUR_ID);
+        return compteur;
+    }
+}
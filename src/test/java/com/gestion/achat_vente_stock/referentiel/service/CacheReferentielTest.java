@@ -0,0 +1,69 @@
+package com.gestion.achat_vente_stock.referentiel.service;
+
+import com.gestion.achat_vente_stock.referentiel.service.CacheReferentiel.Statistiques;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cache borné des référentiels : éviction de la moins récemment lue, durée de vie,
+ * valeur chargée pendant une invalidation non conservée, compteurs.
+ */
+class CacheReferentielTest {
+
+    private final AtomicInteger chargements = new AtomicInteger();
+
+    private Optional<String> charger(Long id) {
+        chargements.incrementAndGet();
+        return id < 0 ? Optional.empty() : Optional.of("valeur-" + id);
+    }
+
+    @Test
+    void evinceLaMoinsRecemmentLueAuDelaDeLaTailleMax() {
+        CacheReferentiel<Long, String> cache = new CacheReferentiel<>("test", 2, Duration.ofMinutes(10));
+        cache.obtenir(1L, this::charger);
+        cache.obtenir(2L, this::charger);
+        cache.obtenir(1L, this::charger);
+        cache.obtenir(3L, this::charger);
+
+        cache.obtenir(1L, this::charger);
+        cache.obtenir(2L, this::charger);
+
+        assertEquals(4, chargements.get());
+        Statistiques statistiques = cache.statistiques();
+        assertEquals(2, statistiques.succes());
+        assertEquals(4, statistiques.echecs());
+        assertEquals(2, statistiques.evictions());
+        assertEquals(2, statistiques.taille());
+    }
+
+    @Test
+    void rechargeApresLaDureeDeVieEtNeConservePasLesAbsents() {
+        CacheReferentiel<Long, String> cache = new CacheReferentiel<>("test", 10, Duration.ZERO);
+        cache.obtenir(1L, this::charger);
+        cache.obtenir(1L, this::charger);
+        cache.obtenir(-1L, this::charger);
+        cache.obtenir(-1L, this::charger);
+
+        assertEquals(4, chargements.get());
+        assertEquals(0, cache.statistiques().succes());
+    }
+
+    @Test
+    void valeurChargeePendantUneInvalidationNonConservee() {
+        CacheReferentiel<Long, String> cache = new CacheReferentiel<>("test", 10, Duration.ofMinutes(10));
+        cache.obtenir(1L, id -> {
+            cache.invalider(id);
+            return charger(id);
+        });
+        cache.obtenir(1L, this::charger);
+
+        assertEquals(2, chargements.get());
+        assertEquals("valeur-1", cache.obtenir(1L, this::charger).orElseThrow());
+        assertEquals(2, chargements.get());
+    }
+}
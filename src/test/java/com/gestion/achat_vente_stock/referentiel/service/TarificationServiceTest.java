@@ -0,0 +1,186 @@
+package com.gestion.achat_vente_stock.referentiel.service;
+
+import com.gestion.achat_vente_stock.referentiel.service.TarificationService.PrixResolu;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Résolution des prix : tarif du client dans sa période de validité (bornes incluses), prix public
+ * à défaut, et reconstructions simultanées de l'index (la plus ancienne ne remplace pas la plus récente).
+ * Les tables client, tarif, tarif_ligne et article sont simulées par un JdbcTemplate qui renvoie leurs lignes.
+ */
+class TarificationServiceTest {
+
+    private static final Long CLIENT_TARIFE = 1L;
+    private static final Long CLIENT_SANS_TARIF = 2L;
+    private static final Long ARTICLE_AU_TARIF = 10L;
+    private static final Long ARTICLE_HORS_TARIF = 11L;
+    private static final Long ARTICLE_SANS_PRIX = 12L;
+
+    private volatile Donnees donnees = new Donnees(
+            List.of(Map.of("id", CLIENT_TARIFE, "tarif_id", 100L)),
+            List.of(tarif(100L, "T-PRO", "2026-01-01", "2026-03-31")),
+            List.of(Map.of("tarif_id", 100L, "article_id", ARTICLE_AU_TARIF,
+                    "prix_unitaire_ht", new BigDecimal("8.00"), "remise_pourcent", new BigDecimal("5"))),
+            List.of(Map.of("id", ARTICLE_AU_TARIF, "prix_vente_public", new BigDecimal("10.00")),
+                    Map.of("id", ARTICLE_HORS_TARIF, "prix_vente_public", new BigDecimal("20.00"))));
+
+    private final TarificationService service = new TarificationService(new JdbcTemplate() {
+        @Override
+        public void query(String sql, RowCallbackHandler rch) {
+            for (Map<String, Object> ligne : lignes(donnees, sql)) {
+                try {
+                    rch.processRow(resultSet(ligne));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    });
+
+    @Test
+    void tarifDuClientDansSaPeriodeDeValidite() {
+        service.recharger();
+
+        for (String jour : List.of("2026-01-01", "2026-02-15", "2026-03-31")) {
+            PrixResolu prix = resoudre(CLIENT_TARIFE, ARTICLE_AU_TARIF, jour);
+            assertEquals(TarificationService.SOURCE_TARIF, prix.source(), jour);
+            assertEquals("T-PRO", prix.codeTarif());
+            assertEquals(0, new BigDecimal("8.00").compareTo(prix.prixUnitaireHt()));
+            assertEquals(0, new BigDecimal("5").compareTo(prix.remisePourcent()));
+        }
+        for (String jour : List.of("2025-12-31", "2026-04-01")) {
+            PrixResolu prix = resoudre(CLIENT_TARIFE, ARTICLE_AU_TARIF, jour);
+            assertEquals(TarificationService.SOURCE_PRIX_PUBLIC, prix.source(), jour);
+            assertEquals(0, new BigDecimal("10.00").compareTo(prix.prixUnitaireHt()));
+        }
+    }
+
+    @Test
+    void prixPublicADefautDeTarif() {
+        service.recharger();
+
+        PrixResolu sansTarif = resoudre(CLIENT_SANS_TARIF, ARTICLE_AU_TARIF, "2026-02-15");
+        assertEquals(TarificationService.SOURCE_PRIX_PUBLIC, sansTarif.source());
+        assertEquals(0, new BigDecimal("10.00").compareTo(sansTarif.prixUnitaireHt()));
+        assertEquals(0, sansTarif.remisePourcent().signum());
+        assertNull(sansTarif.codeTarif());
+
+        PrixResolu horsTarif = resoudre(CLIENT_TARIFE, ARTICLE_HORS_TARIF, "2026-02-15");
+        assertEquals(TarificationService.SOURCE_PRIX_PUBLIC, horsTarif.source());
+        assertEquals(0, new BigDecimal("20.00").compareTo(horsTarif.prixUnitaireHt()));
+
+        assertEquals(TarificationService.SOURCE_PRIX_PUBLIC, resoudre(null, ARTICLE_AU_TARIF, "2026-02-15").source());
+        assertFalse(service.resoudre(CLIENT_TARIFE, List.of(ARTICLE_SANS_PRIX), LocalDate.parse("2026-02-15"))
+                .containsKey(ARTICLE_SANS_PRIX));
+    }
+
+    @Test
+    void reconstructionAncienneNeRemplacePasLaPlusRecente() throws Exception {
+        Donnees anciennes = donnees;
+        CountDownLatch ancienneEnCours = new CountDownLatch(1);
+        CountDownLatch recenteAppliquee = new CountDownLatch(1);
+        TarificationService lente = new TarificationService(new JdbcTemplate() {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                // La première reconstruction lit l'état initial puis attend que la seconde soit appliquée
+                boolean premiere = Thread.currentThread().getName().equals("ancienne");
+                List<Map<String, Object>> lignes = lignes(premiere ? anciennes : donnees, sql);
+                if (premiere && sql.contains("prix_vente_public")) {
+                    ancienneEnCours.countDown();
+                    attendre(recenteAppliquee);
+                }
+                for (Map<String, Object> ligne : lignes) {
+                    try {
+                        rch.processRow(resultSet(ligne));
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        });
+
+        Thread ancienne = new Thread(lente::recharger, "ancienne");
+        ancienne.start();
+        attendre(ancienneEnCours);
+        donnees = new Donnees(anciennes.clients(), anciennes.tarifs(), anciennes.lignes(),
+                List.of(Map.of("id", ARTICLE_AU_TARIF, "prix_vente_public", new BigDecimal("12.00"))));
+        CompletableFuture.runAsync(lente::recharger).get(10, TimeUnit.SECONDS);
+        recenteAppliquee.countDown();
+        ancienne.join(TimeUnit.SECONDS.toMillis(10));
+
+        PrixResolu prix = lente.resoudre(CLIENT_SANS_TARIF, List.of(ARTICLE_AU_TARIF), LocalDate.parse("2026-02-15"))
+                .get(ARTICLE_AU_TARIF);
+        assertEquals(0, new BigDecimal("12.00").compareTo(prix.prixUnitaireHt()));
+        assertTrue(lente.resoudre(CLIENT_SANS_TARIF, List.of(ARTICLE_HORS_TARIF), null).isEmpty());
+    }
+
+    private PrixResolu resoudre(Long clientId, Long articleId, String jour) {
+        return service.resoudre(clientId, List.of(articleId), LocalDate.parse(jour)).get(articleId);
+    }
+
+    private static void attendre(CountDownLatch signal) {
+        try {
+            assertTrue(signal.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Map<String, Object>> lignes(Donnees donnees, String sql) {
+        if (sql.contains("FROM client")) {
+            return donnees.clients();
+        }
+        if (sql.contains("FROM tarif_ligne")) {
+            return donnees.lignes();
+        }
+        if (sql.contains("FROM tarif")) {
+            return donnees.tarifs();
+        }
+        return donnees.prixPublics();
+    }
+
+    private static Map<String, Object> tarif(Long id, String code, String debut, String fin) {
+        return Map.of("id", id, "code", code,
+                "date_debut", Timestamp.valueOf(LocalDate.parse(debut).atStartOfDay()),
+                "date_fin", Timestamp.valueOf(LocalDate.parse(fin).atTime(18, 0)));
+    }
+
+    /**
+     * Ligne lue par colonne (getLong, getString, getBigDecimal, getTimestamp)
+     */
+    private static ResultSet resultSet(Map<String, Object> ligne) {
+        return (ResultSet) Proxy.newProxyInstance(TarificationServiceTest.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    Object valeur = args != null && args.length == 1 ? ligne.get(args[0]) : null;
+                    return switch (method.getName()) {
+                        case "getLong" -> valeur != null ? ((Number) valeur).longValue() : 0L;
+                        case "getString", "getBigDecimal", "getTimestamp" -> valeur;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    private record Donnees(List<Map<String, Object>> clients, List<Map<String, Object>> tarifs,
+                           List<Map<String, Object>> lignes, List<Map<String, Object>> prixPublics) {
+    }
+}
@@ -0,0 +1,189 @@
+package com.gestion.achat_vente_stock.stock.service;
+
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.stock.service.RegistreStockService.VariationStock;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Registre du stock sur une base PostgreSQL : l'INSERT … ON CONFLICT des entrées (index unique
+ * article/dépôt/lot, lot NULL compris) et le décrément conditionnel des sorties, exécutés en parallèle
+ * par plusieurs transactions validées. L'article et le dépôt de test sont créés puis supprimés avec leur stock.
+ *
+ * Exécution : mvn test -Dtest=RegistreStockServiceTest -Dplans.url=jdbc:postgresql://localhost:5433/achat_vente_stock
+ * (facultatif : -Dplans.utilisateur, -Dplans.mot-de-passe)
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${plans.url}",
+        "spring.datasource.username=${plans.utilisateur:postgres}",
+        "spring.datasource.password=${plans.mot-de-passe:postgres}",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.show-sql=false"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "plans.url", matches = ".+")
+class RegistreStockServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    RegistreStockService registre;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final Article article = new Article();
+    private final Depot depot = new Depot();
+    private TransactionTemplate transaction;
+
+    @BeforeAll
+    void creerArticleEtDepot() {
+        transaction = new TransactionTemplate(transactionManager);
+        String code = "TEST-REGISTRE-" + System.nanoTime();
+        article.setId(jdbcTemplate.queryForObject("INSERT INTO article (id, code, designation) " +
+                "VALUES (nextval('article_id_seq'), ?, 'Test registre') RETURNING id", Long.class, code));
+        depot.setId(jdbcTemplate.queryForObject("INSERT INTO depot (id, code, libelle) " +
+                "VALUES (nextval('depot_id_seq'), ?, 'Test registre') RETURNING id", Long.class, code));
+    }
+
+    @BeforeEach
+    void viderStock() {
+        jdbcTemplate.update("DELETE FROM stock_disponible WHERE article_id = ?", article.getId());
+    }
+
+    @AfterAll
+    void supprimerArticleEtDepot() {
+        viderStock();
+        jdbcTemplate.update("DELETE FROM article WHERE id = ?", article.getId());
+        jdbcTemplate.update("DELETE FROM depot WHERE id = ?", depot.getId());
+    }
+
+    @Test
+    void entreesConcurrentesSansPerteDeMiseAJour() throws Exception {
+        parallele(50, i -> registre.appliquerEntree(article, depot, "A1", null, BigDecimal.ONE, new BigDecimal("2")));
+        parallele(50, i -> registre.appliquerEntree(article, depot, "A1", "L1", BigDecimal.ONE, new BigDecimal("2")));
+
+        // Une seule ligne par clé, y compris sans lot
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM stock_disponible WHERE article_id = ?", Integer.class, article.getId()));
+        for (String lot : new String[]{null, "L1"}) {
+            Map<String, Object> ligne = ligne(lot);
+            int entrees = THREADS * 50;
+            assertEquals(0, BigDecimal.valueOf(entrees).compareTo((BigDecimal) ligne.get("quantite_physique")), lot);
+            assertEquals(0, BigDecimal.valueOf(entrees).compareTo((BigDecimal) ligne.get("quantite_disponible")), lot);
+            assertEquals(0, BigDecimal.valueOf(2L * entrees).compareTo((BigDecimal) ligne.get("valeur_stock")), lot);
+        }
+    }
+
+    @Test
+    void sortiesConcurrentesNeDepassentPasLeDisponible() throws Exception {
+        enTransaction(() -> registre.appliquerEntree(article, depot, "A1", null, new BigDecimal("100"),
+                new BigDecimal("200")));
+
+        AtomicInteger acceptees = new AtomicInteger();
+        AtomicInteger refusees = new AtomicInteger();
+        parallele(20, i -> {
+            try {
+                registre.appliquerSortie(article, depot, null, BigDecimal.ONE, new BigDecimal("2"));
+                acceptees.incrementAndGet();
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage().startsWith("Stock insuffisant"), e.getMessage());
+                refusees.incrementAndGet();
+            }
+        });
+
+        assertEquals(100, acceptees.get());
+        assertEquals(THREADS * 20 - 100, refusees.get());
+        Map<String, Object> ligne = ligne(null);
+        assertEquals(0, ((BigDecimal) ligne.get("quantite_physique")).signum());
+        assertEquals(0, ((BigDecimal) ligne.get("valeur_stock")).signum());
+    }
+
+    @Test
+    void lotQuiCreeEtSortUneMemeCle() {
+        enTransaction(() -> registre.appliquerLot(List.of(
+                variation("L2", "10", "30", true),
+                variation("L2", "4", "12", false))));
+        Map<String, Object> ligne = ligne("L2");
+        assertEquals(0, new BigDecimal("6").compareTo((BigDecimal) ligne.get("quantite_physique")));
+        assertEquals(0, new BigDecimal("18").compareTo((BigDecimal) ligne.get("valeur_stock")));
+
+        // Tout ou rien : une sortie refusée n'applique aucune variation du lot
+        RuntimeException refus = assertThrows(RuntimeException.class, () -> enTransaction(() ->
+                registre.appliquerLot(List.of(
+                        variation("L2", "1", "3", true),
+                        variation("L3", "1", "3", false)))));
+        assertTrue(refus.getMessage().startsWith("Stock non trouvé"), refus.getMessage());
+        assertEquals(0, new BigDecimal("6").compareTo((BigDecimal) ligne("L2").get("quantite_physique")));
+    }
+
+    @Test
+    void miseAJourHorsTransactionRefusee() {
+        assertThrows(IllegalStateException.class, () ->
+                registre.appliquerEntree(article, depot, "A1", null, BigDecimal.ONE, BigDecimal.ONE));
+        assertThrows(IllegalStateException.class, () ->
+                registre.appliquerLot(List.of(variation(null, "1", "1", true))));
+    }
+
+    /**
+     * {@code iterations} opérations par thread, chacune dans sa propre transaction validée
+     */
+    private void parallele(int iterations, IntConsumer operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> resultats = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                resultats.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        int iteration = i;
+                        enTransaction(() -> operation.accept(iteration));
+                    }
+                }));
+            }
+            for (Future<?> resultat : resultats) {
+                resultat.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void enTransaction(Runnable operation) {
+        transaction.executeWithoutResult(status -> operation.run());
+    }
+
+    private Map<String, Object> ligne(String lot) {
+        return jdbcTemplate.queryForMap("SELECT quantite_physique, quantite_disponible, valeur_stock " +
+                "FROM stock_disponible WHERE article_id = ? AND depot_id = ? AND lot_numero IS NOT DISTINCT FROM ?",
+                article.getId(), depot.getId(), lot);
+    }
+
+    private VariationStock variation(String lot, String quantite, String valeur, boolean entree) {
+        return new VariationStock(article, depot, "A1", lot, new BigDecimal(quantite), new BigDecimal(valeur), entree);
+    }
+}
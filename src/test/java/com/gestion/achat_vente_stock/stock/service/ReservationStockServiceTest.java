@@ -0,0 +1,137 @@
+package com.gestion.achat_vente_stock.stock.service;
+
+import com.gestion.achat_vente_stock.referentiel.model.Article;
+import com.gestion.achat_vente_stock.referentiel.model.Depot;
+import com.gestion.achat_vente_stock.referentiel.repository.ArticleRepository;
+import com.gestion.achat_vente_stock.stock.repository.ReservationStockRepository;
+import com.gestion.achat_vente_stock.stock.repository.ReservationStockRepository.ReservationActive;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository;
+import com.gestion.achat_vente_stock.stock.repository.StockDisponibleRepository.StockReservable;
+import com.gestion.achat_vente_stock.stock.service.ReservationStockService.Prelevement;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Consommation des réservations d'une commande à la livraison : un prélèvement de lot ne consomme que
+ * les réservations de ce lot, et la part d'un prélèvement sans lot non couverte par les réservations
+ * est répartie sur le stock non réservé dans l'ordre FEFO.
+ * Réservations et stock réservable sont simulés ; les mises à jour JDBC sont enregistrées.
+ */
+class ReservationStockServiceTest {
+
+    private static final Long COMMANDE_ID = 1L;
+    private static final Long ARTICLE_ID = 10L;
+
+    private final Depot depot = depot();
+    private final Article article = article();
+    private final List<ReservationActive> reservations = new ArrayList<>();
+    private final List<StockReservable> stocks = new ArrayList<>();
+    private final List<Object[]> consommations = new ArrayList<>();
+
+    private final ReservationStockService service = new ReservationStockService(
+            simule(ReservationStockRepository.class, (methode, args) -> reservations),
+            simule(StockDisponibleRepository.class, (methode, args) -> stocks),
+            null,
+            null,
+            simule(ArticleRepository.class, (methode, args) -> List.of(article)),
+            new JdbcTemplate() {
+                @Override
+                public int[] batchUpdate(String sql, List<Object[]> lignes) {
+                    if (sql.startsWith("UPDATE reservation_stock")) {
+                        consommations.addAll(lignes);
+                    }
+                    int[] resultats = new int[lignes.size()];
+                    Arrays.fill(resultats, 1);
+                    return resultats;
+                }
+            },
+            new DisponibiliteService(new JdbcTemplate()));
+
+    @Test
+    void prelevementDUnLotNeConsommeQueLesReservationsDeCeLot() {
+        reservations.add(reservation(100L, "L-A", "5"));
+        reservations.add(reservation(101L, "L-B", "5"));
+
+        List<Prelevement> sorties = service.consommerLivraison(COMMANDE_ID, depot,
+                List.of(new Prelevement(ARTICLE_ID, "L-B", new BigDecimal("8"))));
+
+        assertEquals(List.of(new Prelevement(ARTICLE_ID, "L-B", new BigDecimal("8"))), sorties);
+        assertEquals(1, consommations.size());
+        assertEquals(101L, consommations.get(0)[2]);
+        assertEquals(ReservationStockService.STATUT_CONSOMMEE, consommations.get(0)[1]);
+    }
+
+    @Test
+    void resteSansLotRepartiSurLeStockNonReserveEnFEFO() {
+        reservations.add(reservation(100L, "L-A", "3"));
+        stocks.add(stock(1L, "L-TARDIF", "10", "2030-06-01"));
+        stocks.add(stock(2L, "L-PROCHE", "4", "2030-01-01"));
+
+        List<Prelevement> sorties = service.consommerLivraison(COMMANDE_ID, depot,
+                List.of(new Prelevement(ARTICLE_ID, null, new BigDecimal("10"))));
+
+        // 3 sur le lot réservé, puis 4 sur le lot à la DLUO la plus proche, 3 sur le suivant ; aucun lot NULL
+        assertEquals(List.of(
+                new Prelevement(ARTICLE_ID, "L-A", new BigDecimal("3")),
+                new Prelevement(ARTICLE_ID, "L-PROCHE", new BigDecimal("4")),
+                new Prelevement(ARTICLE_ID, "L-TARDIF", new BigDecimal("3"))), sorties);
+        assertTrue(sorties.stream().noneMatch(p -> p.lotNumero() == null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T simule(Class<T> type, BiFunction<String, Object[], Object> reponse) {
+        return (T) Proxy.newProxyInstance(ReservationStockServiceTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> type.getSimpleName() + " simulé";
+                    default -> reponse.apply(method.getName(), args);
+                });
+    }
+
+    private static ReservationActive reservation(Long id, String lot, String quantite) {
+        return new ReservationActive() {
+            public Long getId() { return id; }
+            public Long getArticleId() { return ARTICLE_ID; }
+            public String getLotNumero() { return lot; }
+            public BigDecimal getQuantiteReservee() { return new BigDecimal(quantite); }
+        };
+    }
+
+    private static StockReservable stock(Long id, String lot, String disponible, String dluo) {
+        return new StockReservable() {
+            public Long getId() { return id; }
+            public Long getArticleId() { return ARTICLE_ID; }
+            public String getLotNumero() { return lot; }
+            public BigDecimal getQuantiteDisponible() { return new BigDecimal(disponible); }
+            public LocalDate getDluo() { return LocalDate.parse(dluo); }
+            public LocalDate getDateFabrication() { return null; }
+        };
+    }
+
+    private static Article article() {
+        Article article = new Article();
+        article.setId(ARTICLE_ID);
+        article.setCode("ART-LOT");
+        article.setTracabiliteLot(true);
+        article.setDluoObligatoire(true);
+        return article;
+    }
+
+    private static Depot depot() {
+        Depot depot = new Depot();
+        depot.setId(1L);
+        return depot;
+    }
+}
@@ -0,0 +1,234 @@
+package com.gestion.achat_vente_stock.vente.service;
+
+import com.gestion.achat_vente_stock.referentiel.model.Client;
+import com.gestion.achat_vente_stock.vente.model.CommandeClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Encours client en mémoire : contrôle de la limite à la confirmation (y compris en parallèle),
+ * mises à jour rejouées sans double comptage, relectures arrivées dans le désordre, et reconstruction
+ * qui conserve les documents engagés pendant son exécution.
+ * Les commandes et factures ouvertes (commande_client, facture_client) sont simulées par un JdbcTemplate
+ * qui renvoie leur client et leur montant.
+ */
+class ExpositionCreditServiceTest {
+
+    private static final Long CLIENT_ID = 1L;
+
+    // Documents ouverts en base : identifiant -> montant (tous du client CLIENT_ID)
+    private final Map<Long, BigDecimal> commandes = new ConcurrentHashMap<>();
+    private final Map<Long, BigDecimal> factures = new ConcurrentHashMap<>();
+    private final ExpositionCreditService service = new ExpositionCreditService(fauxJdbcTemplate(null, null));
+
+    @Test
+    void confirmationAccepteeJusquALaLimiteEtRefuseeAuDela() {
+        Client client = client(new BigDecimal("1000"));
+
+        service.engagerCommande(commande(1L, client, "600"));
+        IllegalStateException refus = assertThrows(IllegalStateException.class,
+                () -> service.engagerCommande(commande(2L, client, "500")));
+        assertTrue(refus.getMessage().contains("Limite de crédit dépassée"));
+        assertEquals(0, new BigDecimal("600").compareTo(service.encours(CLIENT_ID)));
+
+        service.engagerCommande(commande(3L, client, "400"));
+        assertEquals(0, new BigDecimal("1000").compareTo(service.encours(CLIENT_ID)));
+
+        // Client sans limite : pas de contrôle
+        service.engagerCommande(commande(4L, client(null), "5000"));
+        assertEquals(0, new BigDecimal("6000").compareTo(service.encours(CLIENT_ID)));
+    }
+
+    @Test
+    void confirmationsSimultaneesNeDepassentPasLaLimite() throws Exception {
+        Client client = client(new BigDecimal("1000"));
+        AtomicInteger acceptees = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> resultats = new ArrayList<>();
+            for (long id = 1; id <= 40; id++) {
+                long commandeId = id;
+                resultats.add(executor.submit(() -> {
+                    try {
+                        service.engagerCommande(commande(commandeId, client, "100"));
+                        acceptees.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        // limite atteinte
+                    }
+                }));
+            }
+            for (Future<?> resultat : resultats) {
+                resultat.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(10, acceptees.get());
+        assertEquals(0, new BigDecimal("1000").compareTo(service.encours(CLIENT_ID)));
+    }
+
+    @Test
+    void miseAJourRejoueeNeCompteQuUneFois() {
+        Client client = client(new BigDecimal("1000"));
+        commandes.put(1L, new BigDecimal("300"));
+        factures.put(7L, new BigDecimal("200"));
+
+        service.actualiserCommandeApresCommit(1L);
+        service.actualiserCommandeApresCommit(1L);
+        service.actualiserFactureApresCommit(7L);
+        service.actualiserFactureApresCommit(7L);
+        assertEquals(0, new BigDecimal("500").compareTo(service.encours(CLIENT_ID)));
+
+        // Confirmation rejouée : la contribution de la commande remplace la précédente
+        service.engagerCommande(commande(1L, client, "300"));
+        assertEquals(0, new BigDecimal("500").compareTo(service.encours(CLIENT_ID)));
+
+        // Facture payée : sa contribution disparaît, une seule fois même rejouée
+        factures.remove(7L);
+        service.actualiserFactureApresCommit(7L);
+        service.actualiserFactureApresCommit(7L);
+        assertEquals(0, new BigDecimal("300").compareTo(service.encours(CLIENT_ID)));
+    }
+
+    @Test
+    void relectureAncienneArriveeApresUneRecenteIgnoree() throws Exception {
+        commandes.put(1L, new BigDecimal("300"));
+        CountDownLatch ancienneLue = new CountDownLatch(1);
+        CountDownLatch recenteAppliquee = new CountDownLatch(1);
+        ExpositionCreditService lent = new ExpositionCreditService(fauxJdbcTemplate(ancienneLue, recenteAppliquee));
+
+        // La première relecture lit 300, puis n'est appliquée qu'après une relecture plus récente (450)
+        Thread ancienne = new Thread(() -> lent.actualiserCommandeApresCommit(1L), "ancienne");
+        ancienne.start();
+        assertTrue(ancienneLue.await(10, TimeUnit.SECONDS));
+        commandes.put(1L, new BigDecimal("450"));
+        lent.actualiserCommandeApresCommit(1L);
+        recenteAppliquee.countDown();
+        ancienne.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(0, new BigDecimal("450").compareTo(lent.encours(CLIENT_ID)));
+    }
+
+    @Test
+    void reconstructionConserveLesEngagementsEnCours() {
+        Client client = client(new BigDecimal("1000"));
+        commandes.put(1L, new BigDecimal("100"));
+        factures.put(7L, new BigDecimal("50"));
+        // Commande relue avant sa facturation, absente des documents ouverts à la reconstruction
+        commandes.put(2L, new BigDecimal("70"));
+        service.actualiserCommandeApresCommit(2L);
+        commandes.remove(2L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Commande 3 engagée dans une transaction non terminée : pas encore visible en base
+            service.engagerCommande(commande(3L, client, "200"));
+            service.reconstruire();
+            assertEquals(0, new BigDecimal("350").compareTo(service.encours(CLIENT_ID)));
+
+            commandes.put(3L, new BigDecimal("200"));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(0, new BigDecimal("350").compareTo(service.encours(CLIENT_ID)));
+
+        service.reconstruire();
+        assertEquals(0, new BigDecimal("350").compareTo(service.encours(CLIENT_ID)));
+    }
+
+    /**
+     * JdbcTemplate simulé : relecture d'un document (RowMapper) et lecture complète (RowCallbackHandler).
+     * Avec des signaux, la relecture du thread "ancienne" attend, après sa requête, que la suivante soit appliquée.
+     */
+    private JdbcTemplate fauxJdbcTemplate(CountDownLatch ancienneLue, CountDownLatch recenteAppliquee) {
+        return new JdbcTemplate() {
+            @Override
+            public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+                BigDecimal montant = documents(sql).get((Long) args[0]);
+                List<T> resultat = new ArrayList<>();
+                try {
+                    if (montant != null) {
+                        resultat.add(rowMapper.mapRow(ligne((Long) args[0], montant), 0));
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (ancienneLue != null && Thread.currentThread().getName().equals("ancienne")) {
+                    ancienneLue.countDown();
+                    try {
+                        assertTrue(recenteAppliquee.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return resultat;
+            }
+
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                try {
+                    for (Map.Entry<Long, BigDecimal> document : documents(sql).entrySet()) {
+                        rch.processRow(ligne(document.getKey(), document.getValue()));
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    private Map<Long, BigDecimal> documents(String sql) {
+        return sql.contains("FROM commande_client") ? commandes : factures;
+    }
+
+    private static ResultSet ligne(Long id, BigDecimal montant) {
+        return (ResultSet) Proxy.newProxyInstance(ExpositionCreditServiceTest.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getLong" -> "id".equals(args[0]) ? id : CLIENT_ID;
+                    case "getBigDecimal" -> montant;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Client client(BigDecimal limiteCredit) {
+        Client client = new Client();
+        client.setId(CLIENT_ID);
+        client.setCode("CLI-1");
+        client.setLimiteCredit(limiteCredit);
+        return client;
+    }
+
+    private static CommandeClient commande(Long id, Client client, String montant) {
+        CommandeClient commande = new CommandeClient();
+        commande.setId(id);
+        commande.setClient(client);
+        commande.setMontantTotalTtc(new BigDecimal(montant));
+        return commande;
+    }
+}